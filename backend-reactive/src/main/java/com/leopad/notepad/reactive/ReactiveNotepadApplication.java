@@ -0,0 +1,16 @@
+package com.leopad.notepad.reactive;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+
+/**
+ * The note and auth API on WebFlux and R2DBC. Serves the same endpoints and JSON as the servlet
+ * backend against the same database, so both can be put under the same load.
+ */
+@SpringBootApplication
+public class ReactiveNotepadApplication {
+
+    public static void main(String[] args) {
+        SpringApplication.run(ReactiveNotepadApplication.class, args);
+    }
+}
@@ -0,0 +1,53 @@
+package com.leopad.notepad.reactive.config;
+
+import com.leopad.notepad.config.FirebaseConfig;
+import com.leopad.notepad.config.ResilienceConfig;
+import com.leopad.notepad.service.EmailService;
+import com.leopad.notepad.service.FirebaseAuthService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.web.cors.CorsConfiguration;
+import org.springframework.web.cors.reactive.CorsWebFilter;
+import org.springframework.web.cors.reactive.UrlBasedCorsConfigurationSource;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Shared pieces of the servlet backend. They are declared here rather than component-scanned,
+ * since scanning com.leopad.notepad would pick up the servlet controllers and JPA services too.
+ */
+@Configuration
+@Import({FirebaseConfig.class, ResilienceConfig.class, EmailService.class})
+public class ReactiveConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReactiveConfig.class);
+
+    @Bean
+    public FirebaseAuthService firebaseAuthService() {
+        return new FirebaseAuthService();
+    }
+
+    // Ahead of authentication, so preflight requests are answered without a token
+    @Bean
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public CorsWebFilter corsWebFilter(@Value("${cors.allowed-origins:http://localhost:5173}") String allowedOrigins) {
+        logger.info("Configuring CORS with allowed origins: {}", allowedOrigins);
+        CorsConfiguration configuration = new CorsConfiguration();
+        configuration.setAllowedOrigins(Arrays.stream(allowedOrigins.split(",")).map(String::trim).toList());
+        configuration.setAllowedMethods(List.of("GET", "POST", "PUT", "PATCH", "DELETE", "OPTIONS"));
+        configuration.setAllowedHeaders(List.of("*"));
+        configuration.setExposedHeaders(List.of("ETag", "Content-Range", "Accept-Ranges", "X-Request-Id"));
+        configuration.setAllowCredentials(true);
+        configuration.setMaxAge(3600L);
+        UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
+        source.registerCorsConfiguration("/**", configuration);
+        return new CorsWebFilter(source);
+    }
+}
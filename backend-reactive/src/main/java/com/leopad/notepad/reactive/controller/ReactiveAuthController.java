@@ -0,0 +1,116 @@
+package com.leopad.notepad.reactive.controller;
+
+import com.google.firebase.auth.FirebaseAuthException;
+import com.google.firebase.auth.FirebaseToken;
+import com.leopad.notepad.reactive.security.FirebaseAuthWebFilter;
+import com.leopad.notepad.reactive.service.ReactiveUserService;
+import com.leopad.notepad.resilience.DependencyUnavailableException;
+import com.leopad.notepad.service.FirebaseAuthService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/auth")
+@CrossOrigin(origins = "*", allowedHeaders = "*")
+public class ReactiveAuthController {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReactiveAuthController.class);
+
+    private final FirebaseAuthService firebaseAuthService;
+    private final ReactiveUserService userService;
+
+    public ReactiveAuthController(FirebaseAuthService firebaseAuthService, ReactiveUserService userService) {
+        this.firebaseAuthService = firebaseAuthService;
+        this.userService = userService;
+    }
+
+    @PostMapping("/verify-token")
+    public Mono<ResponseEntity<?>> verifyToken(@RequestHeader("Authorization") String authHeader) {
+        logger.info("Token verification request received");
+
+        if (!authHeader.startsWith("Bearer ")) {
+            logger.warn("Invalid authorization header format");
+            return Mono.just(ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(Map.of("error", "Invalid authorization header format")));
+        }
+
+        String idToken = authHeader.substring(7);
+        return Mono.fromCallable(() -> firebaseAuthService.verifyToken(idToken))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(decodedToken -> userService.findOrCreate(decodedToken).map(user -> {
+                    logger.info("Token verified successfully for user: {}", user.getFirebaseUid());
+
+                    Map<String, Object> response = new HashMap<>();
+                    response.put("valid", true);
+                    response.put("uid", decodedToken.getUid());
+                    response.put("email", decodedToken.getEmail());
+                    response.put("name", decodedToken.getName());
+                    response.put("userId", user.getId());
+                    return ResponseEntity.<Object>ok(response);
+                }))
+                .<ResponseEntity<?>>map(response -> response)
+                .onErrorResume(FirebaseAuthException.class, e -> {
+                    logger.error("Token verification failed: {}", e.getMessage());
+                    return Mono.just(ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                            .body(Map.of("error", "Invalid token", "details", e.getMessage())));
+                })
+                .onErrorResume(DependencyUnavailableException.class, e -> {
+                    logger.warn("Could not verify token: {}", e.getMessage());
+                    return Mono.just(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                            .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                            .body(Map.of("error", "Authentication is temporarily unavailable")));
+                })
+                .onErrorResume(e -> {
+                    logger.error("Error during token verification: {}", e.getMessage(), e);
+                    return Mono.just(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                            .body(Map.of("error", "Internal server error")));
+                });
+    }
+
+    @GetMapping("/user")
+    public Mono<ResponseEntity<?>> getCurrentUser(ServerWebExchange exchange) {
+        FirebaseToken token = exchange.getAttribute(FirebaseAuthWebFilter.TOKEN);
+        if (token == null) {
+            logger.warn("No authenticated user found");
+            return Mono.just(ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(Map.of("error", "No authenticated user")));
+        }
+
+        return userService.findByFirebaseUid(token.getUid())
+                .<ResponseEntity<?>>map(user -> {
+                    Map<String, Object> response = new HashMap<>();
+                    response.put("id", user.getId());
+                    response.put("firebaseUid", user.getFirebaseUid());
+                    response.put("email", user.getEmail());
+                    response.put("name", user.getName());
+                    response.put("createdAt", user.getCreatedAt());
+                    return ResponseEntity.ok(response);
+                })
+                .switchIfEmpty(Mono.fromSupplier(() -> {
+                    logger.warn("User not found for Firebase UID: {}", token.getUid());
+                    return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "User not found"));
+                }))
+                .onErrorResume(e -> {
+                    logger.error("Error getting current user: {}", e.getMessage(), e);
+                    return Mono.just(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                            .body(Map.of("error", "Internal server error")));
+                });
+    }
+
+    // Stateless: nothing is kept per session, so there is nothing to clear
+    @PostMapping("/logout")
+    public Mono<ResponseEntity<?>> logout() {
+        logger.info("User logged out successfully");
+        return Mono.just(ResponseEntity.ok(Map.of("message", "Logged out successfully")));
+    }
+}
@@ -0,0 +1,163 @@
+package com.leopad.notepad.reactive.controller;
+
+import com.google.firebase.auth.FirebaseToken;
+import com.leopad.notepad.dto.NoteRequest;
+import com.leopad.notepad.dto.NoteResponse;
+import com.leopad.notepad.dto.NoteStatsResponse;
+import com.leopad.notepad.entity.User;
+import com.leopad.notepad.reactive.security.FirebaseAuthWebFilter;
+import com.leopad.notepad.reactive.service.ReactiveNoteService;
+import com.leopad.notepad.reactive.service.ReactiveUserService;
+import com.leopad.notepad.repository.NoteStatsRepository.NoteStats;
+import com.leopad.notepad.resilience.DependencyUnavailableException;
+import com.leopad.notepad.service.EmailService;
+import jakarta.validation.Valid;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.List;
+
+/**
+ * The servlet backend's note endpoints on WebFlux, with the same paths, status codes and JSON.
+ * Tag filters, revisions, content streaming and archived notes are only served by the servlet
+ * backend.
+ */
+@RestController
+@RequestMapping("/api/notes")
+public class ReactiveNoteController {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReactiveNoteController.class);
+
+    private final ReactiveNoteService noteService;
+    private final ReactiveUserService userService;
+    private final EmailService emailService;
+
+    public ReactiveNoteController(ReactiveNoteService noteService, ReactiveUserService userService,
+                                  EmailService emailService) {
+        this.noteService = noteService;
+        this.userService = userService;
+        this.emailService = emailService;
+    }
+
+    // The filter has already rejected requests without a valid token
+    private Mono<User> getCurrentUser(ServerWebExchange exchange) {
+        FirebaseToken token = exchange.getAttribute(FirebaseAuthWebFilter.TOKEN);
+        logger.debug("Getting current user for Firebase UID: {} with email: {}", token.getUid(), token.getEmail());
+        return userService.findOrCreate(token);
+    }
+
+    @GetMapping
+    public Mono<ResponseEntity<List<NoteResponse>>> getAllNotes(
+            @RequestParam(defaultValue = "false") boolean includeArchived, ServerWebExchange exchange) {
+        if (includeArchived) {
+            return Mono.just(ResponseEntity.status(HttpStatus.NOT_IMPLEMENTED).build());
+        }
+        return getCurrentUser(exchange).flatMap(user -> {
+            logger.info("Fetching all notes for user: {}", user.getEmail());
+            return noteService.findAllByUser(user).map(NoteResponse::new).collectList();
+        }).map(ResponseEntity::ok);
+    }
+
+    @GetMapping("/{id}")
+    public Mono<ResponseEntity<NoteResponse>> getNoteById(@PathVariable Long id, ServerWebExchange exchange) {
+        return getCurrentUser(exchange)
+                .flatMap(user -> noteService.findByIdAndUser(id, user))
+                .map(note -> ResponseEntity.ok(new NoteResponse(note)))
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+
+    @PostMapping
+    public Mono<ResponseEntity<NoteResponse>> createNote(@Valid @RequestBody NoteRequest request,
+                                                         ServerWebExchange exchange) {
+        return getCurrentUser(exchange).flatMap(user -> {
+            logger.info("Creating new note for user: {} with title: '{}'", user.getEmail(), request.getTitle());
+            return noteService.createNote(request, user);
+        }).map(note -> ResponseEntity.status(HttpStatus.CREATED).body(new NoteResponse(note)));
+    }
+
+    @PutMapping("/{id}")
+    public Mono<ResponseEntity<NoteResponse>> updateNote(@PathVariable Long id, @Valid @RequestBody NoteRequest request,
+                                                         ServerWebExchange exchange) {
+        return getCurrentUser(exchange)
+                .flatMap(user -> noteService.updateNote(id, request, user))
+                .map(note -> ResponseEntity.ok(new NoteResponse(note)))
+                .defaultIfEmpty(ResponseEntity.notFound().build())
+                .onErrorResume(RuntimeException.class, e -> Mono.just(ResponseEntity.notFound().build()));
+    }
+
+    @DeleteMapping("/{id}")
+    public Mono<ResponseEntity<Void>> deleteNote(@PathVariable Long id, ServerWebExchange exchange) {
+        return getCurrentUser(exchange)
+                .flatMap(user -> noteService.deleteNote(id, user))
+                .map(deleted -> deleted
+                        ? ResponseEntity.noContent().<Void>build()
+                        : ResponseEntity.notFound().<Void>build())
+                .onErrorResume(RuntimeException.class, e -> Mono.just(ResponseEntity.notFound().build()));
+    }
+
+    @GetMapping("/search")
+    public Mono<ResponseEntity<List<NoteResponse>>> searchNotes(@RequestParam String keyword,
+                                                                ServerWebExchange exchange) {
+        return getCurrentUser(exchange)
+                .flatMap(user -> noteService.searchNotes(keyword, user).map(NoteResponse::new).collectList())
+                .map(ResponseEntity::ok);
+    }
+
+    @GetMapping("/favorites")
+    public Mono<ResponseEntity<List<NoteResponse>>> getFavoriteNotes(ServerWebExchange exchange) {
+        return getCurrentUser(exchange)
+                .flatMap(user -> noteService.findFavoritesByUser(user).map(NoteResponse::new).collectList())
+                .map(ResponseEntity::ok);
+    }
+
+    @GetMapping("/stats")
+    public Mono<ResponseEntity<NoteStatsResponse>> getStats(ServerWebExchange exchange) {
+        return getCurrentUser(exchange)
+                .flatMap(noteService::getStats)
+                .map(stats -> ResponseEntity.ok(new NoteStatsResponse(new NoteStats(stats.noteCount(),
+                        stats.favoriteCount(), stats.wordCount(), stats.lastEditedAt()))));
+    }
+
+    // SendGrid's client is blocking, so the send runs on the bounded elastic scheduler
+    @PostMapping("/{id}/send-email")
+    public Mono<ResponseEntity<Object>> sendNoteByEmail(@PathVariable Long id, ServerWebExchange exchange) {
+        return getCurrentUser(exchange)
+                .flatMap(user -> noteService.findByIdAndUser(id, user).flatMap(note -> Mono.fromCallable(() -> {
+                    String userEmail = user.getEmail();
+                    emailService.sendNoteByEmail(userEmail, note.getTitle(), note.getContent());
+                    logger.info("Note '{}' (ID: {}) sent successfully to user's email: {}",
+                            note.getTitle(), note.getId(), userEmail);
+                    return ResponseEntity.ok((Object) new Object() {
+                        public final String message = "Note sent successfully to your email address";
+                        public final Long noteId = note.getId();
+                        public final String noteTitle = note.getTitle();
+                        public final String sentTo = userEmail;
+                    });
+                }).subscribeOn(Schedulers.boundedElastic())))
+                .defaultIfEmpty(ResponseEntity.notFound().build())
+                .onErrorResume(DependencyUnavailableException.class, e -> {
+                    logger.warn("Email for note ID {} not sent: {}", id, e.getMessage());
+                    return Mono.just(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                            .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                            .body(new Object() {
+                                public final String error = "Email is temporarily unavailable";
+                                public final String message = "The note was not sent; try again later";
+                                public final long retryAfterSeconds = e.getRetryAfterSeconds();
+                            }));
+                })
+                .onErrorResume(RuntimeException.class, e -> {
+                    logger.error("Failed to send email for note ID {}: {}", id, e.getMessage(), e);
+                    return Mono.just(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(new Object() {
+                        public final String error = "Failed to send email";
+                        public final String message = e.getMessage();
+                    }));
+                });
+    }
+}
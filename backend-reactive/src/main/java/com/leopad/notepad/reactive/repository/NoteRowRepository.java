@@ -0,0 +1,229 @@
+package com.leopad.notepad.reactive.repository;
+
+import com.leopad.notepad.repository.NoteOrderRepository;
+import com.leopad.notepad.service.NotePositions;
+import io.r2dbc.spi.Readable;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Hot-tier notes over R2DBC, with the same statements the servlet backend's repositories
+ * issue. Shared bodies are resolved in the query; tags come back as an array per note.
+ */
+@Repository
+public class NoteRowRepository {
+
+    private static final String SELECT = "SELECT n.id, n.user_id, n.title, "
+            + "CASE WHEN n.shared_body THEN b.content ELSE n.content END AS content, n.is_favorite, n.is_large, "
+            + "n.content_length, n.current_revision, n.word_count, n.content_hash, n.shared_body, n.created_at, "
+            + "n.updated_at, n.pinned, n.position, ARRAY(SELECT t.tag FROM note_tags t WHERE t.note_id = n.id) AS tags "
+            + "FROM notes n LEFT JOIN note_bodies b ON n.shared_body AND b.hash = n.content_hash ";
+
+    private final DatabaseClient databaseClient;
+
+    public NoteRowRepository(DatabaseClient databaseClient) {
+        this.databaseClient = databaseClient;
+    }
+
+    public record NoteRow(Long id, Long userId, String title, String content, boolean favorite, boolean large,
+                          Long contentLength, int currentRevision, Integer wordCount, String contentHash,
+                          boolean sharedBody, LocalDateTime createdAt, LocalDateTime updatedAt, boolean pinned,
+                          String position, List<String> tags) {
+    }
+
+    public Flux<NoteRow> findByUserId(Long userId) {
+        return databaseClient.sql(SELECT + "WHERE n.user_id = :userId ORDER BY n.pinned DESC, n.position, n.id")
+                .bind("userId", userId)
+                .map(NoteRowRepository::map)
+                .all();
+    }
+
+    public Flux<NoteRow> findFavoritesByUserId(Long userId) {
+        return databaseClient.sql(SELECT + "WHERE n.user_id = :userId AND n.is_favorite = true ORDER BY n.created_at DESC")
+                .bind("userId", userId)
+                .map(NoteRowRepository::map)
+                .all();
+    }
+
+    public Flux<NoteRow> search(Long userId, String keyword) {
+        return databaseClient.sql(SELECT + "WHERE n.user_id = :userId AND (LOWER(n.title) LIKE LOWER('%' || :keyword || '%') "
+                        + "OR LOWER(CASE WHEN n.shared_body THEN b.content ELSE n.content END) "
+                        + "LIKE LOWER('%' || :keyword || '%')) ORDER BY n.created_at DESC")
+                .bind("userId", userId)
+                .bind("keyword", keyword)
+                .map(NoteRowRepository::map)
+                .all();
+    }
+
+    public Mono<NoteRow> findByIdAndUserId(Long id, Long userId) {
+        return databaseClient.sql(SELECT + "WHERE n.id = :id AND n.user_id = :userId")
+                .bind("id", id)
+                .bind("userId", userId)
+                .map(NoteRowRepository::map)
+                .one();
+    }
+
+    // Row lock held until the transaction ends, like the servlet backend's managed entity update
+    public Mono<NoteRow> lockByIdAndUserId(Long id, Long userId) {
+        return databaseClient.sql(SELECT + "WHERE n.id = :id AND n.user_id = :userId FOR UPDATE OF n")
+                .bind("id", id)
+                .bind("userId", userId)
+                .map(NoteRowRepository::map)
+                .one();
+    }
+
+    /**
+     * The key for a new note at the top of the user's unpinned notes, as the servlet backend's
+     * NoteOrderService assigns it. Takes the same per-user lock, held until the transaction ends.
+     */
+    public Mono<String> positionForNewNote(Long userId) {
+        return databaseClient.sql("SELECT pg_advisory_xact_lock(:lock, :user)")
+                .bind("lock", NoteOrderRepository.ORDER_LOCK)
+                .bind("user", Long.hashCode(userId))
+                .then()
+                .then(databaseClient.sql("SELECT position FROM notes WHERE user_id = :userId AND pinned = false "
+                                + "ORDER BY position, id LIMIT 1")
+                        .bind("userId", userId)
+                        .map(row -> row.get("position", String.class))
+                        .one()
+                        .map(first -> NotePositions.between(null, first))
+                        .defaultIfEmpty(NotePositions.between(null, null)));
+    }
+
+    public Mono<NoteRow> insert(Long userId, String title, String content, boolean favorite, String contentHash,
+                                int wordCount, String position) {
+        return databaseClient.sql("INSERT INTO notes (title, content, user_id, created_at, is_favorite, "
+                        + "current_revision, is_large, content_hash, shared_body, word_count, pinned, position) "
+                        + "VALUES (:title, :content, :userId, :createdAt, :favorite, 0, false, :contentHash, false, "
+                        + ":wordCount, false, :position) RETURNING id, created_at")
+                .bind("title", title)
+                .bind("content", content)
+                .bind("userId", userId)
+                .bind("createdAt", LocalDateTime.now())
+                .bind("favorite", favorite)
+                .bind("contentHash", contentHash)
+                .bind("wordCount", wordCount)
+                .bind("position", position)
+                .map(row -> new NoteRow(row.get("id", Long.class), userId, title, content, favorite, false, null, 0,
+                        wordCount, contentHash, false, row.get("created_at", LocalDateTime.class), null, false,
+                        position, List.of()))
+                .one();
+    }
+
+    // Always writes inline content; a note that referenced a shared body stops doing so
+    public Mono<Void> update(Long id, String title, String content, boolean favorite, int currentRevision,
+                             String contentHash, Integer wordCount, LocalDateTime updatedAt) {
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql("UPDATE notes SET title = :title, "
+                        + "content = :content, is_favorite = :favorite, current_revision = :currentRevision, "
+                        + "content_hash = :contentHash, word_count = :wordCount, shared_body = false, "
+                        + "updated_at = :updatedAt WHERE id = :id")
+                .bind("title", title)
+                .bind("content", content)
+                .bind("favorite", favorite)
+                .bind("currentRevision", currentRevision)
+                .bind("updatedAt", updatedAt)
+                .bind("id", id);
+        spec = contentHash != null ? spec.bind("contentHash", contentHash) : spec.bindNull("contentHash", String.class);
+        spec = wordCount != null ? spec.bind("wordCount", wordCount) : spec.bindNull("wordCount", Integer.class);
+        return spec.then();
+    }
+
+    public Mono<Void> replaceTags(Long noteId, Set<String> tags) {
+        Mono<Void> delete = databaseClient.sql("DELETE FROM note_tags WHERE note_id = :noteId")
+                .bind("noteId", noteId)
+                .then();
+        if (tags.isEmpty()) {
+            return delete;
+        }
+        return delete.then(databaseClient.sql("INSERT INTO note_tags (note_id, tag) SELECT :noteId, unnest(:tags)")
+                .bind("noteId", noteId)
+                .bind("tags", tags.toArray(String[]::new))
+                .then());
+    }
+
+    public Mono<Void> insertRevision(Long noteId, int revisionNumber, String title, boolean favorite, boolean snapshot,
+                                     String contentData, int contentLength, LocalDateTime createdAt) {
+        return databaseClient.sql("INSERT INTO note_revisions (note_id, revision_number, title, is_favorite, "
+                        + "is_snapshot, content_data, content_length, created_at) VALUES (:noteId, :revisionNumber, "
+                        + ":title, :favorite, :snapshot, :contentData, :contentLength, :createdAt)")
+                .bind("noteId", noteId)
+                .bind("revisionNumber", revisionNumber)
+                .bind("title", title)
+                .bind("favorite", favorite)
+                .bind("snapshot", snapshot)
+                .bind("contentData", contentData)
+                .bind("contentLength", contentLength)
+                .bind("createdAt", createdAt)
+                .then();
+    }
+
+    // Tags and chunks go with the note (ON DELETE CASCADE); history is deleted explicitly
+    public Mono<Void> delete(Long id) {
+        return databaseClient.sql("DELETE FROM notes WHERE id = :id").bind("id", id).then()
+                .then(databaseClient.sql("DELETE FROM note_revisions WHERE note_id = :id").bind("id", id).then());
+    }
+
+    public Mono<Void> releaseBody(String hash) {
+        return databaseClient.sql("UPDATE note_bodies SET ref_count = ref_count - 1 WHERE hash = :hash")
+                .bind("hash", hash)
+                .then()
+                .then(databaseClient.sql("DELETE FROM note_bodies WHERE hash = :hash AND ref_count <= 0")
+                        .bind("hash", hash)
+                        .then());
+    }
+
+    public Mono<Void> applyStatsDelta(Long userId, long notes, long favorites, long words) {
+        return databaseClient.sql("INSERT INTO note_stats (user_id, note_count, favorite_count, word_count, "
+                        + "last_edited_at) VALUES (:userId, :notes, :favorites, :words, :editedAt) "
+                        + "ON CONFLICT (user_id) DO UPDATE SET "
+                        + "note_count = note_stats.note_count + EXCLUDED.note_count, "
+                        + "favorite_count = note_stats.favorite_count + EXCLUDED.favorite_count, "
+                        + "word_count = note_stats.word_count + EXCLUDED.word_count, "
+                        + "last_edited_at = GREATEST(note_stats.last_edited_at, EXCLUDED.last_edited_at)")
+                .bind("userId", userId)
+                .bind("notes", notes)
+                .bind("favorites", favorites)
+                .bind("words", words)
+                .bind("editedAt", LocalDateTime.now())
+                .then();
+    }
+
+    public record Stats(long noteCount, long favoriteCount, long wordCount, LocalDateTime lastEditedAt) {
+    }
+
+    public Mono<Stats> findStats(Long userId) {
+        return databaseClient.sql("SELECT note_count, favorite_count, word_count, last_edited_at FROM note_stats "
+                        + "WHERE user_id = :userId")
+                .bind("userId", userId)
+                .map(row -> new Stats(row.get("note_count", Long.class), row.get("favorite_count", Long.class),
+                        row.get("word_count", Long.class), row.get("last_edited_at", LocalDateTime.class)))
+                .one();
+    }
+
+    // Sent like the servlet backend's InvalidationBus, so its instances evict the user's cached state
+    public Mono<Void> notifyInvalidation(String channel, String payload) {
+        return databaseClient.sql("SELECT pg_notify(:channel, :payload)")
+                .bind("channel", channel)
+                .bind("payload", payload)
+                .then();
+    }
+
+    private static NoteRow map(Readable row) {
+        String[] tags = row.get("tags", String[].class);
+        return new NoteRow(row.get("id", Long.class), row.get("user_id", Long.class), row.get("title", String.class),
+                row.get("content", String.class), Boolean.TRUE.equals(row.get("is_favorite", Boolean.class)),
+                Boolean.TRUE.equals(row.get("is_large", Boolean.class)), row.get("content_length", Long.class),
+                row.get("current_revision", Integer.class), row.get("word_count", Integer.class),
+                row.get("content_hash", String.class), Boolean.TRUE.equals(row.get("shared_body", Boolean.class)),
+                row.get("created_at", LocalDateTime.class), row.get("updated_at", LocalDateTime.class),
+                Boolean.TRUE.equals(row.get("pinned", Boolean.class)), row.get("position", String.class),
+                tags != null ? Arrays.asList(tags) : List.of());
+    }
+}
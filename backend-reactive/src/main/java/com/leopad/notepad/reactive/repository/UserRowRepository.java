@@ -0,0 +1,74 @@
+package com.leopad.notepad.reactive.repository;
+
+import com.leopad.notepad.entity.User;
+import io.r2dbc.spi.Readable;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+
+/**
+ * The {@code users} table over R2DBC. Rows are returned as the backend's {@link User} class,
+ * used as a plain object.
+ */
+@Repository
+public class UserRowRepository {
+
+    private static final String COLUMNS = "id, email, name, firebase_uid, created_at, updated_at";
+
+    private final DatabaseClient databaseClient;
+
+    public UserRowRepository(DatabaseClient databaseClient) {
+        this.databaseClient = databaseClient;
+    }
+
+    public Mono<User> findByFirebaseUid(String firebaseUid) {
+        return databaseClient.sql("SELECT " + COLUMNS + " FROM users WHERE firebase_uid = :firebaseUid")
+                .bind("firebaseUid", firebaseUid)
+                .map(UserRowRepository::map)
+                .one();
+    }
+
+    public Mono<User> findByEmail(String email) {
+        return databaseClient.sql("SELECT " + COLUMNS + " FROM users WHERE email = :email")
+                .bind("email", email)
+                .map(UserRowRepository::map)
+                .one();
+    }
+
+    public Mono<User> insert(String firebaseUid, String email, String name) {
+        return databaseClient.sql("INSERT INTO users (email, name, firebase_uid, created_at) "
+                        + "VALUES (:email, :name, :firebaseUid, :createdAt) RETURNING " + COLUMNS)
+                .bind("email", email)
+                .bind("name", name)
+                .bind("firebaseUid", firebaseUid)
+                .bind("createdAt", LocalDateTime.now())
+                .map(UserRowRepository::map)
+                .one();
+    }
+
+    // Users created before Firebase sign-in are linked on their first token
+    public Mono<User> linkFirebaseUid(Long id, String firebaseUid, String name) {
+        return databaseClient.sql("UPDATE users SET firebase_uid = :firebaseUid, "
+                        + "name = COALESCE(NULLIF(:name, ''), name), updated_at = :updatedAt "
+                        + "WHERE id = :id RETURNING " + COLUMNS)
+                .bind("firebaseUid", firebaseUid)
+                .bind("name", name != null ? name : "")
+                .bind("updatedAt", LocalDateTime.now())
+                .bind("id", id)
+                .map(UserRowRepository::map)
+                .one();
+    }
+
+    private static User map(Readable row) {
+        User user = new User();
+        user.setId(row.get("id", Long.class));
+        user.setEmail(row.get("email", String.class));
+        user.setName(row.get("name", String.class));
+        user.setFirebaseUid(row.get("firebase_uid", String.class));
+        user.setCreatedAt(row.get("created_at", LocalDateTime.class));
+        user.setUpdatedAt(row.get("updated_at", LocalDateTime.class));
+        return user;
+    }
+}
@@ -0,0 +1,93 @@
+package com.leopad.notepad.reactive.security;
+
+import com.google.firebase.auth.FirebaseAuthException;
+import com.google.firebase.auth.FirebaseToken;
+import com.leopad.notepad.resilience.DependencyUnavailableException;
+import com.leopad.notepad.service.FirebaseAuthService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Verifies the Firebase ID token and stores it as the {@link #TOKEN} exchange attribute. The
+ * SDK's verification blocks while it fetches or refreshes Google's signing keys, so it runs on
+ * the bounded elastic scheduler and never on an event loop thread. Note endpoints without a
+ * valid token get 403, like the servlet backend; auth endpoints decide for themselves.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+public class FirebaseAuthWebFilter implements WebFilter {
+
+    public static final String TOKEN = FirebaseAuthWebFilter.class.getName() + ".token";
+
+    private static final Logger logger = LoggerFactory.getLogger(FirebaseAuthWebFilter.class);
+    private static final String BEARER_PREFIX = "Bearer ";
+
+    private final FirebaseAuthService firebaseAuthService;
+
+    public FirebaseAuthWebFilter(FirebaseAuthService firebaseAuthService) {
+        this.firebaseAuthService = firebaseAuthService;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        String path = exchange.getRequest().getPath().pathWithinApplication().value();
+        if (!path.startsWith("/api/") || path.startsWith("/api/auth/verify-token")
+                || HttpMethod.OPTIONS.equals(exchange.getRequest().getMethod())) {
+            return chain.filter(exchange);
+        }
+
+        String jwt = getJwtFromRequest(exchange);
+        Mono<FirebaseToken> token = jwt == null ? Mono.empty() : verify(jwt);
+        return token
+                .doOnNext(verified -> exchange.getAttributes().put(TOKEN, verified))
+                .then(Mono.defer(() -> {
+                    if (path.startsWith("/api/auth/") || exchange.getAttributes().containsKey(TOKEN)) {
+                        return chain.filter(exchange);
+                    }
+                    exchange.getResponse().setStatusCode(HttpStatus.FORBIDDEN);
+                    return exchange.getResponse().setComplete();
+                }))
+                .onErrorResume(DependencyUnavailableException.class, e -> {
+                    // Not a 403: the token may be valid, the outage is on our side
+                    logger.warn("Could not verify token: {}", e.getMessage());
+                    exchange.getResponse().setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+                    exchange.getResponse().getHeaders().set(HttpHeaders.RETRY_AFTER,
+                            String.valueOf(e.getRetryAfterSeconds()));
+                    return exchange.getResponse().setComplete();
+                });
+    }
+
+    private Mono<FirebaseToken> verify(String jwt) {
+        return Mono.fromCallable(() -> firebaseAuthService.verifyToken(jwt))
+                .subscribeOn(Schedulers.boundedElastic())
+                .doOnNext(verified -> logger.debug("Authenticated user: {}", verified.getUid()))
+                .onErrorResume(FirebaseAuthException.class, e -> {
+                    logger.warn("Firebase authentication failed: {}", e.getMessage());
+                    return Mono.empty();
+                })
+                .onErrorResume(e -> !(e instanceof DependencyUnavailableException), e -> {
+                    logger.error("Error processing Firebase authentication: {}", e.getMessage(), e);
+                    return Mono.empty();
+                });
+    }
+
+    private static String getJwtFromRequest(ServerWebExchange exchange) {
+        String bearerToken = exchange.getRequest().getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
+        if (StringUtils.hasText(bearerToken) && bearerToken.startsWith(BEARER_PREFIX)) {
+            return bearerToken.substring(BEARER_PREFIX.length());
+        }
+        return null;
+    }
+}
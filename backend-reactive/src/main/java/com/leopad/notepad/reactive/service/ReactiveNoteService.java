@@ -0,0 +1,191 @@
+package com.leopad.notepad.reactive.service;
+
+import com.leopad.notepad.dto.NoteRequest;
+import com.leopad.notepad.entity.Note;
+import com.leopad.notepad.entity.User;
+import com.leopad.notepad.reactive.repository.NoteRowRepository;
+import com.leopad.notepad.reactive.repository.NoteRowRepository.NoteRow;
+import com.leopad.notepad.reactive.repository.NoteRowRepository.Stats;
+import com.leopad.notepad.service.ContentDelta;
+import com.leopad.notepad.service.NoteBodyStore;
+import com.leopad.notepad.service.NoteStatsService;
+import com.leopad.notepad.service.NoteTagIndex;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * The servlet backend's note operations on R2DBC. Writes keep the same invariants in one
+ * transaction (revision history, per-user stats, content hash and word count) and notify the
+ * servlet instances over the invalidation channel, so both stacks can serve the same database.
+ * Archived notes, sharding, shared bodies on write and the write-behind buffer are not
+ * supported.
+ */
+@Service
+public class ReactiveNoteService {
+
+    // Never equal to a servlet instance id, so those instances always evict
+    private final String instanceId = "reactive-" + UUID.randomUUID();
+
+    private final NoteRowRepository noteRowRepository;
+    private final TransactionalOperator transactionalOperator;
+
+    @Value("${revisions.snapshot-interval:20}")
+    private int snapshotInterval;
+
+    @Value("${invalidation.enabled:true}")
+    private boolean invalidationEnabled;
+
+    @Value("${invalidation.channel:notepad_invalidation}")
+    private String invalidationChannel;
+
+    public ReactiveNoteService(NoteRowRepository noteRowRepository, TransactionalOperator transactionalOperator) {
+        this.noteRowRepository = noteRowRepository;
+        this.transactionalOperator = transactionalOperator;
+    }
+
+    public Flux<Note> findAllByUser(User user) {
+        return noteRowRepository.findByUserId(user.getId()).map(row -> toNote(row, user));
+    }
+
+    public Flux<Note> findFavoritesByUser(User user) {
+        return noteRowRepository.findFavoritesByUserId(user.getId()).map(row -> toNote(row, user));
+    }
+
+    public Flux<Note> searchNotes(String keyword, User user) {
+        return noteRowRepository.search(user.getId(), keyword).map(row -> toNote(row, user));
+    }
+
+    public Mono<Note> findByIdAndUser(Long id, User user) {
+        return noteRowRepository.findByIdAndUserId(id, user.getId()).map(row -> toNote(row, user));
+    }
+
+    public Mono<Stats> getStats(User user) {
+        return noteRowRepository.findStats(user.getId()).defaultIfEmpty(new Stats(0, 0, 0, null));
+    }
+
+    public Mono<Note> createNote(NoteRequest request, User user) {
+        String content = request.getContent() != null ? request.getContent() : "";
+        boolean favorite = Boolean.TRUE.equals(request.getIsFavorite());
+        Set<String> tags = request.getTags() != null ? NoteTagIndex.normalize(request.getTags()) : Set.of();
+        int words = NoteStatsService.countWords(content);
+        Mono<Note> create = noteRowRepository.positionForNewNote(user.getId())
+                .flatMap(position -> noteRowRepository.insert(user.getId(), request.getTitle(), content, favorite,
+                        NoteBodyStore.hash(content), words, position))
+                .flatMap(row -> noteRowRepository.replaceTags(row.id(), tags)
+                        .then(noteRowRepository.applyStatsDelta(user.getId(), 1, favorite ? 1 : 0, words))
+                        .then(invalidate(user.getId()))
+                        .thenReturn(toNote(row, user)))
+                .doOnNext(note -> note.setTags(new HashSet<>(tags)));
+        return create.as(transactionalOperator::transactional);
+    }
+
+    /**
+     * Updates the note like the servlet backend: unchanged updates are not written, large note
+     * content is left alone, and the replaced state becomes a revision. Empty if the user has no
+     * such note in the hot table.
+     */
+    public Mono<Note> updateNote(Long id, NoteRequest request, User user) {
+        Mono<Note> update = noteRowRepository.lockByIdAndUserId(id, user.getId()).flatMap(row -> {
+            boolean favorite = request.getIsFavorite() != null ? request.getIsFavorite() : row.favorite();
+            // Large note content is only changed through the content endpoints, never by a JSON update
+            String content = row.large() ? row.content() : request.getContent();
+            Set<String> tags = request.getTags() != null
+                    ? NoteTagIndex.normalize(request.getTags()) : new HashSet<>(row.tags());
+            boolean tagsChanged = !tags.equals(new HashSet<>(row.tags()));
+            boolean changed = !Objects.equals(row.title(), request.getTitle()) || row.favorite() != favorite
+                    || !sameContent(row, content);
+            if (!changed && !tagsChanged) {
+                return Mono.just(toNote(row, user));
+            }
+
+            LocalDateTime now = LocalDateTime.now();
+            int revision = row.currentRevision();
+            Mono<Void> history = Mono.empty();
+            if (changed) {
+                String oldContent = row.content() != null ? row.content() : "";
+                boolean snapshot = revision % snapshotInterval == 0;
+                history = noteRowRepository.insertRevision(row.id(), revision, row.title(), row.favorite(), snapshot,
+                        snapshot ? oldContent : ContentDelta.diff(content, oldContent), oldContent.length(),
+                        row.updatedAt() != null ? row.updatedAt() : row.createdAt());
+                revision++;
+            }
+            Integer words = row.large() || content == null ? null : NoteStatsService.countWords(content);
+            String hash = row.large() || content == null ? row.contentHash() : NoteBodyStore.hash(content);
+            int favorites = (favorite ? 1 : 0) - (row.favorite() ? 1 : 0);
+            int wordDelta = (words != null ? words : 0) - (row.wordCount() != null ? row.wordCount() : 0);
+            NoteRow updated = new NoteRow(row.id(), row.userId(), request.getTitle(), content, favorite, row.large(),
+                    row.contentLength(), revision, words, hash, false, row.createdAt(), now, row.pinned(), row.position(),
+                    row.tags());
+
+            return history
+                    .then(noteRowRepository.update(row.id(), updated.title(), content, favorite, revision, hash,
+                            words, now))
+                    // The note stops referencing its shared body, which is released like on the servlet stack
+                    .then(row.sharedBody() ? noteRowRepository.releaseBody(row.contentHash()) : Mono.empty())
+                    .then(tagsChanged ? noteRowRepository.replaceTags(row.id(), tags) : Mono.empty())
+                    .then(noteRowRepository.applyStatsDelta(user.getId(), 0, favorites, wordDelta))
+                    .then(invalidate(user.getId()))
+                    .then(Mono.fromSupplier(() -> {
+                        Note note = toNote(updated, user);
+                        note.setTags(new HashSet<>(tags));
+                        return note;
+                    }));
+        });
+        return update.as(transactionalOperator::transactional);
+    }
+
+    // False if the user has no such note in the hot table
+    public Mono<Boolean> deleteNote(Long id, User user) {
+        Mono<Boolean> delete = noteRowRepository.lockByIdAndUserId(id, user.getId())
+                .flatMap(row -> noteRowRepository.delete(row.id())
+                        .then(row.sharedBody() ? noteRowRepository.releaseBody(row.contentHash()) : Mono.empty())
+                        .then(noteRowRepository.applyStatsDelta(user.getId(), -1, row.favorite() ? -1 : 0,
+                                row.wordCount() != null ? -row.wordCount() : 0))
+                        .then(invalidate(user.getId()))
+                        .thenReturn(true))
+                .defaultIfEmpty(false);
+        return delete.as(transactionalOperator::transactional);
+    }
+
+    // NOTIFY is delivered on commit, so servlet instances never evict before the write is visible
+    private Mono<Void> invalidate(Long userId) {
+        return invalidationEnabled
+                ? noteRowRepository.notifyInvalidation(invalidationChannel, instanceId + "|" + userId)
+                : Mono.empty();
+    }
+
+    private static boolean sameContent(NoteRow row, String content) {
+        if (content == null || row.content() == null || row.content().length() != content.length()) {
+            return Objects.equals(row.content(), content);
+        }
+        return row.contentHash() != null
+                ? row.contentHash().equals(NoteBodyStore.hash(content))
+                : row.content().equals(content);
+    }
+
+    private static Note toNote(NoteRow row, User user) {
+        Note note = new Note(row.title(), row.content(), user);
+        note.setId(row.id());
+        note.setIsFavorite(row.favorite());
+        note.setIsLarge(row.large());
+        note.setContentLength(row.contentLength());
+        note.setCurrentRevision(row.currentRevision());
+        note.setWordCount(row.wordCount());
+        note.setContentHash(row.contentHash());
+        note.setCreatedAt(row.createdAt());
+        note.setUpdatedAt(row.updatedAt());
+        note.setPinned(row.pinned());
+        note.setPosition(row.position());
+        note.setTags(new HashSet<>(row.tags()));
+        return note;
+    }
+}
@@ -0,0 +1,54 @@
+package com.leopad.notepad.reactive.service;
+
+import com.google.firebase.auth.FirebaseToken;
+import com.leopad.notepad.entity.User;
+import com.leopad.notepad.reactive.repository.UserRowRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+/**
+ * Resolves the user behind a Firebase token the way the servlet backend's UserService does:
+ * by UID, then by email (linking the UID), and otherwise creates the user.
+ */
+@Service
+public class ReactiveUserService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReactiveUserService.class);
+
+    private final UserRowRepository userRowRepository;
+
+    public ReactiveUserService(UserRowRepository userRowRepository) {
+        this.userRowRepository = userRowRepository;
+    }
+
+    public Mono<User> findByFirebaseUid(String firebaseUid) {
+        return userRowRepository.findByFirebaseUid(firebaseUid);
+    }
+
+    public Mono<User> findOrCreate(FirebaseToken token) {
+        String firebaseUid = token.getUid();
+        String email = token.getEmail();
+        String name = token.getName() != null && !token.getName().isEmpty() ? token.getName() : email.split("@")[0];
+        return userRowRepository.findByFirebaseUid(firebaseUid)
+                .switchIfEmpty(Mono.defer(() -> linkByEmail(firebaseUid, email, name)))
+                .switchIfEmpty(Mono.defer(() -> {
+                    logger.info("Creating new user with Firebase UID: {}", firebaseUid);
+                    return userRowRepository.insert(firebaseUid, email, name)
+                            // Another request created the user between the lookups and the insert
+                            .onErrorResume(DataIntegrityViolationException.class, e -> {
+                                logger.warn("Race condition detected - user created concurrently. Retrying lookup for email: {}", email);
+                                return linkByEmail(firebaseUid, email, name);
+                            });
+                }));
+    }
+
+    private Mono<User> linkByEmail(String firebaseUid, String email, String name) {
+        return userRowRepository.findByEmail(email)
+                .flatMap(user -> firebaseUid.equals(user.getFirebaseUid())
+                        ? Mono.just(user)
+                        : userRowRepository.linkFirebaseUid(user.getId(), firebaseUid, name));
+    }
+}
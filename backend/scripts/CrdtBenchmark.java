@@ -0,0 +1,208 @@
+import com.leopad.notepad.collab.CrdtText;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Checks and measures the collaborative editing engine without a server or database.
+ *
+ *   convergence: -Dreplicas editors type, delete and paste concurrently while their updates are
+ *                delivered late and interleaved at random (each link stays in order, as over a
+ *                WebSocket); after delivering everything every replica must hold the same text,
+ *                and a replica built from the encoded state must too;
+ *   throughput:  a fresh replica applies the full recorded update stream, as the server does;
+ *   memory:      retained heap and state size of a 100k-character note written in bursts at
+ *                random places with 10% deleted again, and of the worst case where every
+ *                character is inserted somewhere else.
+ *
+ * Usage, from backend/:
+ *   mvn -q compile
+ *   java -Xmx1g -cp target/classes scripts/CrdtBenchmark.java
+ */
+public class CrdtBenchmark {
+
+    private static final int REPLICAS = Integer.getInteger("replicas", 4);
+    private static final int EDITS = Integer.getInteger("edits", 20_000);
+    private static final int ROUNDS = Integer.getInteger("rounds", 10);
+    private static final int DOCUMENT_LENGTH = Integer.getInteger("documentLength", 100_000);
+
+    public static void main(String[] args) {
+        List<byte[]> stream = new ArrayList<>();
+        for (int round = 0; round < ROUNDS; round++) {
+            stream = convergence(new Random(round), round == 0);
+        }
+        System.out.printf("convergence: %d rounds of %d replicas x %d edits converged%n", ROUNDS, REPLICAS,
+                EDITS / REPLICAS);
+
+        throughput(stream);
+        memory("bursts", burstDocument(new Random(7)));
+        memory("scattered", scatteredDocument(new Random(7)));
+    }
+
+    // Returns every update in the order the first replica received or produced it
+    private static List<byte[]> convergence(Random random, boolean verbose) {
+        CrdtText[] replicas = new CrdtText[REPLICAS];
+        for (int i = 0; i < REPLICAS; i++) {
+            replicas[i] = new CrdtText(i + 1);
+        }
+        // inboxes[to][from]
+        List<List<ArrayDeque<byte[]>>> inboxes = new ArrayList<>();
+        for (int to = 0; to < REPLICAS; to++) {
+            List<ArrayDeque<byte[]>> links = new ArrayList<>();
+            for (int from = 0; from < REPLICAS; from++) {
+                links.add(new ArrayDeque<>());
+            }
+            inboxes.add(links);
+        }
+        List<byte[]> stream = new ArrayList<>();
+        long bytes = 0;
+        int edits = 0;
+        while (edits < EDITS) {
+            int replica = random.nextInt(REPLICAS);
+            if (random.nextInt(3) == 0) {
+                deliverOne(random, replicas, inboxes, replica, stream);
+                continue;
+            }
+            byte[] update = edit(random, replicas[replica]);
+            if (update.length == 0) {
+                continue;
+            }
+            edits++;
+            bytes += update.length;
+            if (replica == 0) {
+                stream.add(update);
+            }
+            for (int to = 0; to < REPLICAS; to++) {
+                if (to != replica) {
+                    inboxes.get(to).get(replica).add(update);
+                }
+            }
+        }
+        for (int to = 0; to < REPLICAS; to++) {
+            while (deliverOne(random, replicas, inboxes, to, stream)) {
+                // drain
+            }
+        }
+
+        String text = replicas[0].text();
+        for (CrdtText replica : replicas) {
+            if (!replica.text().equals(text) || replica.pendingOps() != 0) {
+                throw new IllegalStateException("Replicas diverged");
+            }
+        }
+        CrdtText joined = new CrdtText(REPLICAS + 1);
+        joined.apply(replicas[0].encodeState());
+        if (!joined.text().equals(text)) {
+            throw new IllegalStateException("Replica built from the encoded state diverged");
+        }
+        if (verbose) {
+            System.out.printf("convergence: %d chars, %d runs, %.1f bytes per update%n", text.length(),
+                    replicas[0].runs(), (double) bytes / edits);
+        }
+        return stream;
+    }
+
+    private static boolean deliverOne(Random random, CrdtText[] replicas, List<List<ArrayDeque<byte[]>>> inboxes,
+                                      int to, List<byte[]> stream) {
+        List<ArrayDeque<byte[]>> links = inboxes.get(to);
+        int start = random.nextInt(REPLICAS);
+        for (int i = 0; i < REPLICAS; i++) {
+            ArrayDeque<byte[]> link = links.get((start + i) % REPLICAS);
+            if (!link.isEmpty()) {
+                byte[] update = link.poll();
+                replicas[to].apply(update);
+                if (to == 0) {
+                    stream.add(update);
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Mostly typing at the cursor, some deletions and the occasional paste
+    private static byte[] edit(Random random, CrdtText replica) {
+        int length = replica.length();
+        int kind = random.nextInt(50);
+        if (kind < 10 && length > 0) {
+            int at = random.nextInt(length);
+            return replica.delete(at, Math.min(length - at, 1 + random.nextInt(8)));
+        }
+        String text = kind == 49 ? words(random, 40 + random.nextInt(200)) : words(random, 1 + random.nextInt(3));
+        return replica.insert(random.nextInt(length + 1), text);
+    }
+
+    private static void throughput(List<byte[]> stream) {
+        long bytes = stream.stream().mapToLong(update -> update.length).sum();
+        double best = Double.MAX_VALUE;
+        for (int run = 0; run < 5; run++) {
+            CrdtText server = new CrdtText(0);
+            long start = System.nanoTime();
+            for (byte[] update : stream) {
+                server.apply(update);
+            }
+            best = Math.min(best, (System.nanoTime() - start) / 1e9);
+        }
+        System.out.printf("throughput: %d updates (%d bytes) applied in %.1f ms, %.0f updates/s%n", stream.size(),
+                bytes, best * 1000, stream.size() / best);
+    }
+
+    private static CrdtText burstDocument(Random random) {
+        CrdtText text = new CrdtText(1);
+        while (text.length() < DOCUMENT_LENGTH) {
+            int at = random.nextInt(text.length() + 1);
+            String burst = words(random, 20 + random.nextInt(200));
+            // Typed one character at a time, like an editor sends them
+            for (int i = 0; i < burst.length(); i++) {
+                text.insert(at + i, burst.substring(i, i + 1));
+            }
+            if (random.nextInt(10) == 0 && text.length() > 100) {
+                int from = random.nextInt(text.length() - 100);
+                text.delete(from, 20 + random.nextInt(80));
+            }
+        }
+        return text;
+    }
+
+    // Every character after a random earlier one: no two neighbours share a run
+    private static CrdtText scatteredDocument(Random random) {
+        CrdtText text = new CrdtText(1);
+        List<CrdtText.Op> ops = new ArrayList<>(DOCUMENT_LENGTH);
+        for (int clock = 1; clock <= DOCUMENT_LENGTH; clock++) {
+            int origin = random.nextInt(clock);
+            ops.add(new CrdtText.Insert(2, clock, origin == 0 ? CrdtText.START : 2, origin, 1,
+                    String.valueOf((char) ('a' + random.nextInt(26)))));
+        }
+        text.integrate(ops);
+        return text;
+    }
+
+    private static void memory(String label, CrdtText text) {
+        long withText = usedHeap();
+        byte[] state = text.encodeState();
+        int length = text.length();
+        int runs = text.runs();
+        text = null;
+        long without = usedHeap();
+        System.out.printf("memory (%s): %d chars in %d runs, %.1f heap bytes/char, state %d bytes%n", label,
+                length, runs, (double) (withText - without) / length, state.length);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static String words(Random random, int length) {
+        StringBuilder text = new StringBuilder(length);
+        while (text.length() < length) {
+            text.append(random.nextInt(6) == 0 ? ' ' : (char) ('a' + random.nextInt(26)));
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,445 @@
+import com.google.api.client.http.javanet.NetHttpTransport;
+import com.google.auth.oauth2.AccessToken;
+import com.google.auth.oauth2.GoogleCredentials;
+import com.google.firebase.FirebaseApp;
+import com.google.firebase.FirebaseOptions;
+import com.google.firebase.auth.AuthErrorCode;
+import com.google.firebase.auth.FirebaseAuthException;
+import com.leopad.notepad.resilience.Bulkhead;
+import com.leopad.notepad.resilience.CircuitBreaker;
+import com.leopad.notepad.resilience.DependencyUnavailableException;
+import com.leopad.notepad.service.EmailService;
+import com.leopad.notepad.service.FirebaseAuthService;
+import com.sendgrid.Client;
+import com.sendgrid.Method;
+import com.sendgrid.Request;
+import com.sendgrid.SendGrid;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fault injection for the SendGrid and Firebase bulkheads against local stub servers: a
+ * SendGrid stub that answers slowly, with 5xx or with 4xx, and an HTTP proxy in front of
+ * Google's key endpoint that stalls or fails. Checks that timeouts, rejections and the circuit
+ * breaker (open, half-open probe, close) behave as configured, that client errors do not trip
+ * the breaker, and shows note requests on a Tomcat-sized pool staying fast while SendGrid
+ * hangs, compared with calling it without a bulkhead.
+ *
+ * Usage, from backend/:
+ *   mvn -q compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ *   java -cp target/classes:$(cat target/cp.txt) scripts/DependencyFaultInjection.java
+ */
+public class DependencyFaultInjection {
+
+    private static final Duration TIMEOUT = Duration.ofMillis(500);
+    private static final Duration OPEN_DURATION = Duration.ofSeconds(1);
+
+    public static void main(String[] args) throws Exception {
+        SendGridStub sendGrid = new SendGridStub();
+        try {
+            sendGridRecovers(sendGrid);
+            sendGridClientErrors(sendGrid);
+            sendGridBulkheadFull(sendGrid);
+            requestThreadsWhileSendGridHangs(sendGrid);
+        } finally {
+            sendGrid.server.stop(0);
+        }
+        firebaseKeyFetch();
+        System.out.println("\nall checks passed");
+        // Bulkhead threads may still be stuck on the stubs; they are daemons
+        System.exit(0);
+    }
+
+    private static void sendGridRecovers(SendGridStub stub) throws Exception {
+        System.out.println("SendGrid answers 503, then recovers");
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        Bulkhead bulkhead = sendGridBulkhead(registry);
+        EmailService email = emailService(stub, bulkhead);
+        stub.reset(0, 503);
+        for (int i = 0; i < 5; i++) {
+            expectFailure(() -> send(email), RuntimeException.class);
+        }
+        check(bulkhead.getCircuitBreaker().state() == CircuitBreaker.State.OPEN, "breaker opens after 5 of 5 failed");
+        int before = stub.requests.get();
+        long start = System.nanoTime();
+        DependencyUnavailableException refused = expectFailure(() -> send(email), DependencyUnavailableException.class);
+        check(refused.getReason() == DependencyUnavailableException.Reason.CIRCUIT_OPEN, "open breaker refuses");
+        check(stub.requests.get() == before, "open breaker does not call SendGrid");
+        System.out.printf("  refused in %.2f ms with Retry-After %d s%n", (System.nanoTime() - start) / 1e6,
+                refused.getRetryAfterSeconds());
+
+        stub.reset(0, 202);
+        Thread.sleep(OPEN_DURATION.toMillis() + 100);
+        check(bulkhead.getCircuitBreaker().state() == CircuitBreaker.State.HALF_OPEN, "half-open after the wait");
+        send(email);
+        send(email);
+        check(bulkhead.getCircuitBreaker().state() == CircuitBreaker.State.CLOSED, "two good probes close it");
+        printOutcomes(registry, "sendgrid");
+    }
+
+    private static void sendGridClientErrors(SendGridStub stub) throws Exception {
+        System.out.println("SendGrid rejects every message with 400");
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        Bulkhead bulkhead = sendGridBulkhead(registry);
+        EmailService email = emailService(stub, bulkhead);
+        stub.reset(0, 400);
+        for (int i = 0; i < 20; i++) {
+            expectFailure(() -> send(email), RuntimeException.class);
+        }
+        check(bulkhead.getCircuitBreaker().state() == CircuitBreaker.State.CLOSED, "4xx leaves the breaker closed");
+        check(stub.requests.get() == 20, "every message reached SendGrid");
+        printOutcomes(registry, "sendgrid");
+    }
+
+    private static void sendGridBulkheadFull(SendGridStub stub) throws Exception {
+        System.out.println("SendGrid hangs for 2 s; 12 sends at once against 4 threads and 4 queue slots");
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        Bulkhead bulkhead = sendGridBulkhead(registry);
+        EmailService email = emailService(stub, bulkhead);
+        stub.reset(2000, 202);
+        ExecutorService callers = Executors.newFixedThreadPool(12);
+        List<Future<Long>> calls = new ArrayList<>();
+        List<String> reasons = Collections.synchronizedList(new ArrayList<>());
+        for (int i = 0; i < 12; i++) {
+            calls.add(callers.submit(() -> {
+                long start = System.nanoTime();
+                try {
+                    send(email);
+                    reasons.add("sent");
+                } catch (DependencyUnavailableException e) {
+                    reasons.add(e.getReason().name());
+                }
+                return (System.nanoTime() - start) / 1_000_000;
+            }));
+        }
+        long slowest = 0;
+        for (Future<Long> call : calls) {
+            slowest = Math.max(slowest, call.get());
+        }
+        callers.shutdown();
+        check(Collections.frequency(reasons, "REJECTED") == 4, "4 rejected: " + reasons);
+        check(Collections.frequency(reasons, "TIMEOUT") == 8, "8 timed out: " + reasons);
+        check(slowest < TIMEOUT.toMillis() + 200, "no caller waited past the timeout (" + slowest + " ms)");
+        System.out.printf("  slowest caller %d ms%n", slowest);
+        printOutcomes(registry, "sendgrid");
+    }
+
+    /**
+     * 16 request threads (a small Tomcat) take a request every 5 ms, one in four sending a note
+     * by email and the rest doing 2 ms of note work, while SendGrid takes 2 s to answer.
+     */
+    private static void requestThreadsWhileSendGridHangs(SendGridStub stub) throws Exception {
+        System.out.println("Note requests while SendGrid hangs for 2 s (16 request threads, 1 in 4 sends email)");
+        stub.reset(2000, 202);
+        // As before bulkheads: a new client without timeouts per send, on the request thread
+        List<Long> without = noteLatencies(() -> {
+            SendGrid direct = new SendGrid("stub", new Client(true));
+            direct.setHost("localhost:" + stub.port());
+            Request request = new Request();
+            request.setMethod(Method.POST);
+            request.setEndpoint("mail/send");
+            request.setBody("{}");
+            direct.api(request);
+        });
+
+        stub.reset(2000, 202);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        EmailService email = emailService(stub, sendGridBulkhead(registry));
+        List<Long> with = noteLatencies(() -> {
+            try {
+                send(email);
+            } catch (DependencyUnavailableException e) {
+                // Answered with 503 right away
+            }
+        });
+        System.out.printf("  %-18s %10s %10s %10s%n", "", "p50 ms", "p99 ms", "max ms");
+        report("without bulkhead", without);
+        report("with bulkhead", with);
+        check(percentile(with, 0.99) < 100, "note requests stay fast with the bulkhead");
+        printOutcomes(registry, "sendgrid");
+    }
+
+    private interface Work {
+        void run() throws Exception;
+    }
+
+    private static List<Long> noteLatencies(Work sendEmail) throws Exception {
+        ExecutorService requestThreads = Executors.newFixedThreadPool(16);
+        List<Future<Long>> notes = new ArrayList<>();
+        List<Future<?>> all = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            long submitted = System.nanoTime();
+            if (i % 4 == 0) {
+                all.add(requestThreads.submit(() -> {
+                    sendEmail.run();
+                    return null;
+                }));
+            } else {
+                Future<Long> note = requestThreads.submit(() -> {
+                    Thread.sleep(2);
+                    return (System.nanoTime() - submitted) / 1_000_000;
+                });
+                notes.add(note);
+                all.add(note);
+            }
+            Thread.sleep(5);
+        }
+        List<Long> latencies = new ArrayList<>();
+        for (Future<Long> note : notes) {
+            latencies.add(note.get());
+        }
+        for (Future<?> request : all) {
+            try {
+                request.get();
+            } catch (Exception e) {
+                // Email failures are not what is measured here
+            }
+        }
+        requestThreads.shutdown();
+        Collections.sort(latencies);
+        return latencies;
+    }
+
+    private static void firebaseKeyFetch() throws Exception {
+        System.out.println("Firebase signing key download stalls, then fails");
+        ProxyStub proxy = new ProxyStub();
+        FirebaseApp.initializeApp(FirebaseOptions.builder()
+                .setCredentials(GoogleCredentials.create(new AccessToken("stub", null)))
+                .setProjectId("fault-injection")
+                .setHttpTransport(new NetHttpTransport.Builder()
+                        .setProxy(new Proxy(Proxy.Type.HTTP, new InetSocketAddress("localhost", proxy.port())))
+                        .build())
+                .build());
+
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        Bulkhead bulkhead = firebaseBulkhead(registry);
+        FirebaseAuthService auth = new FirebaseAuthService();
+        ReflectionTestUtils.setField(auth, "firebaseBulkhead", bulkhead);
+
+        proxy.stall = true;
+        for (int i = 0; i < 5; i++) {
+            long start = System.nanoTime();
+            DependencyUnavailableException e = expectFailure(() -> auth.verifyToken(unsignedToken()),
+                    DependencyUnavailableException.class);
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            check(e.getReason() == DependencyUnavailableException.Reason.TIMEOUT, "stalled fetch times out");
+            check(millis < TIMEOUT.toMillis() + 200, "verification gave up after the timeout (" + millis + " ms)");
+        }
+        check(bulkhead.getCircuitBreaker().state() == CircuitBreaker.State.OPEN, "breaker opens on timeouts");
+        long start = System.nanoTime();
+        expectFailure(() -> auth.verifyToken(unsignedToken()), DependencyUnavailableException.class);
+        System.out.printf("  open breaker answered in %.2f ms%n", (System.nanoTime() - start) / 1e6);
+
+        // The SDK refreshes keys under a lock, so the stalled downloads must end before a probe can
+        // get through; here the stalled connections drop and the proxy starts refusing instead
+        proxy.refuse();
+        Thread.sleep(OPEN_DURATION.toMillis() + 100);
+        FirebaseAuthException failed = expectFailure(() -> auth.verifyToken(unsignedToken()),
+                FirebaseAuthException.class);
+        check(failed.getAuthErrorCode() == AuthErrorCode.CERTIFICATE_FETCH_FAILED, "failed fetch reported as such");
+        check(bulkhead.getCircuitBreaker().state() == CircuitBreaker.State.OPEN, "failed probe reopens the breaker");
+        printOutcomes(registry, "firebase");
+
+        System.out.println("Malformed tokens while the key endpoint is down");
+        SimpleMeterRegistry invalidRegistry = new SimpleMeterRegistry();
+        Bulkhead invalidBulkhead = firebaseBulkhead(invalidRegistry);
+        ReflectionTestUtils.setField(auth, "firebaseBulkhead", invalidBulkhead);
+        for (int i = 0; i < 20; i++) {
+            expectFailure(() -> auth.verifyToken("not-a-token"), FirebaseAuthException.class);
+        }
+        check(invalidBulkhead.getCircuitBreaker().state() == CircuitBreaker.State.CLOSED,
+                "rejected tokens leave the breaker closed");
+        printOutcomes(invalidRegistry, "firebase");
+    }
+
+    private static Bulkhead sendGridBulkhead(SimpleMeterRegistry registry) {
+        return new Bulkhead("sendgrid", 4, 4, TIMEOUT, new CircuitBreaker(10, 5, 0.5, OPEN_DURATION, 2),
+                e -> e instanceof IOException, registry);
+    }
+
+    private static Bulkhead firebaseBulkhead(SimpleMeterRegistry registry) {
+        return new Bulkhead("firebase", 4, 16, TIMEOUT, new CircuitBreaker(10, 5, 0.5, OPEN_DURATION, 2),
+                e -> e instanceof FirebaseAuthException authException
+                        && authException.getAuthErrorCode() == AuthErrorCode.CERTIFICATE_FETCH_FAILED,
+                registry);
+    }
+
+    private static EmailService emailService(SendGridStub stub, Bulkhead bulkhead) {
+        return new EmailService("stub", "notes@example.com", URI.create("http://localhost:" + stub.port()),
+                Duration.ofMillis(500), Duration.ofSeconds(5), bulkhead);
+    }
+
+    private static void send(EmailService email) {
+        email.sendNoteByEmail("user@example.com", "Fault injection", "Body");
+    }
+
+    // Passes every check that needs no network, so verifying it downloads the signing keys
+    private static String unsignedToken() {
+        long now = System.currentTimeMillis() / 1000;
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        String header = "{\"alg\":\"RS256\",\"kid\":\"stub\",\"typ\":\"JWT\"}";
+        String payload = String.format("{\"aud\":\"fault-injection\",\"iss\":\"https://securetoken.google.com/"
+                + "fault-injection\",\"sub\":\"user\",\"iat\":%d,\"exp\":%d}", now - 60, now + 3600);
+        return encoder.encodeToString(header.getBytes(StandardCharsets.UTF_8)) + "."
+                + encoder.encodeToString(payload.getBytes(StandardCharsets.UTF_8)) + "."
+                + encoder.encodeToString("signature".getBytes(StandardCharsets.UTF_8));
+    }
+
+    private interface Failing {
+        void run() throws Exception;
+    }
+
+    private static <T extends Throwable> T expectFailure(Failing call, Class<T> expected) throws Exception {
+        try {
+            call.run();
+        } catch (Throwable e) {
+            if (expected.isInstance(e)) {
+                return expected.cast(e);
+            }
+            throw new IllegalStateException("Expected " + expected.getSimpleName() + " but got " + e, e);
+        }
+        throw new IllegalStateException("Expected " + expected.getSimpleName() + " but the call succeeded");
+    }
+
+    private static void check(boolean condition, String description) {
+        if (!condition) {
+            throw new IllegalStateException("Check failed: " + description);
+        }
+        System.out.println("  ok: " + description);
+    }
+
+    private static void printOutcomes(SimpleMeterRegistry registry, String dependency) {
+        StringBuilder line = new StringBuilder("  calls:");
+        for (Bulkhead.Outcome outcome : Bulkhead.Outcome.values()) {
+            long count = registry.get("notepad.dependency.calls").tag("dependency", dependency)
+                    .tag("outcome", outcome.name().toLowerCase()).timer().count();
+            if (count > 0) {
+                line.append(' ').append(outcome.name().toLowerCase()).append('=').append(count);
+            }
+        }
+        System.out.println(line);
+    }
+
+    private static void report(String label, List<Long> sorted) {
+        System.out.printf("  %-18s %10d %10d %10d%n", label, percentile(sorted, 0.5), percentile(sorted, 0.99),
+                sorted.get(sorted.size() - 1));
+    }
+
+    private static long percentile(List<Long> sorted, double percentile) {
+        return sorted.get(Math.max(0, (int) Math.ceil(percentile * sorted.size()) - 1));
+    }
+
+    // POST /v3/mail/send after a delay, with a fixed status
+    private static final class SendGridStub {
+        final HttpServer server;
+        final AtomicInteger requests = new AtomicInteger();
+        volatile long delayMillis;
+        volatile int status = 202;
+
+        SendGridStub() throws IOException {
+            server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+            server.createContext("/v3/mail/send", exchange -> {
+                requests.incrementAndGet();
+                exchange.getRequestBody().readAllBytes();
+                try {
+                    Thread.sleep(delayMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                byte[] body = (status == 202 ? "{}" : "{\"errors\":[]}").getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(status, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            });
+            server.setExecutor(Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "sendgrid-stub");
+                thread.setDaemon(true);
+                return thread;
+            }));
+            server.start();
+        }
+
+        int port() {
+            return server.getAddress().getPort();
+        }
+
+        void reset(long delayMillis, int status) {
+            this.delayMillis = delayMillis;
+            this.status = status;
+            requests.set(0);
+        }
+    }
+
+    // An HTTP proxy that never answers CONNECT (stall) or refuses it with 502
+    private static final class ProxyStub {
+        final ServerSocket socket;
+        final List<Socket> held = Collections.synchronizedList(new ArrayList<>());
+        volatile boolean stall;
+
+        ProxyStub() throws IOException {
+            socket = new ServerSocket(0);
+            Thread acceptor = new Thread(() -> {
+                while (true) {
+                    try {
+                        Socket connection = socket.accept();
+                        if (stall) {
+                            held.add(connection);
+                        } else {
+                            readHeaders(connection.getInputStream());
+                            connection.getOutputStream().write(
+                                    "HTTP/1.1 502 Bad Gateway\r\nContent-Length: 0\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+                            connection.close();
+                        }
+                    } catch (IOException e) {
+                        return;
+                    }
+                }
+            }, "proxy-stub");
+            acceptor.setDaemon(true);
+            acceptor.start();
+        }
+
+        int port() {
+            return socket.getLocalPort();
+        }
+
+        void refuse() throws IOException {
+            stall = false;
+            synchronized (held) {
+                for (Socket connection : held) {
+                    connection.close();
+                }
+                held.clear();
+            }
+        }
+
+        private static void readHeaders(InputStream in) throws IOException {
+            int matched = 0;
+            int b;
+            while (matched < 4 && (b = in.read()) != -1) {
+                matched = (b == (matched % 2 == 0 ? '\r' : '\n')) ? matched + 1 : (b == '\r' ? 1 : 0);
+            }
+        }
+    }
+}
@@ -0,0 +1,118 @@
+import com.leopad.notepad.invalidation.CacheInvalidationHandler;
+import com.leopad.notepad.invalidation.InvalidationBus;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.sql.DriverManager;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Runs two invalidation buses against a real PostgreSQL and checks that a write published by one
+ * instance evicts on the other but not on itself, and that a dropped LISTEN connection is
+ * re-established with a full flush.
+ *
+ * Usage, from backend/:
+ *   mvn -q compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ *   DATABASE_URL=jdbc:postgresql://localhost:5432/notepad \
+ *   java -cp target/classes:$(cat target/cp.txt) scripts/InvalidationBusCheck.java
+ */
+public class InvalidationBusCheck {
+
+    private static final String CHANNEL = "notepad_invalidation_check";
+
+    public static void main(String[] args) throws Exception {
+        String url = env("DATABASE_URL", "jdbc:postgresql://localhost:5432/notepad");
+        String username = env("DATABASE_USERNAME", "postgres");
+        String password = env("DATABASE_PASSWORD", "password");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(url, username, password));
+
+        RecordingHandler handlerA = new RecordingHandler();
+        RecordingHandler handlerB = new RecordingHandler();
+        InvalidationBus a = bus(url, username, password, jdbcTemplate, handlerA, "check-a");
+        InvalidationBus b = bus(url, username, password, jdbcTemplate, handlerB, "check-b");
+        a.start();
+        b.start();
+        try {
+            await("both instances listening", () -> a.isConnected() && b.isConnected());
+            await("initial full flush", () -> handlerA.fullFlushes.get() == 1 && handlerB.fullFlushes.get() == 1);
+
+            for (long userId = 1; userId <= 500; userId++) {
+                a.publishAfterCommit(userId);
+            }
+            await("B evicts all 500 users", () -> handlerB.users.size() == 500);
+            Thread.sleep(200);
+            check("A ignores its own messages", handlerA.users.isEmpty());
+
+            b.publishAfterCommit(42L);
+            await("A evicts user 42", () -> handlerA.users.contains(42L));
+
+            // Drop B's LISTEN connection from the server side
+            int terminated = jdbcTemplate.queryForObject(
+                    "SELECT count(pg_terminate_backend(pid)) FROM pg_stat_activity WHERE application_name = ?",
+                    Integer.class, "check-b");
+            check("B's listen backend terminated", terminated == 1);
+            await("B reconnects with a full flush", () -> b.isConnected() && handlerB.fullFlushes.get() == 2);
+
+            handlerB.users.clear();
+            a.publishAfterCommit(7L);
+            await("B evicts again after reconnecting", () -> handlerB.users.contains(7L));
+            System.out.println("OK");
+        } finally {
+            a.stop();
+            b.stop();
+        }
+    }
+
+    private static InvalidationBus bus(String url, String username, String password, JdbcTemplate jdbcTemplate,
+                                       CacheInvalidationHandler handler, String applicationName) {
+        return new InvalidationBus(CHANNEL, jdbcTemplate,
+                () -> DriverManager.getConnection(url + (url.contains("?") ? "&" : "?")
+                        + "ApplicationName=" + applicationName, username, password),
+                List.of(handler), Duration.ofMillis(20), Duration.ofSeconds(2), new SimpleMeterRegistry());
+    }
+
+    private static void await(String description, BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                throw new AssertionError("Timed out waiting for: " + description);
+            }
+            Thread.sleep(10);
+        }
+        System.out.println("ok   " + description);
+    }
+
+    private static void check(String description, boolean condition) {
+        if (!condition) {
+            throw new AssertionError("Failed: " + description);
+        }
+        System.out.println("ok   " + description);
+    }
+
+    private static String env(String name, String fallback) {
+        String value = System.getenv(name);
+        return value == null || value.isEmpty() ? fallback : value;
+    }
+
+    private static final class RecordingHandler implements CacheInvalidationHandler {
+
+        final Set<Long> users = ConcurrentHashMap.newKeySet();
+        final AtomicInteger fullFlushes = new AtomicInteger();
+
+        @Override
+        public void evictUser(Long userId) {
+            users.add(userId);
+        }
+
+        @Override
+        public void evictAll() {
+            fullFlushes.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,154 @@
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedMethod;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingFile;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Summarizes a flight recording dump from /actuator/jfr or a slow-request dump: the hottest
+ * methods from execution samples (by top frame, and inclusive of callees for com.leopad frames),
+ * the top allocation sites and classes from allocation samples, and count and latency
+ * percentiles of the notepad.* events per operation.
+ *
+ * Usage:
+ *   java [-Dtop=20] backend/scripts/JfrSummary.java data/jfr/notepad-<time>-slow.jfr
+ */
+public class JfrSummary {
+
+    private static final int TOP = Integer.getInteger("top", 15);
+    private static final String APP_PACKAGE = "com.leopad.";
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            throw new IllegalArgumentException("Usage: java JfrSummary.java <recording.jfr>");
+        }
+        Map<String, Long> selfSamples = new HashMap<>();
+        Map<String, Long> appSamples = new HashMap<>();
+        Map<String, Long> allocationSites = new HashMap<>();
+        Map<String, Long> allocatedClasses = new HashMap<>();
+        Map<String, List<Duration>> operations = new HashMap<>();
+        Map<String, Long> failures = new HashMap<>();
+        long executionSamples = 0;
+        long allocatedBytes = 0;
+
+        for (RecordedEvent event : RecordingFile.readAllEvents(Path.of(args[0]))) {
+            String type = event.getEventType().getName();
+            switch (type) {
+                case "jdk.ExecutionSample" -> {
+                    executionSamples++;
+                    List<RecordedFrame> frames = frames(event.getStackTrace());
+                    if (!frames.isEmpty()) {
+                        selfSamples.merge(describe(frames.get(0)), 1L, Long::sum);
+                    }
+                    // Each application method once per sample, however deep the recursion
+                    frames.stream()
+                            .map(JfrSummary::describe)
+                            .filter(method -> method.startsWith(APP_PACKAGE))
+                            .distinct()
+                            .forEach(method -> appSamples.merge(method, 1L, Long::sum));
+                }
+                case "jdk.ObjectAllocationSample" -> {
+                    long weight = event.getLong("weight");
+                    allocatedBytes += weight;
+                    allocatedClasses.merge(event.getClass("objectClass").getName(), weight, Long::sum);
+                    allocationSites.merge(allocationSite(frames(event.getStackTrace())), weight, Long::sum);
+                }
+                case "notepad.NoteOperation" -> record(operations, failures, "note " + event.getString("operation"),
+                        event, event.getBoolean("succeeded"));
+                case "notepad.FirebaseVerification" -> record(operations, failures, "firebase verify", event,
+                        event.getBoolean("succeeded"));
+                case "notepad.EmailSend" -> record(operations, failures, "email send", event,
+                        event.getBoolean("succeeded"));
+                default -> {
+                }
+            }
+        }
+
+        System.out.printf("%d execution samples, %.1f MiB sampled allocation%n", executionSamples,
+                allocatedBytes / (1024.0 * 1024));
+        printShares("Hot methods (top frame)", selfSamples, executionSamples, "samples");
+        printShares("Hot application methods (including callees)", appSamples, executionSamples, "samples");
+        printShares("Allocation sites (first application frame)", allocationSites, allocatedBytes, "bytes");
+        printShares("Allocated classes", allocatedClasses, allocatedBytes, "bytes");
+        printOperations(operations, failures);
+    }
+
+    private static void record(Map<String, List<Duration>> operations, Map<String, Long> failures, String name,
+                               RecordedEvent event, boolean succeeded) {
+        operations.computeIfAbsent(name, key -> new ArrayList<>()).add(event.getDuration());
+        if (!succeeded) {
+            failures.merge(name, 1L, Long::sum);
+        }
+    }
+
+    private static List<RecordedFrame> frames(RecordedStackTrace stackTrace) {
+        return stackTrace != null ? stackTrace.getFrames() : List.of();
+    }
+
+    private static String describe(RecordedFrame frame) {
+        RecordedMethod method = frame.getMethod();
+        return method.getType().getName() + "." + method.getName();
+    }
+
+    // The allocating frame, attributed to the nearest application frame that led to it
+    private static String allocationSite(List<RecordedFrame> frames) {
+        if (frames.isEmpty()) {
+            return "(no stack trace)";
+        }
+        String top = describe(frames.get(0));
+        for (RecordedFrame frame : frames) {
+            String method = describe(frame);
+            if (method.startsWith(APP_PACKAGE)) {
+                return method.equals(top) ? method + ":" + frame.getLineNumber()
+                        : method + ":" + frame.getLineNumber() + " -> " + top;
+            }
+        }
+        return top;
+    }
+
+    private static void printShares(String title, Map<String, Long> counts, long total, String unit) {
+        System.out.printf("%n%s%n", title);
+        if (counts.isEmpty()) {
+            System.out.println("  (none)");
+            return;
+        }
+        counts.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .limit(TOP)
+                .forEach(entry -> System.out.printf("  %6.2f%% %14d %s  %s%n", 100.0 * entry.getValue() / total,
+                        entry.getValue(), unit, entry.getKey()));
+    }
+
+    private static void printOperations(Map<String, List<Duration>> operations, Map<String, Long> failures) {
+        System.out.printf("%nApplication events%n");
+        if (operations.isEmpty()) {
+            System.out.println("  (none)");
+            return;
+        }
+        System.out.printf("  %-34s %8s %8s %10s %10s %10s%n", "operation", "count", "failed", "p50 ms", "p99 ms",
+                "max ms");
+        operations.entrySet().stream()
+                .sorted(Comparator.comparing(entry -> -entry.getValue().size()))
+                .forEach(entry -> {
+                    List<Duration> durations = entry.getValue();
+                    durations.sort(null);
+                    System.out.printf("  %-34s %8d %8d %10.2f %10.2f %10.2f%n", entry.getKey(), durations.size(),
+                            failures.getOrDefault(entry.getKey(), 0L), millis(durations, 0.50),
+                            millis(durations, 0.99), millis(durations, 1.0));
+                });
+    }
+
+    private static double millis(List<Duration> sorted, double percentile) {
+        int index = Math.max(0, (int) Math.ceil(percentile * sorted.size()) - 1);
+        return sorted.get(index).toNanos() / 1e6;
+    }
+}
@@ -0,0 +1,217 @@
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Drives the same note workload against the servlet backend and the reactive variant, one after
+ * the other, and compares throughput, latency and memory. Each target gets a warm-up, then a
+ * fixed number of concurrent virtual users for the measured duration, each issuing its next
+ * request as soon as the previous one returns: 60% list, 20% get by id, 10% search, 10% update.
+ *
+ * Both applications must use the same database and accept the same Firebase ID token. Memory is
+ * read from /actuator/metrics (add "metrics" to the servlet backend's ACTUATOR_ENDPOINTS, and the
+ * token's UID to its ADMIN_FIREBASE_UIDS), and
+ * with -Dpids=<servlet pid>,<reactive pid> the resident set size is read from /proc as well.
+ *
+ * Usage:
+ *   NOTEPAD_ID_TOKEN=<Firebase ID token> \
+ *   java -Dtargets=http://localhost:8080,http://localhost:8081 -Dconcurrency=200 \
+ *        -Dduration=60s backend/scripts/LoadComparison.java
+ */
+public class LoadComparison {
+
+    private static final int CONCURRENCY = Integer.getInteger("concurrency", 100);
+    private static final Duration WARMUP = Duration.parse("PT" + System.getProperty("warmup", "15s"));
+    private static final Duration DURATION = Duration.parse("PT" + System.getProperty("duration", "60s"));
+    private static final int NOTES = Integer.getInteger("notes", 20);
+    private static final Pattern ID = Pattern.compile("\"id\"\\s*:\\s*(\\d+)");
+    private static final Pattern VALUE = Pattern.compile("\"value\"\\s*:\\s*([0-9.E+-]+)");
+
+    public static void main(String[] args) throws Exception {
+        String token = System.getenv("NOTEPAD_ID_TOKEN");
+        if (token == null || token.isEmpty()) {
+            throw new IllegalStateException("Set NOTEPAD_ID_TOKEN to a Firebase ID token");
+        }
+        String[] targets = System.getProperty("targets", "http://localhost:8080,http://localhost:8081").split(",");
+        String[] pids = System.getProperty("pids", "").split(",");
+        HttpClient client = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(10))
+                .executor(Executors.newFixedThreadPool(8))
+                .build();
+
+        List<Result> results = new ArrayList<>();
+        for (int i = 0; i < targets.length; i++) {
+            String pid = i < pids.length && !pids[i].isEmpty() ? pids[i] : null;
+            results.add(run(client, targets[i].trim(), token, pid));
+        }
+
+        System.out.printf("%n%-26s %10s %9s %9s %9s %9s %8s %12s %12s%n", "target", "req/s", "p50 ms", "p95 ms",
+                "p99 ms", "max ms", "errors", "heap MiB", "RSS MiB");
+        for (Result result : results) {
+            result.print();
+        }
+    }
+
+    private record Result(String target, double throughput, List<Long> latencies, int errors,
+                          double heapMiB, double rssMiB) {
+        void print() {
+            System.out.printf("%-26s %10.1f %9.1f %9.1f %9.1f %9.1f %8d %12s %12s%n", target, throughput,
+                    percentile(0.50), percentile(0.95), percentile(0.99), percentile(1.0), errors, mib(heapMiB),
+                    mib(rssMiB));
+        }
+
+        static String mib(double value) {
+            return value >= 0 ? String.format("%.1f", value) : "-";
+        }
+
+        double percentile(double p) {
+            if (latencies.isEmpty()) {
+                return 0;
+            }
+            int index = (int) Math.ceil(p * latencies.size()) - 1;
+            return latencies.get(Math.max(0, index)) / 1_000_000.0;
+        }
+    }
+
+    private static Result run(HttpClient client, String target, String token, String pid) throws Exception {
+        System.out.printf("%s: creating %d notes%n", target, NOTES);
+        List<Long> noteIds = new ArrayList<>();
+        for (int i = 0; i < NOTES; i++) {
+            HttpResponse<String> response = client.send(request(target + "/api/notes", token)
+                    .POST(HttpRequest.BodyPublishers.ofString(noteJson("Load test " + i, i))).build(),
+                    HttpResponse.BodyHandlers.ofString());
+            Matcher matcher = ID.matcher(response.body());
+            if (response.statusCode() != 201 || !matcher.find()) {
+                throw new IllegalStateException("Creating a note on " + target + " failed with "
+                        + response.statusCode() + ": " + response.body());
+            }
+            noteIds.add(Long.parseLong(matcher.group(1)));
+        }
+
+        try {
+            System.out.printf("%s: warming up for %s%n", target, WARMUP);
+            drive(client, target, token, noteIds, WARMUP);
+            System.out.printf("%s: measuring %d concurrent users for %s%n", target, CONCURRENCY, DURATION);
+            long start = System.nanoTime();
+            Run run = drive(client, target, token, noteIds, DURATION);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            double heapBytes = metric(client, target, token, "jvm.memory.used?tag=area:heap");
+            double heap = heapBytes >= 0 ? heapBytes / (1024 * 1024) : -1;
+            double rss = pid != null ? rssKiB(pid) / 1024.0 : -1;
+            List<Long> latencies = new ArrayList<>(run.latencies);
+            Collections.sort(latencies);
+            return new Result(target, latencies.size() / seconds, latencies, run.errors.get(), heap, rss);
+        } finally {
+            for (Long id : noteIds) {
+                client.send(request(target + "/api/notes/" + id, token).DELETE().build(),
+                        HttpResponse.BodyHandlers.discarding());
+            }
+        }
+    }
+
+    private record Run(List<Long> latencies, AtomicInteger errors) {
+    }
+
+    // Closed loop: every virtual user sends its next request when the previous one completes
+    private static Run drive(HttpClient client, String target, String token, List<Long> noteIds, Duration duration)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + duration.toNanos();
+        Run run = new Run(Collections.synchronizedList(new ArrayList<>()), new AtomicInteger());
+        AtomicInteger active = new AtomicInteger(CONCURRENCY);
+        Object done = new Object();
+        ConcurrentHashMap<Integer, Integer> revisions = new ConcurrentHashMap<>();
+        for (int user = 0; user < CONCURRENCY; user++) {
+            next(client, target, token, noteIds, deadline, run, revisions, () -> {
+                if (active.decrementAndGet() == 0) {
+                    synchronized (done) {
+                        done.notifyAll();
+                    }
+                }
+            });
+        }
+        synchronized (done) {
+            while (active.get() > 0) {
+                done.wait(1000);
+            }
+        }
+        return run;
+    }
+
+    private static void next(HttpClient client, String target, String token, List<Long> noteIds, long deadline,
+                             Run run, ConcurrentHashMap<Integer, Integer> revisions, Runnable finished) {
+        if (System.nanoTime() >= deadline) {
+            finished.run();
+            return;
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int index = random.nextInt(noteIds.size());
+        long id = noteIds.get(index);
+        double kind = random.nextDouble();
+        HttpRequest request;
+        if (kind < 0.6) {
+            request = request(target + "/api/notes", token).GET().build();
+        } else if (kind < 0.8) {
+            request = request(target + "/api/notes/" + id, token).GET().build();
+        } else if (kind < 0.9) {
+            request = request(target + "/api/notes/search?keyword=load", token).GET().build();
+        } else {
+            int revision = revisions.merge(index, 1, Integer::sum);
+            request = request(target + "/api/notes/" + id, token)
+                    .PUT(HttpRequest.BodyPublishers.ofString(noteJson("Load test " + index, revision))).build();
+        }
+        long start = System.nanoTime();
+        client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, error) -> {
+            if (error != null || response.statusCode() >= 400) {
+                run.errors.incrementAndGet();
+            } else {
+                run.latencies.add(System.nanoTime() - start);
+            }
+            next(client, target, token, noteIds, deadline, run, revisions, finished);
+        });
+    }
+
+    private static HttpRequest.Builder request(String uri, String token) {
+        return HttpRequest.newBuilder(URI.create(uri))
+                .timeout(Duration.ofSeconds(30))
+                .header("Authorization", "Bearer " + token)
+                .header("Content-Type", "application/json");
+    }
+
+    private static String noteJson(String title, int revision) {
+        return "{\"title\":\"" + title + "\",\"content\":\"Typed during load test, revision " + revision
+                + ". " + "lorem ipsum dolor sit amet ".repeat(20) + "\",\"isFavorite\":false}";
+    }
+
+    private static double metric(HttpClient client, String target, String token, String name) {
+        try {
+            HttpResponse<String> response = client.send(request(target + "/actuator/metrics/" + name, token)
+                    .GET().build(), HttpResponse.BodyHandlers.ofString());
+            Matcher matcher = VALUE.matcher(response.body());
+            return response.statusCode() == 200 && matcher.find() ? Double.parseDouble(matcher.group(1)) : -1;
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+
+    private static long rssKiB(String pid) throws Exception {
+        for (String line : Files.readAllLines(Path.of("/proc", pid, "status"))) {
+            if (line.startsWith("VmRSS:")) {
+                return Long.parseLong(line.replaceAll("\\D", ""));
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,121 @@
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.leopad.notepad.dto.NoteProtobufCodec;
+import com.leopad.notepad.dto.NoteResponse;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Payload size and encode/decode time of a note list as JSON (Spring Boot's Jackson defaults)
+ * and as application/x-protobuf, at 100, 1k and 10k notes.
+ *
+ * Usage, from backend/:
+ *   mvn -q compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ *   java -cp target/classes:$(cat target/cp.txt) scripts/NotePayloadBenchmark.java
+ */
+public class NotePayloadBenchmark {
+
+    // As configured by Spring Boot: ISO-8601 strings for LocalDateTime
+    private static final ObjectMapper JSON = Jackson2ObjectMapperBuilder.json()
+            .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+    private static final TypeReference<List<NoteResponse>> NOTE_LIST = new TypeReference<>() {
+    };
+
+    public static void main(String[] args) throws IOException {
+        System.out.printf("%-7s %-9s %12s %12s %12s %12s%n", "notes", "format", "bytes", "gzip bytes", "encode ms", "decode ms");
+        for (int count : new int[]{100, 1_000, 10_000}) {
+            List<NoteResponse> notes = sampleNotes(count);
+            report(count, "json", notes, true);
+            report(count, "protobuf", notes, false);
+        }
+    }
+
+    private static void report(int count, String format, List<NoteResponse> notes, boolean json) throws IOException {
+        byte[] encoded = encode(notes, json);
+        int iterations = Math.max(20, 200_000 / count);
+        // Warm up both paths before timing
+        for (int i = 0; i < iterations; i++) {
+            decode(encode(notes, json), json);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            encode(notes, json);
+        }
+        double encodeMs = (System.nanoTime() - start) / 1e6 / iterations;
+
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            decode(encoded, json);
+        }
+        double decodeMs = (System.nanoTime() - start) / 1e6 / iterations;
+
+        System.out.printf("%-7d %-9s %12d %12d %12.3f %12.3f%n", count, format, encoded.length, gzip(encoded).length,
+                encodeMs, decodeMs);
+    }
+
+    private static byte[] encode(List<NoteResponse> notes, boolean json) throws IOException {
+        if (json) {
+            return JSON.writeValueAsBytes(notes);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        NoteProtobufCodec.writeNoteList(notes, out);
+        return out.toByteArray();
+    }
+
+    private static List<NoteResponse> decode(byte[] data, boolean json) throws IOException {
+        return json ? JSON.readValue(data, NOTE_LIST) : NoteProtobufCodec.readNoteList(new ByteArrayInputStream(data));
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(data);
+        }
+        return out.toByteArray();
+    }
+
+    // Short notes typical of the app: a title, a few hundred characters, some tags
+    private static List<NoteResponse> sampleNotes(int count) {
+        Random random = new Random(42);
+        String[] words = {"meeting", "groceries", "release", "draft", "call", "ideas", "todo", "review", "budget", "trip"};
+        LocalDateTime base = LocalDateTime.of(2025, 9, 15, 10, 30);
+        List<NoteResponse> notes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            NoteResponse note = new NoteResponse();
+            note.setId(100_000L + i);
+            note.setTitle(words[random.nextInt(words.length)] + " notes " + i);
+            StringBuilder content = new StringBuilder();
+            int length = 50 + random.nextInt(450);
+            while (content.length() < length) {
+                content.append(words[random.nextInt(words.length)]).append(' ');
+            }
+            note.setContent(content.toString());
+            note.setIsFavorite(random.nextInt(5) == 0);
+            note.setIsLarge(false);
+            Set<String> tags = new TreeSet<>();
+            for (int t = random.nextInt(3); t > 0; t--) {
+                tags.add(words[random.nextInt(words.length)]);
+            }
+            note.setTags(tags);
+            note.setCreatedAt(base.minusMinutes(i * 37L).withNano(123_000_000));
+            note.setUpdatedAt(random.nextBoolean() ? base.minusMinutes(i * 11L).withNano(456_000_000) : null);
+            note.setUserId(42L);
+            note.setUserEmail("someone.with.a.long.address@example.com");
+            notes.add(note);
+        }
+        return notes;
+    }
+}
@@ -0,0 +1,113 @@
+import com.leopad.notepad.service.NoteOrderService;
+import com.leopad.notepad.service.NotePositions;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Checks the fractional position keys behind the manual note order: every key handed out sorts
+ * strictly between its neighbours and is valid, through random drag-and-drop sessions and the
+ * worst cases (always to the top, always to the bottom, always into the same gap), and evenly
+ * spaced keys after a rebalance are valid and ordered. Prints how fast keys grow in each case,
+ * which is what notes.ordering.max-key-length is weighed against.
+ *
+ * Usage, from backend/:
+ *   mvn -q compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ *   java -cp target/classes:$(cat target/cp.txt) scripts/NotePositionsCheck.java
+ */
+public class NotePositionsCheck {
+
+    private static final int MOVES = Integer.getInteger("moves", 1_000);
+
+    public static void main(String[] args) {
+        System.out.printf("%-28s %10s %14s%n", "pattern", "moves", "longest key");
+        report("to the top", repeat(true));
+        report("to the bottom", repeat(false));
+        report("into the same gap", sameGap());
+        report("random, 200 notes", random(200, new Random(42)));
+
+        for (int count : new int[] {0, 1, 61, 62, 1_000, 100_000}) {
+            List<String> keys = NotePositions.evenlySpaced(count);
+            checkOrdered(keys);
+            System.out.printf("rebalanced %,d notes: keys of %d characters%n", count,
+                    keys.isEmpty() ? 0 : keys.stream().mapToInt(String::length).max().getAsInt());
+        }
+
+        NoteOrderService.Cursor cursor = new NoteOrderService.Cursor(true, "Vz3", 9L);
+        if (!NoteOrderService.Cursor.decode(cursor.encode()).equals(cursor)) {
+            throw new IllegalStateException("Cursor does not round-trip");
+        }
+        for (String bad : new String[] {"", "!!", cursor.encode() + "x", "MTpWMDo5"}) {
+            try {
+                NoteOrderService.Cursor.decode(bad);
+                throw new IllegalStateException("Accepted bad cursor " + bad);
+            } catch (IllegalArgumentException expected) {
+                // Rejected as it should be
+            }
+        }
+        System.out.println("all checks passed");
+    }
+
+    private static int repeat(boolean top) {
+        List<String> keys = new ArrayList<>(List.of(NotePositions.between(null, null)));
+        for (int i = 0; i < MOVES; i++) {
+            if (top) {
+                keys.add(0, place(null, keys.get(0)));
+            } else {
+                keys.add(place(keys.get(keys.size() - 1), null));
+            }
+        }
+        checkOrdered(keys);
+        return longest(keys);
+    }
+
+    // Each new note goes right after the first one, the worst case for key growth
+    private static int sameGap() {
+        List<String> keys = new ArrayList<>(List.of("F", "k"));
+        for (int i = 0; i < MOVES; i++) {
+            keys.add(1, place(keys.get(0), keys.get(1)));
+        }
+        checkOrdered(keys);
+        return longest(keys);
+    }
+
+    private static int random(int notes, Random random) {
+        List<String> keys = new ArrayList<>(NotePositions.evenlySpaced(notes));
+        for (int i = 0; i < MOVES; i++) {
+            keys.remove(random.nextInt(keys.size()));
+            int to = random.nextInt(keys.size() + 1);
+            keys.add(to, place(to > 0 ? keys.get(to - 1) : null, to < keys.size() ? keys.get(to) : null));
+        }
+        checkOrdered(keys);
+        return longest(keys);
+    }
+
+    private static String place(String before, String after) {
+        String key = NotePositions.between(before, after);
+        if (!NotePositions.isValid(key) || (before != null && key.compareTo(before) <= 0)
+                || (after != null && key.compareTo(after) >= 0)) {
+            throw new IllegalStateException(key + " is not a valid key between " + before + " and " + after);
+        }
+        return key;
+    }
+
+    private static void checkOrdered(List<String> keys) {
+        for (int i = 0; i < keys.size(); i++) {
+            if (!NotePositions.isValid(keys.get(i))) {
+                throw new IllegalStateException("Invalid key " + keys.get(i));
+            }
+            if (i > 0 && keys.get(i - 1).compareTo(keys.get(i)) >= 0) {
+                throw new IllegalStateException("Keys out of order: " + keys.get(i - 1) + ", " + keys.get(i));
+            }
+        }
+    }
+
+    private static int longest(List<String> keys) {
+        return keys.stream().mapToInt(String::length).max().orElse(0);
+    }
+
+    private static void report(String pattern, int longest) {
+        System.out.printf("%-28s %,10d %14d%n", pattern, MOVES, longest);
+    }
+}
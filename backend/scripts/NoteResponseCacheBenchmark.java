@@ -0,0 +1,161 @@
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.leopad.notepad.config.CachedNoteJsonMessageConverter;
+import com.leopad.notepad.dto.NoteResponse;
+import com.leopad.notepad.service.NoteResponseCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.core.ResolvableType;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Time to write GET /api/notes/{id} (10k-character content) and a 50-note list with plain Jackson
+ * and through the note response cache once warm, plain and gzipped. The cached output is checked
+ * to be byte-for-byte what Jackson writes before anything is timed.
+ *
+ * Usage, from backend/:
+ *   mvn -q compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ *   java -cp target/classes:$(cat target/cp.txt) scripts/NoteResponseCacheBenchmark.java
+ */
+public class NoteResponseCacheBenchmark {
+
+    private static final int LIST_SIZE = Integer.getInteger("listSize", 50);
+    private static final int CONTENT_LENGTH = Integer.getInteger("contentLength", 10_000);
+    private static final int ITERATIONS = Integer.getInteger("iterations", 20_000);
+
+    // As configured by Spring Boot: ISO-8601 strings for LocalDateTime
+    private static final ObjectMapper JSON = Jackson2ObjectMapperBuilder.json()
+            .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+    private static final Type NOTE_LIST = ResolvableType.forClassWithGenerics(List.class, NoteResponse.class).getType();
+
+    public static void main(String[] args) throws Exception {
+        NoteResponseCache cache = new NoteResponseCache(JSON, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "maxBytes", 64L * 1024 * 1024);
+        CachedNoteJsonMessageConverter converter = new CachedNoteJsonMessageConverter(cache, 1024);
+        List<NoteResponse> notes = sampleNotes(LIST_SIZE);
+        NoteResponse note = notes.get(0);
+
+        if (!Arrays.equals(JSON.writeValueAsBytes(note), viaConverter(converter, note, NoteResponse.class))
+                || !Arrays.equals(JSON.writeValueAsBytes(notes), viaConverter(converter, notes, NOTE_LIST))) {
+            throw new IllegalStateException("Cached output differs from Jackson's");
+        }
+        System.out.printf("output identical to Jackson for a note (%d bytes) and a list (%d bytes)%n",
+                JSON.writeValueAsBytes(note).length, JSON.writeValueAsBytes(notes).length);
+
+        System.out.printf("%n%-22s %14s %14s %10s%n", "response", "jackson us", "cached us", "speedup");
+        report("note", ITERATIONS,
+                () -> JSON.writeValueAsBytes(note),
+                () -> viaConverter(converter, note, NoteResponse.class));
+        report("note, gzip", ITERATIONS / 10,
+                () -> gzip(JSON.writeValueAsBytes(note)),
+                () -> cache.gzip(note));
+        report("list of " + LIST_SIZE, ITERATIONS / LIST_SIZE,
+                () -> JSON.writeValueAsBytes(notes),
+                () -> viaConverter(converter, notes, NOTE_LIST));
+    }
+
+    private interface Encoding {
+        byte[] run() throws Exception;
+    }
+
+    private static void report(String label, int iterations, Encoding jackson, Encoding cached) throws Exception {
+        double plain = time(iterations, jackson);
+        double fromCache = time(iterations, cached);
+        System.out.printf("%-22s %14.1f %14.1f %9.1fx%n", label, plain, fromCache, plain / fromCache);
+    }
+
+    // Microseconds per call, best of five runs after a warm-up run
+    private static double time(int iterations, Encoding encoding) throws Exception {
+        double best = Double.MAX_VALUE;
+        long sink = 0;
+        for (int run = 0; run < 6; run++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                sink += encoding.run().length;
+            }
+            if (run > 0) {
+                best = Math.min(best, (System.nanoTime() - start) / 1e3 / iterations);
+            }
+        }
+        if (sink == 42) {
+            System.out.println();
+        }
+        return best;
+    }
+
+    private static byte[] viaConverter(CachedNoteJsonMessageConverter converter, Object body, Type type)
+            throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(16 * 1024);
+        HttpHeaders headers = new HttpHeaders();
+        converter.write(body, type, MediaType.APPLICATION_JSON, new HttpOutputMessage() {
+            @Override
+            public OutputStream getBody() {
+                return out;
+            }
+
+            @Override
+            public HttpHeaders getHeaders() {
+                return headers;
+            }
+        });
+        return out.toByteArray();
+    }
+
+    private static byte[] gzip(byte[] json) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(json.length / 3);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(json);
+        }
+        return out.toByteArray();
+    }
+
+    private static List<NoteResponse> sampleNotes(int count) {
+        Random random = new Random(42);
+        LocalDateTime base = LocalDateTime.of(2024, 1, 1, 9, 0);
+        List<NoteResponse> notes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            NoteResponse note = new NoteResponse();
+            note.setId((long) i + 1);
+            note.setTitle("Meeting notes " + i);
+            note.setContent(text(random, CONTENT_LENGTH));
+            note.setIsFavorite(i % 5 == 0);
+            note.setIsLarge(false);
+            note.setTags(new TreeSet<>(Set.of("work", "tag" + (i % 7))));
+            note.setCreatedAt(base.plusMinutes(i));
+            note.setUpdatedAt(base.plusMinutes(i).plusSeconds(30).plusNanos(123_456_000));
+            note.setUserId(7L);
+            note.setUserEmail("user@example.com");
+            notes.add(note);
+        }
+        return notes;
+    }
+
+    // Prose with the quotes, newlines and non-ASCII characters that Jackson has to escape or encode
+    private static String text(Random random, int length) {
+        String[] words = {"the", "note", "\"quoted\"", "café", "line\n", "tab\t", "agenda", "naïve", "x"};
+        StringBuilder text = new StringBuilder(length);
+        while (text.length() < length) {
+            text.append(words[random.nextInt(words.length)]).append(' ');
+        }
+        text.setLength(length);
+        return text.toString();
+    }
+}
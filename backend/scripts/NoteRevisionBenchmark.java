@@ -0,0 +1,204 @@
+import com.leopad.notepad.dto.NoteRevisionResponse;
+import com.leopad.notepad.entity.Note;
+import com.leopad.notepad.entity.NoteRevision;
+import com.leopad.notepad.repository.NoteRevisionRepository;
+import com.leopad.notepad.service.NoteRevisionService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * Storage per revision and reconstruct time of the delta-compressed revision history, against
+ * storing every revision as a full snapshot (snapshot interval 1). An autosave workload of small
+ * local edits, with an occasional paste or cut, is replayed through NoteRevisionService against an
+ * in-memory repository, and every revision is checked to rebuild to the exact text it replaced
+ * before anything is timed.
+ *
+ * Stored bytes are the UTF-8 bytes of content_data, as in notepad.revisions.stored.bytes, before
+ * any TOAST compression. Reconstruct times cover applying the deltas only; in the application the
+ * query that loads them is added once per request, whatever the distance.
+ *
+ * Usage, from backend/:
+ *   mvn -q compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ *   java -cp target/classes:$(cat target/cp.txt) scripts/NoteRevisionBenchmark.java
+ *   (-Drevisions=400 -DcontentLength=4000 -Dintervals=1,5,20,50 -Dinterval=20 -Diterations=2000)
+ */
+public class NoteRevisionBenchmark {
+
+    private static final int REVISIONS = Integer.getInteger("revisions", 400);
+    private static final int CONTENT_LENGTH = Integer.getInteger("contentLength", 4000);
+    private static final int ITERATIONS = Integer.getInteger("iterations", 2000);
+    private static final int INTERVAL = Integer.getInteger("interval", 20);
+    private static final int[] INTERVALS = Arrays.stream(System.getProperty("intervals", "1,5,20,50").split(","))
+            .mapToInt(Integer::parseInt).toArray();
+
+    private static final long NOTE_ID = 1L;
+
+    public static void main(String[] args) {
+        // Compiles the delta path before the first row is timed
+        time(record(INTERVAL), worstCase(INTERVAL));
+
+        System.out.printf("%d revisions of a %d-character note%n%n", REVISIONS, CONTENT_LENGTH);
+        System.out.printf("%-10s %14s %14s %12s %16s%n", "interval", "bytes/rev", "total KiB", "vs full",
+                "worst rebuild us");
+        long fullBytes = -1;
+        for (int interval : INTERVALS) {
+            History history = record(interval);
+            long bytes = history.storedBytes();
+            if (interval == 1) {
+                fullBytes = bytes;
+            }
+            double worst = time(history, worstCase(interval));
+            System.out.printf("%-10d %14.0f %14.1f %12s %16.1f%n", interval, (double) bytes / REVISIONS,
+                    bytes / 1024.0, fullBytes > 0 ? String.format("%.1f%%", 100.0 * bytes / fullBytes) : "-", worst);
+        }
+
+        History history = record(INTERVAL);
+        System.out.printf("%nRebuild time by deltas applied (interval %d)%n", INTERVAL);
+        System.out.printf("%-10s %14s%n", "deltas", "us");
+        for (int distance = 0; distance < INTERVAL; distance++) {
+            System.out.printf("%-10d %14.1f%n", distance, time(history, atDistance(INTERVAL, distance)));
+        }
+    }
+
+    private record History(NoteRevisionService service, Note note, TreeMap<Integer, NoteRevision> rows,
+                           List<String> texts) {
+        long storedBytes() {
+            return rows.values().stream()
+                    .mapToLong(row -> row.getContentData().getBytes(StandardCharsets.UTF_8).length)
+                    .sum();
+        }
+    }
+
+    // Replays the workload and checks that every revision rebuilds to the text it replaced
+    private static History record(int interval) {
+        TreeMap<Integer, NoteRevision> rows = new TreeMap<>();
+        NoteRevisionService service = new NoteRevisionService(repository(rows), null, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(service, "snapshotInterval", interval);
+
+        Random random = new Random(42);
+        Note note = new Note();
+        note.setId(NOTE_ID);
+        note.setTitle("Meeting notes");
+        note.setIsFavorite(false);
+        note.setContent(text(random, CONTENT_LENGTH));
+        note.setUpdatedAt(LocalDateTime.of(2024, 1, 1, 9, 0));
+
+        List<String> texts = new ArrayList<>(REVISIONS);
+        for (int i = 0; i < REVISIONS; i++) {
+            String next = edit(random, note.getContent());
+            texts.add(note.getContent());
+            service.recordRevision(note, next);
+            note.setContent(next);
+            note.setUpdatedAt(note.getUpdatedAt().plusSeconds(5));
+        }
+
+        History history = new History(service, note, rows, texts);
+        for (int revision = 0; revision < REVISIONS; revision++) {
+            if (!texts.get(revision).equals(rebuild(history, revision))) {
+                throw new IllegalStateException("Revision " + revision + " does not rebuild to the text it replaced");
+            }
+        }
+        return history;
+    }
+
+    // The revision just above a snapshot, which applies interval - 1 deltas
+    private static int worstCase(int interval) {
+        return interval == 1 ? REVISIONS / 2 : atDistance(interval, interval - 1);
+    }
+
+    // A revision in the middle of the history that applies `distance` deltas from the snapshot above it
+    private static int atDistance(int interval, int distance) {
+        int snapshot = (REVISIONS / 2 / interval + 1) * interval;
+        return snapshot - distance;
+    }
+
+    private static String rebuild(History history, int revision) {
+        return history.service().getRevision(history.note(), revision)
+                .map(NoteRevisionResponse::getContent)
+                .orElseThrow();
+    }
+
+    // Microseconds per rebuild, best of five runs after a warm-up run
+    private static double time(History history, int revision) {
+        double best = Double.MAX_VALUE;
+        long sink = 0;
+        for (int run = 0; run < 6; run++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                sink += rebuild(history, revision).length();
+            }
+            if (run > 0) {
+                best = Math.min(best, (System.nanoTime() - start) / 1e3 / ITERATIONS);
+            }
+        }
+        if (sink == 42) {
+            System.out.println();
+        }
+        return best;
+    }
+
+    // The repository queries NoteRevisionService uses, over the revisions of one note
+    private static NoteRevisionRepository repository(TreeMap<Integer, NoteRevision> rows) {
+        return (NoteRevisionRepository) Proxy.newProxyInstance(
+                NoteRevisionRepository.class.getClassLoader(),
+                new Class<?>[] {NoteRevisionRepository.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "save" -> {
+                        NoteRevision revision = (NoteRevision) args[0];
+                        rows.put(revision.getRevisionNumber(), revision);
+                        yield revision;
+                    }
+                    case "findByNoteIdAndRevisionNumber" -> Optional.ofNullable(rows.get((Integer) args[1]));
+                    case "findFirstByNoteIdAndSnapshotTrueAndRevisionNumberGreaterThanEqualOrderByRevisionNumberAsc" ->
+                            rows.tailMap((Integer) args[1], true).values().stream()
+                                    .filter(NoteRevision::getSnapshot)
+                                    .findFirst();
+                    case "findByNoteIdAndRevisionNumberBetweenOrderByRevisionNumberDesc" ->
+                            new ArrayList<>(rows.subMap((Integer) args[1], true, (Integer) args[2], true)
+                                    .descendingMap().values());
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    // Mostly a few characters typed or deleted at one spot; sometimes a paragraph pasted or cut
+    private static String edit(Random random, String content) {
+        int at = random.nextInt(content.length() + 1);
+        int kind = random.nextInt(100);
+        if (kind < 50) {
+            return content.substring(0, at) + text(random, 1 + random.nextInt(20)) + content.substring(at);
+        }
+        if (kind < 80) {
+            int end = Math.min(content.length(), at + 1 + random.nextInt(10));
+            return content.substring(0, at) + content.substring(end);
+        }
+        if (kind < 95) {
+            int end = Math.min(content.length(), at + 1 + random.nextInt(10));
+            return content.substring(0, at) + text(random, end - at) + content.substring(end);
+        }
+        if (kind < 98 || content.length() < 600) {
+            return content.substring(0, at) + text(random, 300 + random.nextInt(300)) + content.substring(at);
+        }
+        int start = Math.min(at, content.length() - 500);
+        return content.substring(0, start) + content.substring(start + 200 + random.nextInt(300));
+    }
+
+    private static String text(Random random, int length) {
+        String[] words = {"the", "note", "agenda", "café", "line\n", "follow-up", "naïve", "x", "meeting"};
+        StringBuilder text = new StringBuilder(length + 12);
+        while (text.length() < length) {
+            text.append(words[random.nextInt(words.length)]).append(' ');
+        }
+        text.setLength(length);
+        return text.toString();
+    }
+}
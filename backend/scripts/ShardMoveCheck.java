@@ -0,0 +1,138 @@
+import com.leopad.notepad.entity.User;
+import com.leopad.notepad.invalidation.InvalidationBus;
+import com.leopad.notepad.sharding.ShardDirectory;
+import com.leopad.notepad.sharding.ShardMover;
+import com.leopad.notepad.sharding.ShardPools;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.flywaydb.core.Flyway;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.DriverManager;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Runs the shard directory and mover against three local databases (see
+ * docker-compose.sharding.yml): places new users by weight, moves one user's notes, tags,
+ * revisions and archived notes to another shard and checks that everything arrived and the old
+ * shard was cleaned up.
+ *
+ * Usage, from backend/:
+ *   docker-compose -f ../docker-compose.sharding.yml up -d
+ *   mvn -q compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ *   java -cp target/classes:$(cat target/cp.txt) scripts/ShardMoveCheck.java
+ */
+public class ShardMoveCheck {
+
+    public static void main(String[] args) throws Exception {
+        Map<String, HikariDataSource> pools = new LinkedHashMap<>();
+        pools.put("main", pool("main", env("DATABASE_URL", "jdbc:postgresql://localhost:5432/notepad")));
+        pools.put("shard-1", pool("shard-1", env("SHARD_1_URL", "jdbc:postgresql://localhost:5434/notepad")));
+        pools.put("shard-2", pool("shard-2", env("SHARD_2_URL", "jdbc:postgresql://localhost:5435/notepad")));
+        pools.values().forEach(pool -> Flyway.configure().dataSource(pool).locations("classpath:db/migration")
+                .baselineOnMigrate(true).baselineVersion("1").load().migrate());
+        ShardPools shardPools = new ShardPools("main", pools, Map.of("main", 1, "shard-1", 1, "shard-2", 1));
+        JdbcTemplate main = new JdbcTemplate(pools.get("main"));
+
+        ShardDirectory directory = new ShardDirectory(shardPools, Duration.ofSeconds(5), 1000);
+        // Not started: publishing is a no-op, there is no other instance to tell
+        InvalidationBus bus = new InvalidationBus("notepad_shard_check", main,
+                () -> DriverManager.getConnection("jdbc:invalid"), List.of(directory),
+                Duration.ofMillis(20), Duration.ofSeconds(1), new SimpleMeterRegistry());
+        ShardMover mover = new ShardMover(directory, bus, Duration.ofMillis(200), new SimpleMeterRegistry());
+        String run = UUID.randomUUID().toString().substring(0, 8);
+        try {
+            Map<String, Long> before = directory.usersPerShard();
+            for (int i = 0; i < 300; i++) {
+                directory.assignAfterCommit(user(main, run + "-" + i));
+            }
+            Map<String, Long> after = directory.usersPerShard();
+            System.out.println("Users per shard: " + after);
+            for (String shard : shardPools.names()) {
+                long placed = after.get(shard) - before.getOrDefault(shard, 0L);
+                check(shard + " got a share of 300 new users (" + placed + ")", placed > 50 && placed < 150);
+            }
+
+            User owner = user(main, run + "-owner");
+            directory.assignAfterCommit(owner);
+            String source = directory.shardFor(owner.getId());
+            String target = source.equals("shard-1") ? "shard-2" : "shard-1";
+            JdbcTemplate sourceDb = new JdbcTemplate(pools.get(source));
+            JdbcTemplate targetDb = new JdbcTemplate(pools.get(target));
+            for (int i = 0; i < 25; i++) {
+                Long noteId = sourceDb.queryForObject("INSERT INTO notes (title, content, user_id, created_at, "
+                        + "is_favorite, current_revision, is_large) VALUES (?, ?, ?, now(), false, 1, false) RETURNING id",
+                        Long.class, "Note " + i, "Content " + i, owner.getId());
+                sourceDb.update("INSERT INTO note_tags (note_id, tag) VALUES (?, 'moved')", noteId);
+                sourceDb.update("INSERT INTO note_revisions (note_id, revision_number, title, content_data, "
+                        + "content_length, is_favorite, is_snapshot, created_at) VALUES (?, 0, 'Old', 'Old', 3, false, true, now())",
+                        noteId);
+            }
+            sourceDb.update("INSERT INTO notes_archive (id, user_id, title, content_deflated, content_length, "
+                    + "is_favorite, current_revision, tags, created_at, archived_at) "
+                    + "VALUES (?, ?, 'Cold', ?, 0, false, 0, ARRAY['cold', 'old'], now(), now())",
+                    System.nanoTime(), owner.getId(), new byte[]{120, -38, 3, 0, 0, 0, 0, 1});
+            Map<String, Long> sourceCounts = counts(sourceDb, owner.getId());
+
+            Map<String, Object> result = mover.move(owner.getId(), target);
+            System.out.println("Move: " + result);
+            check("directory points at " + target, directory.load(owner.getId()).shard().equals(target));
+            check("all rows arrived on " + target, counts(targetDb, owner.getId()).equals(sourceCounts));
+            check(source + " was cleaned up", counts(sourceDb, owner.getId()).values().stream().allMatch(n -> n == 0));
+            check("archived tags survived the copy", targetDb.queryForObject(
+                    "SELECT tags[2] FROM notes_archive WHERE user_id = ?", String.class, owner.getId()).equals("old"));
+            check("moving back and forth works",
+                    mover.move(owner.getId(), source).get("to").equals(source)
+                            && counts(sourceDb, owner.getId()).equals(sourceCounts));
+            System.out.println("All checks passed");
+        } finally {
+            pools.values().forEach(HikariDataSource::close);
+        }
+    }
+
+    private static Map<String, Long> counts(JdbcTemplate db, Long userId) {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        counts.put("notes", db.queryForObject("SELECT count(*) FROM notes WHERE user_id = ?", Long.class, userId));
+        counts.put("note_tags", db.queryForObject("SELECT count(*) FROM note_tags t JOIN notes n ON n.id = t.note_id "
+                + "WHERE n.user_id = ?", Long.class, userId));
+        counts.put("note_revisions", db.queryForObject("SELECT count(*) FROM note_revisions r JOIN notes n "
+                + "ON n.id = r.note_id WHERE n.user_id = ?", Long.class, userId));
+        counts.put("notes_archive", db.queryForObject("SELECT count(*) FROM notes_archive WHERE user_id = ?",
+                Long.class, userId));
+        return counts;
+    }
+
+    private static User user(JdbcTemplate main, String suffix) {
+        User user = new User(
+                "shard-check-" + suffix + "@example.com", "Shard check");
+        user.setId(main.queryForObject("INSERT INTO users (email, name, created_at) VALUES (?, ?, now()) RETURNING id",
+                Long.class, user.getEmail(), user.getName()));
+        return user;
+    }
+
+    private static HikariDataSource pool(String name, String url) {
+        HikariDataSource pool = new HikariDataSource();
+        pool.setPoolName("shard-check-" + name);
+        pool.setJdbcUrl(url);
+        pool.setUsername(env("DATABASE_USERNAME", "postgres"));
+        pool.setPassword(env("DATABASE_PASSWORD", "password"));
+        pool.setMaximumPoolSize(4);
+        return pool;
+    }
+
+    private static void check(String description, boolean ok) {
+        System.out.println((ok ? "ok    " : "FAIL  ") + description);
+        if (!ok) {
+            throw new AssertionError(description);
+        }
+    }
+
+    private static String env(String name, String fallback) {
+        String value = System.getenv(name);
+        return value != null && !value.isEmpty() ? value : fallback;
+    }
+}
@@ -0,0 +1,153 @@
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.leopad.notepad.service.NoteBodyStore;
+import com.leopad.notepad.share.LocalDiskSnapshotStore;
+import com.leopad.notepad.share.ShareSnapshot;
+import com.leopad.notepad.share.ShareSnapshotCache;
+import com.leopad.notepad.share.ShareSnapshotRenderer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Checks share snapshots against a temporary local store: content is escaped and versions follow
+ * content only, readers racing a stream of republishes always see one complete version, and
+ * after an unshare neither the store nor the in-memory cache serves the link. Then times views
+ * served from memory and from disk.
+ *
+ * Usage, from backend/:
+ *   mvn -q compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ *   java -cp target/classes:$(cat target/cp.txt) scripts/ShareSnapshotCheck.java
+ */
+public class ShareSnapshotCheck {
+
+    private static final String TOKEN = "q2Lx0c8Hn1sVtA4bP3dE7w";
+    private static final ObjectMapper JSON = Jackson2ObjectMapperBuilder.json()
+            .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+
+    public static void main(String[] args) throws Exception {
+        Path dir = Files.createTempDirectory("share-check");
+        LocalDiskSnapshotStore store = new LocalDiskSnapshotStore(dir);
+        ShareSnapshotCache cache = new ShareSnapshotCache(store, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(cache, "maxBytes", 64L * 1024 * 1024);
+        ShareSnapshotRenderer renderer = new ShareSnapshotRenderer(JSON);
+        LocalDateTime updatedAt = LocalDateTime.of(2025, 9, 15, 10, 45);
+
+        ShareSnapshot first = renderer.render(7L, "<script>alert(1)</script>", "a & b\n\"quoted\"",
+                Set.of("work", "b"), updatedAt);
+        String html = new String(first.html(), StandardCharsets.UTF_8);
+        check(!html.contains("<script>") && html.contains("&lt;script&gt;") && html.contains("a &amp; b"),
+                "HTML is escaped");
+        check(first.version().equals(renderer.render(7L, "<script>alert(1)</script>", "a & b\n\"quoted\"",
+                List.of("b", "work"), updatedAt).version()), "same content gives the same version");
+        check(!first.version().equals(renderer.render(7L, "<script>alert(1)</script>", "a & b",
+                Set.of("work", "b"), updatedAt).version()), "changed content gives a new version");
+        check(new String(first.json(), StandardCharsets.UTF_8).contains("\"updatedAt\":\"2025-09-15T10:45:00\""),
+                "JSON carries an ISO update time");
+
+        store.put(TOKEN, first);
+        check(cache.get(TOKEN).map(ShareSnapshot::version).equals(Optional.of(first.version())), "published");
+
+        // Readers straight from the store while versions are republished underneath them
+        AtomicBoolean stop = new AtomicBoolean();
+        AtomicReference<String> failure = new AtomicReference<>();
+        AtomicLong reads = new AtomicLong();
+        Thread[] readers = new Thread[4];
+        for (int i = 0; i < readers.length; i++) {
+            readers[i] = new Thread(() -> {
+                try {
+                    while (!stop.get()) {
+                        ShareSnapshot read = store.get(TOKEN).orElse(null);
+                        if (read == null) {
+                            failure.set("snapshot missing during republish");
+                        } else if (!read.version().equals(NoteBodyStore.hash(
+                                new String(read.json(), StandardCharsets.UTF_8)).substring(0, 32))
+                                || !new String(read.html(), StandardCharsets.UTF_8).contains(
+                                        "<h1>" + title(read).replace("&", "&amp;").replace("<", "&lt;")
+                                                .replace(">", "&gt;") + "</h1>")) {
+                            failure.set("HTML and JSON from different versions");
+                        }
+                        reads.incrementAndGet();
+                    }
+                } catch (Exception e) {
+                    failure.set(e.toString());
+                }
+            });
+            readers[i].start();
+        }
+        for (int i = 0; i < 500; i++) {
+            store.put(TOKEN, renderer.render(7L, "v" + i, "x", Set.of(), updatedAt));
+        }
+        stop.set(true);
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        check(failure.get() == null, "republish is atomic for " + reads.get() + " concurrent reads"
+                + (failure.get() != null ? ": " + failure.get() : ""));
+        try (var files = Files.list(dir.resolve(TOKEN.substring(0, 2)).resolve(TOKEN))) {
+            check(files.count() == 3, "superseded versions are removed");
+        }
+
+        cache.evict(TOKEN);
+        ShareSnapshot latest = cache.get(TOKEN).orElseThrow();
+        check(latest.version().equals(renderer.render(7L, "v499", "x", Set.of(), updatedAt).version()),
+                "evicted link reloads the latest version");
+        store.delete(TOKEN);
+        cache.evict(TOKEN);
+        check(store.get(TOKEN).isEmpty() && cache.get(TOKEN).isEmpty(), "unshared link is gone at once");
+        try {
+            store.get("../../etc/passwd");
+            check(false, "path traversal rejected");
+        } catch (IllegalArgumentException e) {
+            check(true, "path traversal rejected");
+        }
+
+        ShareSnapshot large = renderer.render(7L, "Viral", "word ".repeat(4000), Set.of("tag"), updatedAt);
+        store.put(TOKEN, large);
+        System.out.printf("%nview of a %d-byte snapshot%n", large.bytes());
+        System.out.printf("  from memory: %8.2f us%n", time(() -> cache.get(TOKEN), 1_000_000));
+        System.out.printf("  from disk:   %8.2f us%n", time(() -> store.get(TOKEN), 20_000));
+    }
+
+    private interface View {
+        Object run() throws Exception;
+    }
+
+    private static String title(ShareSnapshot snapshot) throws Exception {
+        return JSON.readTree(snapshot.json()).get("title").asText();
+    }
+
+    // Microseconds per call, best of five runs after a warm-up run
+    private static double time(View view, int iterations) throws Exception {
+        double best = Double.MAX_VALUE;
+        for (int run = 0; run < 6; run++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                view.run();
+            }
+            if (run > 0) {
+                best = Math.min(best, (System.nanoTime() - start) / 1e3 / iterations);
+            }
+        }
+        return best;
+    }
+
+    private static void check(boolean ok, String description) {
+        System.out.println((ok ? "ok    " : "FAIL  ") + description);
+        if (!ok) {
+            throw new IllegalStateException(description);
+        }
+    }
+}
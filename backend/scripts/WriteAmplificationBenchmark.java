@@ -0,0 +1,300 @@
+import com.leopad.notepad.NotepadApplication;
+import com.leopad.notepad.config.FlywayConfig;
+import com.leopad.notepad.dto.NoteRequest;
+import com.leopad.notepad.entity.User;
+import com.leopad.notepad.repository.UserRepository;
+import com.leopad.notepad.service.NoteService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.flywaydb.core.Flyway;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Measures write amplification of note saves as WAL bytes per byte sent by the client. One
+ * autosave workload is replayed three times against a local database:
+ *
+ *   baseline: the statements Hibernate issued before saves were skipped and columns tracked,
+ *             replayed over JDBC: every PUT rewrites the whole row and every body is stored in
+ *             full. Notes rows only; that code no longer exists to be run;
+ *   service:  the application's NoteService, started against the same database, with the body
+ *             store off: unchanged PUTs are skipped and @DynamicUpdate writes only the changed
+ *             columns. Includes the revision and stats rows every save writes;
+ *   bodies:   the same with NOTES_BODY_STORE_ENABLED, so bodies of at least
+ *             NOTES_BODY_STORE_MIN_LENGTH characters that already exist are only referenced from
+ *             note_bodies.
+ *
+ * The service runs also print notepad.notes.updates.skipped and the stored/requested ratio of
+ * notepad.notes.write.stored.bytes and notepad.revisions.stored.bytes. The mix is set with
+ * -Dunchanged=0.6 -Dfavorite=0.2 (the rest edit content) and -Dduplicates=0.3.
+ *
+ * Usage, from backend/:
+ *   mvn -q compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ *   DATABASE_URL=jdbc:postgresql://localhost:5432/notepad \
+ *   java -cp target/classes:$(cat target/cp.txt) scripts/WriteAmplificationBenchmark.java
+ */
+public class WriteAmplificationBenchmark {
+
+    private static final int NOTES = Integer.getInteger("notes", 500);
+    private static final int SAVES = Integer.getInteger("saves", 5000);
+    private static final int CONTENT_LENGTH = Integer.getInteger("contentLength", 4096);
+    private static final int MIN_SHARED_LENGTH = Integer.getInteger("minSharedLength", 1024);
+    private static final double UNCHANGED = Double.parseDouble(System.getProperty("unchanged", "0.6"));
+    private static final double FAVORITE = Double.parseDouble(System.getProperty("favorite", "0.2"));
+    private static final double DUPLICATES = Double.parseDouble(System.getProperty("duplicates", "0.3"));
+
+    private static final String URL = env("DATABASE_URL", "jdbc:postgresql://localhost:5432/notepad");
+    private static final String USERNAME = env("DATABASE_USERNAME", "postgres");
+    private static final String PASSWORD = env("DATABASE_PASSWORD", "postgres");
+    private static final String WAL_POSITION = "SELECT pg_wal_lsn_diff(pg_current_wal_lsn(), '0/0')::bigint";
+
+    public static void main(String[] args) throws Exception {
+        Flyway.configure().dataSource(URL, USERNAME, PASSWORD).locations("classpath:db/migration")
+                .baselineOnMigrate(true).baselineVersion("1").configuration(FlywayConfig.SESSION_LOCK)
+                .load().migrate();
+        Workload workload = workload();
+
+        Result baseline;
+        try (Connection connection = DriverManager.getConnection(URL, USERNAME, PASSWORD)) {
+            connection.setAutoCommit(true);
+            baseline = replay(connection, workload);
+        }
+        Result service = service(workload, false);
+        Result bodies = service(workload, true);
+
+        System.out.printf("%-9s %14s %14s %10s %10s %14s%n", "", "requested", "WAL bytes", "ratio", "skipped",
+                "stored ratio");
+        baseline.print("baseline");
+        service.print("service");
+        bodies.print("bodies");
+        System.out.printf("WAL reduction vs baseline: service %.1f%%, bodies %.1f%%%n",
+                100.0 * (baseline.walBytes - service.walBytes) / baseline.walBytes,
+                100.0 * (baseline.walBytes - bodies.walBytes) / baseline.walBytes);
+    }
+
+    private record Save(int note, String title, String content, boolean favorite) {
+    }
+
+    private record Workload(List<String> contents, List<Save> saves) {
+    }
+
+    // skipped and storedRatio are -1 where the baseline has no equivalent
+    private record Result(long requestedBytes, long walBytes, long skipped, double storedRatio) {
+        void print(String label) {
+            System.out.printf("%-9s %14d %14d %10.2f %10s %14s%n", label, requestedBytes, walBytes,
+                    (double) walBytes / requestedBytes, skipped < 0 ? "-" : Long.toString(skipped),
+                    storedRatio < 0 ? "-" : String.format("%.2f", storedRatio));
+        }
+    }
+
+    // A share of the notes start from the same template body; saves are retries, favorite toggles or typing
+    private static Workload workload() {
+        Random random = new Random(42);
+        String template = text(random, CONTENT_LENGTH);
+        List<String> initial = new ArrayList<>();
+        for (int i = 0; i < NOTES; i++) {
+            initial.add(random.nextDouble() < DUPLICATES ? template : text(random, CONTENT_LENGTH));
+        }
+
+        List<String> contents = new ArrayList<>(initial);
+        List<Boolean> favorites = new ArrayList<>();
+        initial.forEach(content -> favorites.add(false));
+        List<Save> saves = new ArrayList<>(SAVES);
+        for (int i = 0; i < SAVES; i++) {
+            int index = random.nextInt(NOTES);
+            double kind = random.nextDouble();
+            String content = contents.get(index);
+            boolean favorite = favorites.get(index);
+            if (kind < UNCHANGED) {
+                // Autosave retry or save without edits
+            } else if (kind < UNCHANGED + FAVORITE) {
+                favorite = !favorite;
+            } else {
+                content = edit(random, content);
+            }
+            saves.add(new Save(index, "Note " + index, content, favorite));
+            contents.set(index, content);
+            favorites.set(index, favorite);
+        }
+        return new Workload(initial, saves);
+    }
+
+    private static Result replay(Connection connection, Workload workload) throws Exception {
+        long userId = createUser(connection);
+        long requested = 0;
+        try {
+            long startLsn = walPosition(connection);
+            List<Long> notes = new ArrayList<>();
+            for (int i = 0; i < NOTES; i++) {
+                String content = workload.contents().get(i);
+                requested += utf8("Note " + i) + utf8(content);
+                notes.add(insertNote(connection, userId, "Note " + i, content));
+            }
+            for (Save save : workload.saves()) {
+                requested += utf8(save.title()) + utf8(save.content());
+                updateFullRow(connection, notes.get(save.note()), save.title(), save.content(), save.favorite());
+            }
+            return new Result(requested, walPosition(connection) - startLsn, -1, -1);
+        } finally {
+            try (Statement statement = connection.createStatement()) {
+                statement.executeUpdate("DELETE FROM notes WHERE user_id = " + userId);
+                statement.executeUpdate("DELETE FROM users WHERE id = " + userId);
+            }
+        }
+    }
+
+    private static Result service(Workload workload, boolean bodyStore) {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(NotepadApplication.class)
+                .properties(
+                        "server.port=0",
+                        "spring.main.banner-mode=off",
+                        "logging.level.root=WARN",
+                        "spring.datasource.url=" + URL,
+                        "spring.datasource.username=" + USERNAME,
+                        "spring.datasource.password=" + PASSWORD,
+                        // Nothing else writing to the database while WAL is measured
+                        "warmup.enabled=false",
+                        "notes.archive.enabled=false",
+                        "notes.stats.reconcile.initial-delay=86400000",
+                        "monitoring.jfr.enabled=false",
+                        "notes.write-behind.enabled=false",
+                        "notes.body-store.enabled=" + bodyStore,
+                        "notes.body-store.min-length=" + MIN_SHARED_LENGTH)
+                .run()) {
+            NoteService noteService = context.getBean(NoteService.class);
+            UserRepository userRepository = context.getBean(UserRepository.class);
+            MeterRegistry meterRegistry = context.getBean(MeterRegistry.class);
+            JdbcTemplate jdbc = new JdbcTemplate(context.getBean(DataSource.class));
+
+            User user = userRepository.save(
+                    new User("write-amplification-" + UUID.randomUUID() + "@example.com", "benchmark"));
+            List<Long> notes = new ArrayList<>();
+            try {
+                long startLsn = walPosition(jdbc);
+                for (int i = 0; i < NOTES; i++) {
+                    notes.add(noteService.createNote(new NoteRequest("Note " + i, workload.contents().get(i)), user)
+                            .getId());
+                }
+                for (Save save : workload.saves()) {
+                    NoteRequest request = new NoteRequest(save.title(), save.content());
+                    request.setIsFavorite(save.favorite());
+                    noteService.updateNote(notes.get(save.note()), request, user);
+                }
+                long walBytes = walPosition(jdbc) - startLsn;
+
+                double requested = counter(meterRegistry, "notepad.notes.write.requested.bytes");
+                double stored = counter(meterRegistry, "notepad.notes.write.stored.bytes")
+                        + meterRegistry.get("notepad.revisions.stored.bytes").summary().totalAmount();
+                return new Result((long) requested, walBytes,
+                        (long) counter(meterRegistry, "notepad.notes.updates.skipped"), stored / requested);
+            } finally {
+                // Through the service, so shared bodies are released
+                for (Long id : notes) {
+                    noteService.deleteNote(id, user);
+                }
+                userRepository.delete(user);
+            }
+        }
+    }
+
+    private static double counter(MeterRegistry meterRegistry, String name) {
+        return meterRegistry.get(name).counter().count();
+    }
+
+    private static long insertNote(Connection connection, long userId, String title, String content)
+            throws Exception {
+        try (PreparedStatement ps = connection.prepareStatement(
+                "INSERT INTO notes (title, content, user_id, created_at, is_favorite, current_revision, is_large, "
+                        + "content_length, position) VALUES (?, ?, ?, ?, false, 0, false, ?, ?) RETURNING id")) {
+            ps.setString(1, title);
+            ps.setString(2, content);
+            ps.setLong(3, userId);
+            ps.setTimestamp(4, Timestamp.valueOf(LocalDateTime.now()));
+            ps.setLong(5, content.length());
+            ps.setString(6, "a");
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                return rs.getLong(1);
+            }
+        }
+    }
+
+    // What Hibernate issued for every PUT before: all columns, whether they changed or not
+    private static void updateFullRow(Connection connection, long id, String title, String content, boolean favorite)
+            throws Exception {
+        try (PreparedStatement ps = connection.prepareStatement(
+                "UPDATE notes SET title = ?, content = ?, is_favorite = ?, updated_at = ?, current_revision = "
+                        + "current_revision + 1, is_large = false, content_length = ? WHERE id = ?")) {
+            ps.setString(1, title);
+            ps.setString(2, content);
+            ps.setBoolean(3, favorite);
+            ps.setTimestamp(4, Timestamp.valueOf(LocalDateTime.now()));
+            ps.setLong(5, content.length());
+            ps.setLong(6, id);
+            ps.executeUpdate();
+        }
+    }
+
+    private static long createUser(Connection connection) throws Exception {
+        try (PreparedStatement ps = connection.prepareStatement(
+                "INSERT INTO users (email, name, created_at) VALUES (?, 'benchmark', now()) RETURNING id")) {
+            ps.setString(1, "write-amplification-" + UUID.randomUUID() + "@example.com");
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                return rs.getLong(1);
+            }
+        }
+    }
+
+    private static long walPosition(Connection connection) throws Exception {
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery(WAL_POSITION)) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    private static long walPosition(JdbcTemplate jdbc) {
+        return jdbc.queryForObject(WAL_POSITION, Long.class);
+    }
+
+    // Typing: replace a short run of characters somewhere in the body
+    private static String edit(Random random, String content) {
+        int at = random.nextInt(Math.max(1, content.length() - 16));
+        return content.substring(0, at) + text(random, 16) + content.substring(Math.min(content.length(), at + 16));
+    }
+
+    private static String text(Random random, int length) {
+        StringBuilder text = new StringBuilder(length);
+        while (text.length() < length) {
+            text.append((char) ('a' + random.nextInt(26)));
+            if (random.nextInt(7) == 0) {
+                text.append(' ');
+            }
+        }
+        return text.substring(0, length);
+    }
+
+    private static long utf8(String value) {
+        return value.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    private static String env(String name, String defaultValue) {
+        String value = System.getenv(name);
+        return value != null && !value.isEmpty() ? value : defaultValue;
+    }
+}
@@ -0,0 +1,48 @@
+#!/usr/bin/env bash
+# Measures time-to-first-successful /health and /api/notes for a backend image.
+#
+# Usage: scripts/startup-benchmark.sh <image> [runs]
+#   ID_TOKEN   Firebase ID token used for /api/notes (required for the second measurement)
+#   ENV_FILE   env file passed to the container (default: ../.env)
+#
+# Example comparing the plain and cold-start images:
+#   docker build -t notepad-backend:plain backend
+#   docker build -t notepad-backend:coldstart -f backend/Dockerfile.coldstart backend
+#   ID_TOKEN=... backend/scripts/startup-benchmark.sh notepad-backend:plain 5
+#   ID_TOKEN=... backend/scripts/startup-benchmark.sh notepad-backend:coldstart 5
+
+set -euo pipefail
+
+IMAGE="${1:?image required}"
+RUNS="${2:-3}"
+ENV_FILE="${ENV_FILE:-$(dirname "$0")/../../.env}"
+PORT="${PORT:-18080}"
+
+now_ms() { date +%s%3N; }
+
+wait_for() {
+  local url="$1" header="$2" start="$3"
+  until curl -sf -o /dev/null ${header:+-H "$header"} "$url"; do
+    if (( $(now_ms) - start > 120000 )); then
+      echo "timeout"; return
+    fi
+    sleep 0.05
+  done
+  echo $(( $(now_ms) - start ))
+}
+
+echo "image=$IMAGE runs=$RUNS"
+printf "%-5s %-12s %-12s\n" run health_ms notes_ms
+
+for run in $(seq 1 "$RUNS"); do
+  start=$(now_ms)
+  container=$(docker run -d --rm -p "$PORT:8080" --env-file "$ENV_FILE" "$IMAGE")
+  health=$(wait_for "http://localhost:$PORT/health" "" "$start")
+  if [[ -n "${ID_TOKEN:-}" ]]; then
+    notes=$(wait_for "http://localhost:$PORT/api/notes" "Authorization: Bearer $ID_TOKEN" "$start")
+  else
+    notes="skipped"
+  fi
+  printf "%-5s %-12s %-12s\n" "$run" "$health" "$notes"
+  docker stop "$container" > /dev/null
+done
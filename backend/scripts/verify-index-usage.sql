@@ -0,0 +1,43 @@
+-- Asserts that every repository query uses the index created for it.
+-- Usage: psql "$DATABASE_URL" -v ON_ERROR_STOP=1 -f scripts/verify-index-usage.sql
+-- Sequential scans are disabled so the check also holds on small development databases.
+
+SET enable_seqscan = off;
+
+DO $$
+DECLARE
+    checks TEXT[][] := ARRAY[
+        ['SELECT * FROM notes WHERE user_id = 1 ORDER BY pinned DESC, position, id',
+         'idx_notes_user_pinned_order'],
+        ['SELECT * FROM notes WHERE user_id = 1 AND pinned = false AND (position, id) > (''a'', 1) ORDER BY position, id LIMIT 50',
+         'idx_notes_user_pinned_order'],
+        ['SELECT * FROM notes WHERE user_id = 1 AND is_favorite = true ORDER BY created_at DESC',
+         'idx_notes_user_favorite_created_at'],
+        ['SELECT * FROM notes WHERE user_id = 1 AND (lower(title) LIKE ''%a%'' OR lower(content) LIKE ''%a%'') ORDER BY created_at DESC',
+         'idx_notes_user_created_at'],
+        ['SELECT * FROM notes WHERE id = 1 AND user_id = 1',
+         'notes_pkey'],
+        -- Unique constraint names differ on databases first created by Hibernate, so any index will do
+        ['SELECT * FROM users WHERE email = ''a@example.com''',
+         '"Index Name"'],
+        ['SELECT * FROM users WHERE firebase_uid = ''uid''',
+         '"Index Name"']
+    ];
+    plan TEXT;
+BEGIN
+    FOR i IN 1 .. array_length(checks, 1) LOOP
+        EXECUTE 'EXPLAIN (FORMAT JSON) ' || checks[i][1] INTO plan;
+        IF position(checks[i][2] IN plan) = 0 THEN
+            RAISE EXCEPTION 'Query does not use %: %', checks[i][2], checks[i][1];
+        END IF;
+        RAISE NOTICE 'OK % -> %', checks[i][2], checks[i][1];
+    END LOOP;
+
+    -- The note list is read in index order, not sorted after the scan
+    EXECUTE 'EXPLAIN (FORMAT JSON) SELECT * FROM notes WHERE user_id = 1 ORDER BY pinned DESC, position, id' INTO plan;
+    IF position('"Sort"' IN plan) > 0 THEN
+        RAISE EXCEPTION 'The note list is sorted instead of read in index order';
+    END IF;
+    RAISE NOTICE 'OK note list in index order';
+END
+$$;
@@ -0,0 +1,83 @@
+package com.leopad.notepad.collab;
+
+import com.google.firebase.auth.FirebaseToken;
+import com.leopad.notepad.entity.Note;
+import com.leopad.notepad.entity.User;
+import com.leopad.notepad.service.NoteService;
+import com.leopad.notepad.service.UserService;
+import com.leopad.notepad.sharding.ShardDirectory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Resolves the authenticated user and the note of /api/notes/{id}/collab before the upgrade, so a
+ * missing note is a 404 and a large note (streamed, not editable in place) a 409.
+ */
+@Component
+public class CollaborationHandshakeInterceptor implements HandshakeInterceptor {
+
+    private static final Logger logger = LoggerFactory.getLogger(CollaborationHandshakeInterceptor.class);
+    private static final Pattern PATH = Pattern.compile("/api/notes/(\\d+)/collab");
+
+    private final UserService userService;
+    private final NoteService noteService;
+    private final ShardDirectory shardDirectory;
+
+    public CollaborationHandshakeInterceptor(UserService userService, NoteService noteService,
+                                             ShardDirectory shardDirectory) {
+        this.userService = userService;
+        this.noteService = noteService;
+        this.shardDirectory = shardDirectory;
+    }
+
+    @Override
+    public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                   WebSocketHandler wsHandler, Map<String, Object> attributes) {
+        Matcher matcher = PATH.matcher(request.getURI().getPath());
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (!matcher.matches() || authentication == null
+                || !(authentication.getCredentials() instanceof FirebaseToken firebaseToken)) {
+            response.setStatusCode(HttpStatus.FORBIDDEN);
+            return false;
+        }
+
+        String name = firebaseToken.getName();
+        if (name == null || name.isEmpty()) {
+            name = firebaseToken.getEmail().split("@")[0];
+        }
+        User user = userService.findOrCreateUserByFirebaseUid(firebaseToken.getUid(), firebaseToken.getEmail(), name);
+        Long noteId = Long.parseLong(matcher.group(1));
+        Optional<Note> note = shardDirectory.callForUser(user.getId(), () -> noteService.findByIdAndUser(noteId, user));
+        if (note.isEmpty()) {
+            response.setStatusCode(HttpStatus.NOT_FOUND);
+            return false;
+        }
+        if (note.get().getIsLarge()) {
+            response.setStatusCode(HttpStatus.CONFLICT);
+            return false;
+        }
+
+        logger.debug("Collaborative editing handshake for note {} by user {}", noteId, user.getId());
+        attributes.put(CollaborationService.USER_ATTRIBUTE, user);
+        attributes.put(CollaborationService.NOTE_ID_ATTRIBUTE, noteId);
+        return true;
+    }
+
+    @Override
+    public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                               WebSocketHandler wsHandler, Exception exception) {
+    }
+}
@@ -0,0 +1,343 @@
+package com.leopad.notepad.collab;
+
+import com.leopad.notepad.entity.Note;
+import com.leopad.notepad.entity.User;
+import com.leopad.notepad.service.NoteService;
+import com.leopad.notepad.sharding.ShardDirectory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Collaborative editing of note content. Each note with open sessions has one {@link CrdtText}
+ * replica on this instance; a joining session receives its full state and a client id, and
+ * every update a session sends is merged into the replica and forwarded unchanged to the other
+ * sessions of the note. The merged text is written to the note every
+ * {@code notes.collab.snapshot-interval} and when the last session leaves. A snapshot only
+ * replaces the text the document last loaded or saved; if another write (a REST update, or a
+ * document of the same note on another instance) has replaced it, that change is merged into the
+ * document as edits of the server instead, and saved with the sessions' edits on the next pass.
+ *
+ * <p>Messages are binary frames: {@code 0 clientId state} from the server on join, and
+ * {@code 1 update} in both directions, with the encodings of {@link CrdtText}. Sessions of a note
+ * should reach the same instance to see each other's edits live.
+ */
+@Service
+public class CollaborationService {
+
+    static final String USER_ATTRIBUTE = "collab.user";
+    static final String NOTE_ID_ATTRIBUTE = "collab.noteId";
+    static final byte MESSAGE_WELCOME = 0;
+    static final byte MESSAGE_UPDATE = 1;
+
+    private static final Logger logger = LoggerFactory.getLogger(CollaborationService.class);
+    private static final String DOCUMENT_ATTRIBUTE = "collab.document";
+    private static final String CLIENT_ATTRIBUTE = "collab.client";
+    // The initial content is inserted by the server as client 0
+    private static final int SERVER_CLIENT = 0;
+
+    @Autowired
+    private NoteService noteService;
+
+    @Autowired
+    private ShardDirectory shardDirectory;
+
+    private final Map<Long, Document> documents = new ConcurrentHashMap<>();
+    private final Counter updates;
+    private final Counter snapshots;
+
+    @Value("${notes.collab.max-length:200000}")
+    private int maxLength;
+
+    private static final class Document {
+        final Long noteId;
+        final User owner;
+        final CrdtText text = new CrdtText(SERVER_CLIENT);
+        final Set<WebSocketSession> sessions = new HashSet<>();
+        // Serializes snapshots, so an older text is never written after a newer one
+        final Object snapshotLock = new Object();
+        int nextClient = SERVER_CLIENT + 1;
+        boolean dirty;
+        boolean closed;
+        // The stored content as last loaded or saved, and the state that held it; under snapshotLock
+        String base;
+        byte[] baseState;
+
+        Document(Long noteId, User owner, String content) {
+            this.noteId = noteId;
+            this.owner = owner;
+            this.base = content != null ? content : "";
+            if (!base.isEmpty()) {
+                text.insert(0, base);
+            }
+            this.baseState = text.encodeState();
+        }
+    }
+
+    public CollaborationService(MeterRegistry meterRegistry) {
+        this.updates = Counter.builder("notepad.collab.updates")
+                .description("Updates received from collaborative editing sessions")
+                .register(meterRegistry);
+        this.snapshots = Counter.builder("notepad.collab.snapshots")
+                .description("Merged collaborative edits written to notes")
+                .register(meterRegistry);
+        Gauge.builder("notepad.collab.documents", documents, Map::size)
+                .description("Notes with open collaborative editing sessions on this instance")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Adds the session to the note's document, opening it from the stored note if needed, and
+     * sends it the state. False if the user has no such inline note.
+     */
+    public boolean join(WebSocketSession session, User user, Long noteId) throws IOException {
+        while (true) {
+            Document document = documents.computeIfAbsent(noteId, id -> open(user, id));
+            if (document == null || !document.owner.getId().equals(user.getId())) {
+                return false;
+            }
+            synchronized (document) {
+                if (!document.closed) {
+                    int client = document.nextClient++;
+                    session.getAttributes().put(DOCUMENT_ATTRIBUTE, document);
+                    session.getAttributes().put(CLIENT_ATTRIBUTE, client);
+                    session.sendMessage(new BinaryMessage(welcome(client, document.text.encodeState())));
+                    document.sessions.add(session);
+                    logger.debug("Session {} joined note {} as client {}", session.getId(), noteId, client);
+                    return true;
+                }
+            }
+            // Closed by the last session leaving in the meantime; open it again from the note
+            documents.remove(noteId, document);
+        }
+    }
+
+    private Document open(User user, Long noteId) {
+        Optional<Note> note = shardDirectory.callForUser(user.getId(), () -> noteService.findByIdAndUser(noteId, user));
+        if (note.isEmpty() || note.get().getIsLarge()) {
+            return null;
+        }
+        logger.info("Opened note {} for collaborative editing", noteId);
+        return new Document(noteId, user, note.get().getContent());
+    }
+
+    /**
+     * Merges an update from the session and forwards it to the note's other sessions. Throws
+     * IllegalArgumentException for malformed updates, inserts under another client's id and
+     * updates that would make the note longer than {@code notes.collab.max-length}.
+     */
+    public void receive(WebSocketSession session, byte[] message) {
+        Document document = (Document) session.getAttributes().get(DOCUMENT_ATTRIBUTE);
+        int client = (Integer) session.getAttributes().get(CLIENT_ATTRIBUTE);
+        if (message.length == 0 || message[0] != MESSAGE_UPDATE) {
+            throw new IllegalArgumentException("Unknown message type");
+        }
+        List<CrdtText.Op> ops = CrdtText.decode(Arrays.copyOfRange(message, 1, message.length));
+        int inserted = 0;
+        for (CrdtText.Op op : ops) {
+            if (op instanceof CrdtText.Insert insert) {
+                if (insert.client() != client || insert.text() == null) {
+                    throw new IllegalArgumentException("Inserts must use the session's client id " + client);
+                }
+                inserted += insert.length();
+            }
+        }
+
+        synchronized (document) {
+            if (document.text.length() + inserted > maxLength) {
+                throw new IllegalArgumentException("Note would exceed " + maxLength + " characters");
+            }
+            document.text.integrate(ops);
+            document.dirty = true;
+            // Sent under the lock, so every session receives updates in the order they were merged
+            BinaryMessage forward = new BinaryMessage(message);
+            for (WebSocketSession other : document.sessions) {
+                if (other != session) {
+                    send(other, forward);
+                }
+            }
+        }
+        updates.increment();
+    }
+
+    // Writes what is left when the last session leaves, then drops the document
+    public void leave(WebSocketSession session) {
+        Document document = (Document) session.getAttributes().get(DOCUMENT_ATTRIBUTE);
+        if (document == null) {
+            return;
+        }
+        synchronized (document) {
+            document.sessions.remove(session);
+            if (!document.sessions.isEmpty()) {
+                return;
+            }
+        }
+        snapshot(document);
+        synchronized (document) {
+            // Someone joined while the text was being written
+            if (!document.sessions.isEmpty()) {
+                return;
+            }
+            document.closed = true;
+        }
+        documents.remove(document.noteId, document);
+        logger.info("Closed collaborative editing of note {}", document.noteId);
+    }
+
+    @Scheduled(initialDelayString = "${notes.collab.snapshot-interval:5000}",
+            fixedDelayString = "${notes.collab.snapshot-interval:5000}")
+    public void snapshotAll() {
+        for (Document document : documents.values()) {
+            snapshot(document);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        snapshotAll();
+    }
+
+    private void snapshot(Document document) {
+        synchronized (document.snapshotLock) {
+            String text;
+            byte[] state;
+            synchronized (document) {
+                if (!document.dirty) {
+                    return;
+                }
+                text = document.text.text();
+                state = document.text.encodeState();
+                document.dirty = false;
+            }
+            try {
+                Long userId = document.owner.getId();
+                Optional<String> stored = shardDirectory.callForUser(userId,
+                        () -> noteService.saveCollaborativeContent(document.noteId, userId, document.base, text));
+                if (stored.isEmpty()) {
+                    close(document, "Note is no longer available for collaborative editing");
+                } else if (stored.get().equals(text)) {
+                    document.base = text;
+                    document.baseState = state;
+                    snapshots.increment();
+                } else {
+                    merge(document, stored.get());
+                }
+            } catch (RuntimeException e) {
+                synchronized (document) {
+                    document.dirty = true;
+                }
+                logger.warn("Failed to save collaborative edits of note {}: {}", document.noteId, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Another write replaced the text last saved: replays it as server edits on a replica of that
+     * text, so it merges with the sessions' edits since like any concurrent update, and sends it
+     * to the sessions.
+     */
+    private void merge(Document document, String stored) {
+        CrdtText replica = new CrdtText(SERVER_CLIENT);
+        replica.apply(document.baseState);
+        String base = document.base;
+        int shorter = Math.min(base.length(), stored.length());
+        int prefix = 0;
+        while (prefix < shorter && base.charAt(prefix) == stored.charAt(prefix)) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < shorter - prefix
+                && base.charAt(base.length() - 1 - suffix) == stored.charAt(stored.length() - 1 - suffix)) {
+            suffix++;
+        }
+        List<byte[]> edits = new ArrayList<>(2);
+        if (base.length() - suffix > prefix) {
+            edits.add(replica.delete(prefix, base.length() - suffix - prefix));
+        }
+        if (stored.length() - suffix > prefix) {
+            edits.add(replica.insert(prefix, stored.substring(prefix, stored.length() - suffix)));
+        }
+
+        synchronized (document) {
+            for (byte[] edit : edits) {
+                document.text.apply(edit);
+                BinaryMessage message = new BinaryMessage(update(edit));
+                for (WebSocketSession session : document.sessions) {
+                    send(session, message);
+                }
+            }
+            document.dirty = true;
+        }
+        document.base = stored;
+        document.baseState = replica.encodeState();
+        logger.info("Merged a concurrent write into collaborative editing of note {}", document.noteId);
+    }
+
+    // The note was deleted or made large; the sessions' edits can no longer be saved
+    private void close(Document document, String reason) {
+        List<WebSocketSession> sessions;
+        synchronized (document) {
+            document.closed = true;
+            sessions = new ArrayList<>(document.sessions);
+            document.sessions.clear();
+        }
+        documents.remove(document.noteId, document);
+        for (WebSocketSession session : sessions) {
+            try {
+                session.close(CloseStatus.GOING_AWAY.withReason(reason));
+            } catch (IOException e) {
+                logger.debug("Failed to close session {}: {}", session.getId(), e.getMessage());
+            }
+        }
+    }
+
+    private static void send(WebSocketSession session, BinaryMessage message) {
+        try {
+            session.sendMessage(message);
+        } catch (IOException | RuntimeException e) {
+            // A slow or broken session must not hold up the others; it resyncs by joining again
+            logger.debug("Dropping session {}: {}", session.getId(), e.getMessage());
+            try {
+                session.close(CloseStatus.SESSION_NOT_RELIABLE);
+            } catch (IOException ignored) {
+                // Already gone
+            }
+        }
+    }
+
+    private static byte[] update(byte[] update) {
+        byte[] message = new byte[update.length + 1];
+        message[0] = MESSAGE_UPDATE;
+        System.arraycopy(update, 0, message, 1, update.length);
+        return message;
+    }
+
+    private static byte[] welcome(int client, byte[] state) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(state.length + 6);
+        out.write(MESSAGE_WELCOME);
+        CrdtText.writeVarInt(out, client);
+        out.writeBytes(state);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,75 @@
+package com.leopad.notepad.collab;
+
+import com.leopad.notepad.entity.User;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.BinaryWebSocketHandler;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Binary frames of /api/notes/{id}/collab; the handshake interceptor has already checked access
+@Component
+public class CollaborationWebSocketHandler extends BinaryWebSocketHandler {
+
+    private static final Logger logger = LoggerFactory.getLogger(CollaborationWebSocketHandler.class);
+
+    private final CollaborationService collaborationService;
+    private final int sendTimeLimit;
+    private final int sendBufferSize;
+    // Raw session id -> decorated session, so sends from several threads are serialized
+    private final Map<String, WebSocketSession> sessions = new ConcurrentHashMap<>();
+
+    public CollaborationWebSocketHandler(CollaborationService collaborationService,
+                                         @Value("${notes.collab.send-time-limit:10000}") int sendTimeLimit,
+                                         @Value("${notes.collab.send-buffer-size:1048576}") int sendBufferSize) {
+        this.collaborationService = collaborationService;
+        this.sendTimeLimit = sendTimeLimit;
+        this.sendBufferSize = sendBufferSize;
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+        WebSocketSession decorated = new ConcurrentWebSocketSessionDecorator(session, sendTimeLimit, sendBufferSize);
+        sessions.put(session.getId(), decorated);
+        User user = (User) session.getAttributes().get(CollaborationService.USER_ATTRIBUTE);
+        Long noteId = (Long) session.getAttributes().get(CollaborationService.NOTE_ID_ATTRIBUTE);
+        if (!collaborationService.join(decorated, user, noteId)) {
+            decorated.close(CloseStatus.POLICY_VIOLATION.withReason("Note is not available for collaborative editing"));
+        }
+    }
+
+    @Override
+    protected void handleBinaryMessage(WebSocketSession session, BinaryMessage message) throws Exception {
+        WebSocketSession decorated = sessions.get(session.getId());
+        ByteBuffer payload = message.getPayload();
+        byte[] bytes = new byte[payload.remaining()];
+        payload.get(bytes);
+        try {
+            collaborationService.receive(decorated, bytes);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Rejected collaborative update from session {}: {}", session.getId(), e.getMessage());
+            decorated.close(CloseStatus.BAD_DATA.withReason(e.getMessage()));
+        }
+    }
+
+    @Override
+    public void handleTransportError(WebSocketSession session, Throwable exception) {
+        logger.debug("Transport error on session {}: {}", session.getId(), exception.getMessage());
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        WebSocketSession decorated = sessions.remove(session.getId());
+        if (decorated != null) {
+            collaborationService.leave(decorated);
+        }
+    }
+}
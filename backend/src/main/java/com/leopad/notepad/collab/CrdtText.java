@@ -0,0 +1,500 @@
+package com.leopad.notepad.collab;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Replicated text as a sequence CRDT (RGA). Every character has an id {@code (client, clock)}
+ * with a Lamport clock and is inserted after a left origin; concurrent inserts after the same
+ * origin are ordered by descending id and deleted characters stay as tombstones, so replicas
+ * that have applied the same operations hold the same text in any delivery order.
+ *
+ * <p>Characters typed in sequence by one client are stored as a single run (one id, one origin,
+ * one string), and deleted runs keep only their ids and length, so metadata costs a few dozen
+ * bytes per run rather than per character. Operations are exchanged in a compact binary
+ * encoding of varints and modified UTF-8; see {@link #decode(byte[])}. Not thread-safe.
+ */
+public final class CrdtText {
+
+    /** Origin client of a character inserted at the start of the text. */
+    public static final int START = -1;
+
+    private static final int INSERT = 1;
+    private static final int DELETE = 2;
+    private static final int TOMBSTONE = 3;
+    // Adjacent runs are merged again once the run count has grown by this much since the last pass
+    private static final int COMPACT_SLACK = 1024;
+
+    public sealed interface Op permits Insert, Delete {
+    }
+
+    /**
+     * Characters {@code clock .. clock + length - 1} of {@code client}, the first placed after
+     * the origin character and each following one after its predecessor. {@code text} is null
+     * for a run that was already deleted (only sent as part of a full state).
+     */
+    public record Insert(int client, int clock, int originClient, int originClock, int length, String text)
+            implements Op {
+    }
+
+    /** Deletes characters {@code clock .. clock + length - 1} of {@code client}. */
+    public record Delete(int client, int clock, int length) implements Op {
+    }
+
+    private static final class Item {
+        final int client;
+        final int clock;
+        final int originClient;
+        final int originClock;
+        int length;
+        // Null once deleted
+        String text;
+        Item next;
+
+        Item(int client, int clock, int originClient, int originClock, int length, String text) {
+            this.client = client;
+            this.clock = clock;
+            this.originClient = originClient;
+            this.originClock = originClock;
+            this.length = length;
+            this.text = text;
+        }
+    }
+
+    private final int localClient;
+    // Runs of every client ordered by first clock, to find an id by binary search. A list rather
+    // than a TreeMap: runs are mostly appended, and it costs 4 bytes per run instead of ~56
+    private final Map<Integer, ArrayList<Item>> ids = new HashMap<>();
+    // Operations whose origin or target has not arrived yet
+    private final List<Op> pending = new ArrayList<>();
+    private Item head;
+    private int clock;
+    private int length;
+    private int items;
+    private int compactAt = COMPACT_SLACK;
+
+    public CrdtText(int localClient) {
+        this.localClient = localClient;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    /** Stored runs, visible and deleted. */
+    public int runs() {
+        return items;
+    }
+
+    public int pendingOps() {
+        return pending.size();
+    }
+
+    public String text() {
+        StringBuilder text = new StringBuilder(length);
+        for (Item item = head; item != null; item = item.next) {
+            if (item.text != null) {
+                text.append(item.text);
+            }
+        }
+        return text.toString();
+    }
+
+    /** Inserts {@code text} at visible position {@code index} and returns the encoded update. */
+    public byte[] insert(int index, String text) {
+        if (index < 0 || index > length) {
+            throw new IndexOutOfBoundsException("Index " + index + " outside 0.." + length);
+        }
+        if (text.isEmpty()) {
+            return new byte[0];
+        }
+        int originClient = START;
+        int originClock = 0;
+        if (index > 0) {
+            int offset = index - 1;
+            Item item = head;
+            while (item.text == null || offset >= item.length) {
+                offset -= item.text != null ? item.length : 0;
+                item = item.next;
+            }
+            originClient = item.client;
+            originClock = item.clock + offset;
+        }
+        Insert op = new Insert(localClient, clock + 1, originClient, originClock, text.length(), text);
+        integrate(op);
+        compactIfGrown();
+        return encode(List.of(op));
+    }
+
+    /** Deletes {@code count} visible characters from {@code index} and returns the encoded update. */
+    public byte[] delete(int index, int count) {
+        if (index < 0 || count < 0 || index + count > length) {
+            throw new IndexOutOfBoundsException("Range " + index + "+" + count + " outside 0.." + length);
+        }
+        List<Op> ops = new ArrayList<>();
+        int offset = index;
+        for (Item item = head; item != null && count > 0; item = item.next) {
+            if (item.text == null) {
+                continue;
+            }
+            if (offset >= item.length) {
+                offset -= item.length;
+                continue;
+            }
+            int take = Math.min(item.length - offset, count);
+            ops.add(new Delete(item.client, item.clock + offset, take));
+            count -= take;
+            offset = 0;
+        }
+        // Collected first: applying splits the runs being walked
+        for (Op op : ops) {
+            integrate(op);
+        }
+        compactIfGrown();
+        return encode(ops);
+    }
+
+    /** Applies an encoded update from another replica. */
+    public void apply(byte[] update) {
+        integrate(decode(update));
+    }
+
+    /**
+     * Applies operations from another replica; ones that depend on operations not seen yet are
+     * held back until those arrive. Duplicates are ignored.
+     */
+    public void integrate(List<Op> ops) {
+        boolean progress = false;
+        for (Op op : ops) {
+            if (integrate(op)) {
+                progress = true;
+            } else {
+                pending.add(op);
+            }
+        }
+        while (progress && !pending.isEmpty()) {
+            progress = pending.removeIf(this::integrate);
+        }
+        compactIfGrown();
+    }
+
+    private boolean integrate(Op op) {
+        return op instanceof Insert insert ? integrateInsert(insert) : integrateDelete((Delete) op);
+    }
+
+    private boolean integrateInsert(Insert op) {
+        if (find(op.client(), op.clock()) != null) {
+            return true;
+        }
+        ArrayList<Item> clientIds = ids.computeIfAbsent(op.client(), client -> new ArrayList<>());
+        int following = floor(clientIds, op.clock()) + 1;
+        if (following < clientIds.size() && clientIds.get(following).clock < op.clock() + op.length()) {
+            throw new IllegalArgumentException("Insert overlaps characters of client " + op.client());
+        }
+
+        Item left = null;
+        if (op.originClient() != START) {
+            Item origin = find(op.originClient(), op.originClock());
+            if (origin == null) {
+                return false;
+            }
+            int offset = op.originClock() - origin.clock + 1;
+            if (offset < origin.length) {
+                split(origin, offset);
+            }
+            left = origin;
+        }
+        // Concurrent inserts after the same origin (and everything inserted after them) have
+        // greater ids and come first
+        Item right = left == null ? head : left.next;
+        while (right != null && (right.clock > op.clock() || right.clock == op.clock() && right.client > op.client())) {
+            left = right;
+            right = right.next;
+        }
+
+        Item item = new Item(op.client(), op.clock(), op.originClient(), op.originClock(), op.length(), op.text());
+        item.next = right;
+        if (left == null) {
+            head = item;
+        } else {
+            left.next = item;
+        }
+        // Splitting the origin may have shifted this client's runs
+        clientIds.add(floor(clientIds, item.clock) + 1, item);
+        items++;
+        clock = Math.max(clock, op.clock() + op.length() - 1);
+        if (op.text() != null) {
+            length += op.length();
+        }
+        return true;
+    }
+
+    private boolean integrateDelete(Delete op) {
+        int end = op.clock() + op.length();
+        for (int at = op.clock(); at < end; ) {
+            Item item = find(op.client(), at);
+            if (item == null) {
+                return false;
+            }
+            at = item.clock + item.length;
+        }
+        for (int at = op.clock(); at < end; ) {
+            Item item = find(op.client(), at);
+            if (item.clock < at) {
+                item = split(item, at - item.clock);
+            }
+            if (item.clock + item.length > end) {
+                split(item, end - item.clock);
+            }
+            if (item.text != null) {
+                length -= item.length;
+                item.text = null;
+            }
+            at = item.clock + item.length;
+        }
+        return true;
+    }
+
+    private Item find(int client, int clock) {
+        ArrayList<Item> clientIds = ids.get(client);
+        if (clientIds == null) {
+            return null;
+        }
+        int index = floor(clientIds, clock);
+        Item item = index >= 0 ? clientIds.get(index) : null;
+        return item != null && clock < item.clock + item.length ? item : null;
+    }
+
+    // Index of the last run starting at or before `clock`, or -1
+    private static int floor(ArrayList<Item> runs, int clock) {
+        int low = 0;
+        int high = runs.size() - 1;
+        // Fast path: the newest run, where typing happens
+        if (high >= 0 && runs.get(high).clock <= clock) {
+            return high;
+        }
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (runs.get(middle).clock <= clock) {
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return high;
+    }
+
+    // Cuts the run after `offset` characters and returns the second part
+    private Item split(Item item, int offset) {
+        Item right = new Item(item.client, item.clock + offset, item.client, item.clock + offset - 1,
+                item.length - offset, item.text != null ? item.text.substring(offset) : null);
+        if (item.text != null) {
+            item.text = item.text.substring(0, offset);
+        }
+        item.length = offset;
+        right.next = item.next;
+        item.next = right;
+        ArrayList<Item> clientIds = ids.get(item.client);
+        clientIds.add(floor(clientIds, item.clock) + 1, right);
+        items++;
+        return right;
+    }
+
+    private void compactIfGrown() {
+        if (items >= compactAt) {
+            compact();
+            compactAt = items * 2 + COMPACT_SLACK;
+        }
+    }
+
+    // Joins runs that were split by concurrent edits or typed one character at a time
+    private void compact() {
+        for (Item item = head; item != null; item = item.next) {
+            Item next = item.next;
+            if (next == null || !continues(item, next)) {
+                continue;
+            }
+            StringBuilder text = item.text != null ? new StringBuilder(item.text) : null;
+            while (next != null && continues(item, next)) {
+                if (text != null) {
+                    text.append(next.text);
+                }
+                item.length += next.length;
+                // Marks the run as merged, so it is dropped from the id lists below
+                next.length = 0;
+                items--;
+                next = next.next;
+            }
+            item.next = next;
+            if (text != null) {
+                item.text = text.toString();
+            }
+        }
+        for (ArrayList<Item> clientIds : ids.values()) {
+            clientIds.removeIf(item -> item.length == 0);
+            clientIds.trimToSize();
+        }
+    }
+
+    private static boolean continues(Item item, Item next) {
+        int last = item.clock + item.length - 1;
+        return next.client == item.client && next.clock == last + 1
+                && next.originClient == item.client && next.originClock == last
+                && (next.text == null) == (item.text == null);
+    }
+
+    /**
+     * The whole replica, tombstones included, as one update: a new replica that applies it
+     * holds the same text and can apply any later update.
+     */
+    public byte[] encodeState() {
+        List<Op> ops = new ArrayList<>(items + pending.size());
+        for (Item item = head; item != null; item = item.next) {
+            ops.add(new Insert(item.client, item.clock, item.originClient, item.originClock, item.length, item.text));
+        }
+        ops.addAll(pending);
+        return encode(ops);
+    }
+
+    /**
+     * Encodes operations as a sequence of
+     * <pre>
+     *   1 client clock origin+1 [originClock] length char*   insert
+     *   3 client clock origin+1 [originClock] length         insert of deleted characters
+     *   2 client clock length                                delete
+     * </pre>
+     * with every number an unsigned LEB128 varint, originClock omitted for inserts at the
+     * start, and characters in modified UTF-8 (one to three bytes each, lone surrogates kept).
+     */
+    public static byte[] encode(List<Op> ops) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (Op op : ops) {
+            if (op instanceof Insert insert) {
+                writeVarInt(out, insert.text() != null ? INSERT : TOMBSTONE);
+                writeVarInt(out, insert.client());
+                writeVarInt(out, insert.clock());
+                writeVarInt(out, insert.originClient() + 1);
+                if (insert.originClient() != START) {
+                    writeVarInt(out, insert.originClock());
+                }
+                writeVarInt(out, insert.length());
+                if (insert.text() != null) {
+                    writeChars(out, insert.text());
+                }
+            } else {
+                Delete delete = (Delete) op;
+                writeVarInt(out, DELETE);
+                writeVarInt(out, delete.client());
+                writeVarInt(out, delete.clock());
+                writeVarInt(out, delete.length());
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /** Decodes an update; throws IllegalArgumentException if it is malformed. */
+    public static List<Op> decode(byte[] update) {
+        int[] position = {0};
+        List<Op> ops = new ArrayList<>();
+        while (position[0] < update.length) {
+            int type = readVarInt(update, position);
+            int client = readVarInt(update, position);
+            int clock = readVarInt(update, position);
+            if (client < 0 || clock < 1) {
+                throw new IllegalArgumentException("Invalid id " + client + ":" + clock);
+            }
+            if (type == DELETE) {
+                ops.add(new Delete(client, clock, readLength(update, position, clock)));
+            } else if (type == INSERT || type == TOMBSTONE) {
+                int originClient = readVarInt(update, position) - 1;
+                int originClock = originClient != START ? readVarInt(update, position) : 0;
+                if (originClient < START || originClock < 0) {
+                    throw new IllegalArgumentException("Invalid origin " + originClient + ":" + originClock);
+                }
+                int length = readLength(update, position, clock);
+                String text = type == INSERT ? readChars(update, position, length) : null;
+                ops.add(new Insert(client, clock, originClient, originClock, length, text));
+            } else {
+                throw new IllegalArgumentException("Unknown operation " + type);
+            }
+        }
+        return ops;
+    }
+
+    public static void writeVarInt(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    public static int readVarInt(byte[] in, int[] position) {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            if (position[0] >= in.length) {
+                throw new IllegalArgumentException("Truncated update");
+            }
+            byte b = in[position[0]++];
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Varint too long");
+    }
+
+    private static int readLength(byte[] in, int[] position, int clock) {
+        int length = readVarInt(in, position);
+        if (length < 1 || clock > Integer.MAX_VALUE - length) {
+            throw new IllegalArgumentException("Invalid length " + length);
+        }
+        return length;
+    }
+
+    private static void writeChars(ByteArrayOutputStream out, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c != 0 && c < 0x80) {
+                out.write(c);
+            } else if (c < 0x800) {
+                out.write(0xC0 | (c >> 6));
+                out.write(0x80 | (c & 0x3F));
+            } else {
+                out.write(0xE0 | (c >> 12));
+                out.write(0x80 | ((c >> 6) & 0x3F));
+                out.write(0x80 | (c & 0x3F));
+            }
+        }
+    }
+
+    private static String readChars(byte[] in, int[] position, int length) {
+        if (length > in.length - position[0]) {
+            throw new IllegalArgumentException("Truncated update");
+        }
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            int b = next(in, position);
+            if (b < 0x80) {
+                chars[i] = (char) b;
+            } else if ((b & 0xE0) == 0xC0) {
+                chars[i] = (char) (((b & 0x1F) << 6) | (next(in, position) & 0x3F));
+            } else if ((b & 0xF0) == 0xE0) {
+                chars[i] = (char) (((b & 0x0F) << 12) | ((next(in, position) & 0x3F) << 6) | (next(in, position) & 0x3F));
+            } else {
+                throw new IllegalArgumentException("Malformed character");
+            }
+        }
+        return new String(chars);
+    }
+
+    private static int next(byte[] in, int[] position) {
+        if (position[0] >= in.length) {
+            throw new IllegalArgumentException("Truncated update");
+        }
+        return in[position[0]++] & 0xFF;
+    }
+}
@@ -0,0 +1,141 @@
+package com.leopad.notepad.config;
+
+import com.leopad.notepad.dto.NoteCursorPageResponse;
+import com.leopad.notepad.dto.NotePageResponse;
+import com.leopad.notepad.dto.NoteResponse;
+import com.leopad.notepad.service.NoteResponseCache;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Writes the note DTOs as JSON from {@link NoteResponseCache}: a single note is its cached bytes
+ * (or their cached gzip encoding when the client accepts it), and lists and pages are assembled
+ * by writing each note's cached bytes straight to the response. Registered ahead of the Jackson
+ * converter, which still writes everything else and reads all request bodies.
+ */
+public class CachedNoteJsonMessageConverter extends AbstractGenericHttpMessageConverter<Object> {
+
+    private static final byte[] COMMA = {','};
+
+    private final NoteResponseCache noteResponseCache;
+    private final int gzipMinLength;
+
+    public CachedNoteJsonMessageConverter(NoteResponseCache noteResponseCache, int gzipMinLength) {
+        super(MediaType.APPLICATION_JSON);
+        this.noteResponseCache = noteResponseCache;
+        this.gzipMinLength = gzipMinLength;
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return clazz == NoteResponse.class || clazz == NotePageResponse.class || clazz == NoteCursorPageResponse.class;
+    }
+
+    @Override
+    public boolean canRead(Type type, Class<?> contextClass, MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    public boolean canWrite(Type type, Class<?> clazz, MediaType mediaType) {
+        boolean writable = supports(clazz) || isNoteList(type);
+        return writable && canWrite(mediaType);
+    }
+
+    @Override
+    protected void writeInternal(Object body, Type type, HttpOutputMessage outputMessage)
+            throws IOException, HttpMessageNotWritableException {
+        if (body instanceof NoteResponse note) {
+            writeNote(note, outputMessage);
+        } else if (body instanceof NotePageResponse page) {
+            OutputStream out = outputMessage.getBody();
+            out.write("{\"notes\":".getBytes(StandardCharsets.UTF_8));
+            writeArray(page.getNotes(), out);
+            out.write((",\"page\":" + page.getPage() + ",\"size\":" + page.getSize()
+                    + ",\"total\":" + page.getTotal() + "}").getBytes(StandardCharsets.UTF_8));
+        } else if (body instanceof NoteCursorPageResponse page) {
+            OutputStream out = outputMessage.getBody();
+            out.write("{\"notes\":".getBytes(StandardCharsets.UTF_8));
+            writeArray(page.getNotes(), out);
+            // Cursors are base64url, so they need no escaping
+            String next = page.getNextCursor() != null ? "\"" + page.getNextCursor() + "\"" : "null";
+            out.write((",\"nextCursor\":" + next + "}").getBytes(StandardCharsets.UTF_8));
+        } else if (body instanceof List<?> list) {
+            @SuppressWarnings("unchecked")
+            List<NoteResponse> notes = (List<NoteResponse>) list;
+            writeArray(notes, outputMessage.getBody());
+        } else {
+            throw new HttpMessageNotWritableException("Cannot write " + body.getClass().getName() + " from the note cache");
+        }
+    }
+
+    private void writeNote(NoteResponse note, HttpOutputMessage outputMessage) throws IOException {
+        byte[] json = noteResponseCache.json(note);
+        HttpHeaders headers = outputMessage.getHeaders();
+        headers.add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (json.length >= gzipMinLength && acceptsGzip()) {
+            byte[] gzip = noteResponseCache.gzip(note);
+            headers.set(HttpHeaders.CONTENT_ENCODING, "gzip");
+            headers.setContentLength(gzip.length);
+            outputMessage.getBody().write(gzip);
+        } else {
+            headers.setContentLength(json.length);
+            outputMessage.getBody().write(json);
+        }
+    }
+
+    private void writeArray(List<NoteResponse> notes, OutputStream out) throws IOException {
+        out.write('[');
+        for (int i = 0; i < notes.size(); i++) {
+            if (i > 0) {
+                out.write(COMMA);
+            }
+            out.write(noteResponseCache.json(notes.get(i)));
+        }
+        out.write(']');
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage)
+            throws IOException, HttpMessageNotReadableException {
+        throw new HttpMessageNotReadableException("Note responses are write-only", inputMessage);
+    }
+
+    @Override
+    public Object read(Type type, Class<?> contextClass, HttpInputMessage inputMessage)
+            throws IOException, HttpMessageNotReadableException {
+        return readInternal(NoteResponse.class, inputMessage);
+    }
+
+    private static boolean acceptsGzip() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (!(attributes instanceof ServletRequestAttributes servletAttributes)) {
+            return false;
+        }
+        HttpServletRequest request = servletAttributes.getRequest();
+        String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        return acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip");
+    }
+
+    private static boolean isNoteList(Type type) {
+        return type instanceof ParameterizedType parameterized
+                && parameterized.getRawType() == List.class
+                && parameterized.getActualTypeArguments()[0] == NoteResponse.class;
+    }
+}
@@ -0,0 +1,57 @@
+package com.leopad.notepad.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationStrategy;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+/**
+ * Support for the AppCDS training run in Dockerfile.coldstart. With
+ * {@code coldstart.training-run=true} the application starts without a database and exits once
+ * ready, so -XX:ArchiveClassesAtExit can record every class loaded during startup.
+ * The property is checked at runtime rather than with @ConditionalOnProperty because AOT
+ * processing would freeze the condition at build time.
+ */
+@Configuration
+public class ColdStartConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(ColdStartConfig.class);
+    private static final String TRAINING_RUN_PROPERTY = "coldstart.training-run";
+
+    private final Environment environment;
+
+    public ColdStartConfig(Environment environment) {
+        this.environment = environment;
+    }
+
+    @Bean
+    public FlywayMigrationStrategy flywayMigrationStrategy() {
+        return flyway -> {
+            if (isTrainingRun()) {
+                logger.info("Training run, skipping database migrations");
+                return;
+            }
+            flyway.migrate();
+        };
+    }
+
+    @Bean
+    public ApplicationListener<ApplicationReadyEvent> trainingRunExitListener() {
+        return event -> {
+            if (!isTrainingRun()) {
+                return;
+            }
+            logger.info("Training run finished startup, exiting so the class data sharing archive is written");
+            System.exit(SpringApplication.exit(event.getApplicationContext(), () -> 0));
+        };
+    }
+
+    private boolean isTrainingRun() {
+        return environment.getProperty(TRAINING_RUN_PROPERTY, Boolean.class, false);
+    }
+}
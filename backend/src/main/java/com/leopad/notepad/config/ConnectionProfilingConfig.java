@@ -0,0 +1,52 @@
+package com.leopad.notepad.config;
+
+import com.leopad.notepad.monitoring.ConnectionHoldTimeDataSource;
+import com.leopad.notepad.monitoring.ConnectionHoldTimeEndpoint;
+import com.leopad.notepad.monitoring.ConnectionHoldTimeFilter;
+import com.leopad.notepad.monitoring.ConnectionHoldTimeProfiler;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+
+@Configuration
+@ConditionalOnProperty(name = "monitoring.connection-hold.enabled", havingValue = "true", matchIfMissing = true)
+public class ConnectionProfilingConfig {
+
+    @Bean
+    public ConnectionHoldTimeProfiler connectionHoldTimeProfiler(MeterRegistry meterRegistry,
+            @Value("${monitoring.connection-hold.top-n:10}") int topN) {
+        return new ConnectionHoldTimeProfiler(meterRegistry, topN);
+    }
+
+    @Bean
+    public ConnectionHoldTimeFilter connectionHoldTimeFilter(ConnectionHoldTimeProfiler profiler) {
+        return new ConnectionHoldTimeFilter(profiler);
+    }
+
+    @Bean
+    public ConnectionHoldTimeEndpoint connectionHoldTimeEndpoint(ConnectionHoldTimeProfiler profiler) {
+        return new ConnectionHoldTimeEndpoint(profiler);
+    }
+
+    // Wraps only the data source JPA uses; pool beans underneath (e.g. primaryDataSource) stay untouched
+    @Bean
+    public static BeanPostProcessor connectionHoldTimeDataSourcePostProcessor(
+            ObjectProvider<ConnectionHoldTimeProfiler> profiler) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if ("dataSource".equals(beanName) && bean instanceof DataSource dataSource
+                        && !(bean instanceof ConnectionHoldTimeDataSource)) {
+                    return new ConnectionHoldTimeDataSource(dataSource, profiler.getObject());
+                }
+                return bean;
+            }
+        };
+    }
+}
@@ -0,0 +1,118 @@
+package com.leopad.notepad.config;
+
+import com.leopad.notepad.datasource.ReadWriteRoutingDataSource;
+import com.leopad.notepad.datasource.ReadYourWritesTracker;
+import com.leopad.notepad.datasource.ReplicaHealthChecker;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Configuration
+@EnableConfigurationProperties(DataSourceRoutingProperties.class)
+@ConditionalOnProperty(name = "datasource.routing.enabled", havingValue = "true")
+public class DataSourceRoutingConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(DataSourceRoutingConfig.class);
+
+    private final DataSourceRoutingProperties routingProperties;
+
+    public DataSourceRoutingConfig(DataSourceRoutingProperties routingProperties) {
+        this.routingProperties = routingProperties;
+    }
+
+    @Bean
+    @ConfigurationProperties(prefix = "spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties dataSourceProperties) {
+        HikariDataSource dataSource = dataSourceProperties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
+        dataSource.setPoolName("notepad-primary");
+        return dataSource;
+    }
+
+    @Bean
+    public ReadYourWritesTracker readYourWritesTracker() {
+        return new ReadYourWritesTracker(routingProperties.getStickyWindow());
+    }
+
+    @Bean(destroyMethod = "close")
+    public ReplicaHealthChecker replicaHealthChecker(HikariDataSource primaryDataSource,
+                                                    ReadYourWritesTracker readYourWritesTracker,
+                                                    MeterRegistry meterRegistry) {
+        Map<String, HikariDataSource> replicas = new LinkedHashMap<>();
+        List<DataSourceRoutingProperties.Replica> configured = routingProperties.getReplicas();
+        for (int i = 0; i < configured.size(); i++) {
+            DataSourceRoutingProperties.Replica replica = configured.get(i);
+            if (replica.getUrl() == null || replica.getUrl().isBlank()) {
+                continue;
+            }
+            String name = "replica-" + i;
+            replicas.put(name, createReplicaPool(name, replica, primaryDataSource, meterRegistry));
+        }
+        logger.info("Read/write routing enabled with {} replica(s), sticky window {}",
+                replicas.size(), routingProperties.getStickyWindow());
+        ReplicaHealthChecker checker =
+                new ReplicaHealthChecker(replicas, readYourWritesTracker, routingProperties.getMaxReplicaLag());
+        checker.start(routingProperties.getHealthCheckInterval());
+        return checker;
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(HikariDataSource primaryDataSource,
+                                 ReplicaHealthChecker replicaHealthChecker,
+                                 ReadYourWritesTracker readYourWritesTracker) {
+        ReadWriteRoutingDataSource routingDataSource =
+                new ReadWriteRoutingDataSource(replicaHealthChecker, readYourWritesTracker);
+
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(ReadWriteRoutingDataSource.PRIMARY, primaryDataSource);
+        replicaHealthChecker.replicaNames().forEach(name -> targets.put(name, replicaHealthChecker.replica(name)));
+        routingDataSource.setTargetDataSources(targets);
+        routingDataSource.setDefaultTargetDataSource(primaryDataSource);
+        routingDataSource.afterPropertiesSet();
+
+        // Defer the routing decision until the first statement, after the transaction is marked read-only
+        return new LazyConnectionDataSourceProxy(routingDataSource);
+    }
+
+    private HikariDataSource createReplicaPool(String name, DataSourceRoutingProperties.Replica replica,
+                                               HikariDataSource primaryDataSource, MeterRegistry meterRegistry) {
+        // Start from the primary's pool settings so tuning in spring.datasource.hikari applies to every target
+        HikariConfig config = new HikariConfig();
+        primaryDataSource.copyStateTo(config);
+        config.setPoolName("notepad-" + name);
+        config.setJdbcUrl(replica.getUrl());
+        config.setReadOnly(true);
+        if (replica.getUsername() != null && !replica.getUsername().isEmpty()) {
+            config.setUsername(replica.getUsername());
+        }
+        if (replica.getPassword() != null && !replica.getPassword().isEmpty()) {
+            config.setPassword(replica.getPassword());
+        }
+        if (replica.getMaximumPoolSize() != null) {
+            config.setMaximumPoolSize(replica.getMaximumPoolSize());
+        }
+        // Do not block startup on an unreachable replica; the health checker takes it out of rotation
+        config.setInitializationFailTimeout(-1);
+        config.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+        return new HikariDataSource(config);
+    }
+}
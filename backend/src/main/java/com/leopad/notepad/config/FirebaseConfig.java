@@ -65,6 +65,10 @@ public class FirebaseConfig {
 
     @Bean
     public FirebaseApp firebaseApp() {
+        // No app is registered when the key is missing; don't fail startup, authentication is just disabled
+        if (FirebaseApp.getApps().isEmpty()) {
+            return null;
+        }
         return FirebaseApp.getInstance();
     }
 }
\ No newline at end of file
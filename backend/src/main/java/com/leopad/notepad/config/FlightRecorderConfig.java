@@ -0,0 +1,62 @@
+package com.leopad.notepad.config;
+
+import com.leopad.notepad.monitoring.FlightRecorderDumper;
+import com.leopad.notepad.monitoring.FlightRecorderEndpoint;
+import com.leopad.notepad.monitoring.NoteOperationRecorder;
+import com.leopad.notepad.monitoring.SlowRequestDumpFilter;
+import com.leopad.notepad.service.NoteService;
+import org.springframework.aop.Advisor;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+import org.springframework.aop.support.RootClassFilter;
+import org.springframework.aop.support.ComposablePointcut;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+
+@Configuration
+@ConditionalOnProperty(name = "monitoring.jfr.enabled", havingValue = "true", matchIfMissing = true)
+public class FlightRecorderConfig {
+
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    public FlightRecorderDumper flightRecorderDumper(
+            @Value("${monitoring.jfr.settings:default}") String settings,
+            @Value("${monitoring.jfr.max-age:30m}") Duration maxAge,
+            @Value("${monitoring.jfr.max-size:256MB}") DataSize maxSize,
+            @Value("${monitoring.jfr.dump-dir:./data/jfr}") Path dumpDir,
+            @Value("${monitoring.jfr.max-dumps:10}") int maxDumps,
+            @Value("${monitoring.jfr.auto-dump-window:5m}") Duration autoDumpWindow,
+            @Value("${monitoring.jfr.auto-dump-cooldown:15m}") Duration autoDumpCooldown)
+            throws IOException, ParseException {
+        return new FlightRecorderDumper(settings, maxAge, maxSize.toBytes(), dumpDir, maxDumps,
+                autoDumpWindow, autoDumpCooldown);
+    }
+
+    @Bean
+    public FlightRecorderEndpoint flightRecorderEndpoint(FlightRecorderDumper dumper) {
+        return new FlightRecorderEndpoint(dumper);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "monitoring.jfr.slow-request-threshold")
+    public SlowRequestDumpFilter slowRequestDumpFilter(FlightRecorderDumper dumper,
+            @Value("${monitoring.jfr.slow-request-threshold}") Duration threshold) {
+        return new SlowRequestDumpFilter(dumper, threshold);
+    }
+
+    // Outermost around NoteService, so an operation's event includes its transaction and commit
+    @Bean
+    public static Advisor noteOperationRecorderAdvisor() {
+        DefaultPointcutAdvisor advisor = new DefaultPointcutAdvisor(
+                new ComposablePointcut(new RootClassFilter(NoteService.class)), new NoteOperationRecorder());
+        advisor.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return advisor;
+    }
+}
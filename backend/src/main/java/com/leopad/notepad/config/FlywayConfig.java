@@ -0,0 +1,24 @@
+package com.leopad.notepad.config;
+
+import org.springframework.boot.autoconfigure.flyway.FlywayConfigurationCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Map;
+
+/**
+ * Flyway settings Spring Boot 3.1 has no properties for. By default Flyway takes its PostgreSQL
+ * advisory lock inside an open transaction, and CREATE INDEX CONCURRENTLY (V2, V12) waits for
+ * every open transaction to end, so those migrations would wait on Flyway itself forever.
+ * A session-level lock leaves no transaction open while they run.
+ */
+@Configuration
+public class FlywayConfig {
+
+    public static final Map<String, String> SESSION_LOCK = Map.of("flyway.postgresql.transactional.lock", "false");
+
+    @Bean
+    public FlywayConfigurationCustomizer sessionLockFlywayCustomizer() {
+        return configuration -> configuration.configuration(SESSION_LOCK);
+    }
+}
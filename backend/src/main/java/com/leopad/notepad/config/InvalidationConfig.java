@@ -0,0 +1,44 @@
+package com.leopad.notepad.config;
+
+import com.leopad.notepad.invalidation.CacheInvalidationHandler;
+import com.leopad.notepad.invalidation.InvalidationBus;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.DriverManager;
+import java.time.Duration;
+import java.util.List;
+import java.util.Properties;
+
+@Configuration
+public class InvalidationConfig {
+
+    // Runtime flag rather than a bean condition, so it can still be switched off in AOT builds
+    @Bean
+    public InvalidationBus invalidationBus(JdbcTemplate jdbcTemplate,
+                                           DataSourceProperties dataSourceProperties,
+                                           List<CacheInvalidationHandler> handlers,
+                                           MeterRegistry meterRegistry,
+                                           @Value("${invalidation.enabled:true}") boolean enabled,
+                                           @Value("${invalidation.channel:notepad_invalidation}") String channel,
+                                           @Value("${invalidation.flush-interval:20ms}") Duration flushInterval,
+                                           @Value("${invalidation.max-reconnect-backoff:30s}") Duration maxReconnectBackoff) {
+        // NOTIFY is not replicated to standbys, so always listen on the primary, outside the pool
+        Properties properties = new Properties();
+        properties.setProperty("user", dataSourceProperties.determineUsername());
+        properties.setProperty("password", dataSourceProperties.determinePassword());
+        properties.setProperty("ApplicationName", "notepad-invalidation-listener");
+        properties.setProperty("tcpKeepAlive", "true");
+        String url = dataSourceProperties.determineUrl();
+
+        InvalidationBus bus = new InvalidationBus(channel, jdbcTemplate,
+                () -> DriverManager.getConnection(url, properties),
+                handlers, flushInterval, maxReconnectBackoff, meterRegistry);
+        bus.setAutoStartup(enabled);
+        return bus;
+    }
+}
@@ -0,0 +1,49 @@
+package com.leopad.notepad.config;
+
+import com.leopad.notepad.logging.DropCountingAsyncAppender;
+import com.leopad.notepad.logging.LoggingStats;
+import com.leopad.notepad.logging.RequestCorrelationFilter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import java.util.concurrent.atomic.LongAdder;
+
+@Configuration
+public class LoggingConfig {
+
+    // Ahead of the security filter chain so authentication logging already carries the request id
+    @Bean
+    public FilterRegistrationBean<RequestCorrelationFilter> requestCorrelationFilter() {
+        FilterRegistrationBean<RequestCorrelationFilter> registration =
+                new FilterRegistrationBean<>(new RequestCorrelationFilter());
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return registration;
+    }
+
+    @Bean
+    public MeterBinder loggingMetrics() {
+        return registry -> {
+            LoggingStats.dropped().forEach((level, count) ->
+                    FunctionCounter.builder("notepad.logging.dropped", count, LongAdder::sum)
+                            .description("Log events dropped by the async appenders because their queue was full")
+                            .tag("level", level)
+                            .register(registry));
+            LoggingStats.sampledOut().forEach((logger, count) ->
+                    FunctionCounter.builder("notepad.logging.rate-limited", count, LongAdder::sum)
+                            .description("Hot-path log events suppressed by the rate limiter")
+                            .tag("logger", logger)
+                            .register(registry));
+            for (DropCountingAsyncAppender appender : LoggingStats.appenders()) {
+                Gauge.builder("notepad.logging.queue.size", appender, DropCountingAsyncAppender::getNumberOfElementsInQueue)
+                        .description("Log events waiting in the async appender queue")
+                        .tag("appender", appender.getName())
+                        .register(registry);
+            }
+        };
+    }
+}
@@ -0,0 +1,91 @@
+package com.leopad.notepad.config;
+
+import com.leopad.notepad.dto.NoteCursorPageResponse;
+import com.leopad.notepad.dto.NotePageResponse;
+import com.leopad.notepad.dto.NoteProtobufCodec;
+import com.leopad.notepad.dto.NoteRequest;
+import com.leopad.notepad.dto.NoteResponse;
+import com.google.protobuf.InvalidProtocolBufferException;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+
+import java.io.IOException;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.List;
+
+/**
+ * Serves the note DTOs as {@code application/x-protobuf} when a client asks for it via
+ * {@code Accept}, and reads NoteRequest bodies sent with that content type. Registered after
+ * the Jackson converter, so JSON stays the default.
+ */
+public class ProtobufNoteMessageConverter extends AbstractGenericHttpMessageConverter<Object> {
+
+    public static final MediaType APPLICATION_PROTOBUF = new MediaType("application", "x-protobuf");
+
+    public ProtobufNoteMessageConverter() {
+        super(APPLICATION_PROTOBUF);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return clazz == NoteResponse.class || clazz == NotePageResponse.class
+                || clazz == NoteCursorPageResponse.class || clazz == NoteRequest.class;
+    }
+
+    @Override
+    public boolean canRead(Type type, Class<?> contextClass, MediaType mediaType) {
+        return type == NoteRequest.class && canRead(mediaType);
+    }
+
+    @Override
+    public boolean canWrite(Type type, Class<?> clazz, MediaType mediaType) {
+        boolean writable = clazz == NoteResponse.class || clazz == NotePageResponse.class
+                || clazz == NoteCursorPageResponse.class || isNoteList(type);
+        return writable && canWrite(mediaType);
+    }
+
+    @Override
+    protected void writeInternal(Object body, Type type, HttpOutputMessage outputMessage)
+            throws IOException, HttpMessageNotWritableException {
+        if (body instanceof NoteResponse note) {
+            NoteProtobufCodec.writeNote(note, outputMessage.getBody());
+        } else if (body instanceof NotePageResponse page) {
+            NoteProtobufCodec.writeNotePage(page, outputMessage.getBody());
+        } else if (body instanceof NoteCursorPageResponse page) {
+            NoteProtobufCodec.writeNoteCursorPage(page, outputMessage.getBody());
+        } else if (body instanceof List<?> list) {
+            @SuppressWarnings("unchecked")
+            List<NoteResponse> notes = (List<NoteResponse>) list;
+            NoteProtobufCodec.writeNoteList(notes, outputMessage.getBody());
+        } else {
+            throw new HttpMessageNotWritableException("Cannot encode " + body.getClass().getName() + " as protobuf");
+        }
+    }
+
+    @Override
+    public Object read(Type type, Class<?> contextClass, HttpInputMessage inputMessage)
+            throws IOException, HttpMessageNotReadableException {
+        return readInternal(NoteRequest.class, inputMessage);
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage)
+            throws IOException, HttpMessageNotReadableException {
+        try {
+            return NoteProtobufCodec.readNoteRequest(inputMessage.getBody());
+        } catch (InvalidProtocolBufferException e) {
+            throw new HttpMessageNotReadableException("Invalid protobuf NoteRequest: " + e.getMessage(), e, inputMessage);
+        }
+    }
+
+    private static boolean isNoteList(Type type) {
+        return type instanceof ParameterizedType parameterized
+                && parameterized.getRawType() == List.class
+                && parameterized.getActualTypeArguments()[0] == NoteResponse.class;
+    }
+}
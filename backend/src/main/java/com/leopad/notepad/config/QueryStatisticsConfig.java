@@ -0,0 +1,60 @@
+package com.leopad.notepad.config;
+
+import com.leopad.notepad.monitoring.QueryStatisticsDataSource;
+import com.leopad.notepad.monitoring.QueryStatisticsEndpoint;
+import com.leopad.notepad.monitoring.QueryStatisticsFilter;
+import com.leopad.notepad.monitoring.QueryStatisticsProfiler;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+@Configuration
+@ConditionalOnProperty(name = "monitoring.query-stats.enabled", havingValue = "true", matchIfMissing = true)
+public class QueryStatisticsConfig {
+
+    @Bean
+    public QueryStatisticsProfiler queryStatisticsProfiler(MeterRegistry meterRegistry,
+            @Value("${monitoring.query-stats.slow-threshold:200ms}") Duration slowThreshold,
+            @Value("${monitoring.query-stats.slow-log-interval:60s}") Duration slowLogInterval,
+            @Value("${monitoring.query-stats.n-plus-one-threshold:10}") int nPlusOneThreshold,
+            @Value("${monitoring.query-stats.max-shapes:500}") int maxShapes,
+            @Value("${monitoring.query-stats.top-n:20}") int topN) {
+        return new QueryStatisticsProfiler(meterRegistry, slowThreshold, slowLogInterval, nPlusOneThreshold,
+                maxShapes, topN);
+    }
+
+    @Bean
+    public QueryStatisticsFilter queryStatisticsFilter(QueryStatisticsProfiler profiler) {
+        return new QueryStatisticsFilter(profiler);
+    }
+
+    @Bean
+    public QueryStatisticsEndpoint queryStatisticsEndpoint(QueryStatisticsProfiler profiler,
+                                                           EntityManagerFactory entityManagerFactory) {
+        return new QueryStatisticsEndpoint(profiler, entityManagerFactory);
+    }
+
+    // Same data source as the connection hold profiler; whichever wraps last sees the other's proxy
+    @Bean
+    public static BeanPostProcessor queryStatisticsDataSourcePostProcessor(
+            ObjectProvider<QueryStatisticsProfiler> profiler) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if ("dataSource".equals(beanName) && bean instanceof DataSource dataSource
+                        && !(bean instanceof QueryStatisticsDataSource)) {
+                    return new QueryStatisticsDataSource(dataSource, profiler.getObject());
+                }
+                return bean;
+            }
+        };
+    }
+}
@@ -0,0 +1,46 @@
+package com.leopad.notepad.config;
+
+import com.google.firebase.auth.AuthErrorCode;
+import com.google.firebase.auth.FirebaseAuthException;
+import com.leopad.notepad.resilience.Bulkhead;
+import com.leopad.notepad.resilience.CircuitBreaker;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.util.function.Predicate;
+
+/**
+ * One bulkhead per external dependency, so a slow or failing one can only tie up its own
+ * threads. Only errors that say the dependency is unhealthy trip its breaker: a rejected token
+ * or a 4xx from SendGrid is an answer, not an outage.
+ */
+@Configuration
+@EnableConfigurationProperties(ResilienceProperties.class)
+public class ResilienceConfig {
+
+    @Bean(destroyMethod = "shutdown")
+    public Bulkhead sendGridBulkhead(ResilienceProperties resilienceProperties, MeterRegistry meterRegistry) {
+        // EmailService reports 5xx and 429 responses as IOExceptions
+        return bulkhead("sendgrid", resilienceProperties.getSendgrid(), e -> e instanceof IOException, meterRegistry);
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    public Bulkhead firebaseBulkhead(ResilienceProperties resilienceProperties, MeterRegistry meterRegistry) {
+        // The SDK reports a failed download of Google's signing keys this way
+        return bulkhead("firebase", resilienceProperties.getFirebase(),
+                e -> e instanceof FirebaseAuthException authException
+                        && authException.getAuthErrorCode() == AuthErrorCode.CERTIFICATE_FETCH_FAILED,
+                meterRegistry);
+    }
+
+    private static Bulkhead bulkhead(String name, ResilienceProperties.Dependency settings,
+                                     Predicate<Throwable> isFailure, MeterRegistry meterRegistry) {
+        CircuitBreaker circuitBreaker = new CircuitBreaker(settings.getWindowSize(), settings.getMinimumCalls(),
+                settings.getFailureRateThreshold(), settings.getOpenDuration(), settings.getHalfOpenProbes());
+        return new Bulkhead(name, settings.getMaxConcurrent(), settings.getQueueSize(), settings.getTimeout(),
+                circuitBreaker, isFailure, meterRegistry);
+    }
+}
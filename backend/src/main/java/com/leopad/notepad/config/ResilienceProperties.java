@@ -0,0 +1,120 @@
+package com.leopad.notepad.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "resilience")
+public class ResilienceProperties {
+
+    private Dependency sendgrid = new Dependency(8, 16, Duration.ofSeconds(10), Duration.ofSeconds(30));
+    // Every authenticated request verifies a token here; verification is CPU-only while Google's
+    // signing keys are cached, so the pool and queue are sized for normal load with room to spare
+    private Dependency firebase = new Dependency(32, 256, Duration.ofSeconds(3), Duration.ofSeconds(10));
+
+    public Dependency getSendgrid() {
+        return sendgrid;
+    }
+
+    public void setSendgrid(Dependency sendgrid) {
+        this.sendgrid = sendgrid;
+    }
+
+    public Dependency getFirebase() {
+        return firebase;
+    }
+
+    public void setFirebase(Dependency firebase) {
+        this.firebase = firebase;
+    }
+
+    public static class Dependency {
+        // Threads calling the dependency at once, and calls waiting for one; beyond that, 503
+        private int maxConcurrent;
+        private int queueSize;
+        // Longest a request waits for a call, including time in the queue
+        private Duration timeout;
+        // Circuit breaker: opens when failureRateThreshold of the last windowSize calls (once at
+        // least minimumCalls are in) failed or timed out, then lets halfOpenProbes calls through
+        // after openDuration
+        private int windowSize = 20;
+        private int minimumCalls = 10;
+        private double failureRateThreshold = 0.5;
+        private Duration openDuration;
+        private int halfOpenProbes = 2;
+
+        public Dependency() {
+        }
+
+        Dependency(int maxConcurrent, int queueSize, Duration timeout, Duration openDuration) {
+            this.maxConcurrent = maxConcurrent;
+            this.queueSize = queueSize;
+            this.timeout = timeout;
+            this.openDuration = openDuration;
+        }
+
+        public int getMaxConcurrent() {
+            return maxConcurrent;
+        }
+
+        public void setMaxConcurrent(int maxConcurrent) {
+            this.maxConcurrent = maxConcurrent;
+        }
+
+        public int getQueueSize() {
+            return queueSize;
+        }
+
+        public void setQueueSize(int queueSize) {
+            this.queueSize = queueSize;
+        }
+
+        public Duration getTimeout() {
+            return timeout;
+        }
+
+        public void setTimeout(Duration timeout) {
+            this.timeout = timeout;
+        }
+
+        public int getWindowSize() {
+            return windowSize;
+        }
+
+        public void setWindowSize(int windowSize) {
+            this.windowSize = windowSize;
+        }
+
+        public int getMinimumCalls() {
+            return minimumCalls;
+        }
+
+        public void setMinimumCalls(int minimumCalls) {
+            this.minimumCalls = minimumCalls;
+        }
+
+        public double getFailureRateThreshold() {
+            return failureRateThreshold;
+        }
+
+        public void setFailureRateThreshold(double failureRateThreshold) {
+            this.failureRateThreshold = failureRateThreshold;
+        }
+
+        public Duration getOpenDuration() {
+            return openDuration;
+        }
+
+        public void setOpenDuration(Duration openDuration) {
+            this.openDuration = openDuration;
+        }
+
+        public int getHalfOpenProbes() {
+            return halfOpenProbes;
+        }
+
+        public void setHalfOpenProbes(int halfOpenProbes) {
+            this.halfOpenProbes = halfOpenProbes;
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.leopad.notepad.config;
 
 import com.leopad.notepad.security.FirebaseAuthenticationFilter;
 import com.leopad.notepad.service.FirebaseAuthService;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
@@ -15,15 +16,19 @@ import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
 
 @Configuration
 @EnableWebSecurity
 public class SecurityConfig {
 
     private final FirebaseAuthService firebaseAuthService;
+    private final Set<String> adminUids;
 
-    public SecurityConfig(FirebaseAuthService firebaseAuthService) {
+    public SecurityConfig(FirebaseAuthService firebaseAuthService,
+                          @Value("${security.admin-uids:}") Set<String> adminUids) {
         this.firebaseAuthService = firebaseAuthService;
+        this.adminUids = adminUids;
     }
 
     @Bean
@@ -33,8 +38,13 @@ public class SecurityConfig {
             .csrf(csrf -> csrf.disable())
             .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
             .authorizeHttpRequests(authz -> authz
+                // Moves users between databases: admin-only even if the actuator rules below change
+                .requestMatchers("/actuator/shards", "/actuator/shards/**").hasRole("ADMIN")
                 // Public endpoints (no authentication required)
-                .requestMatchers("/", "/health", "/actuator/**").permitAll()
+                .requestMatchers("/", "/health", "/actuator/health", "/actuator/health/**").permitAll()
+                // Every other actuator endpoint (profilers, dumps, resets): Firebase users listed in
+                // security.admin-uids only, whatever ACTUATOR_ENDPOINTS exposes
+                .requestMatchers("/actuator", "/actuator/**").hasRole("ADMIN")
                 // Authentication endpoints
                 .requestMatchers("/api/auth/**").permitAll()
                 // All other API endpoints require authentication
@@ -48,16 +58,19 @@ public class SecurityConfig {
 
     @Bean
     public FirebaseAuthenticationFilter firebaseAuthenticationFilter() {
-        return new FirebaseAuthenticationFilter(firebaseAuthService);
+        return new FirebaseAuthenticationFilter(firebaseAuthService, adminUids);
     }
 
     @Bean
     public CorsConfigurationSource corsConfigurationSource() {
         CorsConfiguration configuration = new CorsConfiguration();
         configuration.setAllowedOriginPatterns(List.of("*"));
-        configuration.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "DELETE", "OPTIONS"));
+        configuration.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "PATCH", "DELETE", "OPTIONS"));
         configuration.setAllowedHeaders(Arrays.asList("*"));
+        // Range paging of large note content and log correlation need these readable by clients
+        configuration.setExposedHeaders(Arrays.asList("ETag", "Content-Range", "Accept-Ranges", "X-Request-Id"));
         configuration.setAllowCredentials(true);
+        configuration.setMaxAge(3600L);
         
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
         source.registerCorsConfiguration("/**", configuration);
@@ -0,0 +1,179 @@
+package com.leopad.notepad.config;
+
+import com.leopad.notepad.invalidation.InvalidationBus;
+import com.leopad.notepad.sharding.ShardContextFilter;
+import com.leopad.notepad.sharding.ShardDirectory;
+import com.leopad.notepad.sharding.ShardEndpoint;
+import com.leopad.notepad.sharding.ShardMover;
+import com.leopad.notepad.sharding.ShardPools;
+import com.leopad.notepad.sharding.ShardRoutingDataSource;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.flywaydb.core.Flyway;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Configuration
+@EnableConfigurationProperties(ShardingProperties.class)
+public class ShardingConfig {
+
+    // Always present so services can route unconditionally; without shard pools it is a no-op
+    @Bean
+    public ShardDirectory shardDirectory(ShardingProperties shardingProperties, ObjectProvider<ShardPools> shardPools) {
+        return new ShardDirectory(shardPools.getIfAvailable(), shardingProperties.getMoveWaitTimeout(),
+                shardingProperties.getDirectoryCacheSize());
+    }
+
+    @Configuration
+    @ConditionalOnProperty(name = "sharding.enabled", havingValue = "true")
+    static class Routing {
+
+        private static final Logger logger = LoggerFactory.getLogger(ShardingConfig.class);
+        private static final long DEFAULT_ID_RANGE = 1_000_000_000_000_000L;
+
+        private final ShardingProperties shardingProperties;
+
+        Routing(ShardingProperties shardingProperties) {
+            this.shardingProperties = shardingProperties;
+        }
+
+        @Bean
+        @ConfigurationProperties(prefix = "spring.datasource.hikari")
+        public HikariDataSource directoryDataSource(DataSourceProperties dataSourceProperties) {
+            HikariDataSource dataSource = dataSourceProperties.initializeDataSourceBuilder()
+                    .type(HikariDataSource.class)
+                    .build();
+            dataSource.setPoolName("notepad-" + shardingProperties.getDirectoryShard());
+            return dataSource;
+        }
+
+        @Bean(destroyMethod = "close")
+        public ShardPools shardPools(HikariDataSource directoryDataSource, MeterRegistry meterRegistry,
+                                     @Value("${datasource.routing.enabled:false}") boolean replicaRouting,
+                                     @Value("${spring.flyway.enabled:true}") boolean migrate,
+                                     @Value("${spring.flyway.locations:classpath:db/migration}") String locations) {
+            if (replicaRouting) {
+                throw new IllegalStateException("sharding.enabled cannot be combined with datasource.routing.enabled");
+            }
+            Map<String, HikariDataSource> pools = new LinkedHashMap<>();
+            Map<String, Integer> weights = new HashMap<>();
+            pools.put(shardingProperties.getDirectoryShard(), directoryDataSource);
+            weights.put(shardingProperties.getDirectoryShard(), shardingProperties.getDirectoryWeight());
+
+            List<ShardingProperties.Shard> configured = shardingProperties.getShards();
+            for (int i = 0; i < configured.size(); i++) {
+                ShardingProperties.Shard shard = configured.get(i);
+                if (shard.getUrl() == null || shard.getUrl().isBlank()) {
+                    continue;
+                }
+                String name = shard.getName() != null ? shard.getName() : "shard-" + (i + 1);
+                if (pools.containsKey(name)) {
+                    throw new IllegalStateException("Duplicate shard name: " + name);
+                }
+                HikariDataSource pool = createShardPool(name, shard, directoryDataSource, meterRegistry);
+                pools.put(name, pool);
+                weights.put(name, shard.getWeight());
+                if (migrate) {
+                    // The directory database is migrated by Spring Boot's own Flyway run; same lock mode as there
+                    Flyway.configure()
+                            .dataSource(pool)
+                            .locations(locations.split(","))
+                            .baselineOnMigrate(true)
+                            .baselineVersion("1")
+                            .configuration(FlywayConfig.SESSION_LOCK)
+                            .load()
+                            .migrate();
+                }
+                applyIdBase(pool, shard.getIdBase() != null ? shard.getIdBase() : (i + 1) * DEFAULT_ID_RANGE);
+            }
+            logger.info("Sharding enabled with shards {}, directory on {}", pools.keySet(),
+                    shardingProperties.getDirectoryShard());
+            return new ShardPools(shardingProperties.getDirectoryShard(), pools, weights);
+        }
+
+        @Bean
+        @Primary
+        public DataSource dataSource(ShardPools shardPools) {
+            ShardRoutingDataSource routingDataSource = new ShardRoutingDataSource();
+            Map<Object, Object> targets = new HashMap<>();
+            shardPools.names().forEach(name -> targets.put(name, shardPools.pool(name)));
+            routingDataSource.setTargetDataSources(targets);
+            routingDataSource.setDefaultTargetDataSource(shardPools.pool(shardPools.directoryShard()));
+            // A bound shard that is not configured must fail, not silently read the directory database
+            routingDataSource.setLenientFallback(false);
+            routingDataSource.afterPropertiesSet();
+
+            // Defer the routing decision until the first statement, after the shard is bound
+            return new LazyConnectionDataSourceProxy(routingDataSource);
+        }
+
+        @Bean
+        public ShardContextFilter shardContextFilter() {
+            return new ShardContextFilter();
+        }
+
+        @Bean
+        public ShardMover shardMover(ShardDirectory shardDirectory, InvalidationBus invalidationBus,
+                                     MeterRegistry meterRegistry) {
+            return new ShardMover(shardDirectory, invalidationBus, shardingProperties.getMoveFreezeGrace(),
+                    meterRegistry);
+        }
+
+        @Bean
+        public ShardEndpoint shardEndpoint(ShardDirectory shardDirectory, ShardMover shardMover) {
+            return new ShardEndpoint(shardDirectory, shardMover);
+        }
+
+        private HikariDataSource createShardPool(String name, ShardingProperties.Shard shard,
+                                                 HikariDataSource directoryDataSource, MeterRegistry meterRegistry) {
+            // Start from the directory pool's settings so tuning in spring.datasource.hikari applies to every shard
+            HikariConfig config = new HikariConfig();
+            directoryDataSource.copyStateTo(config);
+            config.setPoolName("notepad-" + name);
+            config.setJdbcUrl(shard.getUrl());
+            if (shard.getUsername() != null && !shard.getUsername().isEmpty()) {
+                config.setUsername(shard.getUsername());
+            }
+            if (shard.getPassword() != null && !shard.getPassword().isEmpty()) {
+                config.setPassword(shard.getPassword());
+            }
+            if (shard.getMaximumPoolSize() != null) {
+                config.setMaximumPoolSize(shard.getMaximumPoolSize());
+            }
+            config.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+            return new HikariDataSource(config);
+        }
+
+        // Note and revision ids must stay unique across shards for users to be movable between them
+        private static void applyIdBase(DataSource pool, long idBase) {
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(pool);
+            for (String table : List.of("notes", "note_revisions")) {
+                jdbcTemplate.query(
+                        "SELECT setval(s.seq::regclass, ?, false) FROM (SELECT pg_get_serial_sequence(?, 'id') AS seq) s "
+                                + "JOIN pg_sequences p ON format('%I.%I', p.schemaname, p.sequencename) = s.seq "
+                                + "WHERE COALESCE(p.last_value, 0) < ?",
+                        rs -> {
+                        }, idBase, table, idBase);
+            }
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.leopad.notepad.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@ConfigurationProperties(prefix = "sharding")
+public class ShardingProperties {
+
+    private boolean enabled = false;
+    // Name of the spring.datasource database, which also holds users and the shard directory
+    private String directoryShard = "main";
+    // Share of new users placed on the directory database; 0 keeps it for existing users only
+    private int directoryWeight = 1;
+    // How long a move waits after freezing a user before copying, for in-flight requests to finish
+    private Duration moveFreezeGrace = Duration.ofSeconds(2);
+    // How long a request for a user being moved waits for the move to finish
+    private Duration moveWaitTimeout = Duration.ofSeconds(10);
+    private int directoryCacheSize = 100_000;
+    private List<Shard> shards = new ArrayList<>();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getDirectoryShard() {
+        return directoryShard;
+    }
+
+    public void setDirectoryShard(String directoryShard) {
+        this.directoryShard = directoryShard;
+    }
+
+    public int getDirectoryWeight() {
+        return directoryWeight;
+    }
+
+    public void setDirectoryWeight(int directoryWeight) {
+        this.directoryWeight = directoryWeight;
+    }
+
+    public Duration getMoveFreezeGrace() {
+        return moveFreezeGrace;
+    }
+
+    public void setMoveFreezeGrace(Duration moveFreezeGrace) {
+        this.moveFreezeGrace = moveFreezeGrace;
+    }
+
+    public Duration getMoveWaitTimeout() {
+        return moveWaitTimeout;
+    }
+
+    public void setMoveWaitTimeout(Duration moveWaitTimeout) {
+        this.moveWaitTimeout = moveWaitTimeout;
+    }
+
+    public int getDirectoryCacheSize() {
+        return directoryCacheSize;
+    }
+
+    public void setDirectoryCacheSize(int directoryCacheSize) {
+        this.directoryCacheSize = directoryCacheSize;
+    }
+
+    public List<Shard> getShards() {
+        return shards;
+    }
+
+    public void setShards(List<Shard> shards) {
+        this.shards = shards;
+    }
+
+    public static class Shard {
+
+        private String name;
+        private String url;
+        private String username;
+        private String password;
+        private Integer maximumPoolSize;
+        private int weight = 1;
+        // First note/revision id generated on this shard; defaults to position * 10^15
+        private Long idBase;
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public void setUrl(String url) {
+            this.url = url;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public void setUsername(String username) {
+            this.username = username;
+        }
+
+        public String getPassword() {
+            return password;
+        }
+
+        public void setPassword(String password) {
+            this.password = password;
+        }
+
+        public Integer getMaximumPoolSize() {
+            return maximumPoolSize;
+        }
+
+        public void setMaximumPoolSize(Integer maximumPoolSize) {
+            this.maximumPoolSize = maximumPoolSize;
+        }
+
+        public int getWeight() {
+            return weight;
+        }
+
+        public void setWeight(int weight) {
+            this.weight = weight;
+        }
+
+        public Long getIdBase() {
+            return idBase;
+        }
+
+        public void setIdBase(Long idBase) {
+            this.idBase = idBase;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.leopad.notepad.config;
+
+import com.google.cloud.storage.StorageOptions;
+import com.leopad.notepad.share.GcsSnapshotStore;
+import com.leopad.notepad.share.LocalDiskSnapshotStore;
+import com.leopad.notepad.share.SnapshotStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+@Configuration
+public class ShareConfig {
+
+    private static final String DEFAULT_STORE_DIR = "./data/shares";
+
+    // A bucket when one is configured. A local directory is only correct on a single instance that
+    // keeps its disk, so on Cloud Run (K_SERVICE set) it has to be named explicitly, e.g. a mount
+    @Bean
+    @ConditionalOnMissingBean(SnapshotStore.class)
+    public SnapshotStore snapshotStore(@Value("${notes.share.bucket:}") String bucket,
+                                       @Value("${notes.share.bucket-prefix:shares/}") String bucketPrefix,
+                                       @Value("${notes.share.store-dir:}") String storeDir,
+                                       @Value("${K_SERVICE:}") String cloudRunService) throws IOException {
+        if (!bucket.isBlank()) {
+            return new GcsSnapshotStore(StorageOptions.getDefaultInstance().getService(), bucket, bucketPrefix);
+        }
+        if (storeDir.isBlank() && !cloudRunService.isBlank()) {
+            throw new IllegalStateException("Share snapshots need shared storage on Cloud Run: set SHARE_BUCKET, "
+                    + "or SHARE_STORE_DIR to a directory all instances share");
+        }
+        return new LocalDiskSnapshotStore(Path.of(storeDir.isBlank() ? DEFAULT_STORE_DIR : storeDir));
+    }
+}
@@ -1,32 +1,33 @@
 package com.leopad.notepad.config;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import com.leopad.notepad.service.NoteResponseCache;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.web.servlet.config.annotation.CorsRegistry;
+import org.springframework.http.converter.HttpMessageConverter;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
+import java.util.List;
+
+// CORS is configured once, in SecurityConfig: Spring Security's CorsFilter answers first
 @Configuration
 public class WebConfig implements WebMvcConfigurer {
 
-    private static final Logger logger = LoggerFactory.getLogger(WebConfig.class);
+    @Value("${notes.response-cache.gzip-min-length:1024}")
+    private int gzipMinLength;
+
+    private final NoteResponseCache noteResponseCache;
 
-    @Value("${cors.allowed-origins:http://localhost:5173}")
-    private String allowedOrigins;
+    public WebConfig(NoteResponseCache noteResponseCache) {
+        this.noteResponseCache = noteResponseCache;
+    }
 
     @Override
-    public void addCorsMappings(CorsRegistry registry) {
-        String[] origins = allowedOrigins.split(",");
-        
-        logger.info("Configuring CORS with allowed origins: {}", allowedOrigins);
-        
-        registry.addMapping("/**")
-                .allowedOrigins(origins)
-                .allowedMethods("GET", "POST", "PUT", "DELETE", "OPTIONS")
-                .allowedHeaders("*")
-                .allowCredentials(true)
-                .maxAge(3600); // Cache preflight response for 1 hour
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        if (noteResponseCache.isEnabled()) {
+            // Ahead of Jackson, so note JSON comes from cached bytes
+            converters.add(0, new CachedNoteJsonMessageConverter(noteResponseCache, gzipMinLength));
+        }
+        // Appended after Jackson: only clients sending Accept: application/x-protobuf get it
+        converters.add(new ProtobufNoteMessageConverter());
     }
-}
\ No newline at end of file
+}
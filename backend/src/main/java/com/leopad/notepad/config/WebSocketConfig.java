@@ -0,0 +1,47 @@
+package com.leopad.notepad.config;
+
+import com.leopad.notepad.collab.CollaborationHandshakeInterceptor;
+import com.leopad.notepad.collab.CollaborationWebSocketHandler;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+import org.springframework.web.socket.server.standard.ServletServerContainerFactoryBean;
+
+@Configuration
+@EnableWebSocket
+@ConditionalOnProperty(name = "notes.collab.enabled", havingValue = "true", matchIfMissing = true)
+public class WebSocketConfig implements WebSocketConfigurer {
+
+    private final CollaborationWebSocketHandler collaborationWebSocketHandler;
+    private final CollaborationHandshakeInterceptor collaborationHandshakeInterceptor;
+    private final String allowedOrigins;
+
+    public WebSocketConfig(CollaborationWebSocketHandler collaborationWebSocketHandler,
+                           CollaborationHandshakeInterceptor collaborationHandshakeInterceptor,
+                           @Value("${cors.allowed-origins:http://localhost:5173}") String allowedOrigins) {
+        this.collaborationWebSocketHandler = collaborationWebSocketHandler;
+        this.collaborationHandshakeInterceptor = collaborationHandshakeInterceptor;
+        this.allowedOrigins = allowedOrigins;
+    }
+
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        registry.addHandler(collaborationWebSocketHandler, "/api/notes/*/collab")
+                .addInterceptors(collaborationHandshakeInterceptor)
+                .setAllowedOrigins(allowedOrigins.split(","));
+    }
+
+    @Bean
+    public ServletServerContainerFactoryBean webSocketContainer(
+            @Value("${notes.collab.max-message-size:1048576}") int maxMessageSize,
+            @Value("${notes.collab.idle-timeout:300000}") long idleTimeout) {
+        ServletServerContainerFactoryBean container = new ServletServerContainerFactoryBean();
+        container.setMaxBinaryMessageBufferSize(maxMessageSize);
+        container.setMaxSessionIdleTimeout(idleTimeout);
+        return container;
+    }
+}
@@ -3,10 +3,12 @@ package com.leopad.notepad.controller;
 import com.google.firebase.auth.FirebaseAuthException;
 import com.google.firebase.auth.FirebaseToken;
 import com.leopad.notepad.entity.User;
+import com.leopad.notepad.resilience.DependencyUnavailableException;
 import com.leopad.notepad.service.FirebaseAuthService;
 import com.leopad.notepad.service.UserService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
@@ -68,6 +70,11 @@ public class AuthController {
             logger.error("Token verification failed: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                 .body(Map.of("error", "Invalid token", "details", e.getMessage()));
+        } catch (DependencyUnavailableException e) {
+            logger.warn("Could not verify token: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(Map.of("error", "Authentication is temporarily unavailable"));
         } catch (Exception e) {
             logger.error("Error during token verification: {}", e.getMessage(), e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
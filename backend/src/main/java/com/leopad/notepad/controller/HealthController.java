@@ -1,5 +1,8 @@
 package com.leopad.notepad.controller;
 
+import com.leopad.notepad.warmup.WarmupState;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RestController;
 
@@ -9,6 +12,12 @@ import java.util.Map;
 @RestController
 public class HealthController {
 
+    private final WarmupState warmupState;
+
+    public HealthController(WarmupState warmupState) {
+        this.warmupState = warmupState;
+    }
+
     @GetMapping("/")
     public Map<String, String> root() {
         Map<String, String> response = new HashMap<>();
@@ -18,10 +27,14 @@ public class HealthController {
     }
 
     @GetMapping("/health")
-    public Map<String, String> health() {
+    public ResponseEntity<Map<String, String>> health() {
         Map<String, String> response = new HashMap<>();
-        response.put("status", "UP");
         response.put("service", "notepad-app");
-        return response;
+        if (!warmupState.isComplete()) {
+            response.put("status", "WARMING_UP");
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(response);
+        }
+        response.put("status", "UP");
+        return ResponseEntity.ok(response);
     }
 }
\ No newline at end of file
@@ -1,27 +1,51 @@
 package com.leopad.notepad.controller;
 
+import com.leopad.notepad.dto.NoteCursorPageResponse;
+import com.leopad.notepad.dto.NotePageResponse;
+import com.leopad.notepad.dto.NotePositionRequest;
 import com.leopad.notepad.dto.NoteRequest;
 import com.leopad.notepad.dto.NoteResponse;
+import com.leopad.notepad.dto.NoteRevisionResponse;
+import com.leopad.notepad.dto.NoteShareResponse;
+import com.leopad.notepad.dto.NoteStatsResponse;
 import com.leopad.notepad.entity.Note;
+import com.leopad.notepad.entity.NoteShare;
 import com.leopad.notepad.entity.User;
+import com.leopad.notepad.resilience.DependencyUnavailableException;
 import com.leopad.notepad.service.EmailService;
+import com.leopad.notepad.service.LargeNoteService;
+import com.leopad.notepad.service.NoteOrderService;
 import com.leopad.notepad.service.NoteService;
+import com.leopad.notepad.service.NoteShareService;
+import com.leopad.notepad.service.NoteTagIndex;
 import com.leopad.notepad.service.UserService;
 import com.leopad.notepad.service.FirebaseAuthService;
+import com.leopad.notepad.sharding.ShardDirectory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
 import com.google.firebase.auth.FirebaseToken;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @RestController
@@ -42,7 +66,23 @@ public class NoteController {
     @Autowired
     private FirebaseAuthService firebaseAuthService;
 
+    @Autowired
+    private LargeNoteService largeNoteService;
+
+    @Autowired
+    private ShardDirectory shardDirectory;
+
+    @Autowired
+    private NoteShareService noteShareService;
+
+    // Also binds the user's shard, so every note query after this goes to the right database
     private User getCurrentUser() {
+        User user = resolveCurrentUser();
+        shardDirectory.bind(user);
+        return user;
+    }
+
+    private User resolveCurrentUser() {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
         
         if (authentication == null || !authentication.isAuthenticated()) {
@@ -84,7 +124,7 @@ public class NoteController {
     }
 
     @GetMapping
-    public ResponseEntity<List<NoteResponse>> getAllNotes() {
+    public ResponseEntity<List<NoteResponse>> getAllNotes(@RequestParam(defaultValue = "false") boolean includeArchived) {
         User user = getCurrentUser();
         logger.info("Fetching all notes for user: {}", user.getEmail());
         List<Note> notes = noteService.findAllByUser(user);
@@ -92,6 +132,14 @@ public class NoteController {
         List<NoteResponse> response = notes.stream()
                 .map(NoteResponse::new)
                 .collect(Collectors.toList());
+        if (includeArchived) {
+            // Archived notes follow the active ones in the user's order, newest archived first
+            for (Note archived : noteService.findArchivedByUser(user)) {
+                NoteResponse archivedResponse = new NoteResponse(archived);
+                archivedResponse.setIsArchived(true);
+                response.add(archivedResponse);
+            }
+        }
         return ResponseEntity.ok(response);
     }
 
@@ -148,6 +196,70 @@ public class NoteController {
         return ResponseEntity.ok(response);
     }
 
+    /**
+     * Tag filter, e.g. {@code ?tags=work,urgent&favorite=true&excludeTags=archived}: notes with
+     * all of {@code tags}, at least one of {@code anyTags}, none of {@code excludeTags}.
+     */
+    @GetMapping("/filter")
+    public ResponseEntity<NotePageResponse> filterNotes(@RequestParam(defaultValue = "") Set<String> tags,
+                                                        @RequestParam(defaultValue = "") Set<String> anyTags,
+                                                        @RequestParam(defaultValue = "") Set<String> excludeTags,
+                                                        @RequestParam(required = false) Boolean favorite,
+                                                        @RequestParam(defaultValue = "0") int page,
+                                                        @RequestParam(defaultValue = "20") int size) {
+        if (page < 0 || size < 1 || size > 100) {
+            return ResponseEntity.badRequest().build();
+        }
+        User user = getCurrentUser();
+        NoteTagIndex.Filter filter = new NoteTagIndex.Filter(NoteTagIndex.normalize(tags),
+                NoteTagIndex.normalize(anyTags), NoteTagIndex.normalize(excludeTags), favorite);
+        Page<Note> notes = noteService.filterNotes(user, filter, page, size);
+        return ResponseEntity.ok(new NotePageResponse(notes.map(NoteResponse::new)));
+    }
+
+    /**
+     * The user's order (pinned notes first) in keyset pages: pass the previous page's
+     * {@code nextCursor} as {@code cursor}.
+     */
+    @GetMapping("/ordered")
+    public ResponseEntity<NoteCursorPageResponse> getOrderedNotes(@RequestParam(required = false) String cursor,
+                                                                  @RequestParam(defaultValue = "20") int size) {
+        if (size < 1 || size > 100) {
+            return ResponseEntity.badRequest().build();
+        }
+        NoteOrderService.Cursor after;
+        try {
+            after = cursor != null && !cursor.isEmpty() ? NoteOrderService.Cursor.decode(cursor) : null;
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        User user = getCurrentUser();
+        NoteService.OrderedPage page = noteService.findOrderedPage(user, after, size);
+        List<NoteResponse> notes = page.notes().stream()
+                .map(NoteResponse::new)
+                .collect(Collectors.toList());
+        return ResponseEntity.ok(new NoteCursorPageResponse(notes,
+                page.next() != null ? page.next().encode() : null));
+    }
+
+    // Drag-and-drop and pinning: only the moved note's position is written
+    @PutMapping("/{id}/position")
+    public ResponseEntity<NoteResponse> moveNote(@PathVariable Long id, @RequestBody NotePositionRequest request) {
+        if (request.getAfterId() != null && request.getBeforeId() != null) {
+            return ResponseEntity.badRequest().build();
+        }
+        User user = getCurrentUser();
+        try {
+            Optional<Note> note = noteService.moveNote(id, user, request.getAfterId(), request.getBeforeId(),
+                    request.getPinned());
+            return note.map(moved -> ResponseEntity.ok(new NoteResponse(moved)))
+                    .orElseGet(() -> ResponseEntity.notFound().build());
+        } catch (IllegalArgumentException e) {
+            logger.debug("Rejected move of note {}: {}", id, e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     @GetMapping("/favorites")
     public ResponseEntity<List<NoteResponse>> getFavoriteNotes() {
         User user = getCurrentUser();
@@ -158,6 +270,218 @@ public class NoteController {
         return ResponseEntity.ok(response);
     }
 
+    // Dashboard header: read from the per-user aggregates row, never computed from the notes
+    @GetMapping("/stats")
+    public ResponseEntity<NoteStatsResponse> getStats() {
+        User user = getCurrentUser();
+        return ResponseEntity.ok(new NoteStatsResponse(noteService.getStats(user)));
+    }
+
+    @GetMapping("/{id}/revisions")
+    public ResponseEntity<List<NoteRevisionResponse>> getRevisions(@PathVariable Long id) {
+        try {
+            User user = getCurrentUser();
+            return ResponseEntity.ok(noteService.listRevisions(id, user));
+        } catch (RuntimeException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    @GetMapping("/{id}/revisions/{revision}")
+    public ResponseEntity<NoteRevisionResponse> getRevision(@PathVariable Long id, @PathVariable int revision) {
+        try {
+            User user = getCurrentUser();
+            Optional<NoteRevisionResponse> response = noteService.getRevision(id, revision, user);
+            return response.map(ResponseEntity::ok).orElseGet(() -> ResponseEntity.notFound().build());
+        } catch (RuntimeException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    @PostMapping("/{id}/revisions/{revision}/restore")
+    public ResponseEntity<NoteResponse> restoreRevision(@PathVariable Long id, @PathVariable int revision) {
+        try {
+            User user = getCurrentUser();
+            Note note = noteService.restoreRevision(id, revision, user);
+            logger.info("Restored note {} to revision {} for user: {}", id, revision, user.getEmail());
+            return ResponseEntity.ok(new NoteResponse(note));
+        } catch (RuntimeException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    /**
+     * Streams note content as UTF-8 text. A single {@code Range: bytes=...} header or the
+     * {@code offset}/{@code length} parameters select a slice, answered with 206 Partial Content.
+     * Written straight to the response so the body is never assembled in memory.
+     */
+    @GetMapping("/{id}/content")
+    public void getNoteContent(@PathVariable Long id,
+                               @RequestParam(required = false) Long offset,
+                               @RequestParam(required = false) Long length,
+                               HttpServletRequest request,
+                               HttpServletResponse response) throws IOException {
+        User user = getCurrentUser();
+        Optional<Note> noteOpt = noteService.findByIdAndUser(id, user);
+        if (noteOpt.isEmpty()) {
+            response.setStatus(HttpStatus.NOT_FOUND.value());
+            return;
+        }
+
+        Note note = noteOpt.get();
+        long total = largeNoteService.contentLength(note);
+        String etag = largeNoteService.etag(note);
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        long start = 0;
+        long end = total;
+        boolean partial = false;
+        String range = request.getHeader(HttpHeaders.RANGE);
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        try {
+            if (offset != null || length != null) {
+                start = offset != null ? offset : 0;
+                end = length != null ? Math.min(total, start + length) : total;
+                if (start < 0 || start > total || end < start) {
+                    throw new IllegalArgumentException("Invalid offset or length");
+                }
+                partial = true;
+            } else if (range != null && (ifRange == null || ifRange.equals(etag))) {
+                List<HttpRange> ranges = HttpRange.parseRanges(range);
+                // Multiple ranges are not supported; the full content is returned instead
+                if (ranges.size() == 1) {
+                    start = ranges.get(0).getRangeStart(total);
+                    end = ranges.get(0).getRangeEnd(total) + 1;
+                    partial = true;
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + total);
+            return;
+        }
+
+        if (partial) {
+            response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + (end - 1) + "/" + total);
+        }
+        response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setContentLengthLong(end - start);
+        largeNoteService.writeContent(note, start, end - start, response.getOutputStream());
+    }
+
+    /**
+     * Replaces note content with the raw request body. Content over the inline limit is stored
+     * in chunks and the note becomes a large note.
+     */
+    @PutMapping("/{id}/content")
+    public ResponseEntity<NoteResponse> replaceNoteContent(@PathVariable Long id, HttpServletRequest request) {
+        try {
+            User user = getCurrentUser();
+            Note note = largeNoteService.replaceContent(id, user, request.getInputStream());
+            logger.info("Replaced content of note {} ({} bytes) for user: {}",
+                    id, largeNoteService.contentLength(note), user.getEmail());
+            return ResponseEntity.ok(new NoteResponse(note));
+        } catch (ResponseStatusException e) {
+            return ResponseEntity.status(e.getStatusCode()).build();
+        } catch (IOException e) {
+            logger.warn("Failed to read content upload for note {}: {}", id, e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (RuntimeException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    // Replaces `length` bytes at `offset` with the raw request body
+    @PatchMapping("/{id}/content")
+    public ResponseEntity<NoteResponse> editNoteContent(@PathVariable Long id,
+                                                        @RequestParam long offset,
+                                                        @RequestParam(defaultValue = "0") long length,
+                                                        HttpServletRequest request) {
+        try {
+            User user = getCurrentUser();
+            Note note = largeNoteService.editContent(id, user, offset, length, request.getInputStream());
+            return ResponseEntity.ok(new NoteResponse(note));
+        } catch (ResponseStatusException e) {
+            return ResponseEntity.status(e.getStatusCode()).build();
+        } catch (IOException e) {
+            logger.warn("Failed to read content edit for note {}: {}", id, e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (RuntimeException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    @GetMapping("/{id}/share")
+    public ResponseEntity<NoteShareResponse> getShare(@PathVariable Long id) {
+        User user = getCurrentUser();
+        return noteShareService.find(id, user)
+                .map(share -> ResponseEntity.ok(new NoteShareResponse(share, noteShareService.url(share))))
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Publishes the note at a public link. A note has at most one link; sharing it again returns
+     * the existing link without publishing the note's current state (see republish).
+     */
+    @PostMapping("/{id}/share")
+    public ResponseEntity<NoteShareResponse> shareNote(@PathVariable Long id) {
+        try {
+            User user = getCurrentUser();
+            Optional<NoteShare> existing = noteShareService.find(id, user);
+            if (existing.isPresent()) {
+                return ResponseEntity.ok(new NoteShareResponse(existing.get(), noteShareService.url(existing.get())));
+            }
+            Note note = noteService.findByIdAndUser(id, user)
+                    .orElseThrow(() -> new RuntimeException("Note not found or access denied"));
+            NoteShare share = noteShareService.share(note, user);
+            logger.info("Shared note {} for user: {}", id, user.getEmail());
+            return ResponseEntity.status(HttpStatus.CREATED).body(new NoteShareResponse(share, noteShareService.url(share)));
+        } catch (ResponseStatusException e) {
+            return ResponseEntity.status(e.getStatusCode()).build();
+        } catch (UncheckedIOException e) {
+            logger.error("Failed to publish share snapshot for note {}: {}", id, e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        } catch (RuntimeException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    // Replaces what the link shows with the note's current state
+    @PostMapping("/{id}/share/republish")
+    public ResponseEntity<NoteShareResponse> republishNote(@PathVariable Long id) {
+        try {
+            User user = getCurrentUser();
+            Note note = noteService.findByIdAndUser(id, user)
+                    .orElseThrow(() -> new RuntimeException("Note not found or access denied"));
+            NoteShare share = noteShareService.republish(note, user);
+            return ResponseEntity.ok(new NoteShareResponse(share, noteShareService.url(share)));
+        } catch (ResponseStatusException e) {
+            return ResponseEntity.status(e.getStatusCode()).build();
+        } catch (UncheckedIOException e) {
+            logger.error("Failed to publish share snapshot for note {}: {}", id, e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        } catch (RuntimeException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    @DeleteMapping("/{id}/share")
+    public ResponseEntity<Void> unshareNote(@PathVariable Long id) {
+        try {
+            User user = getCurrentUser();
+            noteShareService.unshare(id, user);
+            logger.info("Unshared note {} for user: {}", id, user.getEmail());
+            return ResponseEntity.noContent().build();
+        } catch (UncheckedIOException e) {
+            logger.error("Failed to delete share snapshot for note {}: {}", id, e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        } catch (RuntimeException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
 
     @PostMapping("/{id}/send-email")
     public ResponseEntity<Object> sendNoteByEmail(@PathVariable Long id) {
@@ -183,6 +507,15 @@ public class NoteController {
                 public final String sentTo = userEmail;
             });
             
+        } catch (DependencyUnavailableException e) {
+            logger.warn("Email for note ID {} not sent: {}", id, e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                    .body(new Object() {
+                        public final String error = "Email is temporarily unavailable";
+                        public final String message = "The note was not sent; try again later";
+                        public final long retryAfterSeconds = e.getRetryAfterSeconds();
+                    });
         } catch (RuntimeException e) {
             logger.error("Failed to send email for note ID {}: {}", id, e.getMessage(), e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(new Object() {
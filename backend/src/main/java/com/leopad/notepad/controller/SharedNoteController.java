@@ -0,0 +1,85 @@
+package com.leopad.notepad.controller;
+
+import com.leopad.notepad.share.ShareSnapshot;
+import com.leopad.notepad.share.ShareSnapshotCache;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Public share link views. No authentication and no database: snapshots come from memory or
+ * the snapshot store. The link itself is revalidated on every use (a 304 while its ETag, the
+ * content hash, is unchanged), so republishing and unsharing take effect at once; the versioned
+ * URLs never change content and may be cached for a long time.
+ */
+@RestController
+@RequestMapping("/s")
+public class SharedNoteController {
+
+    private static final MediaType HTML = new MediaType("text", "html", StandardCharsets.UTF_8);
+    // Inline styles only: no scripts, frames or remote content in a shared page
+    private static final String CONTENT_SECURITY_POLICY =
+            "default-src 'none'; style-src 'unsafe-inline'; base-uri 'none'; form-action 'none'; frame-ancestors 'none'";
+
+    @Autowired
+    private ShareSnapshotCache shareSnapshotCache;
+
+    @Value("${notes.share.immutable-max-age:365d}")
+    private Duration immutableMaxAge;
+
+    @GetMapping("/{token}")
+    public ResponseEntity<byte[]> html(@PathVariable String token) {
+        return view(token, null, false);
+    }
+
+    @GetMapping("/{token}.json")
+    public ResponseEntity<byte[]> json(@PathVariable String token) {
+        return view(token, null, true);
+    }
+
+    @GetMapping("/{token}/{version}")
+    public ResponseEntity<byte[]> versionHtml(@PathVariable String token, @PathVariable String version) {
+        return view(token, version, false);
+    }
+
+    @GetMapping("/{token}/{version}.json")
+    public ResponseEntity<byte[]> versionJson(@PathVariable String token, @PathVariable String version) {
+        return view(token, version, true);
+    }
+
+    private ResponseEntity<byte[]> view(String token, String version, boolean json) {
+        if (!ShareSnapshot.isValidToken(token) || (version != null && !ShareSnapshot.isValidVersion(version))) {
+            return ResponseEntity.notFound().build();
+        }
+        Optional<ShareSnapshot> found = shareSnapshotCache.get(token);
+        // Superseded versions are gone along with the snapshot they belonged to
+        if (found.isEmpty() || (version != null && !version.equals(found.get().version()))) {
+            return ResponseEntity.notFound().build();
+        }
+        ShareSnapshot snapshot = found.get();
+        CacheControl cacheControl = version != null
+                ? CacheControl.maxAge(immutableMaxAge).cachePublic().immutable()
+                : CacheControl.noCache().cachePublic();
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .cacheControl(cacheControl)
+                .eTag(snapshot.version() + (json ? ".json" : ".html"))
+                .header("Referrer-Policy", "no-referrer");
+        if (json) {
+            return response.contentType(MediaType.APPLICATION_JSON).body(snapshot.json());
+        }
+        return response.contentType(HTML)
+                .header("Content-Security-Policy", CONTENT_SECURITY_POLICY)
+                .header("X-Robots-Tag", "noindex")
+                .body(snapshot.html());
+    }
+}
@@ -0,0 +1,69 @@
+package com.leopad.notepad.datasource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Routes read-only transactions to a healthy replica and everything else to the primary.
+ * Must sit behind a {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}
+ * so the lookup happens once the transaction's read-only flag is known.
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+    public static final String PRIMARY = "primary";
+
+    private final ReplicaHealthChecker replicaHealthChecker;
+    private final ReadYourWritesTracker readYourWritesTracker;
+
+    public ReadWriteRoutingDataSource(ReplicaHealthChecker replicaHealthChecker,
+                                      ReadYourWritesTracker readYourWritesTracker) {
+        this.replicaHealthChecker = replicaHealthChecker;
+        this.readYourWritesTracker = readYourWritesTracker;
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        String userKey = currentUserKey();
+
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            recordWriteOnCommit(userKey);
+            return PRIMARY;
+        }
+
+        if (readYourWritesTracker.isSticky(userKey)) {
+            return PRIMARY;
+        }
+
+        String replica = replicaHealthChecker.nextHealthyReplica();
+        return replica != null ? replica : PRIMARY;
+    }
+
+    private void recordWriteOnCommit(String userKey) {
+        if (userKey == null) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            readYourWritesTracker.recordWrite(userKey);
+            return;
+        }
+        // The stickiness window starts when the write becomes visible, not when it begins
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                readYourWritesTracker.recordWrite(userKey);
+            }
+        });
+    }
+
+    private String currentUserKey() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof UserDetails userDetails) {
+            return userDetails.getUsername();
+        }
+        return null;
+    }
+}
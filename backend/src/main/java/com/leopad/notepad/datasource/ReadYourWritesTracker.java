@@ -0,0 +1,49 @@
+package com.leopad.notepad.datasource;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers which users wrote recently so their follow-up reads are served by the
+ * primary instead of a replica that may not have caught up yet.
+ */
+public class ReadYourWritesTracker {
+
+    private final long windowNanos;
+    private final Map<String, Long> lastWriteByUser = new ConcurrentHashMap<>();
+
+    public ReadYourWritesTracker(Duration window) {
+        this.windowNanos = window.toNanos();
+    }
+
+    public void recordWrite(String userKey) {
+        if (userKey != null && windowNanos > 0) {
+            lastWriteByUser.put(userKey, System.nanoTime());
+        }
+    }
+
+    public boolean isSticky(String userKey) {
+        if (userKey == null) {
+            return false;
+        }
+        Long lastWrite = lastWriteByUser.get(userKey);
+        if (lastWrite == null) {
+            return false;
+        }
+        if (System.nanoTime() - lastWrite < windowNanos) {
+            return true;
+        }
+        lastWriteByUser.remove(userKey, lastWrite);
+        return false;
+    }
+
+    public void purgeExpired() {
+        long now = System.nanoTime();
+        lastWriteByUser.entrySet().removeIf(entry -> now - entry.getValue() >= windowNanos);
+    }
+
+    public int size() {
+        return lastWriteByUser.size();
+    }
+}
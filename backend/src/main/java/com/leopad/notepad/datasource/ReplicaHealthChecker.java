@@ -0,0 +1,153 @@
+package com.leopad.notepad.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Periodically probes every replica and keeps the set of replicas that are allowed to
+ * serve reads. When no replica is healthy, {@link #nextHealthyReplica()} returns null
+ * and reads fail back to the primary.
+ */
+public class ReplicaHealthChecker implements HealthIndicator {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReplicaHealthChecker.class);
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+
+    private final Map<String, HikariDataSource> replicas;
+    private final ReadYourWritesTracker readYourWritesTracker;
+    private final long maxLagSeconds;
+    private final AtomicInteger roundRobin = new AtomicInteger();
+    private final Map<String, String> lastFailures = new LinkedHashMap<>();
+
+    private volatile List<String> healthyReplicas;
+    private ScheduledExecutorService prober;
+
+    public ReplicaHealthChecker(Map<String, HikariDataSource> replicas, ReadYourWritesTracker readYourWritesTracker,
+                                Duration maxLag) {
+        this.replicas = replicas;
+        this.readYourWritesTracker = readYourWritesTracker;
+        this.maxLagSeconds = maxLag.toSeconds();
+        // Assume healthy until the first probe says otherwise so reads spread immediately after startup
+        this.healthyReplicas = List.copyOf(replicas.keySet());
+    }
+
+    public String nextHealthyReplica() {
+        List<String> healthy = healthyReplicas;
+        if (healthy.isEmpty()) {
+            return null;
+        }
+        int index = Math.floorMod(roundRobin.getAndIncrement(), healthy.size());
+        return healthy.get(index);
+    }
+
+    public Set<String> replicaNames() {
+        return replicas.keySet();
+    }
+
+    public HikariDataSource replica(String name) {
+        return replicas.get(name);
+    }
+
+    // Probes now and then every interval, counted from the end of the previous round
+    public void start(Duration interval) {
+        prober = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "replica-health-check");
+            thread.setDaemon(true);
+            return thread;
+        });
+        prober.scheduleWithFixedDelay(() -> {
+            try {
+                checkReplicas();
+            } catch (RuntimeException e) {
+                // A throwing task would cancel every later round
+                logger.error("Replica health check failed: {}", e.getMessage(), e);
+            }
+        }, 0, interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    public void checkReplicas() {
+        List<String> healthy = new ArrayList<>();
+        for (Map.Entry<String, HikariDataSource> entry : replicas.entrySet()) {
+            String name = entry.getKey();
+            String failure = probe(entry.getValue());
+            synchronized (lastFailures) {
+                if (failure == null) {
+                    healthy.add(name);
+                    if (lastFailures.remove(name) != null) {
+                        logger.info("Replica {} is healthy again, returning it to read rotation", name);
+                    }
+                } else if (lastFailures.put(name, failure) == null) {
+                    logger.warn("Replica {} removed from read rotation: {}", name, failure);
+                }
+            }
+        }
+        if (healthy.isEmpty() && !replicas.isEmpty()) {
+            logger.debug("No healthy replicas, all reads are routed to the primary");
+        }
+        healthyReplicas = List.copyOf(healthy);
+        readYourWritesTracker.purgeExpired();
+    }
+
+    private String probe(HikariDataSource dataSource) {
+        try (Connection connection = dataSource.getConnection()) {
+            if (!connection.isValid(VALIDATION_TIMEOUT_SECONDS)) {
+                return "connection validation failed";
+            }
+            try (Statement statement = connection.createStatement();
+                 ResultSet rs = statement.executeQuery(
+                     "SELECT EXTRACT(EPOCH FROM (now() - pg_last_xact_replay_timestamp()))")) {
+                // NULL means the target is not a streaming standby (e.g. a second local database)
+                if (rs.next()) {
+                    double lag = rs.getDouble(1);
+                    if (!rs.wasNull() && lag > maxLagSeconds) {
+                        return String.format("replication lag %.1fs exceeds %ds", lag, maxLagSeconds);
+                    }
+                }
+            }
+            return null;
+        } catch (Exception e) {
+            return e.getMessage();
+        }
+    }
+
+    @Override
+    public Health health() {
+        Map<String, Object> details = new LinkedHashMap<>();
+        List<String> healthy = healthyReplicas;
+        for (String name : replicas.keySet()) {
+            details.put(name, healthy.contains(name) ? "UP" : "DOWN");
+        }
+        synchronized (lastFailures) {
+            if (!lastFailures.isEmpty()) {
+                details.put("failures", new LinkedHashMap<>(lastFailures));
+            }
+        }
+        details.put("stickyUsers", readYourWritesTracker.size());
+        // Reads fail back to the primary, so an unhealthy replica never makes the application unhealthy
+        return Health.up().withDetails(details).build();
+    }
+
+    public void close() {
+        if (prober != null) {
+            prober.shutdownNow();
+        }
+        replicas.values().forEach(HikariDataSource::close);
+    }
+}
@@ -0,0 +1,35 @@
+package com.leopad.notepad.dto;
+
+import java.util.List;
+
+public class NoteCursorPageResponse {
+
+    private List<NoteResponse> notes;
+    // Opaque; pass back as ?cursor= for the next page. Null on the last page.
+    private String nextCursor;
+
+    // Constructors
+    public NoteCursorPageResponse() {}
+
+    public NoteCursorPageResponse(List<NoteResponse> notes, String nextCursor) {
+        this.notes = notes;
+        this.nextCursor = nextCursor;
+    }
+
+    // Getters and Setters
+    public List<NoteResponse> getNotes() {
+        return notes;
+    }
+
+    public void setNotes(List<NoteResponse> notes) {
+        this.notes = notes;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+}
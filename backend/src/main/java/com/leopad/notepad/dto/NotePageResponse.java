@@ -0,0 +1,56 @@
+package com.leopad.notepad.dto;
+
+import org.springframework.data.domain.Page;
+
+import java.util.List;
+
+public class NotePageResponse {
+
+    private List<NoteResponse> notes;
+    private int page;
+    private int size;
+    private long total;
+
+    // Constructors
+    public NotePageResponse() {}
+
+    public NotePageResponse(Page<NoteResponse> page) {
+        this.notes = page.getContent();
+        this.page = page.getNumber();
+        this.size = page.getSize();
+        this.total = page.getTotalElements();
+    }
+
+    // Getters and Setters
+    public List<NoteResponse> getNotes() {
+        return notes;
+    }
+
+    public void setNotes(List<NoteResponse> notes) {
+        this.notes = notes;
+    }
+
+    public int getPage() {
+        return page;
+    }
+
+    public void setPage(int page) {
+        this.page = page;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public void setSize(int size) {
+        this.size = size;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public void setTotal(long total) {
+        this.total = total;
+    }
+}
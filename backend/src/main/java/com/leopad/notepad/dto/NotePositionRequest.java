@@ -0,0 +1,41 @@
+package com.leopad.notepad.dto;
+
+/**
+ * Where to move a note: right after {@code afterId} or right before {@code beforeId} (give one;
+ * neither moves it to the top of its section). {@code pinned} moves it into or out of the pinned
+ * section; null keeps its current one.
+ */
+public class NotePositionRequest {
+
+    private Long afterId;
+    private Long beforeId;
+    private Boolean pinned;
+
+    // Constructors
+    public NotePositionRequest() {}
+
+    // Getters and Setters
+    public Long getAfterId() {
+        return afterId;
+    }
+
+    public void setAfterId(Long afterId) {
+        this.afterId = afterId;
+    }
+
+    public Long getBeforeId() {
+        return beforeId;
+    }
+
+    public void setBeforeId(Long beforeId) {
+        this.beforeId = beforeId;
+    }
+
+    public Boolean getPinned() {
+        return pinned;
+    }
+
+    public void setPinned(Boolean pinned) {
+        this.pinned = pinned;
+    }
+}
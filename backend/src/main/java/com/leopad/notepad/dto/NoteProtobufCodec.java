@@ -0,0 +1,296 @@
+package com.leopad.notepad.dto;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.WireFormat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Protocol Buffers encoding of the note DTOs, following src/main/proto/notes.proto. Written by
+ * hand against the protobuf runtime instead of generated classes so the DTOs stay the single
+ * model. Lists are encoded one note at a time straight to the output stream, and the owner's
+ * id and email are written once per list instead of on every note.
+ */
+public final class NoteProtobufCodec {
+
+    // Note
+    private static final int NOTE_ID = 1;
+    private static final int NOTE_TITLE = 2;
+    private static final int NOTE_CONTENT = 3;
+    private static final int NOTE_IS_FAVORITE = 4;
+    private static final int NOTE_CREATED_AT = 5;
+    private static final int NOTE_UPDATED_AT = 6;
+    private static final int NOTE_USER_ID = 7;
+    private static final int NOTE_USER_EMAIL = 8;
+    private static final int NOTE_IS_LARGE = 9;
+    private static final int NOTE_CONTENT_LENGTH = 10;
+    private static final int NOTE_TAGS = 11;
+    private static final int NOTE_IS_ARCHIVED = 12;
+    private static final int NOTE_IS_PINNED = 13;
+    private static final int NOTE_POSITION = 14;
+
+    // NoteList, NotePage and NoteCursorPage
+    private static final int LIST_NOTES = 1;
+    private static final int LIST_USER_ID = 2;
+    private static final int LIST_USER_EMAIL = 3;
+    private static final int PAGE_PAGE = 4;
+    private static final int PAGE_SIZE = 5;
+    private static final int PAGE_TOTAL = 6;
+    private static final int CURSOR_PAGE_NEXT_CURSOR = 4;
+
+    // NoteRequest and TagSet
+    private static final int REQUEST_TITLE = 1;
+    private static final int REQUEST_CONTENT = 2;
+    private static final int REQUEST_IS_FAVORITE = 3;
+    private static final int REQUEST_TAGS = 4;
+    private static final int TAG_SET_VALUES = 1;
+
+    private NoteProtobufCodec() {
+    }
+
+    public static void writeNote(NoteResponse note, OutputStream out) throws IOException {
+        CodedOutputStream output = CodedOutputStream.newInstance(out);
+        writeNoteFields(output, note, true);
+        output.flush();
+    }
+
+    public static void writeNoteList(List<NoteResponse> notes, OutputStream out) throws IOException {
+        CodedOutputStream output = CodedOutputStream.newInstance(out);
+        writeNotes(output, notes);
+        output.flush();
+    }
+
+    public static void writeNotePage(NotePageResponse page, OutputStream out) throws IOException {
+        CodedOutputStream output = CodedOutputStream.newInstance(out);
+        writeNotes(output, page.getNotes());
+        if (page.getPage() != 0) {
+            output.writeInt32(PAGE_PAGE, page.getPage());
+        }
+        if (page.getSize() != 0) {
+            output.writeInt32(PAGE_SIZE, page.getSize());
+        }
+        if (page.getTotal() != 0) {
+            output.writeInt64(PAGE_TOTAL, page.getTotal());
+        }
+        output.flush();
+    }
+
+    public static void writeNoteCursorPage(NoteCursorPageResponse page, OutputStream out) throws IOException {
+        CodedOutputStream output = CodedOutputStream.newInstance(out);
+        writeNotes(output, page.getNotes());
+        writeString(output, CURSOR_PAGE_NEXT_CURSOR, page.getNextCursor());
+        output.flush();
+    }
+
+    public static NoteResponse readNote(InputStream in) throws IOException {
+        return readNoteFields(CodedInputStream.newInstance(in));
+    }
+
+    public static List<NoteResponse> readNoteList(InputStream in) throws IOException {
+        CodedInputStream input = CodedInputStream.newInstance(in);
+        List<NoteResponse> notes = new ArrayList<>();
+        Long userId = null;
+        String userEmail = null;
+        int tag;
+        while ((tag = input.readTag()) != 0) {
+            switch (WireFormat.getTagFieldNumber(tag)) {
+                case LIST_NOTES -> {
+                    int limit = input.pushLimit(input.readRawVarint32());
+                    notes.add(readNoteFields(input));
+                    input.popLimit(limit);
+                }
+                case LIST_USER_ID -> userId = input.readInt64();
+                case LIST_USER_EMAIL -> userEmail = input.readString();
+                default -> input.skipField(tag);
+            }
+        }
+        for (NoteResponse note : notes) {
+            if (note.getUserId() == null) {
+                note.setUserId(userId);
+                note.setUserEmail(userEmail);
+            }
+        }
+        return notes;
+    }
+
+    public static NoteRequest readNoteRequest(InputStream in) throws IOException {
+        CodedInputStream input = CodedInputStream.newInstance(in);
+        NoteRequest request = new NoteRequest();
+        int tag;
+        while ((tag = input.readTag()) != 0) {
+            switch (WireFormat.getTagFieldNumber(tag)) {
+                case REQUEST_TITLE -> request.setTitle(input.readString());
+                case REQUEST_CONTENT -> request.setContent(input.readString());
+                case REQUEST_IS_FAVORITE -> request.setIsFavorite(input.readBool());
+                case REQUEST_TAGS -> {
+                    int limit = input.pushLimit(input.readRawVarint32());
+                    Set<String> tags = new HashSet<>();
+                    int tagSetField;
+                    while ((tagSetField = input.readTag()) != 0) {
+                        if (WireFormat.getTagFieldNumber(tagSetField) == TAG_SET_VALUES) {
+                            tags.add(input.readString());
+                        } else {
+                            input.skipField(tagSetField);
+                        }
+                    }
+                    input.popLimit(limit);
+                    request.setTags(tags);
+                }
+                default -> input.skipField(tag);
+            }
+        }
+        return request;
+    }
+
+    public static void writeNoteRequest(NoteRequest request, OutputStream out) throws IOException {
+        CodedOutputStream output = CodedOutputStream.newInstance(out);
+        writeString(output, REQUEST_TITLE, request.getTitle());
+        writeString(output, REQUEST_CONTENT, request.getContent());
+        if (request.getIsFavorite() != null) {
+            output.writeBool(REQUEST_IS_FAVORITE, request.getIsFavorite());
+        }
+        if (request.getTags() != null) {
+            int size = 0;
+            for (String tag : request.getTags()) {
+                size += CodedOutputStream.computeStringSize(TAG_SET_VALUES, tag);
+            }
+            output.writeTag(REQUEST_TAGS, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+            output.writeUInt32NoTag(size);
+            for (String tag : request.getTags()) {
+                output.writeString(TAG_SET_VALUES, tag);
+            }
+        }
+        output.flush();
+    }
+
+    private static void writeNotes(CodedOutputStream output, List<NoteResponse> notes) throws IOException {
+        // Every note of a response belongs to the caller; hoist the owner unless that ever changes
+        boolean sameOwner = notes.stream().map(NoteResponse::getUserId).distinct().count() <= 1;
+        Scratch scratch = new Scratch();
+        CodedOutputStream noteOutput = CodedOutputStream.newInstance(scratch, 4096);
+        for (NoteResponse note : notes) {
+            scratch.reset();
+            writeNoteFields(noteOutput, note, !sameOwner);
+            noteOutput.flush();
+            output.writeTag(LIST_NOTES, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+            output.writeUInt32NoTag(scratch.size());
+            output.writeRawBytes(scratch.buffer(), 0, scratch.size());
+        }
+        if (sameOwner && !notes.isEmpty()) {
+            writeInt64(output, LIST_USER_ID, notes.get(0).getUserId());
+            writeString(output, LIST_USER_EMAIL, notes.get(0).getUserEmail());
+        }
+    }
+
+    private static void writeNoteFields(CodedOutputStream output, NoteResponse note, boolean includeUser)
+            throws IOException {
+        writeInt64(output, NOTE_ID, note.getId());
+        writeString(output, NOTE_TITLE, note.getTitle());
+        writeString(output, NOTE_CONTENT, note.getContent());
+        writeBool(output, NOTE_IS_FAVORITE, note.getIsFavorite());
+        writeTimestamp(output, NOTE_CREATED_AT, note.getCreatedAt());
+        writeTimestamp(output, NOTE_UPDATED_AT, note.getUpdatedAt());
+        if (includeUser) {
+            writeInt64(output, NOTE_USER_ID, note.getUserId());
+            writeString(output, NOTE_USER_EMAIL, note.getUserEmail());
+        }
+        writeBool(output, NOTE_IS_LARGE, note.getIsLarge());
+        writeInt64(output, NOTE_CONTENT_LENGTH, note.getContentLength());
+        if (note.getTags() != null) {
+            for (String tag : note.getTags()) {
+                output.writeString(NOTE_TAGS, tag);
+            }
+        }
+        writeBool(output, NOTE_IS_ARCHIVED, note.getIsArchived());
+        writeBool(output, NOTE_IS_PINNED, note.getIsPinned());
+        writeString(output, NOTE_POSITION, note.getPosition());
+    }
+
+    private static NoteResponse readNoteFields(CodedInputStream input) throws IOException {
+        NoteResponse note = new NoteResponse();
+        note.setTitle("");
+        note.setContent("");
+        note.setIsFavorite(false);
+        note.setIsLarge(false);
+        note.setIsArchived(false);
+        note.setIsPinned(false);
+        note.setPosition("");
+        Set<String> tags = new TreeSet<>();
+        int tag;
+        while ((tag = input.readTag()) != 0) {
+            switch (WireFormat.getTagFieldNumber(tag)) {
+                case NOTE_ID -> note.setId(input.readInt64());
+                case NOTE_TITLE -> note.setTitle(input.readString());
+                case NOTE_CONTENT -> note.setContent(input.readString());
+                case NOTE_IS_FAVORITE -> note.setIsFavorite(input.readBool());
+                case NOTE_CREATED_AT -> note.setCreatedAt(toDateTime(input.readInt64()));
+                case NOTE_UPDATED_AT -> note.setUpdatedAt(toDateTime(input.readInt64()));
+                case NOTE_USER_ID -> note.setUserId(input.readInt64());
+                case NOTE_USER_EMAIL -> note.setUserEmail(input.readString());
+                case NOTE_IS_LARGE -> note.setIsLarge(input.readBool());
+                case NOTE_CONTENT_LENGTH -> note.setContentLength(input.readInt64());
+                case NOTE_TAGS -> tags.add(input.readString());
+                case NOTE_IS_ARCHIVED -> note.setIsArchived(input.readBool());
+                case NOTE_IS_PINNED -> note.setIsPinned(input.readBool());
+                case NOTE_POSITION -> note.setPosition(input.readString());
+                default -> input.skipField(tag);
+            }
+        }
+        note.setTags(tags);
+        return note;
+    }
+
+    // proto3 leaves default values off the wire
+
+    private static void writeString(CodedOutputStream output, int field, String value) throws IOException {
+        if (value != null && !value.isEmpty()) {
+            output.writeString(field, value);
+        }
+    }
+
+    private static void writeInt64(CodedOutputStream output, int field, Long value) throws IOException {
+        if (value != null && value != 0) {
+            output.writeInt64(field, value);
+        }
+    }
+
+    private static void writeBool(CodedOutputStream output, int field, Boolean value) throws IOException {
+        if (Boolean.TRUE.equals(value)) {
+            output.writeBool(field, true);
+        }
+    }
+
+    private static void writeTimestamp(CodedOutputStream output, int field, LocalDateTime value) throws IOException {
+        if (value != null) {
+            output.writeInt64(field, value.toInstant(ZoneOffset.UTC).toEpochMilli());
+        }
+    }
+
+    private static LocalDateTime toDateTime(long epochMillis) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(epochMillis, 1000),
+                (int) Math.floorMod(epochMillis, 1000) * 1_000_000, ZoneOffset.UTC);
+    }
+
+    // Reusable per-list buffer for one encoded note, so its length can be written before it
+    private static final class Scratch extends ByteArrayOutputStream {
+
+        Scratch() {
+            super(4096);
+        }
+
+        byte[] buffer() {
+            return buf;
+        }
+    }
+}
@@ -3,6 +3,8 @@ package com.leopad.notepad.dto;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Size;
 
+import java.util.Set;
+
 public class NoteRequest {
 
     @NotBlank(message = "Title is required")
@@ -14,6 +16,10 @@ public class NoteRequest {
 
     private Boolean isFavorite = false;
 
+    // Null leaves the note's tags unchanged on update
+    @Size(max = 20, message = "A note can have at most 20 tags")
+    private Set<@NotBlank @Size(max = 50, message = "Tags must not exceed 50 characters") String> tags;
+
     // Constructors
     public NoteRequest() {}
 
@@ -46,4 +52,12 @@ public class NoteRequest {
     public void setIsFavorite(Boolean isFavorite) {
         this.isFavorite = isFavorite;
     }
-}
\ No newline at end of file
+
+    public Set<String> getTags() {
+        return tags;
+    }
+
+    public void setTags(Set<String> tags) {
+        this.tags = tags;
+    }
+}
@@ -3,6 +3,8 @@ package com.leopad.notepad.dto;
 import com.leopad.notepad.entity.Note;
 
 import java.time.LocalDateTime;
+import java.util.Set;
+import java.util.TreeSet;
 
 public class NoteResponse {
 
@@ -10,6 +12,14 @@ public class NoteResponse {
     private String title;
     private String content;
     private Boolean isFavorite;
+    private Boolean isLarge;
+    private Long contentLength;
+    // Only listed with includeArchived=true; opening the note by id moves it back
+    private Boolean isArchived = false;
+    // Pinned notes come first; within each section notes sort by position (then id)
+    private Boolean isPinned;
+    private String position;
+    private Set<String> tags;
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
     private Long userId;
@@ -23,6 +33,11 @@ public class NoteResponse {
         this.title = note.getTitle();
         this.content = note.getContent();
         this.isFavorite = note.getIsFavorite();
+        this.isLarge = note.getIsLarge();
+        this.contentLength = note.getContentLength();
+        this.isPinned = note.getPinned();
+        this.position = note.getPosition();
+        this.tags = new TreeSet<>(note.getTags());
         this.createdAt = note.getCreatedAt();
         this.updatedAt = note.getUpdatedAt();
         if (note.getUser() != null) {
@@ -64,6 +79,54 @@ public class NoteResponse {
         this.isFavorite = isFavorite;
     }
 
+    public Boolean getIsArchived() {
+        return isArchived;
+    }
+
+    public void setIsArchived(Boolean isArchived) {
+        this.isArchived = isArchived;
+    }
+
+    public Boolean getIsPinned() {
+        return isPinned;
+    }
+
+    public void setIsPinned(Boolean isPinned) {
+        this.isPinned = isPinned;
+    }
+
+    public String getPosition() {
+        return position;
+    }
+
+    public void setPosition(String position) {
+        this.position = position;
+    }
+
+    public Boolean getIsLarge() {
+        return isLarge;
+    }
+
+    public void setIsLarge(Boolean isLarge) {
+        this.isLarge = isLarge;
+    }
+
+    public Long getContentLength() {
+        return contentLength;
+    }
+
+    public void setContentLength(Long contentLength) {
+        this.contentLength = contentLength;
+    }
+
+    public Set<String> getTags() {
+        return tags;
+    }
+
+    public void setTags(Set<String> tags) {
+        this.tags = tags;
+    }
+
     public LocalDateTime getCreatedAt() {
         return createdAt;
     }
@@ -0,0 +1,96 @@
+package com.leopad.notepad.dto;
+
+import com.leopad.notepad.repository.NoteRevisionSummary;
+
+import java.time.LocalDateTime;
+
+public class NoteRevisionResponse {
+
+    private Long noteId;
+    private Integer revision;
+    private String title;
+    private String content;
+    private Boolean isFavorite;
+    private Integer contentLength;
+    private LocalDateTime createdAt;
+
+    // Constructors
+    public NoteRevisionResponse() {}
+
+    public NoteRevisionResponse(Long noteId, NoteRevisionSummary summary) {
+        this.noteId = noteId;
+        this.revision = summary.getRevisionNumber();
+        this.title = summary.getTitle();
+        this.isFavorite = summary.getIsFavorite();
+        this.contentLength = summary.getContentLength();
+        this.createdAt = summary.getCreatedAt();
+    }
+
+    public NoteRevisionResponse(Long noteId, Integer revision, String title, String content,
+                                Boolean isFavorite, LocalDateTime createdAt) {
+        this.noteId = noteId;
+        this.revision = revision;
+        this.title = title;
+        this.content = content;
+        this.isFavorite = isFavorite;
+        this.contentLength = content != null ? content.length() : null;
+        this.createdAt = createdAt;
+    }
+
+    // Getters and Setters
+    public Long getNoteId() {
+        return noteId;
+    }
+
+    public void setNoteId(Long noteId) {
+        this.noteId = noteId;
+    }
+
+    public Integer getRevision() {
+        return revision;
+    }
+
+    public void setRevision(Integer revision) {
+        this.revision = revision;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public void setTitle(String title) {
+        this.title = title;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    public void setContent(String content) {
+        this.content = content;
+    }
+
+    public Boolean getIsFavorite() {
+        return isFavorite;
+    }
+
+    public void setIsFavorite(Boolean isFavorite) {
+        this.isFavorite = isFavorite;
+    }
+
+    public Integer getContentLength() {
+        return contentLength;
+    }
+
+    public void setContentLength(Integer contentLength) {
+        this.contentLength = contentLength;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+}
@@ -0,0 +1,76 @@
+package com.leopad.notepad.dto;
+
+import com.leopad.notepad.entity.NoteShare;
+
+import java.time.LocalDateTime;
+
+public class NoteShareResponse {
+
+    private Long noteId;
+    private String token;
+    private String url;
+    private String version;
+    private LocalDateTime createdAt;
+    private LocalDateTime publishedAt;
+
+    // Constructors
+    public NoteShareResponse() {}
+
+    public NoteShareResponse(NoteShare share, String url) {
+        this.noteId = share.getNoteId();
+        this.token = share.getToken();
+        this.url = url;
+        this.version = share.getVersion();
+        this.createdAt = share.getCreatedAt();
+        this.publishedAt = share.getPublishedAt();
+    }
+
+    // Getters and Setters
+    public Long getNoteId() {
+        return noteId;
+    }
+
+    public void setNoteId(Long noteId) {
+        this.noteId = noteId;
+    }
+
+    public String getToken() {
+        return token;
+    }
+
+    public void setToken(String token) {
+        this.token = token;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public void setUrl(String url) {
+        this.url = url;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public void setVersion(String version) {
+        this.version = version;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public LocalDateTime getPublishedAt() {
+        return publishedAt;
+    }
+
+    public void setPublishedAt(LocalDateTime publishedAt) {
+        this.publishedAt = publishedAt;
+    }
+}
@@ -0,0 +1,56 @@
+package com.leopad.notepad.dto;
+
+import com.leopad.notepad.repository.NoteStatsRepository.NoteStats;
+
+import java.time.LocalDateTime;
+
+public class NoteStatsResponse {
+
+    private long noteCount;
+    private long favoriteCount;
+    private long wordCount;
+    private LocalDateTime lastEditedAt;
+
+    // Constructors
+    public NoteStatsResponse() {}
+
+    public NoteStatsResponse(NoteStats stats) {
+        this.noteCount = stats.noteCount();
+        this.favoriteCount = stats.favoriteCount();
+        this.wordCount = stats.wordCount();
+        this.lastEditedAt = stats.lastEditedAt();
+    }
+
+    // Getters and Setters
+    public long getNoteCount() {
+        return noteCount;
+    }
+
+    public void setNoteCount(long noteCount) {
+        this.noteCount = noteCount;
+    }
+
+    public long getFavoriteCount() {
+        return favoriteCount;
+    }
+
+    public void setFavoriteCount(long favoriteCount) {
+        this.favoriteCount = favoriteCount;
+    }
+
+    public long getWordCount() {
+        return wordCount;
+    }
+
+    public void setWordCount(long wordCount) {
+        this.wordCount = wordCount;
+    }
+
+    public LocalDateTime getLastEditedAt() {
+        return lastEditedAt;
+    }
+
+    public void setLastEditedAt(LocalDateTime lastEditedAt) {
+        this.lastEditedAt = lastEditedAt;
+    }
+}
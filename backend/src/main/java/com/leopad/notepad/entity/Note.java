@@ -1,13 +1,19 @@
 package com.leopad.notepad.entity;
 
+import com.leopad.notepad.service.NoteBodyListener;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Size;
+import org.hibernate.annotations.DynamicUpdate;
 
 import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.Set;
 
 @Entity
 @Table(name = "notes")
+@DynamicUpdate
+@EntityListeners(NoteBodyListener.class)
 public class Note {
 
     @Id
@@ -36,6 +42,47 @@ public class Note {
     @Column(name = "is_favorite", nullable = false)
     private Boolean isFavorite = false;
 
+    @Column(name = "current_revision", nullable = false)
+    private Integer currentRevision = 0;
+
+    // Large notes keep content in note_chunks; content is then empty and contentLength is in bytes
+    @Column(name = "is_large", nullable = false)
+    private Boolean isLarge = false;
+
+    @Column(name = "content_length")
+    private Long contentLength;
+
+    // Words in inline content as counted by NoteStatsService; null for large notes
+    @Column(name = "word_count")
+    private Integer wordCount;
+
+    // SHA-256 (hex) of inline content, kept current on every write; null for large notes
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+
+    // Content is stored once in note_bodies under contentHash and the content column is empty
+    @Column(name = "shared_body", nullable = false)
+    private Boolean sharedBody = false;
+
+    // Key in the owner's manual order (see NotePositions); pinned notes come first, ordered among themselves
+    @Column(nullable = false)
+    private String position;
+
+    @Column(nullable = false)
+    private Boolean pinned = false;
+
+    @Transient
+    private String sharedContent;
+
+    // A shared body this note stopped referencing since it was loaded, released on the next write
+    @Transient
+    private String releasedBodyHash;
+
+    @ElementCollection(fetch = FetchType.LAZY)
+    @CollectionTable(name = "note_tags", joinColumns = @JoinColumn(name = "note_id"))
+    @Column(name = "tag", length = 50, nullable = false)
+    private Set<String> tags = new HashSet<>();
+
     // Constructors
     public Note() {
         this.createdAt = LocalDateTime.now();
@@ -67,10 +114,20 @@ public class Note {
     }
 
     public String getContent() {
-        return content;
+        return sharedBody && sharedContent != null ? sharedContent : content;
     }
 
     public void setContent(String content) {
+        if (sharedBody && content != null && content.equals(sharedContent)) {
+            return;
+        }
+        if (sharedBody) {
+            if (releasedBodyHash == null) {
+                releasedBodyHash = contentHash;
+            }
+            sharedBody = false;
+            sharedContent = null;
+        }
         this.content = content;
     }
 
@@ -106,6 +163,96 @@ public class Note {
         this.isFavorite = isFavorite;
     }
 
+    public Integer getCurrentRevision() {
+        return currentRevision;
+    }
+
+    public void setCurrentRevision(Integer currentRevision) {
+        this.currentRevision = currentRevision;
+    }
+
+    public Boolean getIsLarge() {
+        return isLarge;
+    }
+
+    public void setIsLarge(Boolean isLarge) {
+        this.isLarge = isLarge;
+    }
+
+    public Long getContentLength() {
+        return contentLength;
+    }
+
+    public void setContentLength(Long contentLength) {
+        this.contentLength = contentLength;
+    }
+
+    public Integer getWordCount() {
+        return wordCount;
+    }
+
+    public void setWordCount(Integer wordCount) {
+        this.wordCount = wordCount;
+    }
+
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+
+    public String getPosition() {
+        return position;
+    }
+
+    public void setPosition(String position) {
+        this.position = position;
+    }
+
+    public Boolean getPinned() {
+        return pinned;
+    }
+
+    public void setPinned(Boolean pinned) {
+        this.pinned = pinned;
+    }
+
+    public Boolean getSharedBody() {
+        return sharedBody;
+    }
+
+    public String getReleasedBodyHash() {
+        return releasedBodyHash;
+    }
+
+    // Moves the content into the shared body with this hash; the row keeps an empty content column
+    public void shareBody(String hash, String body) {
+        this.contentHash = hash;
+        this.sharedBody = true;
+        this.sharedContent = body;
+        this.content = "";
+        this.releasedBodyHash = null;
+    }
+
+    // Called on load for notes whose content lives in note_bodies
+    public void resolveSharedBody(String body) {
+        this.sharedContent = body;
+    }
+
+    public void bodyReleased() {
+        this.releasedBodyHash = null;
+    }
+
+    public Set<String> getTags() {
+        return tags;
+    }
+
+    public void setTags(Set<String> tags) {
+        this.tags = tags;
+    }
+
     @PreUpdate
     public void preUpdate() {
         this.updatedAt = LocalDateTime.now();
@@ -0,0 +1,32 @@
+package com.leopad.notepad.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import org.hibernate.annotations.Immutable;
+
+/**
+ * A shared note body, mapped only so queries can match on it (e.g. search). Bodies and their
+ * reference counts are written by {@link com.leopad.notepad.repository.NoteBodyRepository}.
+ */
+@Entity
+@Immutable
+@Table(name = "note_bodies")
+public class NoteBody {
+
+    @Id
+    @Column(length = 64)
+    private String hash;
+
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String content;
+
+    public String getHash() {
+        return hash;
+    }
+
+    public String getContent() {
+        return content;
+    }
+}
@@ -0,0 +1,13 @@
+package com.leopad.notepad.invalidation;
+
+/**
+ * In-process state derived from a user's rows. Evictions arrive from the InvalidationBus when
+ * another instance commits a write for that user.
+ */
+public interface CacheInvalidationHandler {
+
+    void evictUser(Long userId);
+
+    // Called when invalidation messages may have been missed, e.g. after the listener reconnects
+    void evictAll();
+}
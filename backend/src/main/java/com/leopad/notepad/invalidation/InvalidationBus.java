@@ -0,0 +1,298 @@
+package com.leopad.notepad.invalidation;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cross-instance invalidation over PostgreSQL LISTEN/NOTIFY. Committed writes enqueue the
+ * affected user id; a flusher sends the ids queued during each interval as one NOTIFY, so a
+ * write burst costs a handful of notifications rather than one per commit. The payload is
+ * {@code <instanceId>|<userId>,<userId>,...}.
+ *
+ * Every instance keeps one dedicated LISTEN connection outside the pool and evicts matching
+ * local entries, ignoring its own messages. Notifications sent while the connection is down
+ * are lost, so every (re)connect starts with a full flush of local state.
+ */
+public class InvalidationBus implements SmartLifecycle {
+
+    private static final Logger logger = LoggerFactory.getLogger(InvalidationBus.class);
+
+    // NOTIFY payloads must stay below 8000 bytes
+    private static final int MAX_PAYLOAD_LENGTH = 7900;
+
+    private final String channel;
+    private final JdbcTemplate jdbcTemplate;
+    private final Callable<Connection> listenConnectionFactory;
+    private final List<CacheInvalidationHandler> handlers;
+    private final Duration flushInterval;
+    private final Duration maxReconnectBackoff;
+    private final String instanceId = Long.toHexString(ThreadLocalRandom.current().nextLong());
+    private final Set<Long> pending = ConcurrentHashMap.newKeySet();
+
+    private final Counter publishedIds;
+    private final Counter notifications;
+    private final Counter receivedIds;
+    private final Counter fullFlushes;
+
+    private boolean autoStartup = true;
+    private volatile boolean running;
+    private volatile boolean connected;
+    private volatile Connection listenConnection;
+    private ScheduledExecutorService flusher;
+    private Thread listener;
+
+    public InvalidationBus(String channel, JdbcTemplate jdbcTemplate, Callable<Connection> listenConnectionFactory,
+                           List<CacheInvalidationHandler> handlers, Duration flushInterval,
+                           Duration maxReconnectBackoff, MeterRegistry meterRegistry) {
+        if (!channel.matches("[a-z_][a-z0-9_]*")) {
+            throw new IllegalArgumentException("Invalid invalidation channel name: " + channel);
+        }
+        this.channel = channel;
+        this.jdbcTemplate = jdbcTemplate;
+        this.listenConnectionFactory = listenConnectionFactory;
+        this.handlers = handlers;
+        this.flushInterval = flushInterval;
+        this.maxReconnectBackoff = maxReconnectBackoff;
+        this.publishedIds = Counter.builder("notepad.invalidation.published")
+                .description("User ids sent to other instances for eviction")
+                .register(meterRegistry);
+        this.notifications = Counter.builder("notepad.invalidation.notifications")
+                .description("NOTIFY statements sent")
+                .register(meterRegistry);
+        this.receivedIds = Counter.builder("notepad.invalidation.received")
+                .description("User ids received from other instances and evicted locally")
+                .register(meterRegistry);
+        this.fullFlushes = Counter.builder("notepad.invalidation.full-flushes")
+                .description("Full flushes of local state after the listen connection (re)connected")
+                .register(meterRegistry);
+        Gauge.builder("notepad.invalidation.connected", this, bus -> bus.connected ? 1 : 0)
+                .description("Whether the LISTEN connection is up")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Queues an invalidation for the user once the current transaction commits, or right away
+     * outside a transaction.
+     */
+    public void publishAfterCommit(Long userId) {
+        if (!running) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    pending.add(userId);
+                }
+            });
+        } else {
+            pending.add(userId);
+        }
+    }
+
+    public String getInstanceId() {
+        return instanceId;
+    }
+
+    public boolean isConnected() {
+        return connected;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "invalidation-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, flushInterval.toMillis(), flushInterval.toMillis(),
+                TimeUnit.MILLISECONDS);
+        listener = new Thread(this::listen, "invalidation-listener");
+        listener.setDaemon(true);
+        listener.start();
+        logger.info("Invalidation bus started on channel '{}' as instance {}", channel, instanceId);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (flusher != null) {
+            flusher.shutdown();
+            try {
+                flusher.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            // Deliver what was queued after the last scheduled flush
+            flush();
+        }
+        if (listener != null) {
+            listener.interrupt();
+            closeQuietly(listenConnection);
+        }
+    }
+
+    public void setAutoStartup(boolean autoStartup) {
+        this.autoStartup = autoStartup;
+    }
+
+    @Override
+    public boolean isAutoStartup() {
+        return autoStartup;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // Stops after the web server and the note write-behind buffer, so their last writes still go out
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 8192;
+    }
+
+    void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<Long> batch = new ArrayList<>(pending.size());
+        for (Iterator<Long> it = pending.iterator(); it.hasNext(); ) {
+            batch.add(it.next());
+            it.remove();
+        }
+
+        StringBuilder payload = new StringBuilder();
+        int start = 0;
+        try {
+            for (int i = 0; i < batch.size(); i++) {
+                String id = batch.get(i).toString();
+                if (payload.length() > 0 && payload.length() + id.length() + 1 > MAX_PAYLOAD_LENGTH) {
+                    notify(payload.toString());
+                    start = i;
+                    payload.setLength(0);
+                }
+                payload.append(payload.length() == 0 ? instanceId + "|" : ",").append(id);
+            }
+            notify(payload.toString());
+            publishedIds.increment(batch.size());
+        } catch (RuntimeException e) {
+            // Try the unsent ids again with the next batch
+            pending.addAll(batch.subList(start, batch.size()));
+            logger.warn("Failed to publish {} invalidations: {}", batch.size() - start, e.getMessage());
+        }
+    }
+
+    private void notify(String payload) {
+        jdbcTemplate.queryForObject("SELECT pg_notify(?, ?)", Object.class, channel, payload);
+        notifications.increment();
+    }
+
+    private void listen() {
+        long backoffMillis = 500;
+        while (running) {
+            try (Connection connection = listenConnectionFactory.call()) {
+                listenConnection = connection;
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + channel);
+                }
+                connected = true;
+                backoffMillis = 500;
+                // Anything sent while we were not listening is gone
+                evictAll();
+                logger.info("Listening for invalidations on channel '{}'", channel);
+
+                while (running) {
+                    // Blocks up to the timeout; throws once the connection is broken
+                    PGNotification[] received = pgConnection.getNotifications(10_000);
+                    if (received != null) {
+                        for (PGNotification notification : received) {
+                            handle(notification.getParameter());
+                        }
+                    } else if (!connection.isValid(5)) {
+                        throw new SQLException("Invalidation listen connection is no longer valid");
+                    }
+                }
+            } catch (Exception e) {
+                connected = false;
+                if (!running) {
+                    break;
+                }
+                logger.warn("Invalidation listener disconnected, reconnecting in {} ms: {}", backoffMillis, e.getMessage());
+                try {
+                    Thread.sleep(backoffMillis);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                backoffMillis = Math.min(backoffMillis * 2, maxReconnectBackoff.toMillis());
+            } finally {
+                listenConnection = null;
+            }
+        }
+        connected = false;
+    }
+
+    void handle(String payload) {
+        int separator = payload.indexOf('|');
+        if (separator < 0) {
+            logger.warn("Malformed invalidation message, flushing all local state");
+            evictAll();
+            return;
+        }
+        if (payload.substring(0, separator).equals(instanceId)) {
+            return;
+        }
+        try {
+            for (String id : payload.substring(separator + 1).split(",")) {
+                Long userId = Long.valueOf(id);
+                handlers.forEach(handler -> handler.evictUser(userId));
+                receivedIds.increment();
+            }
+        } catch (NumberFormatException e) {
+            logger.warn("Malformed invalidation message, flushing all local state");
+            evictAll();
+        }
+    }
+
+    private void evictAll() {
+        handlers.forEach(CacheInvalidationHandler::evictAll);
+        fullFlushes.increment();
+    }
+
+    private static void closeQuietly(Connection connection) {
+        if (connection != null) {
+            try {
+                connection.close();
+            } catch (SQLException ignored) {
+                // Already broken
+            }
+        }
+    }
+}
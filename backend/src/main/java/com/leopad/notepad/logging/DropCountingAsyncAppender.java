@@ -0,0 +1,38 @@
+package com.leopad.notepad.logging;
+
+import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+
+/**
+ * Logback's bounded async appender, counting the events it drops: INFO and below once the
+ * queue is past the discarding threshold, and anything when the queue is full and
+ * {@code neverBlock} is set. Request threads never wait on console or file I/O.
+ */
+public class DropCountingAsyncAppender extends AsyncAppender {
+
+    @Override
+    public void start() {
+        super.start();
+        if (isStarted()) {
+            LoggingStats.register(this);
+        }
+    }
+
+    @Override
+    public void stop() {
+        LoggingStats.unregister(this);
+        super.stop();
+    }
+
+    @Override
+    protected void append(ILoggingEvent event) {
+        int remaining = getRemainingCapacity();
+        boolean discard = remaining < getDiscardingThreshold() && isDiscardable(event);
+        boolean full = isNeverBlock() && remaining == 0;
+        if (discard || full) {
+            LoggingStats.recordDropped(event.getLevel());
+            return;
+        }
+        super.append(event);
+    }
+}
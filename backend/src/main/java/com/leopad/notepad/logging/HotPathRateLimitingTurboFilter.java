@@ -0,0 +1,82 @@
+package com.leopad.notepad.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import org.slf4j.Marker;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Caps INFO-and-below output of selected hot-path loggers to {@code maxPerSecond} events per
+ * message per second; past the cap only every {@code passEvery}-th event is kept (0 keeps
+ * none). Runs before the event is created, so suppressed messages cost neither formatting
+ * nor a queue slot. WARN and ERROR are never limited.
+ */
+public class HotPathRateLimitingTurboFilter extends TurboFilter {
+
+    private Set<String> loggers = Set.of();
+    private int maxPerSecond = 20;
+    private int passEvery = 0;
+    private final Map<String, Window> windows = new ConcurrentHashMap<>();
+
+    public void setLoggers(String loggers) {
+        this.loggers = Arrays.stream(loggers.split(","))
+                .map(String::trim)
+                .filter(name -> !name.isEmpty())
+                .collect(Collectors.toUnmodifiableSet());
+    }
+
+    public void setMaxPerSecond(int maxPerSecond) {
+        this.maxPerSecond = maxPerSecond;
+    }
+
+    public void setPassEvery(int passEvery) {
+        this.passEvery = passEvery;
+    }
+
+    @Override
+    public void start() {
+        loggers.forEach(LoggingStats::registerSampledLogger);
+        super.start();
+    }
+
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params, Throwable t) {
+        // format is null for isXxxEnabled() checks; those must not use up the budget
+        if (format == null || level == null || level.isGreaterOrEqual(Level.WARN)
+                || !loggers.contains(logger.getName()) || !level.isGreaterOrEqual(logger.getEffectiveLevel())) {
+            return FilterReply.NEUTRAL;
+        }
+
+        // Keyed by message template, so one chatty line cannot starve the others of the same logger
+        Window window = windows.computeIfAbsent(logger.getName() + '|' + format, key -> new Window());
+        long suppressed = window.admit(System.nanoTime() / 1_000_000_000L, maxPerSecond);
+        if (suppressed == 0 || (passEvery > 0 && suppressed % passEvery == 0)) {
+            return FilterReply.NEUTRAL;
+        }
+        LoggingStats.recordSampledOut(logger.getName());
+        return FilterReply.DENY;
+    }
+
+    private static final class Window {
+
+        private volatile long second;
+        private final AtomicLong count = new AtomicLong();
+
+        // 0 while within the budget of the current second, else the number of events past it
+        long admit(long now, int budget) {
+            if (now != second) {
+                second = now;
+                count.set(0);
+            }
+            return Math.max(0, count.incrementAndGet() - budget);
+        }
+    }
+}
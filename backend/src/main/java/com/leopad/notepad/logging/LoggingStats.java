@@ -0,0 +1,59 @@
+package com.leopad.notepad.logging;
+
+import ch.qos.logback.classic.Level;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters shared between the logback components, which start before the Spring context,
+ * and the meter binder in LoggingConfig that exports them.
+ */
+public final class LoggingStats {
+
+    private static final Map<String, LongAdder> dropped = new ConcurrentHashMap<>();
+    private static final Map<String, LongAdder> sampledOut = new ConcurrentHashMap<>();
+    private static final List<DropCountingAsyncAppender> appenders = new CopyOnWriteArrayList<>();
+
+    private LoggingStats() {
+    }
+
+    static void recordDropped(Level level) {
+        dropped.computeIfAbsent(level.toString(), key -> new LongAdder()).increment();
+    }
+
+    static void recordSampledOut(String loggerName) {
+        sampledOut.computeIfAbsent(loggerName, key -> new LongAdder()).increment();
+    }
+
+    static void registerSampledLogger(String loggerName) {
+        sampledOut.computeIfAbsent(loggerName, key -> new LongAdder());
+    }
+
+    static void register(DropCountingAsyncAppender appender) {
+        appenders.add(appender);
+    }
+
+    static void unregister(DropCountingAsyncAppender appender) {
+        appenders.remove(appender);
+    }
+
+    // Every level that can be discarded, so the counters exist before the first drop
+    public static Map<String, LongAdder> dropped() {
+        for (Level level : List.of(Level.TRACE, Level.DEBUG, Level.INFO, Level.WARN, Level.ERROR)) {
+            dropped.computeIfAbsent(level.toString(), key -> new LongAdder());
+        }
+        return dropped;
+    }
+
+    public static Map<String, LongAdder> sampledOut() {
+        return sampledOut;
+    }
+
+    public static List<DropCountingAsyncAppender> appenders() {
+        return appenders;
+    }
+}
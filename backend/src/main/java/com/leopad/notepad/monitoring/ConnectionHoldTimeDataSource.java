@@ -0,0 +1,57 @@
+package com.leopad.notepad.monitoring;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Wraps the application data source and reports to the profiler how long every
+ * connection stays checked out, from {@code getConnection()} until {@code close()}.
+ */
+public class ConnectionHoldTimeDataSource extends DelegatingDataSource {
+
+    private final ConnectionHoldTimeProfiler profiler;
+
+    public ConnectionHoldTimeDataSource(DataSource targetDataSource, ConnectionHoldTimeProfiler profiler) {
+        super(targetDataSource);
+        this.profiler = profiler;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return track(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return track(super.getConnection(username, password));
+    }
+
+    private Connection track(Connection target) {
+        long acquiredAt = System.nanoTime();
+        boolean[] closed = {false};
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[] {Connection.class},
+                (proxy, method, args) -> {
+                    if (isClose(method) && !closed[0]) {
+                        closed[0] = true;
+                        profiler.connectionReleased(System.nanoTime() - acquiredAt);
+                    }
+                    try {
+                        return method.invoke(target, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getTargetException();
+                    }
+                });
+    }
+
+    private static boolean isClose(Method method) {
+        return method.getName().equals("close") && method.getParameterCount() == 0;
+    }
+}
@@ -0,0 +1,27 @@
+package com.leopad.notepad.monitoring;
+
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+
+import java.util.Map;
+
+@Endpoint(id = "connectionhold")
+public class ConnectionHoldTimeEndpoint {
+
+    private final ConnectionHoldTimeProfiler profiler;
+
+    public ConnectionHoldTimeEndpoint(ConnectionHoldTimeProfiler profiler) {
+        this.profiler = profiler;
+    }
+
+    @ReadOperation
+    public Map<String, Object> topOffenders() {
+        return profiler.report();
+    }
+
+    @DeleteOperation
+    public void reset() {
+        profiler.reset();
+    }
+}
@@ -0,0 +1,37 @@
+package com.leopad.notepad.monitoring;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+
+public class ConnectionHoldTimeFilter extends OncePerRequestFilter {
+
+    private final ConnectionHoldTimeProfiler profiler;
+
+    public ConnectionHoldTimeFilter(ConnectionHoldTimeProfiler profiler) {
+        this.profiler = profiler;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        long start = System.nanoTime();
+        ConnectionHoldTimeProfiler.RequestHold hold = profiler.beginRequest();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            profiler.endRequest(endpointOf(request), hold, System.nanoTime() - start);
+        }
+    }
+
+    private String endpointOf(HttpServletRequest request) {
+        // Use the mapped pattern (e.g. /api/notes/{id}) to keep the number of distinct keys bounded
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        return request.getMethod() + " " + (pattern != null ? pattern : "UNMAPPED");
+    }
+}
@@ -0,0 +1,169 @@
+package com.leopad.notepad.monitoring;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Accumulates how long each request keeps a pooled JDBC connection checked out and
+ * aggregates the totals per endpoint so the worst offenders can be listed.
+ */
+public class ConnectionHoldTimeProfiler {
+
+    static final String BACKGROUND = "background";
+
+    private static final ThreadLocal<RequestHold> CURRENT_REQUEST = new ThreadLocal<>();
+
+    private final MeterRegistry meterRegistry;
+    private final int topN;
+    private final Map<String, EndpointStats> statsByEndpoint = new ConcurrentHashMap<>();
+    private final PriorityQueue<SlowRequest> slowestRequests =
+            new PriorityQueue<>(Comparator.comparingLong(SlowRequest::holdNanos));
+
+    public ConnectionHoldTimeProfiler(MeterRegistry meterRegistry, int topN) {
+        this.meterRegistry = meterRegistry;
+        this.topN = topN;
+    }
+
+    RequestHold beginRequest() {
+        RequestHold hold = new RequestHold();
+        CURRENT_REQUEST.set(hold);
+        return hold;
+    }
+
+    void endRequest(String endpoint, RequestHold hold, long requestNanos) {
+        CURRENT_REQUEST.remove();
+        if (hold.acquisitions == 0) {
+            return;
+        }
+        record(endpoint, hold.holdNanos, hold.maxHoldNanos, hold.acquisitions, requestNanos);
+
+        synchronized (slowestRequests) {
+            if (slowestRequests.size() < topN || slowestRequests.peek().holdNanos() < hold.holdNanos) {
+                slowestRequests.add(new SlowRequest(endpoint, hold.holdNanos, requestNanos, Instant.now()));
+                if (slowestRequests.size() > topN) {
+                    slowestRequests.poll();
+                }
+            }
+        }
+    }
+
+    void connectionReleased(long heldNanos) {
+        RequestHold hold = CURRENT_REQUEST.get();
+        if (hold != null) {
+            hold.add(heldNanos);
+        } else {
+            // Scheduled jobs and startup work outside any HTTP request
+            record(BACKGROUND, heldNanos, heldNanos, 1, heldNanos);
+        }
+    }
+
+    private void record(String endpoint, long holdNanos, long maxHoldNanos, int acquisitions, long requestNanos) {
+        EndpointStats stats = statsByEndpoint.computeIfAbsent(endpoint, key -> new EndpointStats(
+                Timer.builder("notepad.connection.hold")
+                        .description("Time a request holds pooled JDBC connections")
+                        .tag("endpoint", key)
+                        .register(meterRegistry)));
+        stats.requests.increment();
+        stats.acquisitions.add(acquisitions);
+        stats.totalHoldNanos.add(holdNanos);
+        stats.totalRequestNanos.add(requestNanos);
+        stats.maxHoldNanos.accumulateAndGet(maxHoldNanos, Math::max);
+        stats.timer.record(holdNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public Map<String, Object> report() {
+        List<Map<String, Object>> endpoints = new ArrayList<>();
+        statsByEndpoint.entrySet().stream()
+                .sorted(Comparator.comparingLong(
+                        (Map.Entry<String, EndpointStats> entry) -> entry.getValue().totalHoldNanos.sum()).reversed())
+                .limit(topN)
+                .forEach(entry -> endpoints.add(entry.getValue().toMap(entry.getKey())));
+
+        List<Map<String, Object>> requests = new ArrayList<>();
+        synchronized (slowestRequests) {
+            slowestRequests.stream()
+                    .sorted(Comparator.comparingLong(SlowRequest::holdNanos).reversed())
+                    .forEach(request -> requests.add(request.toMap()));
+        }
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("topEndpointsByTotalHold", endpoints);
+        report.put("slowestRequests", requests);
+        return report;
+    }
+
+    public void reset() {
+        statsByEndpoint.clear();
+        synchronized (slowestRequests) {
+            slowestRequests.clear();
+        }
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    static final class RequestHold {
+        private long holdNanos;
+        private long maxHoldNanos;
+        private int acquisitions;
+
+        void add(long heldNanos) {
+            holdNanos += heldNanos;
+            maxHoldNanos = Math.max(maxHoldNanos, heldNanos);
+            acquisitions++;
+        }
+    }
+
+    private static final class EndpointStats {
+        private final Timer timer;
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder acquisitions = new LongAdder();
+        private final LongAdder totalHoldNanos = new LongAdder();
+        private final LongAdder totalRequestNanos = new LongAdder();
+        private final AtomicLong maxHoldNanos = new AtomicLong();
+
+        EndpointStats(Timer timer) {
+            this.timer = timer;
+        }
+
+        Map<String, Object> toMap(String endpoint) {
+            long count = Math.max(1, requests.sum());
+            long hold = totalHoldNanos.sum();
+            long request = totalRequestNanos.sum();
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("endpoint", endpoint);
+            map.put("requests", requests.sum());
+            map.put("acquisitions", acquisitions.sum());
+            map.put("totalHoldMs", millis(hold));
+            map.put("avgHoldMs", millis(hold / count));
+            map.put("maxSingleHoldMs", millis(maxHoldNanos.get()));
+            // Close to 1.0 means the connection is bound for the whole request (e.g. open-in-view)
+            map.put("holdToRequestRatio", request == 0 ? 0.0 : (double) hold / request);
+            return map;
+        }
+    }
+
+    private record SlowRequest(String endpoint, long holdNanos, long requestNanos, Instant at) {
+        Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("endpoint", endpoint);
+            map.put("holdMs", millis(holdNanos));
+            map.put("requestMs", millis(requestNanos));
+            map.put("at", at.toString());
+            return map;
+        }
+    }
+}
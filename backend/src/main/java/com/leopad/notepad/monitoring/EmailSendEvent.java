@@ -0,0 +1,27 @@
+package com.leopad.notepad.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+// One SendGrid API call; addresses and note text are not recorded
+@Name("notepad.EmailSend")
+@Label("Email Send")
+@Category("Notepad")
+@Description("A SendGrid mail/send call")
+public class EmailSendEvent extends Event {
+
+    @Label("Status Code")
+    @Description("HTTP status returned by SendGrid, 0 when the request failed")
+    public int statusCode;
+
+    @Label("Body Size")
+    @DataAmount
+    public long bodySize;
+
+    @Label("Succeeded")
+    public boolean succeeded;
+}
@@ -0,0 +1,22 @@
+package com.leopad.notepad.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+// Verification of a Firebase ID token by the authentication filter; the token and uid are not recorded
+@Name("notepad.FirebaseVerification")
+@Label("Firebase Token Verification")
+@Category("Notepad")
+@Description("Firebase ID token verification in the authentication filter")
+public class FirebaseVerificationEvent extends Event {
+
+    @Label("Succeeded")
+    public boolean succeeded;
+
+    @Label("Failure")
+    @Description("Firebase error code or exception class when verification failed")
+    public String failure;
+}
@@ -0,0 +1,167 @@
+package com.leopad.notepad.monitoring;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Keeps a continuous JDK Flight Recorder recording running for the life of the application and
+ * writes the last minutes of it to {@code dumpDir} on request. The recording lives in the JVM's
+ * repository, bounded by maxAge and maxSize, so nothing reaches dumpDir until a dump is taken.
+ * Only the newest maxDumps files are kept.
+ */
+public class FlightRecorderDumper {
+
+    private static final Logger logger = LoggerFactory.getLogger(FlightRecorderDumper.class);
+    private static final String RECORDING_NAME = "notepad-continuous";
+    private static final DateTimeFormatter FILE_TIME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS");
+
+    public record Dump(String file, long bytes, String reason, Duration window) {
+    }
+
+    private final Path dumpDir;
+    private final int maxDumps;
+    private final Duration autoDumpWindow;
+    private final Duration autoDumpCooldown;
+    private final Recording recording;
+    private final AtomicLong lastAutoDump = new AtomicLong();
+    private final ExecutorService autoDumps = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "jfr-auto-dump");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public FlightRecorderDumper(String settings, Duration maxAge, long maxSize, Path dumpDir, int maxDumps,
+                                Duration autoDumpWindow, Duration autoDumpCooldown) throws IOException, ParseException {
+        this.dumpDir = dumpDir;
+        this.maxDumps = maxDumps;
+        this.autoDumpWindow = autoDumpWindow;
+        this.autoDumpCooldown = autoDumpCooldown;
+        this.recording = new Recording(Configuration.getConfiguration(settings));
+        this.recording.setName(RECORDING_NAME);
+        this.recording.setToDisk(true);
+        this.recording.setMaxAge(maxAge);
+        this.recording.setMaxSize(maxSize);
+        // Custom events are on regardless of the settings file; each is a few dozen bytes
+        this.recording.enable(NoteOperationEvent.class);
+        this.recording.enable(FirebaseVerificationEvent.class);
+        this.recording.enable(EmailSendEvent.class);
+    }
+
+    public void start() {
+        recording.start();
+        logger.info("Continuous flight recording started (max age {}, max size {} bytes)",
+                recording.getMaxAge(), recording.getMaxSize());
+    }
+
+    public void stop() {
+        autoDumps.shutdownNow();
+        recording.close();
+    }
+
+    /**
+     * Writes the last {@code window} of the recording to a new file in dumpDir. Uses the
+     * JFR.dump diagnostic command, which can limit a dump to recent chunks by age.
+     */
+    public synchronized Dump dump(Duration window, String reason) throws IOException {
+        Files.createDirectories(dumpDir);
+        Path file = dumpDir.resolve("notepad-" + LocalDateTime.now().format(FILE_TIME) + "-" + reason + ".jfr")
+                .toAbsolutePath();
+        String[] arguments = {
+                "name=" + RECORDING_NAME,
+                "filename=" + file,
+                "maxage=" + Math.max(1, window.toSeconds()) + "s"
+        };
+        try {
+            ManagementFactory.getPlatformMBeanServer().invoke(
+                    new ObjectName("com.sun.management:type=DiagnosticCommand"), "jfrDump",
+                    new Object[]{arguments}, new String[]{String[].class.getName()});
+        } catch (JMException e) {
+            throw new IOException("JFR.dump failed: " + e.getMessage(), e);
+        }
+        pruneOldDumps();
+        Dump dump = new Dump(file.toString(), Files.size(file), reason, window);
+        logger.info("Wrote flight recording dump {} ({} bytes, last {})", file, dump.bytes(), window);
+        return dump;
+    }
+
+    /**
+     * Dumps the last autoDumpWindow in the background, at most once per autoDumpCooldown, so a
+     * burst of slow requests produces one file rather than one per request.
+     */
+    public void dumpAfterSlowRequest(String endpoint, Duration latency) {
+        long now = System.nanoTime();
+        long last = lastAutoDump.get();
+        if (last != 0 && now - last < autoDumpCooldown.toNanos()) {
+            return;
+        }
+        if (!lastAutoDump.compareAndSet(last, now)) {
+            return;
+        }
+        logger.warn("{} took {} ms, dumping the flight recording", endpoint, latency.toMillis());
+        autoDumps.execute(() -> {
+            try {
+                dump(autoDumpWindow, "slow");
+            } catch (IOException | RuntimeException e) {
+                logger.warn("Automatic flight recording dump failed: {}", e.getMessage());
+            }
+        });
+    }
+
+    public List<Dump> listDumps() throws IOException {
+        if (!Files.isDirectory(dumpDir)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(dumpDir)) {
+            return files.filter(path -> path.getFileName().toString().endsWith(".jfr"))
+                    .sorted(Comparator.comparing(Path::getFileName).reversed())
+                    .map(path -> new Dump(path.toAbsolutePath().toString(), sizeOf(path), reasonOf(path), null))
+                    .toList();
+        }
+    }
+
+    private void pruneOldDumps() throws IOException {
+        List<Path> files;
+        try (Stream<Path> listed = Files.list(dumpDir)) {
+            files = listed.filter(path -> path.getFileName().toString().endsWith(".jfr"))
+                    .sorted(Comparator.comparing(Path::getFileName).reversed())
+                    .toList();
+        }
+        for (Path old : files.subList(Math.min(maxDumps, files.size()), files.size())) {
+            Files.deleteIfExists(old);
+        }
+    }
+
+    private static long sizeOf(Path path) {
+        try {
+            return Files.size(path);
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    // notepad-<time>-<reason>.jfr
+    private static String reasonOf(Path path) {
+        String name = path.getFileName().toString();
+        int start = name.lastIndexOf('-') + 1;
+        return name.substring(start, name.length() - ".jfr".length());
+    }
+}
@@ -0,0 +1,39 @@
+package com.leopad.notepad.monitoring;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.lang.Nullable;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * {@code POST /actuator/jfr} writes the last {@code minutes} (default 5) of the continuous
+ * recording to the dump directory; {@code GET} lists the dumps there. Admins only, see
+ * SecurityConfig.
+ */
+@Endpoint(id = "jfr")
+public class FlightRecorderEndpoint {
+
+    private final FlightRecorderDumper dumper;
+
+    public FlightRecorderEndpoint(FlightRecorderDumper dumper) {
+        this.dumper = dumper;
+    }
+
+    @ReadOperation
+    public List<FlightRecorderDumper.Dump> dumps() throws IOException {
+        return dumper.listDumps();
+    }
+
+    @WriteOperation
+    public FlightRecorderDumper.Dump dump(@Nullable Integer minutes) throws IOException {
+        int window = minutes != null ? minutes : 5;
+        if (window < 1) {
+            throw new IllegalArgumentException("minutes must be at least 1");
+        }
+        return dumper.dump(Duration.ofMinutes(window), "manual");
+    }
+}
@@ -0,0 +1,25 @@
+package com.leopad.notepad.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+// One public NoteService call, including its transaction; carries no user or note data
+@Name("notepad.NoteOperation")
+@Label("Note Operation")
+@Category("Notepad")
+@Description("A NoteService call")
+public class NoteOperationEvent extends Event {
+
+    @Label("Operation")
+    public String operation;
+
+    @Label("Succeeded")
+    public boolean succeeded;
+
+    @Label("Failure")
+    @Description("Exception class when the call failed")
+    public String failure;
+}
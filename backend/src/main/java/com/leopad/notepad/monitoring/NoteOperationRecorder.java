@@ -0,0 +1,31 @@
+package com.leopad.notepad.monitoring;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+
+// Records a NoteOperationEvent around each NoteService call it is applied to
+public class NoteOperationRecorder implements MethodInterceptor {
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        NoteOperationEvent event = new NoteOperationEvent();
+        if (!event.isEnabled()) {
+            return invocation.proceed();
+        }
+        event.begin();
+        try {
+            Object result = invocation.proceed();
+            event.succeeded = true;
+            return result;
+        } catch (Throwable e) {
+            event.failure = e.getClass().getSimpleName();
+            throw e;
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.operation = invocation.getMethod().getName();
+                event.commit();
+            }
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.leopad.notepad.monitoring;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+
+/**
+ * Wraps the application data source and reports every statement execution to the query profiler:
+ * its SQL, time, rows read through its result set, and the types (never the values) bound to its
+ * parameters.
+ */
+public class QueryStatisticsDataSource extends DelegatingDataSource {
+
+    private final QueryStatisticsProfiler profiler;
+
+    public QueryStatisticsDataSource(DataSource targetDataSource, QueryStatisticsProfiler profiler) {
+        super(targetDataSource);
+        this.profiler = profiler;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return connection(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return connection(super.getConnection(username, password));
+    }
+
+    private Connection connection(Connection target) {
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[] {Connection.class},
+                (proxy, method, args) -> {
+                    Object result = invoke(target, method, args);
+                    if (result instanceof Statement statement && !method.getName().equals("unwrap")) {
+                        String sql = args != null && args.length > 0 && args[0] instanceof String text ? text : null;
+                        return statement(statement, sql);
+                    }
+                    return result;
+                });
+    }
+
+    private Object statement(Statement target, String preparedSql) {
+        Class<?> type = target instanceof CallableStatement ? CallableStatement.class
+                : target instanceof PreparedStatement ? PreparedStatement.class : Statement.class;
+        StatementState state = new StatementState(preparedSql);
+        return Proxy.newProxyInstance(
+                Statement.class.getClassLoader(),
+                new Class<?>[] {type},
+                (proxy, method, args) -> {
+                    String name = method.getName();
+                    if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer index
+                            && preparedSql != null) {
+                        state.bind(index, name, args[1]);
+                    } else if (name.equals("clearParameters")) {
+                        state.clearParameters();
+                    }
+                    if (!name.startsWith("execute")) {
+                        Object result = invoke(target, method, args);
+                        if (result instanceof ResultSet resultSet && name.equals("getResultSet")) {
+                            return resultSet(resultSet, state.lastShape);
+                        }
+                        return result;
+                    }
+
+                    String sql = args != null && args.length > 0 && args[0] instanceof String text ? text : preparedSql;
+                    long start = System.nanoTime();
+                    Object result;
+                    try {
+                        result = invoke(target, method, args);
+                    } catch (Throwable e) {
+                        profiler.statementExecuted(sql, state::parameterTypes, System.nanoTime() - start, true);
+                        throw e;
+                    }
+                    state.lastShape = profiler.statementExecuted(sql, state::parameterTypes,
+                            System.nanoTime() - start, false);
+                    return result instanceof ResultSet resultSet ? resultSet(resultSet, state.lastShape) : result;
+                });
+    }
+
+    private ResultSet resultSet(ResultSet target, QueryStatisticsProfiler.ShapeStats shape) {
+        return (ResultSet) Proxy.newProxyInstance(
+                ResultSet.class.getClassLoader(),
+                new Class<?>[] {ResultSet.class},
+                (proxy, method, args) -> {
+                    Object result = invoke(target, method, args);
+                    if (shape != null && method.getName().equals("next") && Boolean.TRUE.equals(result)) {
+                        shape.rowRead();
+                    }
+                    return result;
+                });
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+    // Parameter types bound since the last execution, by 1-based index
+    private static final class StatementState {
+        private final String preparedSql;
+        private String[] types = new String[8];
+        private int count;
+        private QueryStatisticsProfiler.ShapeStats lastShape;
+
+        StatementState(String preparedSql) {
+            this.preparedSql = preparedSql;
+        }
+
+        void bind(int index, String setter, Object value) {
+            if (index < 1 || index > 1000) {
+                return;
+            }
+            if (index > types.length) {
+                types = Arrays.copyOf(types, Math.max(index, types.length * 2));
+            }
+            String type;
+            if (setter.equals("setNull")) {
+                type = "null";
+            } else if (setter.equals("setObject")) {
+                type = value != null ? value.getClass().getSimpleName() : "null";
+            } else {
+                type = setter.substring(3);
+            }
+            types[index - 1] = type;
+            count = Math.max(count, index);
+        }
+
+        void clearParameters() {
+            count = 0;
+        }
+
+        String parameterTypes() {
+            if (preparedSql == null || count == 0) {
+                return "";
+            }
+            StringBuilder shape = new StringBuilder();
+            for (int i = 0; i < count; i++) {
+                if (i > 0) {
+                    shape.append(", ");
+                }
+                shape.append(types[i] != null ? types[i] : "?");
+            }
+            return shape.toString();
+        }
+    }
+}
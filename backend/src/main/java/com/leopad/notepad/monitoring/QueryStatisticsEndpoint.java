@@ -0,0 +1,91 @@
+package com.leopad.notepad.monitoring;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CollectionStatistics;
+import org.hibernate.stat.EntityStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * {@code /actuator/querystats}: statement shapes from the JDBC profiler, N+1 suspects, and
+ * Hibernate's session, entity and collection counters. {@code DELETE} resets both.
+ */
+@Endpoint(id = "querystats")
+public class QueryStatisticsEndpoint {
+
+    private final QueryStatisticsProfiler profiler;
+    private final EntityManagerFactory entityManagerFactory;
+
+    public QueryStatisticsEndpoint(QueryStatisticsProfiler profiler, EntityManagerFactory entityManagerFactory) {
+        this.profiler = profiler;
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    @ReadOperation
+    public Map<String, Object> report() {
+        Map<String, Object> report = new LinkedHashMap<>(profiler.report());
+        report.put("hibernate", hibernate(statistics()));
+        return report;
+    }
+
+    @DeleteOperation
+    public void reset() {
+        profiler.reset();
+        statistics().clear();
+    }
+
+    private Statistics statistics() {
+        return entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    private static Map<String, Object> hibernate(Statistics statistics) {
+        Map<String, Object> hibernate = new LinkedHashMap<>();
+        hibernate.put("enabled", statistics.isStatisticsEnabled());
+        if (!statistics.isStatisticsEnabled()) {
+            return hibernate;
+        }
+        hibernate.put("sessionsOpened", statistics.getSessionOpenCount());
+        hibernate.put("transactions", statistics.getTransactionCount());
+        hibernate.put("preparedStatements", statistics.getPrepareStatementCount());
+        hibernate.put("flushes", statistics.getFlushCount());
+        hibernate.put("queryExecutionMaxTimeMs", statistics.getQueryExecutionMaxTime());
+        hibernate.put("slowestQuery", statistics.getQueryExecutionMaxTimeQueryString());
+
+        Map<String, Object> entities = new LinkedHashMap<>();
+        for (String name : statistics.getEntityNames()) {
+            EntityStatistics entity = statistics.getEntityStatistics(name);
+            Map<String, Object> counts = new LinkedHashMap<>();
+            counts.put("loads", entity.getLoadCount());
+            // Loads triggered by touching a lazy association or proxy: high values point at N+1
+            counts.put("fetches", entity.getFetchCount());
+            counts.put("inserts", entity.getInsertCount());
+            counts.put("updates", entity.getUpdateCount());
+            counts.put("deletes", entity.getDeleteCount());
+            entities.put(shortName(name), counts);
+        }
+        hibernate.put("entities", entities);
+
+        Map<String, Object> collections = new LinkedHashMap<>();
+        for (String role : statistics.getCollectionRoleNames()) {
+            CollectionStatistics collection = statistics.getCollectionStatistics(role);
+            Map<String, Object> counts = new LinkedHashMap<>();
+            counts.put("loads", collection.getLoadCount());
+            counts.put("fetches", collection.getFetchCount());
+            counts.put("updates", collection.getUpdateCount());
+            collections.put(shortName(role), counts);
+        }
+        hibernate.put("collections", collections);
+        return hibernate;
+    }
+
+    private static String shortName(String name) {
+        int dot = name.lastIndexOf('.', name.lastIndexOf('.') - 1);
+        return name.startsWith("com.leopad.") && dot > 0 ? name.substring(dot + 1) : name;
+    }
+}
@@ -0,0 +1,32 @@
+package com.leopad.notepad.monitoring;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+
+// Groups the statements of each request so the profiler can spot N+1 patterns
+public class QueryStatisticsFilter extends OncePerRequestFilter {
+
+    private final QueryStatisticsProfiler profiler;
+
+    public QueryStatisticsFilter(QueryStatisticsProfiler profiler) {
+        this.profiler = profiler;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        QueryStatisticsProfiler.RequestQueries queries = profiler.beginRequest();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            profiler.endRequest(request.getMethod() + " " + (pattern != null ? pattern : "UNMAPPED"), queries);
+        }
+    }
+}
@@ -0,0 +1,316 @@
+package com.leopad.notepad.monitoring;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * Aggregates JDBC statement executions by query shape: the SQL with literals replaced by {@code ?},
+ * IN lists collapsed and whitespace normalized, so every execution of one repository query lands
+ * in the same bucket whatever its parameters. Keeps counts, time, rows read and latency
+ * percentiles over the most recent executions of each shape.
+ *
+ * Slow statements are logged with their parameter types, at most once per shape per
+ * slowLogInterval. Within an HTTP request, a shape executed nPlusOneThreshold times or more is
+ * reported as a likely N+1 pattern.
+ */
+public class QueryStatisticsProfiler {
+
+    static final String OTHER_SHAPE = "(other statements)";
+
+    private static final Logger logger = LoggerFactory.getLogger(QueryStatisticsProfiler.class);
+    private static final ThreadLocal<RequestQueries> CURRENT_REQUEST = new ThreadLocal<>();
+    private static final int SAMPLES_PER_SHAPE = 1024;
+    // Normalized forms of the SQL strings seen so far; Hibernate reuses a small set of them
+    private static final int MAX_CACHED_SQL = 4096;
+
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("\\b\\d+(?:\\.\\d+)?\\b");
+    private static final Pattern IN_LIST = Pattern.compile("\\(\\s*\\?(?:\\s*,\\s*\\?)+\\s*\\)");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final MeterRegistry meterRegistry;
+    private final Duration slowThreshold;
+    private final Duration slowLogInterval;
+    private final int nPlusOneThreshold;
+    private final int maxShapes;
+    private final int topN;
+    private final Map<String, String> normalized = new ConcurrentHashMap<>();
+    private final Map<String, ShapeStats> shapes = new ConcurrentHashMap<>();
+    private final Map<String, NPlusOneFinding> findings = new ConcurrentHashMap<>();
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    private final Counter nPlusOneRequests;
+
+    public QueryStatisticsProfiler(MeterRegistry meterRegistry, Duration slowThreshold, Duration slowLogInterval,
+                                   int nPlusOneThreshold, int maxShapes, int topN) {
+        this.meterRegistry = meterRegistry;
+        this.slowThreshold = slowThreshold;
+        this.slowLogInterval = slowLogInterval;
+        this.nPlusOneThreshold = nPlusOneThreshold;
+        this.maxShapes = maxShapes;
+        this.topN = topN;
+        this.nPlusOneRequests = Counter.builder("notepad.jdbc.n-plus-one")
+                .description("Requests that executed one statement shape at least the N+1 threshold times")
+                .register(meterRegistry);
+    }
+
+    public static String shapeOf(String sql) {
+        String shape = STRING_LITERAL.matcher(sql).replaceAll("?");
+        shape = NUMBER_LITERAL.matcher(shape).replaceAll("?");
+        shape = WHITESPACE.matcher(shape).replaceAll(" ").trim();
+        return IN_LIST.matcher(shape).replaceAll("(?...)");
+    }
+
+    RequestQueries beginRequest() {
+        RequestQueries request = new RequestQueries();
+        CURRENT_REQUEST.set(request);
+        return request;
+    }
+
+    void endRequest(String endpoint, RequestQueries request) {
+        CURRENT_REQUEST.remove();
+        ShapeStats repeated = null;
+        int repeats = 0;
+        for (Map.Entry<ShapeStats, Integer> entry : request.executions.entrySet()) {
+            if (entry.getValue() > repeats && !OTHER_SHAPE.equals(entry.getKey().shape)) {
+                repeated = entry.getKey();
+                repeats = entry.getValue();
+            }
+        }
+        if (repeated == null || repeats < nPlusOneThreshold) {
+            return;
+        }
+        nPlusOneRequests.increment();
+        String key = endpoint + "\n" + repeated.shape;
+        NPlusOneFinding finding = findings.get(key);
+        boolean first = finding == null;
+        if (first && findings.size() < maxShapes) {
+            String shape = repeated.shape;
+            finding = findings.computeIfAbsent(key, ignored -> new NPlusOneFinding(endpoint, shape));
+        }
+        if (finding != null) {
+            finding.requests.increment();
+            finding.maxRepeats.accumulateAndGet(repeats, Math::max);
+            finding.lastSeen = Instant.now();
+        }
+        // Logged once per endpoint and shape; the endpoint report keeps counting
+        if (first) {
+            logger.warn("Possible N+1 in {}: {} executions of one statement shape in a single request ({} statements "
+                    + "in total): {}", endpoint, repeats, request.statements, repeated.shape);
+        }
+    }
+
+    /**
+     * Records one execution and returns its shape's stats, which rows read from the result
+     * set are added to. The parameter types are only built when the statement is logged as slow.
+     */
+    ShapeStats statementExecuted(String sql, Supplier<String> parameterTypes, long nanos, boolean failed) {
+        ShapeStats stats = stats(sql);
+        stats.record(nanos, failed);
+        timer(stats.command).record(nanos, TimeUnit.NANOSECONDS);
+
+        RequestQueries request = CURRENT_REQUEST.get();
+        if (request != null) {
+            request.statements++;
+            request.executions.merge(stats, 1, Integer::sum);
+        }
+        if (nanos >= slowThreshold.toNanos()) {
+            logSlow(stats, parameterTypes, nanos, failed);
+        }
+        return stats;
+    }
+
+    private ShapeStats stats(String sql) {
+        if (sql == null) {
+            return shapes.computeIfAbsent(OTHER_SHAPE, ShapeStats::new);
+        }
+        String shape = normalized.get(sql);
+        if (shape == null) {
+            shape = shapeOf(sql);
+            if (normalized.size() < MAX_CACHED_SQL) {
+                normalized.put(sql, shape);
+            }
+        }
+        ShapeStats stats = shapes.get(shape);
+        if (stats == null) {
+            String key = shapes.size() < maxShapes ? shape : OTHER_SHAPE;
+            stats = shapes.computeIfAbsent(key, ShapeStats::new);
+        }
+        return stats;
+    }
+
+    private Timer timer(String command) {
+        return timers.computeIfAbsent(command, key -> Timer.builder("notepad.jdbc.statements")
+                .description("JDBC statement execution time by SQL command")
+                .tag("command", key)
+                .register(meterRegistry));
+    }
+
+    private void logSlow(ShapeStats stats, Supplier<String> parameterTypes, long nanos, boolean failed) {
+        stats.slow.increment();
+        long now = System.nanoTime();
+        long last = stats.lastSlowLog.get();
+        if (last != 0 && now - last < slowLogInterval.toNanos()) {
+            stats.suppressedSlowLogs.increment();
+            return;
+        }
+        if (!stats.lastSlowLog.compareAndSet(last, now)) {
+            stats.suppressedSlowLogs.increment();
+            return;
+        }
+        long suppressed = stats.suppressedSlowLogs.sumThenReset();
+        logger.warn("Slow statement{}: {} ms, parameters [{}]{}: {}", failed ? " (failed)" : "", millis(nanos),
+                parameterTypes.get(), suppressed > 0 ? ", " + suppressed + " more slow since last logged" : "",
+                stats.shape);
+    }
+
+    public Map<String, Object> report() {
+        List<Map<String, Object>> byTotalTime = new ArrayList<>();
+        shapes.values().stream()
+                .sorted(Comparator.comparingLong((ShapeStats stats) -> stats.totalNanos.sum()).reversed())
+                .limit(topN)
+                .forEach(stats -> byTotalTime.add(stats.toMap()));
+
+        List<Map<String, Object>> nPlusOne = new ArrayList<>();
+        findings.values().stream()
+                .sorted(Comparator.comparingLong((NPlusOneFinding finding) -> finding.requests.sum()).reversed())
+                .limit(topN)
+                .forEach(finding -> nPlusOne.add(finding.toMap()));
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("shapes", shapes.size());
+        report.put("slowThresholdMs", slowThreshold.toMillis());
+        report.put("nPlusOneThreshold", nPlusOneThreshold);
+        report.put("topShapesByTotalTime", byTotalTime);
+        report.put("nPlusOneSuspects", nPlusOne);
+        return report;
+    }
+
+    public void reset() {
+        shapes.clear();
+        findings.clear();
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    static final class RequestQueries {
+        private final Map<ShapeStats, Integer> executions = new HashMap<>();
+        private int statements;
+    }
+
+    static final class ShapeStats {
+        private final String shape;
+        private final String command;
+        private final LongAdder executions = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder slow = new LongAdder();
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+        private final AtomicLong lastSlowLog = new AtomicLong();
+        private final LongAdder suppressedSlowLogs = new LongAdder();
+        // Ring of the most recent durations, for percentiles
+        private final long[] samples = new long[SAMPLES_PER_SHAPE];
+        private long sampled;
+
+        ShapeStats(String shape) {
+            this.shape = shape;
+            int space = shape.indexOf(' ');
+            String first = space > 0 ? shape.substring(0, space) : shape;
+            this.command = switch (first.toLowerCase(Locale.ROOT)) {
+                case "select", "insert", "update", "delete", "with" -> first.toLowerCase(Locale.ROOT);
+                default -> "other";
+            };
+        }
+
+        void record(long nanos, boolean failed) {
+            executions.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+            if (failed) {
+                failures.increment();
+            }
+            synchronized (samples) {
+                samples[(int) (sampled++ % SAMPLES_PER_SHAPE)] = nanos;
+            }
+        }
+
+        void rowRead() {
+            rows.increment();
+        }
+
+        Map<String, Object> toMap() {
+            long[] recent;
+            synchronized (samples) {
+                recent = Arrays.copyOf(samples, (int) Math.min(sampled, SAMPLES_PER_SHAPE));
+            }
+            Arrays.sort(recent);
+            long count = Math.max(1, executions.sum());
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("shape", shape);
+            map.put("executions", executions.sum());
+            map.put("failures", failures.sum());
+            map.put("slow", slow.sum());
+            map.put("totalMs", millis(totalNanos.sum()));
+            map.put("avgMs", millis(totalNanos.sum() / count));
+            map.put("p50Ms", millis(percentile(recent, 0.50)));
+            map.put("p95Ms", millis(percentile(recent, 0.95)));
+            map.put("p99Ms", millis(percentile(recent, 0.99)));
+            map.put("maxMs", millis(maxNanos.get()));
+            map.put("rows", rows.sum());
+            map.put("avgRows", (double) rows.sum() / count);
+            return map;
+        }
+
+        private static long percentile(long[] sorted, double p) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            return sorted[Math.max(0, (int) Math.ceil(p * sorted.length) - 1)];
+        }
+    }
+
+    private static final class NPlusOneFinding {
+        private final String endpoint;
+        private final String shape;
+        private final LongAdder requests = new LongAdder();
+        private final AtomicLong maxRepeats = new AtomicLong();
+        private volatile Instant lastSeen;
+
+        NPlusOneFinding(String endpoint, String shape) {
+            this.endpoint = endpoint;
+            this.shape = shape;
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("endpoint", endpoint);
+            map.put("shape", shape);
+            map.put("requests", requests.sum());
+            map.put("maxExecutionsPerRequest", maxRepeats.get());
+            map.put("lastSeen", String.valueOf(lastSeen));
+            return map;
+        }
+    }
+}
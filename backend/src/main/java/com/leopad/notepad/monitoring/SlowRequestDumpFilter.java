@@ -0,0 +1,46 @@
+package com.leopad.notepad.monitoring;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.time.Duration;
+
+// Asks for a flight recording dump when a request takes longer than the threshold
+public class SlowRequestDumpFilter extends OncePerRequestFilter {
+
+    private final FlightRecorderDumper dumper;
+    private final long thresholdNanos;
+
+    public SlowRequestDumpFilter(FlightRecorderDumper dumper, Duration threshold) {
+        this.dumper = dumper;
+        this.thresholdNanos = threshold.toNanos();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        long start = System.nanoTime();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            if (elapsed > thresholdNanos) {
+                Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+                dumper.dumpAfterSlowRequest(request.getMethod() + " " + (pattern != null ? pattern : "UNMAPPED"),
+                        Duration.ofNanos(elapsed));
+            }
+        }
+    }
+
+    // Long-lived by design: streamed content and collaborative editing sessions
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI();
+        return path.endsWith("/content") || path.endsWith("/collab") || path.startsWith("/actuator");
+    }
+}
@@ -0,0 +1,197 @@
+package com.leopad.notepad.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Array;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * The archive tier ({@code notes_archive}) and moves between it and {@code notes}. Plain JDBC:
+ * archived rows are never entities, and moves are set-based. Content is stored deflated.
+ */
+@Repository
+public class NoteArchiveRepository {
+
+    private static final String ARCHIVE_COLUMNS =
+            "id, user_id, title, content_deflated, is_favorite, current_revision, tags, created_at, updated_at, word_count, "
+                    + "position";
+
+    private static final RowMapper<ArchivedNote> ARCHIVED =
+            (rs, rowNum) -> map(rs, inflate(rs.getBytes("content_deflated")));
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public NoteArchiveRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public record ArchivedNote(Long id, Long userId, String title, String content, Boolean isFavorite,
+                               Integer currentRevision, List<String> tags, LocalDateTime createdAt,
+                               LocalDateTime updatedAt, Integer wordCount, String position) {
+    }
+
+    /**
+     * Locks up to {@code limit} inline, non-favorite, unpinned notes last modified before the
+     * cutoff, oldest first. Rows locked by anyone else (a user editing, another instance
+     * archiving) are skipped rather than waited for.
+     */
+    public List<ArchivedNote> lockColdNotes(LocalDateTime cutoff, int limit) {
+        return jdbcTemplate.query(
+                "SELECT n.id, n.user_id, n.title, CASE WHEN n.shared_body THEN b.content ELSE n.content END AS content, "
+                        + "n.is_favorite, n.current_revision, n.word_count, n.position, "
+                        + "ARRAY(SELECT t.tag FROM note_tags t WHERE t.note_id = n.id) AS tags, n.created_at, n.updated_at "
+                        + "FROM notes n LEFT JOIN note_bodies b ON n.shared_body AND b.hash = n.content_hash "
+                        + "WHERE n.is_large = false AND n.is_favorite = false AND n.pinned = false "
+                        + "AND COALESCE(n.updated_at, n.created_at) < ? "
+                        + "ORDER BY COALESCE(n.updated_at, n.created_at) LIMIT ? FOR UPDATE OF n SKIP LOCKED",
+                (rs, rowNum) -> map(rs, rs.getString("content")), Timestamp.valueOf(cutoff), limit);
+    }
+
+    /**
+     * Copies the notes into the archive and removes them (and their tags) from the hot table.
+     * Archived content is self-contained, so shared bodies are released by the caller first.
+     */
+    public void archive(List<ArchivedNote> notes, LocalDateTime archivedAt) {
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO notes_archive (" + ARCHIVE_COLUMNS + ", content_length, archived_at) "
+                        + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)",
+                notes, notes.size(), (ps, note) -> {
+                    ps.setLong(1, note.id());
+                    ps.setLong(2, note.userId());
+                    ps.setString(3, note.title());
+                    ps.setBytes(4, deflate(note.content()));
+                    ps.setBoolean(5, note.isFavorite());
+                    ps.setInt(6, note.currentRevision());
+                    ps.setArray(7, ps.getConnection().createArrayOf("text", note.tags().toArray()));
+                    ps.setTimestamp(8, Timestamp.valueOf(note.createdAt()));
+                    ps.setTimestamp(9, note.updatedAt() != null ? Timestamp.valueOf(note.updatedAt()) : null);
+                    ps.setObject(10, note.wordCount(), Types.INTEGER);
+                    ps.setString(11, note.position());
+                    ps.setInt(12, note.content().length());
+                    ps.setTimestamp(13, Timestamp.valueOf(archivedAt));
+                });
+        Long[] ids = notes.stream().map(ArchivedNote::id).toArray(Long[]::new);
+        jdbcTemplate.update(connection -> {
+            PreparedStatement ps = connection.prepareStatement("DELETE FROM notes WHERE id = ANY(?)");
+            ps.setArray(1, connection.createArrayOf("bigint", ids));
+            return ps;
+        });
+    }
+
+    /**
+     * Moves an archived note back into the hot table with its id, tags and revision counter.
+     * Empty if the user has no archived note with that id.
+     */
+    public Optional<ArchivedNote> rehydrate(Long id, Long userId) {
+        List<ArchivedNote> taken = jdbcTemplate.query(
+                "DELETE FROM notes_archive WHERE id = ? AND user_id = ? RETURNING " + ARCHIVE_COLUMNS,
+                ARCHIVED, id, userId);
+        if (taken.isEmpty()) {
+            return Optional.empty();
+        }
+        ArchivedNote note = taken.get(0);
+        jdbcTemplate.update(
+                "INSERT INTO notes (id, title, content, user_id, created_at, updated_at, is_favorite, current_revision, "
+                        + "is_large, word_count, position) VALUES (?, ?, ?, ?, ?, ?, ?, ?, false, ?, ?)",
+                note.id(), note.title(), note.content(), note.userId(), Timestamp.valueOf(note.createdAt()),
+                note.updatedAt() != null ? Timestamp.valueOf(note.updatedAt()) : null, note.isFavorite(),
+                note.currentRevision(), note.wordCount(), note.position());
+        jdbcTemplate.batchUpdate("INSERT INTO note_tags (note_id, tag) VALUES (?, ?)", note.tags(), note.tags().size(),
+                (ps, tag) -> {
+                    ps.setLong(1, note.id());
+                    ps.setString(2, tag);
+                });
+        return Optional.of(note);
+    }
+
+    public List<ArchivedNote> findByUserId(Long userId) {
+        return jdbcTemplate.query(
+                "SELECT " + ARCHIVE_COLUMNS + " FROM notes_archive WHERE user_id = ? ORDER BY created_at DESC",
+                ARCHIVED, userId);
+    }
+
+    // The deleted note's word count (0 if never counted), or empty if the user has no such note
+    public Optional<Integer> deleteByIdAndUserId(Long id, Long userId) {
+        return jdbcTemplate.query(
+                "DELETE FROM notes_archive WHERE id = ? AND user_id = ? RETURNING COALESCE(word_count, 0)",
+                (rs, rowNum) -> rs.getInt(1), id, userId).stream().findFirst();
+    }
+
+    // Planner row estimates and on-disk size (incl. indexes and TOAST) of each tier
+    public Map<String, long[]> tierSizes() {
+        Map<String, long[]> sizes = new LinkedHashMap<>();
+        jdbcTemplate.query(
+                "SELECT c.relname, GREATEST(c.reltuples, 0)::bigint, pg_total_relation_size(c.oid) FROM pg_class c "
+                        + "WHERE c.relname IN ('notes', 'notes_archive') AND c.relkind = 'r' "
+                        + "AND pg_table_is_visible(c.oid)",
+                rs -> {
+                    sizes.put(rs.getString(1), new long[]{rs.getLong(2), rs.getLong(3)});
+                });
+        return sizes;
+    }
+
+    private static ArchivedNote map(ResultSet rs, String content) throws SQLException {
+        Array tags = rs.getArray("tags");
+        Timestamp updatedAt = rs.getTimestamp("updated_at");
+        return new ArchivedNote(rs.getLong("id"), rs.getLong("user_id"), rs.getString("title"), content,
+                rs.getBoolean("is_favorite"), rs.getInt("current_revision"),
+                Arrays.asList((String[]) tags.getArray()), rs.getTimestamp("created_at").toLocalDateTime(),
+                updatedAt != null ? updatedAt.toLocalDateTime() : null, rs.getObject("word_count", Integer.class),
+                rs.getString("position"));
+    }
+
+    static byte[] deflate(String content) {
+        byte[] input = content.getBytes(StandardCharsets.UTF_8);
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            deflater.setInput(input);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, input.length / 2));
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    static String inflate(byte[] data) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 3);
+            byte[] buffer = new byte[8192];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(buffer);
+                if (n == 0 && !inflater.finished() && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalStateException("Truncated archived note content");
+                }
+                out.write(buffer, 0, n);
+            }
+            return out.toString(StandardCharsets.UTF_8);
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupt archived note content", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
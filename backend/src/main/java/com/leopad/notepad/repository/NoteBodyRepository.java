@@ -0,0 +1,67 @@
+package com.leopad.notepad.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Content-addressed note bodies: each distinct body is stored once under its SHA-256 and
+ * counts the notes that reference it. Plain JDBC so reference counts are adjusted in place.
+ */
+@Repository
+public class NoteBodyRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public NoteBodyRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    // Adds a reference to the body, storing it first if needed; true if it was not stored yet
+    public boolean acquire(String hash, String content) {
+        Boolean inserted = jdbcTemplate.queryForObject(
+                "INSERT INTO note_bodies (hash, content, ref_count) VALUES (?, ?, 1) "
+                        + "ON CONFLICT (hash) DO UPDATE SET ref_count = note_bodies.ref_count + 1 "
+                        + "RETURNING (xmax = 0)",
+                Boolean.class, hash, content);
+        return Boolean.TRUE.equals(inserted);
+    }
+
+    // Drops one reference and deletes the body once nothing references it
+    public void release(String hash) {
+        jdbcTemplate.update("UPDATE note_bodies SET ref_count = ref_count - 1 WHERE hash = ?", hash);
+        jdbcTemplate.update("DELETE FROM note_bodies WHERE hash = ? AND ref_count <= 0", hash);
+    }
+
+    /**
+     * Drops the references held by the given notes before they are removed from {@code notes}
+     * by plain SQL (archiving), one statement per step regardless of the number of notes.
+     */
+    public void releaseForNotes(Long[] noteIds) {
+        List<String> released = jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(
+                    "UPDATE note_bodies b SET ref_count = b.ref_count - r.refs FROM ("
+                            + "SELECT content_hash, count(*) AS refs FROM notes "
+                            + "WHERE id = ANY(?) AND shared_body GROUP BY content_hash) r "
+                            + "WHERE b.hash = r.content_hash RETURNING b.hash");
+            ps.setArray(1, connection.createArrayOf("bigint", noteIds));
+            return ps;
+        }, (rs, rowNum) -> rs.getString(1));
+        if (!released.isEmpty()) {
+            jdbcTemplate.update(connection -> {
+                PreparedStatement ps = connection.prepareStatement(
+                        "DELETE FROM note_bodies WHERE hash = ANY(?) AND ref_count <= 0");
+                ps.setArray(1, connection.createArrayOf("varchar", released.toArray()));
+                return ps;
+            });
+        }
+    }
+
+    public Optional<String> findContent(String hash) {
+        return jdbcTemplate.query("SELECT content FROM note_bodies WHERE hash = ?",
+                (rs, rowNum) -> rs.getString(1), hash).stream().findFirst();
+    }
+}
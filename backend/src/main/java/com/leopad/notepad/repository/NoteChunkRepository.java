@@ -0,0 +1,42 @@
+package com.leopad.notepad.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Content chunks of large notes. Plain JDBC rather than an entity so chunk bodies are never
+ * held in the persistence context and a range read only touches the chunks it needs.
+ */
+@Repository
+public class NoteChunkRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public NoteChunkRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    // Chunks fromIndex..toIndex inclusive, in order
+    public List<byte[]> findRange(Long noteId, int fromIndex, int toIndex) {
+        return jdbcTemplate.query(
+                "SELECT data FROM note_chunks WHERE note_id = ? AND chunk_index BETWEEN ? AND ? ORDER BY chunk_index",
+                (rs, rowNum) -> rs.getBytes(1), noteId, fromIndex, toIndex);
+    }
+
+    public void upsert(Long noteId, int chunkIndex, byte[] data) {
+        jdbcTemplate.update(
+                "INSERT INTO note_chunks (note_id, chunk_index, data) VALUES (?, ?, ?) "
+                        + "ON CONFLICT (note_id, chunk_index) DO UPDATE SET data = EXCLUDED.data",
+                noteId, chunkIndex, data);
+    }
+
+    public int deleteFrom(Long noteId, int fromIndex) {
+        return jdbcTemplate.update("DELETE FROM note_chunks WHERE note_id = ? AND chunk_index >= ?", noteId, fromIndex);
+    }
+
+    public int deleteByNoteId(Long noteId) {
+        return jdbcTemplate.update("DELETE FROM note_chunks WHERE note_id = ?", noteId);
+    }
+}
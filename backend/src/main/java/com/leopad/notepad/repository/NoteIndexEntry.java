@@ -0,0 +1,8 @@
+package com.leopad.notepad.repository;
+
+public interface NoteIndexEntry {
+
+    Long getNoteId();
+
+    Boolean getIsFavorite();
+}
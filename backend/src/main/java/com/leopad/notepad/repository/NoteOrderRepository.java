@@ -0,0 +1,98 @@
+package com.leopad.notepad.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Position keys of the manual note order. Plain JDBC so a move is a single-column update that
+ * neither loads the note nor touches its update time. Everything here runs on the
+ * (user_id, pinned, position, id) index.
+ */
+@Repository
+public class NoteOrderRepository {
+
+    // First key of pg_advisory_xact_lock(int, int); the second is derived from the user id
+    public static final int ORDER_LOCK = 0x4e4f5244;
+
+    private static final RowMapper<Placement> PLACEMENT =
+            (rs, rowNum) -> new Placement(rs.getLong("id"), rs.getBoolean("pinned"), rs.getString("position"));
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public NoteOrderRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public record Placement(Long id, boolean pinned, String position) {
+    }
+
+    // Serializes key assignment for one user until the transaction ends
+    public void lockUser(Long userId) {
+        jdbcTemplate.query("SELECT pg_advisory_xact_lock(?, ?)", rs -> null, ORDER_LOCK, Long.hashCode(userId));
+    }
+
+    public Optional<Placement> find(Long id, Long userId) {
+        return jdbcTemplate.query("SELECT id, pinned, position FROM notes WHERE id = ? AND user_id = ?",
+                PLACEMENT, id, userId).stream().findFirst();
+    }
+
+    public Optional<String> first(Long userId, boolean pinned) {
+        return jdbcTemplate.queryForList("SELECT position FROM notes WHERE user_id = ? AND pinned = ? "
+                + "ORDER BY position, id LIMIT 1", String.class, userId, pinned).stream().findFirst();
+    }
+
+    // The key right after (position, id) in the section, skipping the note being moved
+    public Optional<String> next(Long userId, boolean pinned, String position, Long id, Long excludeId) {
+        return jdbcTemplate.queryForList("SELECT position FROM notes WHERE user_id = ? AND pinned = ? "
+                        + "AND (position, id) > (?, ?) AND id <> ? ORDER BY position, id LIMIT 1", String.class,
+                userId, pinned, position, id, excludeId).stream().findFirst();
+    }
+
+    public Optional<String> previous(Long userId, boolean pinned, String position, Long id, Long excludeId) {
+        return jdbcTemplate.queryForList("SELECT position FROM notes WHERE user_id = ? AND pinned = ? "
+                        + "AND (position, id) < (?, ?) AND id <> ? ORDER BY position DESC, id DESC LIMIT 1",
+                String.class, userId, pinned, position, id, excludeId).stream().findFirst();
+    }
+
+    public int move(Long id, Long userId, boolean pinned, String position) {
+        return jdbcTemplate.update("UPDATE notes SET pinned = ?, position = ? WHERE id = ? AND user_id = ?",
+                pinned, position, id, userId);
+    }
+
+    // One keyset page of a section, after (position, id); "" and 0 start at the beginning
+    public List<Placement> page(Long userId, boolean pinned, String position, Long id, int limit) {
+        return jdbcTemplate.query("SELECT id, pinned, position FROM notes WHERE user_id = ? AND pinned = ? "
+                        + "AND (position, id) > (?, ?) ORDER BY position, id LIMIT ?", PLACEMENT,
+                userId, pinned, position, id, limit);
+    }
+
+    public List<Placement> section(Long userId, boolean pinned) {
+        return jdbcTemplate.query("SELECT id, pinned, position FROM notes WHERE user_id = ? AND pinned = ? "
+                + "ORDER BY position, id", PLACEMENT, userId, pinned);
+    }
+
+    // Archived notes are never pinned; they are rebalanced with the unpinned section
+    public List<Placement> archived(Long userId) {
+        return jdbcTemplate.query("SELECT id, false AS pinned, position FROM notes_archive WHERE user_id = ?",
+                PLACEMENT, userId);
+    }
+
+    public void updatePositions(Map<Long, String> positions, boolean archived) {
+        List<Object[]> updates = positions.entrySet().stream()
+                .map(entry -> new Object[]{entry.getValue(), entry.getKey()})
+                .toList();
+        jdbcTemplate.batchUpdate("UPDATE " + (archived ? "notes_archive" : "notes") + " SET position = ? WHERE id = ?",
+                updates);
+    }
+
+    // Users with a key longer than maxLength, for the periodic rebalance sweep
+    public List<Long> findUsersWithLongKeys(int maxLength, Long afterUserId, int limit) {
+        return jdbcTemplate.queryForList("SELECT DISTINCT user_id FROM notes WHERE length(position) > ? "
+                + "AND user_id > ? ORDER BY user_id LIMIT ?", Long.class, maxLength, afterUserId, limit);
+    }
+}
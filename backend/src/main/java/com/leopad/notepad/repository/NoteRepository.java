@@ -2,23 +2,53 @@ package com.leopad.notepad.repository;
 
 import com.leopad.notepad.entity.Note;
 import com.leopad.notepad.entity.User;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import jakarta.persistence.LockModeType;
+
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface NoteRepository extends JpaRepository<Note, Long> {
+
+    // Each read fetches the owning user and tags eagerly so NoteResponse can be built after the
+    // transaction has ended (open-in-view is disabled)
+    @EntityGraph(attributePaths = {"user", "tags"})
+    List<Note> findByUserOrderByPinnedDescPositionAscIdAsc(User user);
     
-    List<Note> findByUserOrderByCreatedAtDesc(User user);
-    
+    @EntityGraph(attributePaths = {"user", "tags"})
     List<Note> findByUserAndIsFavoriteOrderByCreatedAtDesc(User user, Boolean isFavorite);
     
-    @Query("SELECT n FROM Note n WHERE n.user = :user AND (LOWER(n.title) LIKE LOWER(CONCAT('%', :keyword, '%')) OR LOWER(n.content) LIKE LOWER(CONCAT('%', :keyword, '%'))) ORDER BY n.createdAt DESC")
+    @EntityGraph(attributePaths = {"user", "tags"})
+    @Query("SELECT n FROM Note n WHERE n.user = :user AND (LOWER(n.title) LIKE LOWER(CONCAT('%', :keyword, '%')) OR LOWER(n.content) LIKE LOWER(CONCAT('%', :keyword, '%')) OR (n.sharedBody = true AND EXISTS (SELECT b FROM NoteBody b WHERE b.hash = n.contentHash AND LOWER(b.content) LIKE LOWER(CONCAT('%', :keyword, '%'))))) ORDER BY n.createdAt DESC")
     List<Note> findByUserAndTitleContainingOrContentContaining(@Param("user") User user, @Param("keyword") String keyword);
     
+    @EntityGraph(attributePaths = {"user", "tags"})
     Optional<Note> findByIdAndUser(Long id, User user);
+
+    // Keyed page fetch for tag filters; callers restore the index order
+    @EntityGraph(attributePaths = {"user", "tags"})
+    Optional<Note> findByIdAndUserId(Long id, Long userId);
+
+    @EntityGraph(attributePaths = {"user", "tags"})
+    List<Note> findByUserAndIdIn(User user, Collection<Long> ids);
+
+    // Tag index rebuild: one row per note and one per (note, tag), without loading content
+    @Query("SELECT n.id AS noteId, n.isFavorite AS isFavorite FROM Note n WHERE n.user.id = :userId ORDER BY n.id")
+    List<NoteIndexEntry> findIndexEntriesByUserId(@Param("userId") Long userId);
+
+    @Query("SELECT n.id AS noteId, t AS tag FROM Note n JOIN n.tags t WHERE n.user.id = :userId")
+    List<NoteTagEntry> findTagEntriesByUserId(@Param("userId") Long userId);
+
+    // Serializes content writes to one note so concurrent chunk edits cannot interleave
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT n FROM Note n WHERE n.id = :id AND n.user = :user")
+    Optional<Note> findByIdAndUserForUpdate(@Param("id") Long id, @Param("user") User user);
 }
\ No newline at end of file
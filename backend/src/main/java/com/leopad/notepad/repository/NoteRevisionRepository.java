@@ -0,0 +1,39 @@
+package com.leopad.notepad.repository;
+
+import com.leopad.notepad.entity.NoteRevision;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface NoteRevisionRepository extends JpaRepository<NoteRevision, Long> {
+
+    // Metadata only, so listing does not load snapshot and delta bodies
+    List<NoteRevisionSummary> findByNoteIdOrderByRevisionNumberDesc(Long noteId);
+
+    Optional<NoteRevision> findByNoteIdAndRevisionNumber(Long noteId, Integer revisionNumber);
+
+    // Nearest snapshot at or above the requested revision; reconstruction walks down from it
+    Optional<NoteRevision> findFirstByNoteIdAndSnapshotTrueAndRevisionNumberGreaterThanEqualOrderByRevisionNumberAsc(
+            Long noteId, Integer revisionNumber);
+
+    List<NoteRevision> findByNoteIdAndRevisionNumberBetweenOrderByRevisionNumberDesc(
+            Long noteId, Integer fromRevision, Integer toRevision);
+
+    // No foreign key since notes can be archived, so deleting a note deletes its history explicitly
+    @Modifying
+    @Query("DELETE FROM NoteRevision r WHERE r.noteId = :noteId")
+    int deleteByNoteId(@Param("noteId") Long noteId);
+
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM note_revisions WHERE id IN (SELECT id FROM note_revisions WHERE is_snapshot = false AND created_at < :cutoff LIMIT :batchSize)", nativeQuery = true)
+    int deleteDeltasCreatedBefore(@Param("cutoff") LocalDateTime cutoff, @Param("batchSize") int batchSize);
+}
@@ -0,0 +1,18 @@
+package com.leopad.notepad.repository;
+
+import java.time.LocalDateTime;
+
+public interface NoteRevisionSummary {
+
+    Integer getRevisionNumber();
+
+    String getTitle();
+
+    Boolean getIsFavorite();
+
+    Boolean getSnapshot();
+
+    Integer getContentLength();
+
+    LocalDateTime getCreatedAt();
+}
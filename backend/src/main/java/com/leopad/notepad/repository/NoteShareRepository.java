@@ -0,0 +1,15 @@
+package com.leopad.notepad.repository;
+
+import com.leopad.notepad.entity.NoteShare;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface NoteShareRepository extends JpaRepository<NoteShare, String> {
+
+    Optional<NoteShare> findByNoteIdAndUserId(Long noteId, Long userId);
+
+    Optional<NoteShare> findByNoteId(Long noteId);
+}
@@ -0,0 +1,111 @@
+package com.leopad.notepad.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Per-user note aggregates ({@code note_stats}) covering both storage tiers. Writers add deltas
+ * in place, so concurrent note writes for the same user never overwrite each other.
+ */
+@Repository
+public class NoteStatsRepository {
+
+    // Archived notes are never favorites: favorites are not archived and are rehydrated to change
+    private static final String AGGREGATE =
+            "SELECT count(*) AS note_count, count(*) FILTER (WHERE is_favorite) AS favorite_count, "
+                    + "COALESCE(sum(word_count), 0) AS word_count, max(COALESCE(updated_at, created_at)) AS last_edited_at "
+                    + "FROM (SELECT is_favorite, word_count, created_at, updated_at FROM notes WHERE user_id = ? "
+                    + "UNION ALL SELECT is_favorite, word_count, created_at, updated_at FROM notes_archive "
+                    + "WHERE user_id = ?) n";
+
+    private static final RowMapper<NoteStats> STATS = (rs, rowNum) -> {
+        Timestamp lastEditedAt = rs.getTimestamp("last_edited_at");
+        return new NoteStats(rs.getLong("note_count"), rs.getLong("favorite_count"), rs.getLong("word_count"),
+                lastEditedAt != null ? lastEditedAt.toLocalDateTime() : null);
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public NoteStatsRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public record NoteStats(long noteCount, long favoriteCount, long wordCount, LocalDateTime lastEditedAt) {
+    }
+
+    // Creates the row on a user's first write; the deltas then start from zero
+    public void applyDelta(Long userId, long notes, long favorites, long words, LocalDateTime editedAt) {
+        jdbcTemplate.update(
+                "INSERT INTO note_stats (user_id, note_count, favorite_count, word_count, last_edited_at) "
+                        + "VALUES (?, ?, ?, ?, ?) ON CONFLICT (user_id) DO UPDATE SET "
+                        + "note_count = note_stats.note_count + EXCLUDED.note_count, "
+                        + "favorite_count = note_stats.favorite_count + EXCLUDED.favorite_count, "
+                        + "word_count = note_stats.word_count + EXCLUDED.word_count, "
+                        + "last_edited_at = GREATEST(note_stats.last_edited_at, EXCLUDED.last_edited_at)",
+                userId, notes, favorites, words, Timestamp.valueOf(editedAt));
+    }
+
+    public Optional<NoteStats> find(Long userId) {
+        return jdbcTemplate.query(
+                "SELECT note_count, favorite_count, word_count, last_edited_at FROM note_stats WHERE user_id = ?",
+                STATS, userId).stream().findFirst();
+    }
+
+    // Same as find, but blocks deltas from other transactions until this one ends
+    public Optional<NoteStats> lock(Long userId) {
+        jdbcTemplate.update("INSERT INTO note_stats (user_id) VALUES (?) ON CONFLICT (user_id) DO NOTHING", userId);
+        return jdbcTemplate.query(
+                "SELECT note_count, favorite_count, word_count, last_edited_at FROM note_stats WHERE user_id = ? "
+                        + "FOR UPDATE", STATS, userId).stream().findFirst();
+    }
+
+    // Computed from the notes themselves; one index range scan per tier
+    public NoteStats aggregate(Long userId) {
+        return jdbcTemplate.queryForObject(AGGREGATE, STATS, userId, userId);
+    }
+
+    /**
+     * Overwrites the counters with recomputed values. A delete can make the stored last-edited
+     * time later than any remaining note, so it is only ever moved forward.
+     */
+    public void overwrite(Long userId, NoteStats stats) {
+        jdbcTemplate.update(
+                "UPDATE note_stats SET note_count = ?, favorite_count = ?, word_count = ?, "
+                        + "last_edited_at = GREATEST(last_edited_at, ?) WHERE user_id = ?",
+                stats.noteCount(), stats.favoriteCount(), stats.wordCount(),
+                stats.lastEditedAt() != null ? Timestamp.valueOf(stats.lastEditedAt()) : null, userId);
+    }
+
+    // With sharding a shard only holds the users placed on it
+    public List<Long> findUserIdsAfter(Long afterUserId, int limit) {
+        return jdbcTemplate.queryForList("SELECT id FROM users WHERE id > ? ORDER BY id LIMIT ?",
+                Long.class, afterUserId, limit);
+    }
+
+    public record UncountedNote(Long id, String content) {
+    }
+
+    // Archived notes from before word counts were kept
+    public List<UncountedNote> findUncountedArchivedNotes(int limit) {
+        return jdbcTemplate.query(
+                "SELECT id, content_deflated FROM notes_archive WHERE word_count IS NULL ORDER BY id LIMIT ?",
+                (rs, rowNum) -> new UncountedNote(rs.getLong("id"),
+                        NoteArchiveRepository.inflate(rs.getBytes("content_deflated"))), limit);
+    }
+
+    public void setArchivedWordCounts(Map<Long, Integer> wordCounts) {
+        List<Map.Entry<Long, Integer>> entries = List.copyOf(wordCounts.entrySet());
+        jdbcTemplate.batchUpdate("UPDATE notes_archive SET word_count = ? WHERE id = ?", entries, entries.size(),
+                (ps, entry) -> {
+                    ps.setInt(1, entry.getValue());
+                    ps.setLong(2, entry.getKey());
+                });
+    }
+}
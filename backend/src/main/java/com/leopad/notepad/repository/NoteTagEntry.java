@@ -0,0 +1,8 @@
+package com.leopad.notepad.repository;
+
+public interface NoteTagEntry {
+
+    Long getNoteId();
+
+    String getTag();
+}
@@ -0,0 +1,190 @@
+package com.leopad.notepad.resilience;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+/**
+ * Isolates calls to one external dependency from the request threads. Calls run on the
+ * dependency's own fixed pool with a bounded queue; the caller waits at most {@code timeout}.
+ * A full pool and queue or an open circuit breaker refuse the call at once, so a slow
+ * dependency ties up its own threads and not the server's. All three end in
+ * {@link DependencyUnavailableException}. The call's own exceptions reach the caller unchanged
+ * and count against the breaker only if {@code isFailure} says the dependency is at fault.
+ */
+public class Bulkhead {
+
+    private static final Logger logger = LoggerFactory.getLogger(Bulkhead.class);
+
+    public enum Outcome {
+        SUCCESS, FAILURE, TIMEOUT, REJECTED, SHORT_CIRCUITED
+    }
+
+    /** A call that may throw the dependency client's checked exception. */
+    @FunctionalInterface
+    public interface Call<T, E extends Exception> {
+        T run() throws E;
+    }
+
+    private final String name;
+    private final ThreadPoolExecutor executor;
+    private final int maxConcurrent;
+    private final int queueSize;
+    private final Duration timeout;
+    private final CircuitBreaker circuitBreaker;
+    private final Predicate<Throwable> isFailure;
+    private final Map<Outcome, Timer> timers = new EnumMap<>(Outcome.class);
+
+    public Bulkhead(String name, int maxConcurrent, int queueSize, Duration timeout, CircuitBreaker circuitBreaker,
+                    Predicate<Throwable> isFailure, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.maxConcurrent = maxConcurrent;
+        this.queueSize = queueSize;
+        this.timeout = timeout;
+        this.circuitBreaker = circuitBreaker;
+        this.isFailure = isFailure;
+        AtomicInteger threads = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(maxConcurrent, maxConcurrent, 60, TimeUnit.SECONDS,
+                queueSize > 0 ? new ArrayBlockingQueue<>(queueSize) : new SynchronousQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "bulkhead-" + name + "-" + threads.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.executor.allowCoreThreadTimeOut(true);
+
+        for (Outcome outcome : Outcome.values()) {
+            timers.put(outcome, Timer.builder("notepad.dependency.calls")
+                    .description("Calls to an external dependency through its bulkhead, by outcome")
+                    .tag("dependency", name)
+                    .tag("outcome", outcome.name().toLowerCase())
+                    .register(meterRegistry));
+        }
+        Gauge.builder("notepad.bulkhead.active", executor, ThreadPoolExecutor::getActiveCount)
+                .description("Calls running on the dependency's bulkhead threads")
+                .tag("dependency", name)
+                .register(meterRegistry);
+        Gauge.builder("notepad.bulkhead.queued", executor, pool -> pool.getQueue().size())
+                .description("Calls waiting for a bulkhead thread")
+                .tag("dependency", name)
+                .register(meterRegistry);
+        Gauge.builder("notepad.bulkhead.saturation", this, Bulkhead::saturation)
+                .description("Share of the bulkhead's threads and queue in use; at 1 calls are rejected")
+                .tag("dependency", name)
+                .register(meterRegistry);
+        Gauge.builder("notepad.circuit.state", circuitBreaker, breaker -> breaker.state().ordinal())
+                .description("Circuit breaker state: 0 closed, 1 half-open, 2 open")
+                .tag("dependency", name)
+                .register(meterRegistry);
+        circuitBreaker.onStateChange(() -> logger.warn("Circuit breaker for {} is now {}", name,
+                circuitBreaker.state()));
+    }
+
+    public <T, E extends Exception> T call(Call<T, E> work) throws E {
+        long start = System.nanoTime();
+        if (!circuitBreaker.tryAcquire()) {
+            record(Outcome.SHORT_CIRCUITED, start);
+            throw new DependencyUnavailableException(name, DependencyUnavailableException.Reason.CIRCUIT_OPEN,
+                    circuitBreaker.remainingOpen());
+        }
+        // Keeps the request id and user on the dependency's log lines
+        Map<String, String> logContext = MDC.getCopyOfContextMap();
+        Future<T> future;
+        try {
+            future = executor.submit(() -> {
+                if (logContext != null) {
+                    MDC.setContextMap(logContext);
+                }
+                try {
+                    return work.run();
+                } finally {
+                    MDC.clear();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            circuitBreaker.onIgnored();
+            record(Outcome.REJECTED, start);
+            throw new DependencyUnavailableException(name, DependencyUnavailableException.Reason.REJECTED,
+                    Duration.ofSeconds(1));
+        }
+
+        try {
+            T result = future.get(timeout.toNanos() - (System.nanoTime() - start), TimeUnit.NANOSECONDS);
+            circuitBreaker.onSuccess();
+            record(Outcome.SUCCESS, start);
+            return result;
+        } catch (TimeoutException e) {
+            // Frees the thread if the client honours interrupts; otherwise it stays busy until the
+            // client's own I/O timeout, still counted against this bulkhead and not the server
+            future.cancel(true);
+            circuitBreaker.onFailure();
+            record(Outcome.TIMEOUT, start);
+            throw new DependencyUnavailableException(name, DependencyUnavailableException.Reason.TIMEOUT,
+                    circuitBreaker.remainingOpen());
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            circuitBreaker.onIgnored();
+            Thread.currentThread().interrupt();
+            throw new DependencyUnavailableException(name, DependencyUnavailableException.Reason.TIMEOUT,
+                    Duration.ZERO);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (isFailure.test(cause)) {
+                circuitBreaker.onFailure();
+                record(Outcome.FAILURE, start);
+            } else {
+                circuitBreaker.onSuccess();
+                record(Outcome.SUCCESS, start);
+            }
+            throw Bulkhead.<E>rethrow(cause);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    public double saturation() {
+        return (double) (executor.getActiveCount() + executor.getQueue().size()) / (maxConcurrent + queueSize);
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void record(Outcome outcome, long start) {
+        timers.get(outcome).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    // The work only throws E or unchecked exceptions
+    @SuppressWarnings("unchecked")
+    private static <E extends Exception> E rethrow(Throwable cause) throws E {
+        if (cause instanceof RuntimeException runtime) {
+            throw runtime;
+        }
+        if (cause instanceof Error error) {
+            throw error;
+        }
+        throw (E) cause;
+    }
+}
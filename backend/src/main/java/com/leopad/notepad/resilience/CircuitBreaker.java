@@ -0,0 +1,161 @@
+package com.leopad.notepad.resilience;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+/**
+ * Count-based circuit breaker. Closed, it records the outcome of the last {@code windowSize}
+ * calls and opens once at least {@code minimumCalls} of them are in and the failure rate reaches
+ * the threshold. Open, it refuses every call for {@code openDuration}. Then it lets up to
+ * {@code halfOpenProbes} calls through: all of them succeeding closes it with a fresh window, any
+ * of them failing opens it again.
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, HALF_OPEN, OPEN
+    }
+
+    private final int windowSize;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final long openNanos;
+    private final int halfOpenProbes;
+    private final LongSupplier clock;
+
+    // Guarded by this
+    private final boolean[] window;
+    private int recorded;
+    private int next;
+    private int failures;
+    private State state = State.CLOSED;
+    private long openedAt;
+    private int probesStarted;
+    private int probesSucceeded;
+    private Runnable onStateChange = () -> { };
+
+    public CircuitBreaker(int windowSize, int minimumCalls, double failureRateThreshold, Duration openDuration,
+                          int halfOpenProbes) {
+        this(windowSize, minimumCalls, failureRateThreshold, openDuration, halfOpenProbes, System::nanoTime);
+    }
+
+    CircuitBreaker(int windowSize, int minimumCalls, double failureRateThreshold, Duration openDuration,
+                   int halfOpenProbes, LongSupplier clock) {
+        if (windowSize < 1 || minimumCalls < 1 || minimumCalls > windowSize || halfOpenProbes < 1
+                || failureRateThreshold <= 0 || failureRateThreshold > 1) {
+            throw new IllegalArgumentException("Invalid circuit breaker settings");
+        }
+        this.windowSize = windowSize;
+        this.minimumCalls = minimumCalls;
+        this.failureRateThreshold = failureRateThreshold;
+        this.openNanos = openDuration.toNanos();
+        this.halfOpenProbes = halfOpenProbes;
+        this.clock = clock;
+        this.window = new boolean[windowSize];
+    }
+
+    void onStateChange(Runnable listener) {
+        this.onStateChange = listener;
+    }
+
+    /**
+     * Whether a call may go ahead now. Every permitted call must be followed by exactly one of
+     * {@link #onSuccess()}, {@link #onFailure()} or {@link #onIgnored()}.
+     */
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN) {
+            if (clock.getAsLong() - openedAt < openNanos) {
+                return false;
+            }
+            transition(State.HALF_OPEN);
+            probesStarted = 0;
+            probesSucceeded = 0;
+        }
+        if (state == State.HALF_OPEN) {
+            if (probesStarted >= halfOpenProbes) {
+                return false;
+            }
+            probesStarted++;
+        }
+        return true;
+    }
+
+    public synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            if (++probesSucceeded >= halfOpenProbes) {
+                resetWindow();
+                transition(State.CLOSED);
+            }
+        } else if (state == State.CLOSED) {
+            record(false);
+        }
+    }
+
+    public synchronized void onFailure() {
+        if (state == State.HALF_OPEN) {
+            open();
+        } else if (state == State.CLOSED) {
+            record(true);
+            if (recorded >= minimumCalls && failures >= failureRateThreshold * recorded) {
+                open();
+            }
+        }
+    }
+
+    // The call said nothing about the dependency's health (e.g. it was rejected before starting)
+    public synchronized void onIgnored() {
+        if (state == State.HALF_OPEN) {
+            probesStarted--;
+        }
+    }
+
+    public synchronized State state() {
+        // An open breaker whose wait is over reports half-open; the next call will probe
+        if (state == State.OPEN && clock.getAsLong() - openedAt >= openNanos) {
+            return State.HALF_OPEN;
+        }
+        return state;
+    }
+
+    // Until the breaker lets probes through; zero unless open
+    public synchronized Duration remainingOpen() {
+        if (state != State.OPEN) {
+            return Duration.ZERO;
+        }
+        return Duration.ofNanos(Math.max(0, openNanos - (clock.getAsLong() - openedAt)));
+    }
+
+    private void record(boolean failed) {
+        if (recorded == windowSize) {
+            if (window[next]) {
+                failures--;
+            }
+        } else {
+            recorded++;
+        }
+        window[next] = failed;
+        if (failed) {
+            failures++;
+        }
+        next = (next + 1) % windowSize;
+    }
+
+    private void open() {
+        openedAt = clock.getAsLong();
+        resetWindow();
+        transition(State.OPEN);
+    }
+
+    private void resetWindow() {
+        recorded = 0;
+        next = 0;
+        failures = 0;
+    }
+
+    private void transition(State to) {
+        if (state != to) {
+            state = to;
+            onStateChange.run();
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.leopad.notepad.resilience;
+
+import java.time.Duration;
+
+/**
+ * A call to an external dependency that was not made or not waited for: its bulkhead was full,
+ * its circuit breaker was open, or it ran past its timeout. Callers answer with 503.
+ */
+public class DependencyUnavailableException extends RuntimeException {
+
+    public enum Reason {
+        REJECTED, CIRCUIT_OPEN, TIMEOUT
+    }
+
+    private final String dependency;
+    private final Reason reason;
+    private final Duration retryAfter;
+
+    public DependencyUnavailableException(String dependency, Reason reason, Duration retryAfter) {
+        // No stack trace: thrown for every refused call while a dependency is down
+        super(dependency + " unavailable: " + reason.name().toLowerCase().replace('_', ' '), null, false, false);
+        this.dependency = dependency;
+        this.reason = reason;
+        this.retryAfter = retryAfter;
+    }
+
+    public String getDependency() {
+        return dependency;
+    }
+
+    public Reason getReason() {
+        return reason;
+    }
+
+    // For the Retry-After header: whole seconds, at least one
+    public long getRetryAfterSeconds() {
+        return Math.max(1, (retryAfter.toMillis() + 999) / 1000);
+    }
+}
@@ -2,6 +2,9 @@ package com.leopad.notepad.security;
 
 import com.google.firebase.auth.FirebaseAuthException;
 import com.google.firebase.auth.FirebaseToken;
+import com.leopad.notepad.logging.RequestCorrelationFilter;
+import com.leopad.notepad.monitoring.FirebaseVerificationEvent;
+import com.leopad.notepad.resilience.DependencyUnavailableException;
 import com.leopad.notepad.service.FirebaseAuthService;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
@@ -9,7 +12,11 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -18,18 +25,25 @@ import org.springframework.util.StringUtils;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
-import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
 
 public class FirebaseAuthenticationFilter extends OncePerRequestFilter {
 
     private static final Logger logger = LoggerFactory.getLogger(FirebaseAuthenticationFilter.class);
     private static final String AUTHORIZATION_HEADER = "Authorization";
     private static final String BEARER_PREFIX = "Bearer ";
+    private static final String ACCESS_TOKEN_PARAMETER = "access_token";
+
+    private static final SimpleGrantedAuthority ADMIN = new SimpleGrantedAuthority("ROLE_ADMIN");
 
     private final FirebaseAuthService firebaseAuthService;
+    // Firebase UIDs allowed on the admin-only actuator endpoints
+    private final Set<String> adminUids;
 
-    public FirebaseAuthenticationFilter(FirebaseAuthService firebaseAuthService) {
+    public FirebaseAuthenticationFilter(FirebaseAuthService firebaseAuthService, Set<String> adminUids) {
         this.firebaseAuthService = firebaseAuthService;
+        this.adminUids = adminUids;
     }
 
     @Override
@@ -42,13 +56,13 @@ public class FirebaseAuthenticationFilter extends OncePerRequestFilter {
             if (StringUtils.hasText(jwt)) {
                 logger.debug("Processing JWT token from request");
                 
-                FirebaseToken firebaseToken = firebaseAuthService.verifyToken(jwt);
+                FirebaseToken firebaseToken = verifyRecorded(jwt);
                 
                 // Create user details from Firebase token
                 UserDetails userDetails = User.builder()
                     .username(firebaseToken.getUid())
                     .password("") // No password needed for Firebase auth
-                    .authorities(new ArrayList<>()) // You can add roles/authorities here if needed
+                    .authorities(adminUids.contains(firebaseToken.getUid()) ? List.of(ADMIN) : List.of())
                     .build();
 
                 // Create authentication token and add Firebase token as details
@@ -58,6 +72,7 @@ public class FirebaseAuthenticationFilter extends OncePerRequestFilter {
 
                 // Set authentication in security context
                 SecurityContextHolder.getContext().setAuthentication(authentication);
+                MDC.put(RequestCorrelationFilter.USER_ID_KEY, firebaseToken.getUid());
                 
                 logger.info("Successfully authenticated user: {}", firebaseToken.getUid());
             }
@@ -65,6 +80,14 @@ public class FirebaseAuthenticationFilter extends OncePerRequestFilter {
         } catch (FirebaseAuthException e) {
             logger.warn("Firebase authentication failed: {}", e.getMessage());
             // Don't set authentication - let Spring Security handle the unauthorized access
+        } catch (DependencyUnavailableException e) {
+            // Not a 401, which would make clients sign the user out over an outage on our side
+            logger.warn("Could not verify token: {}", e.getMessage());
+            response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()));
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.getWriter().write("{\"error\":\"Authentication is temporarily unavailable\"}");
+            return;
         } catch (Exception e) {
             logger.error("Error processing Firebase authentication: {}", e.getMessage(), e);
         }
@@ -72,12 +95,35 @@ public class FirebaseAuthenticationFilter extends OncePerRequestFilter {
         filterChain.doFilter(request, response);
     }
 
+    private FirebaseToken verifyRecorded(String jwt) throws FirebaseAuthException {
+        FirebaseVerificationEvent event = new FirebaseVerificationEvent();
+        event.begin();
+        try {
+            FirebaseToken token = firebaseAuthService.verifyToken(jwt);
+            event.succeeded = true;
+            return token;
+        } catch (FirebaseAuthException e) {
+            event.failure = e.getAuthErrorCode() != null ? e.getAuthErrorCode().name() : e.getClass().getSimpleName();
+            throw e;
+        } catch (RuntimeException e) {
+            event.failure = e.getClass().getSimpleName();
+            throw e;
+        } finally {
+            event.commit();
+        }
+    }
+
     private String getJwtFromRequest(HttpServletRequest request) {
         String bearerToken = request.getHeader(AUTHORIZATION_HEADER);
         
         if (StringUtils.hasText(bearerToken) && bearerToken.startsWith(BEARER_PREFIX)) {
             return bearerToken.substring(BEARER_PREFIX.length());
         }
+
+        // Browsers cannot set headers on a WebSocket handshake, so collab sessions pass the token in the URL
+        if ("websocket".equalsIgnoreCase(request.getHeader("Upgrade"))) {
+            return request.getParameter(ACCESS_TOKEN_PARAMETER);
+        }
         
         return null;
     }
@@ -89,7 +135,9 @@ public class FirebaseAuthenticationFilter extends OncePerRequestFilter {
         // Skip authentication for public endpoints
         return path.equals("/") || 
                path.startsWith("/health") || 
-               path.startsWith("/actuator") ||
-               path.startsWith("/api/auth");
+               path.equals("/actuator/health") ||
+               path.startsWith("/actuator/health/") ||
+               path.startsWith("/api/auth") ||
+               path.startsWith("/s/");
     }
 }
\ No newline at end of file
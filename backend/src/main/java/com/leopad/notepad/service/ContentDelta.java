@@ -0,0 +1,43 @@
+package com.leopad.notepad.service;
+
+/**
+ * Compact single-hunk text delta: the common prefix and suffix of two versions are kept and
+ * only the differing middle is stored, as {@code "<prefixLength>,<suffixLength>:<replacement>"}.
+ * Autosave edits are usually one local change, so this stays small without a full diff.
+ */
+public final class ContentDelta {
+
+    private ContentDelta() {
+    }
+
+    /**
+     * Returns the delta that turns {@code from} into {@code to}.
+     */
+    public static String diff(String from, String to) {
+        int max = Math.min(from.length(), to.length());
+        int prefix = 0;
+        while (prefix < max && from.charAt(prefix) == to.charAt(prefix)) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < max - prefix
+                && from.charAt(from.length() - 1 - suffix) == to.charAt(to.length() - 1 - suffix)) {
+            suffix++;
+        }
+        return prefix + "," + suffix + ":" + to.substring(prefix, to.length() - suffix);
+    }
+
+    public static String apply(String from, String delta) {
+        int comma = delta.indexOf(',');
+        int colon = delta.indexOf(':', comma);
+        if (comma < 0 || colon < 0) {
+            throw new IllegalArgumentException("Malformed content delta");
+        }
+        int prefix = Integer.parseInt(delta, 0, comma, 10);
+        int suffix = Integer.parseInt(delta, comma + 1, colon, 10);
+        if (prefix + suffix > from.length()) {
+            throw new IllegalArgumentException("Content delta does not match base text");
+        }
+        return from.substring(0, prefix) + delta.substring(colon + 1) + from.substring(from.length() - suffix);
+    }
+}
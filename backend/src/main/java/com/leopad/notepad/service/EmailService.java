@@ -1,27 +1,68 @@
 package com.leopad.notepad.service;
 
+import com.leopad.notepad.monitoring.EmailSendEvent;
+import com.leopad.notepad.resilience.Bulkhead;
 import com.sendgrid.*;
 import com.sendgrid.helpers.mail.Mail;
 import com.sendgrid.helpers.mail.objects.Content;
 import com.sendgrid.helpers.mail.objects.Email;
+import jakarta.annotation.PreDestroy;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
 
+/**
+ * Sends notes through SendGrid. Calls run on the SendGrid bulkhead with connect and read
+ * timeouts, so a slow or failing SendGrid costs callers at most the bulkhead timeout and, once
+ * its circuit breaker opens, nothing: they get a DependencyUnavailableException instead.
+ */
 @Service
 public class EmailService {
 
     private static final Logger logger = LoggerFactory.getLogger(EmailService.class);
 
-    @Value("${sendgrid.api-key}")
-    private String sendGridApiKey;
+    private final String fromEmail;
+    private final Bulkhead sendGridBulkhead;
+    private final CloseableHttpClient httpClient;
+    private final SendGrid sendGrid;
 
-    @Value("${sendgrid.from-email}")
-    private String fromEmail;
+    public EmailService(@Value("${sendgrid.api-key}") String sendGridApiKey,
+                        @Value("${sendgrid.from-email}") String fromEmail,
+                        @Value("${sendgrid.base-url:https://api.sendgrid.com}") URI baseUrl,
+                        @Value("${sendgrid.connect-timeout:2s}") Duration connectTimeout,
+                        @Value("${sendgrid.read-timeout:8s}") Duration readTimeout,
+                        @Qualifier("sendGridBulkhead") Bulkhead sendGridBulkhead) {
+        this.fromEmail = fromEmail;
+        this.sendGridBulkhead = sendGridBulkhead;
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout((int) connectTimeout.toMillis())
+                .setConnectionRequestTimeout((int) connectTimeout.toMillis())
+                .setSocketTimeout((int) readTimeout.toMillis())
+                .build();
+        // One pooled client for every send; the bulkhead bounds how many connections it opens
+        this.httpClient = HttpClientBuilder.create()
+                .setDefaultRequestConfig(requestConfig)
+                .setMaxConnTotal(64)
+                .setMaxConnPerRoute(64)
+                .build();
+        // Plain http only for local stub servers
+        this.sendGrid = new SendGrid(sendGridApiKey, new Client(httpClient, "http".equals(baseUrl.getScheme())));
+        this.sendGrid.setHost(baseUrl.getPort() != -1 ? baseUrl.getHost() + ":" + baseUrl.getPort() : baseUrl.getHost());
+    }
 
+    /**
+     * Throws DependencyUnavailableException when SendGrid's bulkhead is full, its breaker is
+     * open or the call timed out; RuntimeException when SendGrid refused the message.
+     */
     public void sendNoteByEmail(String toEmail, String noteTitle, String noteContent) {
         Email from = new Email(fromEmail);
         String subject = "Your Note: " + noteTitle;
@@ -32,7 +73,6 @@ public class EmailService {
         
         Mail mail = new Mail(from, subject, to, content);
 
-        SendGrid sg = new SendGrid(sendGridApiKey);
         Request request = new Request();
         
         try {
@@ -40,7 +80,7 @@ public class EmailService {
             request.setEndpoint("mail/send");
             request.setBody(mail.build());
             
-            Response response = sg.api(request);
+            Response response = sendGridBulkhead.call(() -> send(request));
             
             if (response.getStatusCode() >= 200 && response.getStatusCode() < 300) {
                 logger.info("Email sent successfully to: {} with status code: {}", toEmail, response.getStatusCode());
@@ -55,6 +95,29 @@ public class EmailService {
         }
     }
 
+    // On a SendGrid bulkhead thread. Server errors and rate limiting count against the breaker.
+    private Response send(Request request) throws IOException {
+        EmailSendEvent event = new EmailSendEvent();
+        event.begin();
+        try {
+            Response response = sendGrid.api(request);
+            event.statusCode = response.getStatusCode();
+            event.succeeded = response.getStatusCode() >= 200 && response.getStatusCode() < 300;
+            if (response.getStatusCode() >= 500 || response.getStatusCode() == 429) {
+                throw new IOException("SendGrid answered with status " + response.getStatusCode());
+            }
+            return response;
+        } finally {
+            event.bodySize = request.getBody() != null ? request.getBody().length() : 0;
+            event.commit();
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        httpClient.close();
+    }
+
     private String buildEmailBody(String noteTitle, String noteContent) {
         return String.format("""
             <!DOCTYPE html>
@@ -1,12 +1,18 @@
 package com.leopad.notepad.service;
 
+import com.google.firebase.FirebaseApp;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseAuthException;
 import com.google.firebase.auth.FirebaseToken;
+import com.leopad.notepad.resilience.Bulkhead;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
 import java.util.concurrent.ExecutionException;
 
 @Service
@@ -14,10 +20,20 @@ public class FirebaseAuthService {
 
     private static final Logger logger = LoggerFactory.getLogger(FirebaseAuthService.class);
 
+    // Verification only goes to the network to refresh Google's signing keys, but it does so
+    // inside the call and every request waits on that refresh
+    @Autowired
+    @Qualifier("firebaseBulkhead")
+    private Bulkhead firebaseBulkhead;
+
+    /**
+     * Throws DependencyUnavailableException when the signing keys cannot be fetched in time or
+     * the Firebase breaker is open: the token may well be valid, so callers answer 503, not 401.
+     */
     public FirebaseToken verifyToken(String idToken) throws FirebaseAuthException {
         try {
             logger.debug("Verifying Firebase ID token");
-            FirebaseToken decodedToken = FirebaseAuth.getInstance().verifyIdToken(idToken);
+            FirebaseToken decodedToken = firebaseBulkhead.call(() -> FirebaseAuth.getInstance().verifyIdToken(idToken));
             logger.info("Successfully verified Firebase token for user: {}", decodedToken.getUid());
             return decodedToken;
         } catch (FirebaseAuthException e) {
@@ -50,4 +66,39 @@ public class FirebaseAuthService {
             return false;
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Makes the SDK download and cache Google's token signing keys before the first real request.
+     * The SDK only fetches them when checking a signature, so this verifies a well-formed but
+     * unsigned token for our project, which passes the content checks and fails on the signature.
+     */
+    public boolean prefetchVerificationKeys() {
+        if (FirebaseApp.getApps().isEmpty()) {
+            logger.debug("Firebase not initialized, skipping verification key prefetch");
+            return false;
+        }
+        String projectId = FirebaseApp.getInstance().getOptions().getProjectId();
+        if (projectId == null) {
+            logger.debug("Firebase project id unknown, skipping verification key prefetch");
+            return false;
+        }
+
+        long now = System.currentTimeMillis() / 1000;
+        String header = "{\"alg\":\"RS256\",\"kid\":\"warmup\",\"typ\":\"JWT\"}";
+        String payload = String.format(
+            "{\"aud\":\"%s\",\"iss\":\"https://securetoken.google.com/%s\",\"sub\":\"warmup\",\"iat\":%d,\"exp\":%d}",
+            projectId, projectId, now - 60, now + 3600);
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        String token = encoder.encodeToString(header.getBytes(StandardCharsets.UTF_8)) + "."
+            + encoder.encodeToString(payload.getBytes(StandardCharsets.UTF_8)) + "."
+            + encoder.encodeToString("warmup".getBytes(StandardCharsets.UTF_8));
+
+        try {
+            FirebaseAuth.getInstance().verifyIdToken(token);
+        } catch (FirebaseAuthException e) {
+            // Expected: the signature check fails after the keys have been fetched
+            logger.debug("Verification key prefetch finished: {}", e.getMessage());
+        }
+        return true;
+    }
+}
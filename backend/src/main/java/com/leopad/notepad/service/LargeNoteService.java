@@ -0,0 +1,423 @@
+package com.leopad.notepad.service;
+
+import com.leopad.notepad.entity.Note;
+import com.leopad.notepad.entity.User;
+import com.leopad.notepad.invalidation.InvalidationBus;
+import com.leopad.notepad.repository.NoteChunkRepository;
+import com.leopad.notepad.repository.NoteRepository;
+import org.hibernate.Hibernate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Byte-level access to note content for the streaming content endpoints. Content up to the
+ * inline limit stays in {@code notes.content}; anything larger is stored as fixed-size chunks
+ * in {@code note_chunks}, so reads and edits only load the chunks they touch. Offsets and
+ * lengths are in UTF-8 bytes.
+ */
+@Service
+public class LargeNoteService {
+
+    private static final Logger logger = LoggerFactory.getLogger(LargeNoteService.class);
+
+    // Same limit as NoteRequest.content
+    public static final int INLINE_MAX_CHARS = 10000;
+
+    @Autowired
+    private NoteRepository noteRepository;
+
+    @Autowired
+    private NoteChunkRepository noteChunkRepository;
+
+    @Autowired
+    private NoteRevisionService noteRevisionService;
+
+    @Autowired
+    private NoteReadCoalescer noteReadCoalescer;
+
+    @Autowired
+    private InvalidationBus invalidationBus;
+
+    @Autowired
+    private NoteWriteBehindBuffer noteWriteBehindBuffer;
+
+    @Autowired
+    private NoteArchiveService noteArchiveService;
+
+    @Autowired
+    private NoteStatsService noteStatsService;
+
+    private final TransactionTemplate writeTransaction;
+    private final TransactionTemplate readTransaction;
+
+    @Value("${notes.large.chunk-size:262144}")
+    private int chunkSize;
+
+    @Value("${notes.large.max-size:10485760}")
+    private long maxSize;
+
+    @Value("${notes.large.max-edit-size:1048576}")
+    private int maxEditSize;
+
+    @Value("${notes.large.read-batch-chunks:4}")
+    private int readBatchChunks;
+
+    public LargeNoteService(PlatformTransactionManager transactionManager) {
+        this.writeTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setReadOnly(true);
+    }
+
+    public long contentLength(Note note) {
+        return note.getIsLarge() ? note.getContentLength() : note.getContent().getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    // Changes with every content write, so clients paging with Range can detect edits via If-Range
+    public String etag(Note note) {
+        LocalDateTime version = note.getUpdatedAt() != null ? note.getUpdatedAt() : note.getCreatedAt();
+        return "\"" + note.getId() + "-" + version.toInstant(ZoneOffset.UTC).toEpochMilli()
+                + "-" + contentLength(note) + "\"";
+    }
+
+    /**
+     * Replaces the whole content of a note. The body is spooled to a temporary file first so the
+     * upload neither sits in memory nor holds a database connection while the client is sending.
+     */
+    public Note replaceContent(Long id, User user, InputStream body) throws IOException {
+        Path spool = Files.createTempFile("note-upload-", ".tmp");
+        try {
+            long size = copyLimited(body, spool);
+            Note note = writeTransaction.execute(status -> {
+                Note locked = lockNote(id, user);
+                NoteStatsService.Snapshot before = NoteStatsService.snapshot(locked);
+                try (InputStream in = Files.newInputStream(spool)) {
+                    storeContent(locked, in, size);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                noteStatsService.noteUpdated(locked, before);
+                noteReadCoalescer.invalidateAfterCommit(user.getId());
+                invalidationBus.publishAfterCommit(user.getId());
+                return noteRepository.save(locked);
+            });
+            logger.debug("Stored {} bytes of content for note {} ({})", size, id, note.getIsLarge() ? "chunked" : "inline");
+            return note;
+        } finally {
+            Files.deleteIfExists(spool);
+        }
+    }
+
+    /**
+     * Replaces {@code length} bytes at {@code offset} with the request body. A same-length edit
+     * rewrites only the chunks it overlaps; an edit that changes the length also rewrites the
+     * chunks after it, since every later byte shifts. Chunks before the edit are never touched.
+     */
+    public Note editContent(Long id, User user, long offset, long length, InputStream body) throws IOException {
+        byte[] replacement = body.readNBytes(maxEditSize + 1);
+        if (replacement.length > maxEditSize) {
+            throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE, "Edit exceeds " + maxEditSize + " bytes");
+        }
+        decode(replacement);
+
+        return writeTransaction.execute(status -> {
+            Note note = lockNote(id, user);
+            long total = contentLength(note);
+            if (offset < 0 || length < 0 || offset + length > total) {
+                throw new ResponseStatusException(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE);
+            }
+            long newTotal = total - length + replacement.length;
+            if (newTotal > maxSize) {
+                throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE, "Note exceeds " + maxSize + " bytes");
+            }
+            NoteStatsService.Snapshot before = NoteStatsService.snapshot(note);
+
+            if (note.getIsLarge()) {
+                rewriteChunks(note.getId(), offset, length, replacement, total);
+                note.setContentLength(newTotal);
+                note.setUpdatedAt(LocalDateTime.now());
+            } else {
+                byte[] current = note.getContent().getBytes(StandardCharsets.UTF_8);
+                // Splicing inside a multi-byte character would leave broken UTF-8 behind
+                if (!isCharBoundary(current, (int) offset) || !isCharBoundary(current, (int) (offset + length))) {
+                    throw new ResponseStatusException(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE,
+                            "Range does not start and end on character boundaries");
+                }
+                byte[] updated = new byte[(int) newTotal];
+                System.arraycopy(current, 0, updated, 0, (int) offset);
+                System.arraycopy(replacement, 0, updated, (int) offset, replacement.length);
+                System.arraycopy(current, (int) (offset + length), updated, (int) offset + replacement.length,
+                        (int) (total - offset - length));
+                try {
+                    storeContent(note, new ByteArrayInputStream(updated), updated.length);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            noteStatsService.noteUpdated(note, before);
+            noteReadCoalescer.invalidateAfterCommit(user.getId());
+            invalidationBus.publishAfterCommit(user.getId());
+            return noteRepository.save(note);
+        });
+    }
+
+    /**
+     * Writes {@code length} bytes starting at {@code start}. Large notes are read a few chunks at a
+     * time, each batch in its own short read-only transaction, so no connection is held while the
+     * response is being written to a slow client.
+     */
+    public void writeContent(Note note, long start, long length, OutputStream out) throws IOException {
+        if (length <= 0) {
+            return;
+        }
+        if (!note.getIsLarge()) {
+            out.write(note.getContent().getBytes(StandardCharsets.UTF_8), (int) start, (int) length);
+            return;
+        }
+
+        long end = start + length;
+        int first = (int) (start / chunkSize);
+        int last = (int) ((end - 1) / chunkSize);
+        for (int batchStart = first; batchStart <= last; batchStart += readBatchChunks) {
+            int from = batchStart;
+            int to = Math.min(last, batchStart + readBatchChunks - 1);
+            List<byte[]> chunks = readTransaction.execute(status -> noteChunkRepository.findRange(note.getId(), from, to));
+            if (chunks.size() != to - from + 1) {
+                throw new IllegalStateException("Note " + note.getId() + " changed while its content was being read");
+            }
+            for (int i = 0; i < chunks.size(); i++) {
+                byte[] chunk = chunks.get(i);
+                long chunkStart = (long) (from + i) * chunkSize;
+                int sliceFrom = (int) Math.max(0, start - chunkStart);
+                int sliceTo = (int) Math.min(chunk.length, end - chunkStart);
+                out.write(chunk, sliceFrom, sliceTo - sliceFrom);
+            }
+        }
+    }
+
+    private Note lockNote(Long id, User user) {
+        // Byte offsets refer to the content clients see, including a buffered autosave
+        noteWriteBehindBuffer.flush(id);
+        Optional<Note> found = noteRepository.findByIdAndUserForUpdate(id, user);
+        if (found.isEmpty() && noteArchiveService.rehydrate(id, user.getId()).isPresent()) {
+            found = noteRepository.findByIdAndUserForUpdate(id, user);
+        }
+        Note note = found.orElseThrow(() -> new RuntimeException("Note not found or access denied"));
+        // NoteResponse reads the owner and tags after the transaction has ended
+        Hibernate.initialize(note.getUser());
+        Hibernate.initialize(note.getTags());
+        return note;
+    }
+
+    // Small content goes inline like any other note; larger content replaces the note's chunks
+    private void storeContent(Note note, InputStream in, long size) throws IOException {
+        boolean wasLarge = note.getIsLarge();
+        if (size <= INLINE_MAX_CHARS * 4L) {
+            byte[] bytes = in.readAllBytes();
+            String text = decode(bytes);
+            if (text.length() <= INLINE_MAX_CHARS) {
+                if (wasLarge) {
+                    noteChunkRepository.deleteByNoteId(note.getId());
+                } else if (!text.equals(note.getContent())) {
+                    noteRevisionService.recordRevision(note, text);
+                }
+                note.setContent(text);
+                note.setIsLarge(false);
+                note.setContentLength(null);
+                return;
+            }
+            in = new ByteArrayInputStream(bytes);
+        }
+
+        if (!wasLarge) {
+            // Keep the inline text in history; chunked content itself is not versioned
+            noteRevisionService.recordRevision(note, "");
+        }
+        int chunkCount = 0;
+        byte[] chunk;
+        while ((chunk = in.readNBytes(chunkSize)).length > 0) {
+            noteChunkRepository.upsert(note.getId(), chunkCount++, chunk);
+        }
+        noteChunkRepository.deleteFrom(note.getId(), chunkCount);
+        note.setContent("");
+        note.setIsLarge(true);
+        note.setContentLength(size);
+        note.setUpdatedAt(LocalDateTime.now());
+    }
+
+    private void rewriteChunks(Long noteId, long offset, long length, byte[] replacement, long total) {
+        boolean sameLength = replacement.length == length;
+        if (sameLength && length == 0) {
+            return;
+        }
+
+        int first = (int) (offset / chunkSize);
+        OldChunks old = new OldChunks(noteId, first, (int) ((total + chunkSize - 1) / chunkSize));
+        ChunkWriter writer = new ChunkWriter(noteId, first, old);
+
+        // New content from the first affected chunk: old head, replacement, then the old tail
+        old.transferTo(writer, offset - (long) first * chunkSize);
+        writer.write(replacement, 0, replacement.length);
+        old.transferTo(null, length);
+        if (sameLength) {
+            // Later chunks are byte-for-byte unchanged; stop at the end of the last overlapped one
+            int lastAffected = (int) ((offset + length - 1) / chunkSize);
+            long stop = Math.min(total, (long) (lastAffected + 1) * chunkSize);
+            old.transferTo(writer, stop - offset - length);
+            writer.finish();
+        } else {
+            old.transferTo(writer, total - offset - length);
+            noteChunkRepository.deleteFrom(noteId, writer.finish());
+        }
+    }
+
+    // Strict, unlike new String(bytes, UTF_8), which would store U+FFFD for malformed input
+    private static String decode(byte[] bytes) {
+        try {
+            return StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPORT)
+                    .onUnmappableCharacter(CodingErrorAction.REPORT)
+                    .decode(ByteBuffer.wrap(bytes))
+                    .toString();
+        } catch (CharacterCodingException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Content is not valid UTF-8");
+        }
+    }
+
+    private static boolean isCharBoundary(byte[] utf8, int index) {
+        return index == utf8.length || (utf8[index] & 0xC0) != 0x80;
+    }
+
+    private long copyLimited(InputStream in, Path target) throws IOException {
+        byte[] buffer = new byte[64 * 1024];
+        long size = 0;
+        try (OutputStream out = Files.newOutputStream(target)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                size += read;
+                if (size > maxSize) {
+                    throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE, "Note exceeds " + maxSize + " bytes");
+                }
+                out.write(buffer, 0, read);
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Sequential reader over a note's existing chunks. Chunks are loaded on demand and can be
+     * prefetched so a chunk is always read before the writer overwrites it.
+     */
+    private class OldChunks {
+
+        private final Long noteId;
+        private final int chunkCount;
+        private final Deque<byte[]> loaded = new ArrayDeque<>();
+        private int nextToLoad;
+        private int position;
+
+        OldChunks(Long noteId, int firstIndex, int chunkCount) {
+            this.noteId = noteId;
+            this.nextToLoad = firstIndex;
+            this.chunkCount = chunkCount;
+        }
+
+        void prefetchThrough(int index) {
+            while (nextToLoad <= index && nextToLoad < chunkCount) {
+                int to = Math.min(chunkCount - 1, nextToLoad + readBatchChunks - 1);
+                loaded.addAll(noteChunkRepository.findRange(noteId, nextToLoad, to));
+                nextToLoad = to + 1;
+            }
+        }
+
+        // Moves n bytes to the writer, or skips them when writer is null
+        void transferTo(ChunkWriter writer, long n) {
+            while (n > 0) {
+                if (loaded.isEmpty()) {
+                    if (nextToLoad >= chunkCount) {
+                        throw new IllegalStateException("Note " + noteId + " has fewer chunks than its length");
+                    }
+                    prefetchThrough(nextToLoad);
+                }
+                byte[] head = loaded.peekFirst();
+                int take = (int) Math.min(head.length - position, n);
+                if (writer != null) {
+                    writer.write(head, position, take);
+                }
+                position += take;
+                n -= take;
+                if (position == head.length) {
+                    loaded.pollFirst();
+                    position = 0;
+                }
+            }
+        }
+    }
+
+    private class ChunkWriter {
+
+        private final Long noteId;
+        private final OldChunks old;
+        private final byte[] buffer = new byte[chunkSize];
+        private int filled;
+        private int nextIndex;
+
+        ChunkWriter(Long noteId, int firstIndex, OldChunks old) {
+            this.noteId = noteId;
+            this.nextIndex = firstIndex;
+            this.old = old;
+        }
+
+        void write(byte[] data, int from, int length) {
+            while (length > 0) {
+                int take = Math.min(buffer.length - filled, length);
+                System.arraycopy(data, from, buffer, filled, take);
+                filled += take;
+                from += take;
+                length -= take;
+                if (filled == buffer.length) {
+                    flush();
+                }
+            }
+        }
+
+        // Flushes the final partial chunk and returns the index after the last chunk written
+        int finish() {
+            if (filled > 0) {
+                flush();
+            }
+            return nextIndex;
+        }
+
+        private void flush() {
+            old.prefetchThrough(nextIndex);
+            noteChunkRepository.upsert(noteId, nextIndex++, Arrays.copyOf(buffer, filled));
+            filled = 0;
+        }
+    }
+}
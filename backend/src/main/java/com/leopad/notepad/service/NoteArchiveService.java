@@ -0,0 +1,307 @@
+package com.leopad.notepad.service;
+
+import com.leopad.notepad.entity.Note;
+import com.leopad.notepad.entity.User;
+import com.leopad.notepad.invalidation.InvalidationBus;
+import com.leopad.notepad.repository.NoteArchiveRepository;
+import com.leopad.notepad.repository.NoteArchiveRepository.ArchivedNote;
+import com.leopad.notepad.repository.NoteBodyRepository;
+import com.leopad.notepad.repository.NoteRepository;
+import com.leopad.notepad.sharding.ShardDirectory;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.jdbc.DataSourceUnwrapper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Two-tier note storage. A scheduled job moves inline, non-favorite, unpinned notes that have
+ * not been modified for {@code notes.archive.after} from {@code notes} into the compressed
+ * {@code notes_archive} table in small batches, pausing between batches and while requests are
+ * waiting for a pooled connection. List, search and filter queries only read the hot table;
+ * opening an archived note by id moves it back.
+ */
+@Service
+public class NoteArchiveService {
+
+    private static final Logger logger = LoggerFactory.getLogger(NoteArchiveService.class);
+
+    @Autowired
+    private NoteArchiveRepository noteArchiveRepository;
+
+    @Autowired
+    private NoteRepository noteRepository;
+
+    @Autowired
+    private NoteBodyRepository noteBodyRepository;
+
+    @Autowired
+    private NoteRevisionService noteRevisionService;
+
+    @Autowired
+    private NoteStatsService noteStatsService;
+
+    @Autowired
+    private NoteReadCoalescer noteReadCoalescer;
+
+    @Autowired
+    private NoteTagIndex noteTagIndex;
+
+    @Autowired
+    private InvalidationBus invalidationBus;
+
+    @Autowired
+    private NoteWriteBehindBuffer noteWriteBehindBuffer;
+
+    @Autowired
+    private ShardDirectory shardDirectory;
+
+    private final TransactionTemplate writeTransaction;
+    private final TransactionTemplate readTransaction;
+    // Rehydration commits on its own, so it also works when called from a read-only transaction
+    private final TransactionTemplate rehydrateTransaction;
+    private final HikariPoolMXBean pool;
+    private final Counter archived;
+    private final Timer rehydration;
+    private final AtomicLong hotRows = new AtomicLong();
+    private final AtomicLong hotBytes = new AtomicLong();
+    private final AtomicLong archiveRows = new AtomicLong();
+    private final AtomicLong archiveBytes = new AtomicLong();
+
+    @Value("${notes.archive.enabled:true}")
+    private boolean enabled;
+
+    @Value("${notes.archive.after:365d}")
+    private Duration archiveAfter;
+
+    @Value("${notes.archive.batch-size:200}")
+    private int batchSize;
+
+    @Value("${notes.archive.batch-pause:500ms}")
+    private Duration batchPause;
+
+    @Value("${notes.archive.max-run-time:30m}")
+    private Duration maxRunTime;
+
+    public NoteArchiveService(PlatformTransactionManager transactionManager, DataSource dataSource,
+                              MeterRegistry meterRegistry) {
+        this.writeTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setReadOnly(true);
+        this.rehydrateTransaction = new TransactionTemplate(transactionManager);
+        this.rehydrateTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        // With read/write routing or sharding this finds no single pool and the archiver only pauses
+        // between batches
+        HikariDataSource hikari = DataSourceUnwrapper.unwrap(dataSource, HikariDataSource.class);
+        this.pool = hikari != null ? hikari.getHikariPoolMXBean() : null;
+
+        this.archived = Counter.builder("notepad.notes.archived")
+                .description("Notes moved from the hot table to the archive")
+                .register(meterRegistry);
+        this.rehydration = Timer.builder("notepad.notes.rehydration")
+                .description("Time to move an archived note back into the hot table on access")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        registerTierGauges(meterRegistry, "hot", hotRows, hotBytes);
+        registerTierGauges(meterRegistry, "archive", archiveRows, archiveBytes);
+    }
+
+    private static void registerTierGauges(MeterRegistry meterRegistry, String tier, AtomicLong rows, AtomicLong bytes) {
+        Gauge.builder("notepad.notes.tier.rows", rows, AtomicLong::get)
+                .description("Estimated notes per storage tier")
+                .tag("tier", tier)
+                .register(meterRegistry);
+        Gauge.builder("notepad.notes.tier.bytes", bytes, AtomicLong::get)
+                .description("On-disk size of each storage tier including indexes")
+                .tag("tier", tier)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * The user's note from the hot table, or from the archive after moving it back. The lookup
+     * and the move are separate transactions, so a request never holds two connections, and the
+     * lookup can run on a replica while the move goes to the primary. Returned notes are detached.
+     */
+    public Optional<Note> findOrRehydrate(Long id, User user) {
+        Optional<Note> note = readTransaction.execute(status -> noteRepository.findByIdAndUser(id, user));
+        return note.isPresent() ? note : rehydrate(id, user.getId());
+    }
+
+    /**
+     * Moves the note back into the hot table if the user has it archived, in a transaction of
+     * its own. Returns it with owner and tags loaded.
+     */
+    public Optional<Note> rehydrate(Long id, Long userId) {
+        long start = System.nanoTime();
+        Optional<Note> note = rehydrateTransaction.execute(status -> {
+            Optional<ArchivedNote> restored = noteArchiveRepository.rehydrate(id, userId);
+            if (restored.isEmpty()) {
+                return Optional.<Note>empty();
+            }
+            Optional<Note> hot = noteRepository.findByIdAndUserId(id, userId);
+            hot.ifPresent(noteTagIndex::noteSavedAfterCommit);
+            noteReadCoalescer.invalidateAfterCommit(userId);
+            invalidationBus.publishAfterCommit(userId);
+            return hot;
+        });
+        if (note.isPresent()) {
+            rehydration.record(Duration.ofNanos(System.nanoTime() - start));
+            logger.debug("Rehydrated archived note {}", id);
+        }
+        return note;
+    }
+
+    // Archived notes are not listed by default; this is the explicit opt-in
+    public List<Note> findArchivedByUser(User user) {
+        List<ArchivedNote> notes = readTransaction.execute(status -> noteArchiveRepository.findByUserId(user.getId()));
+        return notes.stream().map(archivedNote -> toNote(archivedNote, user)).toList();
+    }
+
+    // Deletes an archived note and its history; false if the user has no such archived note
+    public boolean deleteArchived(Long id, Long userId) {
+        Optional<Integer> words = noteArchiveRepository.deleteByIdAndUserId(id, userId);
+        if (words.isEmpty()) {
+            return false;
+        }
+        noteRevisionService.deleteRevisions(id);
+        // Archived notes are never favorites
+        noteStatsService.noteDeleted(userId, new NoteStatsService.Snapshot(false, words.get()));
+        return true;
+    }
+
+    @Scheduled(cron = "${notes.archive.cron:0 0 4 * * *}")
+    public void archiveColdNotes() {
+        if (!enabled) {
+            return;
+        }
+        LocalDateTime cutoff = LocalDateTime.now().minus(archiveAfter);
+        long deadline = System.nanoTime() + maxRunTime.toNanos();
+        long before = (long) archived.count();
+        try {
+            // One run covers every shard in turn, within the same time budget
+            shardDirectory.forEachShard(shard -> archiveShard(cutoff, deadline));
+        } finally {
+            refreshTierSizes();
+        }
+        long total = (long) archived.count() - before;
+        if (total > 0) {
+            logger.info("Archived {} notes last modified before {}", total, cutoff);
+        }
+    }
+
+    private void archiveShard(LocalDateTime cutoff, long deadline) {
+        try {
+            while (System.nanoTime() < deadline) {
+                waitForIdlePool(deadline);
+                int locked = writeTransaction.execute(status -> archiveBatch(cutoff));
+                if (locked < batchSize || System.nanoTime() >= deadline) {
+                    break;
+                }
+                sleep(batchPause);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private int archiveBatch(LocalDateTime cutoff) {
+        List<ArchivedNote> candidates = noteArchiveRepository.lockColdNotes(cutoff, batchSize);
+        // An old note someone is typing into right now stays hot
+        List<ArchivedNote> notes = candidates.stream()
+                .filter(note -> !noteWriteBehindBuffer.hasPending(note.id()))
+                .toList();
+        if (!notes.isEmpty()) {
+            noteBodyRepository.releaseForNotes(notes.stream().map(ArchivedNote::id).toArray(Long[]::new));
+            noteArchiveRepository.archive(notes, LocalDateTime.now());
+            for (Long userId : notes.stream().map(ArchivedNote::userId).distinct().toList()) {
+                noteReadCoalescer.invalidateAfterCommit(userId);
+                invalidationBus.publishAfterCommit(userId);
+            }
+            for (ArchivedNote note : notes) {
+                noteTagIndex.noteDeletedAfterCommit(note.userId(), note.id());
+            }
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    archived.increment(notes.size());
+                }
+            });
+        }
+        // Skipped notes count too, so a full batch of them does not end the run early
+        return candidates.size();
+    }
+
+    // Interactive requests waiting for a connection take priority over archiving
+    private void waitForIdlePool(long deadline) throws InterruptedException {
+        while (pool != null && pool.getThreadsAwaitingConnection() > 0 && System.nanoTime() < deadline) {
+            sleep(batchPause);
+        }
+    }
+
+    @Scheduled(initialDelayString = "${notes.archive.stats-initial-delay:60000}",
+            fixedDelayString = "${notes.archive.stats-interval:900000}")
+    public void refreshTierSizes() {
+        try {
+            long[] hot = new long[2];
+            long[] archive = new long[2];
+            shardDirectory.forEachShard(shard -> {
+                Map<String, long[]> sizes = noteArchiveRepository.tierSizes();
+                add(hot, sizes.get("notes"));
+                add(archive, sizes.get("notes_archive"));
+            });
+            hotRows.set(hot[0]);
+            hotBytes.set(hot[1]);
+            archiveRows.set(archive[0]);
+            archiveBytes.set(archive[1]);
+        } catch (RuntimeException e) {
+            logger.warn("Failed to read note tier sizes: {}", e.getMessage());
+        }
+    }
+
+    private static void add(long[] total, long[] shard) {
+        if (shard != null) {
+            total[0] += shard[0];
+            total[1] += shard[1];
+        }
+    }
+
+    private static Note toNote(ArchivedNote archivedNote, User user) {
+        Note note = new Note(archivedNote.title(), archivedNote.content(), user);
+        note.setId(archivedNote.id());
+        note.setCreatedAt(archivedNote.createdAt());
+        note.setUpdatedAt(archivedNote.updatedAt());
+        note.setIsFavorite(archivedNote.isFavorite());
+        note.setCurrentRevision(archivedNote.currentRevision());
+        note.setTags(new HashSet<>(archivedNote.tags()));
+        note.setWordCount(archivedNote.wordCount());
+        note.setPosition(archivedNote.position());
+        return note;
+    }
+
+    private static void sleep(Duration duration) throws InterruptedException {
+        Thread.sleep(duration.toMillis());
+    }
+}
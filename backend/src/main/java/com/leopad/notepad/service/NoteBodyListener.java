@@ -0,0 +1,38 @@
+package com.leopad.notepad.service;
+
+import com.leopad.notepad.entity.Note;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreRemove;
+import jakarta.persistence.PreUpdate;
+import org.springframework.stereotype.Component;
+
+/**
+ * JPA callbacks for {@link Note} that delegate to {@link NoteBodyStore}. Created by Spring
+ * through Hibernate's bean container, so it can be injected.
+ */
+@Component
+public class NoteBodyListener {
+
+    private final NoteBodyStore noteBodyStore;
+
+    public NoteBodyListener(NoteBodyStore noteBodyStore) {
+        this.noteBodyStore = noteBodyStore;
+    }
+
+    @PrePersist
+    @PreUpdate
+    public void beforeWrite(Note note) {
+        noteBodyStore.beforeWrite(note);
+    }
+
+    @PostLoad
+    public void afterLoad(Note note) {
+        noteBodyStore.afterLoad(note);
+    }
+
+    @PreRemove
+    public void beforeRemove(Note note) {
+        noteBodyStore.beforeRemove(note);
+    }
+}
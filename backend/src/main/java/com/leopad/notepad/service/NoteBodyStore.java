@@ -0,0 +1,141 @@
+package com.leopad.notepad.service;
+
+import com.leopad.notepad.entity.Note;
+import com.leopad.notepad.repository.NoteBodyRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps each note's content hash current and, when enabled, stores inline bodies of at least
+ * {@code min-length} characters once per distinct content in {@code note_bodies}, so duplicated
+ * notes and templates share one copy. Driven by {@link NoteBodyListener} on every note write,
+ * load and delete, so all write paths are covered. Notes with a shared body stay readable with
+ * the store disabled; they are written back inline on their next change.
+ */
+@Service
+public class NoteBodyStore {
+
+    private final NoteBodyRepository noteBodyRepository;
+    private final Map<String, String> cache;
+    private final Counter storedBytes;
+    private final Counter sharedHits;
+    private long cachedChars;
+
+    @Value("${notes.body-store.enabled:false}")
+    private boolean enabled;
+
+    @Value("${notes.body-store.min-length:1024}")
+    private int minLength;
+
+    @Value("${notes.body-store.cache-chars:8388608}")
+    private long cacheChars;
+
+    public NoteBodyStore(NoteBodyRepository noteBodyRepository, MeterRegistry meterRegistry) {
+        this.noteBodyRepository = noteBodyRepository;
+        // Bodies are immutable under their hash, so cached copies never go stale
+        this.cache = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                if (cachedChars > cacheChars) {
+                    cachedChars -= eldest.getValue().length();
+                    return true;
+                }
+                return false;
+            }
+        };
+        this.storedBytes = Counter.builder("notepad.notes.write.stored.bytes")
+                .description("Title and content bytes written to notes and note_bodies rows")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.sharedHits = Counter.builder("notepad.notes.body-store.deduplicated")
+                .description("Note writes whose content was already stored as a shared body")
+                .register(meterRegistry);
+    }
+
+    public static String hash(String content) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(content.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Before a note row is inserted or updated, in the writing transaction
+    void beforeWrite(Note note) {
+        String released = note.getReleasedBodyHash();
+        if (released != null) {
+            noteBodyRepository.release(released);
+            note.bodyReleased();
+        }
+        long bytes = utf8Length(note.getTitle());
+        if (note.getIsLarge()) {
+            note.setContentHash(null);
+        } else if (!note.getSharedBody()) {
+            String content = note.getContent();
+            String hash = hash(content);
+            // With dynamic updates an unchanged content column is not written at all
+            boolean contentChanged = !hash.equals(note.getContentHash());
+            note.setContentHash(hash);
+            if (enabled && content.length() >= minLength) {
+                if (noteBodyRepository.acquire(hash, content)) {
+                    bytes += utf8Length(content);
+                } else {
+                    sharedHits.increment();
+                }
+                note.shareBody(hash, content);
+                cache(hash, content);
+            } else if (contentChanged) {
+                bytes += utf8Length(content);
+            }
+        }
+        storedBytes.increment(bytes);
+    }
+
+    void afterLoad(Note note) {
+        if (!note.getSharedBody()) {
+            return;
+        }
+        String hash = note.getContentHash();
+        String body;
+        synchronized (cache) {
+            body = cache.get(hash);
+        }
+        if (body == null) {
+            body = noteBodyRepository.findContent(hash)
+                    .orElseThrow(() -> new IllegalStateException("Shared body of note " + note.getId() + " is missing"));
+            cache(hash, body);
+        }
+        note.resolveSharedBody(body);
+    }
+
+    void beforeRemove(Note note) {
+        if (note.getReleasedBodyHash() != null) {
+            noteBodyRepository.release(note.getReleasedBodyHash());
+        }
+        if (note.getSharedBody()) {
+            noteBodyRepository.release(note.getContentHash());
+        }
+    }
+
+    private void cache(String hash, String body) {
+        synchronized (cache) {
+            if (cache.put(hash, body) == null) {
+                cachedChars += body.length();
+            }
+        }
+    }
+
+    private static long utf8Length(String value) {
+        return value != null ? value.getBytes(StandardCharsets.UTF_8).length : 0;
+    }
+}
@@ -0,0 +1,282 @@
+package com.leopad.notepad.service;
+
+import com.leopad.notepad.entity.User;
+import com.leopad.notepad.invalidation.InvalidationBus;
+import com.leopad.notepad.repository.NoteOrderRepository;
+import com.leopad.notepad.repository.NoteOrderRepository.Placement;
+import com.leopad.notepad.sharding.ShardDirectory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The user-defined note order: pinned notes first, then the rest, each section ordered by
+ * fractional position keys. New notes go to the top of the unpinned section and a move writes
+ * only the moved note's key, computed from its new neighbours under a per-user lock. Keys that
+ * grow past {@code notes.ordering.max-key-length} get the user's lists re-keyed evenly in the
+ * background.
+ */
+@Service
+public class NoteOrderService {
+
+    private static final Logger logger = LoggerFactory.getLogger(NoteOrderService.class);
+    // Far below the column's 255 characters; reached only if background rebalancing falls behind
+    private static final int HARD_MAX_KEY_LENGTH = 200;
+
+    private final NoteOrderRepository noteOrderRepository;
+    private final NoteReadCoalescer noteReadCoalescer;
+    private final InvalidationBus invalidationBus;
+    private final ShardDirectory shardDirectory;
+    private final TransactionTemplate readTransaction;
+    private final TransactionTemplate writeTransaction;
+    private final Set<Long> pendingRebalances = ConcurrentHashMap.newKeySet();
+    private final Counter moves;
+    private final Counter rebalances;
+
+    @Value("${notes.ordering.max-key-length:24}")
+    private int maxKeyLength;
+
+    @Value("${notes.ordering.sweep-batch-size:200}")
+    private int sweepBatchSize;
+
+    /** Where a keyset page ends; opaque to clients. */
+    public record Cursor(boolean pinned, String position, Long id) {
+
+        public String encode() {
+            String value = (pinned ? "1" : "0") + ":" + position + ":" + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        public static Cursor decode(String cursor) {
+            try {
+                String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(":");
+                if (parts.length != 3 || !NotePositions.isValid(parts[1])) {
+                    throw new IllegalArgumentException("Invalid cursor");
+                }
+                return new Cursor(parts[0].equals("1"), parts[1], Long.valueOf(parts[2]));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid cursor", e);
+            }
+        }
+    }
+
+    public NoteOrderService(NoteOrderRepository noteOrderRepository, NoteReadCoalescer noteReadCoalescer,
+                            InvalidationBus invalidationBus, ShardDirectory shardDirectory,
+                            PlatformTransactionManager transactionManager, MeterRegistry meterRegistry) {
+        this.noteOrderRepository = noteOrderRepository;
+        this.noteReadCoalescer = noteReadCoalescer;
+        this.invalidationBus = invalidationBus;
+        this.shardDirectory = shardDirectory;
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setReadOnly(true);
+        this.writeTransaction = new TransactionTemplate(transactionManager);
+        this.moves = Counter.builder("notepad.notes.order.moves")
+                .description("Notes moved or pinned in the manual order")
+                .register(meterRegistry);
+        this.rebalances = Counter.builder("notepad.notes.order.rebalances")
+                .description("Users whose position keys were re-spaced")
+                .register(meterRegistry);
+    }
+
+    // Top of the unpinned section; called in the transaction that inserts the note
+    public String positionForNewNote(Long userId) {
+        noteOrderRepository.lockUser(userId);
+        String position = NotePositions.between(null, noteOrderRepository.first(userId, false).orElse(null));
+        scheduleRebalanceIfLong(userId, position);
+        return position;
+    }
+
+    /**
+     * Moves a note right after {@code afterId} or right before {@code beforeId} (both null: to
+     * the top), optionally into or out of the pinned section. Empty if the user has no such note
+     * in the hot table; IllegalArgumentException if the neighbour is not in the target section.
+     */
+    public Optional<String> move(Long noteId, User user, Long afterId, Long beforeId, Boolean pinned) {
+        Long userId = user.getId();
+        Optional<String> moved = writeTransaction.execute(status -> {
+            noteOrderRepository.lockUser(userId);
+            Optional<Placement> note = noteOrderRepository.find(noteId, userId);
+            if (note.isEmpty()) {
+                return Optional.<String>empty();
+            }
+            boolean section = pinned != null ? pinned : note.get().pinned();
+            String position = positionFor(noteId, userId, section, afterId, beforeId);
+            if (position.length() > HARD_MAX_KEY_LENGTH) {
+                rebalance(userId);
+                position = positionFor(noteId, userId, section, afterId, beforeId);
+            }
+            noteOrderRepository.move(noteId, userId, section, position);
+            noteReadCoalescer.invalidateAfterCommit(userId);
+            invalidationBus.publishAfterCommit(userId);
+            return Optional.of(position);
+        });
+        if (moved.isPresent()) {
+            moves.increment();
+            scheduleRebalanceIfLong(userId, moved.get());
+        }
+        return moved;
+    }
+
+    /**
+     * Up to {@code size + 1} placements in list order after the cursor (from the start when
+     * null), crossing from the pinned into the unpinned section; the extra one tells the caller
+     * there is a next page. Each section is one range scan.
+     */
+    public List<Placement> page(Long userId, Cursor cursor, int size) {
+        return readTransaction.execute(status -> {
+            int limit = size + 1;
+            List<Placement> page = new ArrayList<>(limit);
+            if (cursor == null || cursor.pinned()) {
+                page.addAll(cursor == null
+                        ? noteOrderRepository.page(userId, true, "", 0L, limit)
+                        : noteOrderRepository.page(userId, true, cursor.position(), cursor.id(), limit));
+                if (page.size() < limit) {
+                    page.addAll(noteOrderRepository.page(userId, false, "", 0L, limit - page.size()));
+                }
+            } else {
+                page.addAll(noteOrderRepository.page(userId, false, cursor.position(), cursor.id(), limit));
+            }
+            return page;
+        });
+    }
+
+    @Scheduled(initialDelayString = "${notes.ordering.rebalance-delay:10000}",
+            fixedDelayString = "${notes.ordering.rebalance-delay:10000}")
+    public void rebalancePending() {
+        for (Iterator<Long> it = pendingRebalances.iterator(); it.hasNext(); ) {
+            Long userId = it.next();
+            it.remove();
+            try {
+                shardDirectory.runForUser(userId, () -> writeTransaction.executeWithoutResult(status -> rebalance(userId)));
+            } catch (RuntimeException e) {
+                logger.warn("Failed to rebalance note positions of user {}: {}", userId, e.getMessage());
+            }
+        }
+    }
+
+    // Catches users whose rebalance was scheduled on an instance that went away
+    @Scheduled(cron = "${notes.ordering.sweep-cron:0 15 4 * * *}")
+    public void sweepLongKeys() {
+        shardDirectory.forEachShard(shard -> {
+            Long after = 0L;
+            List<Long> userIds;
+            do {
+                Long from = after;
+                userIds = readTransaction.execute(status ->
+                        noteOrderRepository.findUsersWithLongKeys(maxKeyLength, from, sweepBatchSize));
+                for (Long userId : userIds) {
+                    writeTransaction.executeWithoutResult(status -> rebalance(userId));
+                }
+                if (!userIds.isEmpty()) {
+                    after = userIds.get(userIds.size() - 1);
+                }
+            } while (userIds.size() == sweepBatchSize);
+        });
+    }
+
+    private String positionFor(Long noteId, Long userId, boolean section, Long afterId, Long beforeId) {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                return neighbourPosition(noteId, userId, section, afterId, beforeId);
+            } catch (IllegalStateException e) {
+                // Two neighbours with one key (notes created concurrently elsewhere); spread them out
+                if (attempt > 0) {
+                    throw e;
+                }
+                rebalance(userId);
+            }
+        }
+    }
+
+    private String neighbourPosition(Long noteId, Long userId, boolean section, Long afterId, Long beforeId) {
+        if (afterId != null) {
+            Placement after = anchor(afterId, noteId, userId, section);
+            String next = noteOrderRepository.next(userId, section, after.position(), after.id(), noteId).orElse(null);
+            return between(after.position(), next);
+        }
+        if (beforeId != null) {
+            Placement before = anchor(beforeId, noteId, userId, section);
+            String previous = noteOrderRepository.previous(userId, section, before.position(), before.id(), noteId)
+                    .orElse(null);
+            return between(previous, before.position());
+        }
+        return between(null, noteOrderRepository.next(userId, section, "", 0L, noteId).orElse(null));
+    }
+
+    private Placement anchor(Long anchorId, Long noteId, Long userId, boolean section) {
+        if (anchorId.equals(noteId)) {
+            throw new IllegalArgumentException("A note cannot be placed next to itself");
+        }
+        Placement anchor = noteOrderRepository.find(anchorId, userId)
+                .orElseThrow(() -> new IllegalArgumentException("Neighbour note not found"));
+        if (anchor.pinned() != section) {
+            throw new IllegalArgumentException("Neighbour note is " + (anchor.pinned() ? "pinned" : "not pinned"));
+        }
+        return anchor;
+    }
+
+    private static String between(String before, String after) {
+        if (before != null && after != null && before.compareTo(after) >= 0) {
+            throw new IllegalStateException("Neighbouring positions are not ordered");
+        }
+        return NotePositions.between(before, after);
+    }
+
+    // Re-keys both sections evenly, in the caller's transaction; only changed keys are written
+    private void rebalance(Long userId) {
+        noteOrderRepository.lockUser(userId);
+        rebalanceSection(noteOrderRepository.section(userId, true), Set.of());
+        List<Placement> unpinned = new ArrayList<>(noteOrderRepository.section(userId, false));
+        List<Placement> archived = noteOrderRepository.archived(userId);
+        unpinned.addAll(archived);
+        unpinned.sort(Comparator.comparing(Placement::position).thenComparing(Placement::id));
+        Set<Long> archivedIds = new HashSet<>();
+        archived.forEach(placement -> archivedIds.add(placement.id()));
+        rebalanceSection(unpinned, archivedIds);
+        rebalances.increment();
+        logger.debug("Rebalanced note positions of user {}", userId);
+    }
+
+    private void rebalanceSection(List<Placement> section, Set<Long> archivedIds) {
+        List<String> keys = NotePositions.evenlySpaced(section.size());
+        Map<Long, String> hot = new HashMap<>();
+        Map<Long, String> archived = new HashMap<>();
+        for (int i = 0; i < section.size(); i++) {
+            Placement placement = section.get(i);
+            if (!placement.position().equals(keys.get(i))) {
+                (archivedIds.contains(placement.id()) ? archived : hot).put(placement.id(), keys.get(i));
+            }
+        }
+        if (!hot.isEmpty()) {
+            noteOrderRepository.updatePositions(hot, false);
+        }
+        if (!archived.isEmpty()) {
+            noteOrderRepository.updatePositions(archived, true);
+        }
+    }
+
+    private void scheduleRebalanceIfLong(Long userId, String position) {
+        if (position.length() > maxKeyLength) {
+            pendingRebalances.add(userId);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.leopad.notepad.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fractional position keys for the user-defined note order. A key is a base-62 fraction written
+ * with the digits {@code 0-9A-Za-z}, so keys compare correctly as plain byte strings (the column
+ * uses the "C" collation). There is always room between two keys, so moving a note only rewrites
+ * its own key; keys never end in {@code 0}, which would make two spellings of one value.
+ */
+public final class NotePositions {
+
+    static final String DIGITS = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz";
+    private static final int BASE = DIGITS.length();
+    private static final char ZERO = '0';
+    private static final char MAX = 'z';
+
+    private NotePositions() {
+    }
+
+    public static boolean isValid(String key) {
+        if (key == null || key.isEmpty() || key.charAt(key.length() - 1) == ZERO) {
+            return false;
+        }
+        for (int i = 0; i < key.length(); i++) {
+            if (DIGITS.indexOf(key.charAt(i)) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A key sorting strictly between {@code before} and {@code after}; null for either means the
+     * start or end of the list. Appending or prepending grows keys by one digit per ~30 moves,
+     * inserting repeatedly at one spot by one digit per ~6.
+     */
+    public static String between(String before, String after) {
+        if (before != null && after != null && before.compareTo(after) >= 0) {
+            throw new IllegalArgumentException("Position " + before + " is not before " + after);
+        }
+        if (before == null && after == null) {
+            return String.valueOf(DIGITS.charAt(BASE / 2));
+        }
+        if (before == null) {
+            return first(after);
+        }
+        if (after == null) {
+            return last(before);
+        }
+        return midpoint(before, after);
+    }
+
+    /**
+     * {@code count} keys of equal length spread evenly over the key space, leaving at least 61
+     * single-digit extensions between neighbours. Used to rebalance a list whose keys grew long.
+     */
+    public static List<String> evenlySpaced(int count) {
+        int width = 1;
+        long space = BASE;
+        while (space / (count + 1L) < BASE) {
+            width++;
+            space *= BASE;
+        }
+        long step = space / (count + 1L);
+        List<String> keys = new ArrayList<>(count);
+        char[] digits = new char[width];
+        for (int i = 1; i <= count; i++) {
+            long value = i * step;
+            for (int d = width - 1; d >= 0; d--) {
+                digits[d] = DIGITS.charAt((int) (value % BASE));
+                value /= BASE;
+            }
+            int length = width;
+            while (digits[length - 1] == ZERO) {
+                length--;
+            }
+            keys.add(new String(digits, 0, length));
+        }
+        return keys;
+    }
+
+    // Before everything: one less in the first significant digit, so prepends rarely add a digit
+    private static String first(String after) {
+        int i = 0;
+        while (after.charAt(i) == ZERO) {
+            i++;
+        }
+        int digit = DIGITS.indexOf(after.charAt(i));
+        if (digit >= 2) {
+            return after.substring(0, i) + DIGITS.charAt(digit - 1);
+        }
+        return after.substring(0, i) + ZERO + DIGITS.charAt(BASE / 2);
+    }
+
+    // After everything: one more in the first digit that has room
+    private static String last(String before) {
+        for (int i = 0; i < before.length(); i++) {
+            int digit = DIGITS.indexOf(before.charAt(i));
+            if (before.charAt(i) != MAX) {
+                return before.substring(0, i) + DIGITS.charAt(digit + 1);
+            }
+        }
+        return before + DIGITS.charAt(BASE / 2);
+    }
+
+    // Midpoint of two fractions, a < b; an empty a is 0 and a null b is 1
+    private static String midpoint(String a, String b) {
+        if (b != null) {
+            int n = 0;
+            while (n < b.length() && (n < a.length() ? a.charAt(n) : ZERO) == b.charAt(n)) {
+                n++;
+            }
+            if (n > 0) {
+                return b.substring(0, n) + midpoint(a.length() > n ? a.substring(n) : "", b.substring(n));
+            }
+        }
+        int digitA = a.isEmpty() ? 0 : DIGITS.indexOf(a.charAt(0));
+        int digitB = b != null ? DIGITS.indexOf(b.charAt(0)) : BASE;
+        if (digitB - digitA > 1) {
+            return String.valueOf(DIGITS.charAt((digitA + digitB + 1) / 2));
+        }
+        if (b != null && b.length() > 1) {
+            return b.substring(0, 1);
+        }
+        return DIGITS.charAt(digitA) + midpoint(a.isEmpty() ? "" : a.substring(1), null);
+    }
+}
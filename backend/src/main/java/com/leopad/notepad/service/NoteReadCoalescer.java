@@ -0,0 +1,156 @@
+package com.leopad.notepad.service;
+
+import com.leopad.notepad.entity.Note;
+import com.leopad.notepad.invalidation.CacheInvalidationHandler;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Single-flight execution of per-user note reads: concurrent callers asking for the same
+ * (user, query, params) share one database query and its result. The leader runs the query in
+ * its own short read-only transaction, so callers waiting for it hold no connection.
+ * A committed write for a user marks that user's in-flight reads stale; callers arriving after
+ * the commit start a fresh query instead of joining one that may predate the write.
+ */
+@Component
+public class NoteReadCoalescer implements CacheInvalidationHandler {
+
+    private final Map<FlightKey, Flight> flights = new ConcurrentHashMap<>();
+    private final TransactionTemplate readOnlyTransaction;
+    private final Counter leaders;
+    private final Counter joiners;
+
+    @Value("${notes.read-coalescing.enabled:true}")
+    private boolean enabled;
+
+    public NoteReadCoalescer(PlatformTransactionManager transactionManager, MeterRegistry meterRegistry) {
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.leaders = Counter.builder("notepad.notes.read.coalescing")
+                .description("Note list reads by whether they ran the query or joined an in-flight one")
+                .tag("role", "leader")
+                .register(meterRegistry);
+        this.joiners = Counter.builder("notepad.notes.read.coalescing")
+                .description("Note list reads by whether they ran the query or joined an in-flight one")
+                .tag("role", "joined")
+                .register(meterRegistry);
+        Gauge.builder("notepad.notes.read.coalescing.ratio", this, NoteReadCoalescer::coalescingRatio)
+                .description("Fraction of note list reads served by another caller's query")
+                .register(meterRegistry);
+    }
+
+    public List<Note> read(Long userId, String query, Object params, Supplier<List<Note>> loader) {
+        if (!enabled) {
+            return readOnlyTransaction.execute(status -> loader.get());
+        }
+
+        FlightKey key = new FlightKey(userId, query, params);
+        Flight mine = null;
+        while (true) {
+            Flight existing = flights.get(key);
+            if (existing != null && !existing.stale) {
+                joiners.increment();
+                return await(existing);
+            }
+            if (mine == null) {
+                mine = new Flight();
+            }
+            boolean claimed = existing == null
+                    ? flights.putIfAbsent(key, mine) == null
+                    : flights.replace(key, existing, mine);
+            if (claimed) {
+                break;
+            }
+        }
+
+        leaders.increment();
+        try {
+            List<Note> result = Collections.unmodifiableList(readOnlyTransaction.execute(status -> loader.get()));
+            mine.future.complete(result);
+            return result;
+        } catch (RuntimeException e) {
+            mine.future.completeExceptionally(e);
+            throw e;
+        } finally {
+            flights.remove(key, mine);
+        }
+    }
+
+    /**
+     * Invalidates the user's in-flight reads once the current transaction commits, or
+     * immediately when called outside a transaction.
+     */
+    public void invalidateAfterCommit(Long userId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    invalidate(userId);
+                }
+            });
+        } else {
+            invalidate(userId);
+        }
+    }
+
+    @Override
+    public void evictUser(Long userId) {
+        invalidate(userId);
+    }
+
+    @Override
+    public void evictAll() {
+        flights.forEach((key, flight) -> {
+            flight.stale = true;
+            flights.remove(key, flight);
+        });
+    }
+
+    void invalidate(Long userId) {
+        flights.forEach((key, flight) -> {
+            if (key.userId().equals(userId)) {
+                flight.stale = true;
+                flights.remove(key, flight);
+            }
+        });
+    }
+
+    private double coalescingRatio() {
+        double total = leaders.count() + joiners.count();
+        return total == 0 ? 0.0 : joiners.count() / total;
+    }
+
+    private static List<Note> await(Flight flight) {
+        try {
+            return flight.future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private record FlightKey(Long userId, String query, Object params) {
+    }
+
+    private static final class Flight {
+        private final CompletableFuture<List<Note>> future = new CompletableFuture<>();
+        private volatile boolean stale;
+    }
+}
@@ -0,0 +1,248 @@
+package com.leopad.notepad.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.leopad.notepad.dto.NoteResponse;
+import com.leopad.notepad.invalidation.CacheInvalidationHandler;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * JSON encodings of NoteResponse kept per note, so reading an unchanged note again copies bytes
+ * instead of running Jackson over its content. An entry is only served while the note's version
+ * (update time, title, flags, tags and owner) matches the one it was encoded from; a changed
+ * note is encoded again and replaces it. Entries are evicted least recently used by encoded size
+ * once {@code notes.response-cache.max-bytes} is reached, split over stripes so readers of
+ * different notes rarely contend.
+ */
+@Component
+public class NoteResponseCache implements CacheInvalidationHandler {
+
+    private static final int STRIPES = 16;
+    // Map entry, key, Entry, Version and array headers, roughly
+    private static final int ENTRY_OVERHEAD = 256;
+
+    private final ObjectMapper objectMapper;
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final AtomicLong cachedBytes = new AtomicLong();
+    private final Counter hits;
+    private final Counter misses;
+
+    @Value("${notes.response-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${notes.response-cache.max-bytes:33554432}")
+    private long maxBytes;
+
+    public NoteResponseCache(ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.objectMapper = objectMapper;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+        this.hits = Counter.builder("notepad.notes.response-cache.requests")
+                .description("Note JSON encodings by whether they were served from the cache")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        this.misses = Counter.builder("notepad.notes.response-cache.requests")
+                .description("Note JSON encodings by whether they were served from the cache")
+                .tag("result", "miss")
+                .register(meterRegistry);
+        Gauge.builder("notepad.notes.response-cache.bytes", cachedBytes, AtomicLong::get)
+                .description("Encoded note bytes held in the response cache")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // The note as Jackson would write it
+    public byte[] json(NoteResponse note) {
+        return entry(note).json;
+    }
+
+    // The gzip-compressed JSON of the note, compressed once per version
+    public byte[] gzip(NoteResponse note) {
+        Entry entry = entry(note);
+        byte[] gzip = entry.gzip;
+        if (gzip == null) {
+            gzip = compress(entry.json);
+            if (entry.cached) {
+                stripe(note.getId()).attachGzip(note.getId(), entry, gzip);
+            }
+        }
+        return gzip;
+    }
+
+    // Drops a deleted note's entry; changed notes are replaced on their next read
+    public void evict(Long noteId) {
+        stripe(noteId).remove(noteId);
+    }
+
+    // Versions already tell changed notes apart; this only frees memory held for the user
+    @Override
+    public void evictUser(Long userId) {
+        for (Stripe stripe : stripes) {
+            stripe.removeIf(entry -> userId.equals(entry.userId));
+        }
+    }
+
+    @Override
+    public void evictAll() {
+        for (Stripe stripe : stripes) {
+            stripe.removeIf(entry -> true);
+        }
+    }
+
+    private Entry entry(NoteResponse note) {
+        Version version = Version.of(note);
+        if (note.getId() == null) {
+            return new Entry(note.getUserId(), version, encode(note), false);
+        }
+        Stripe stripe = stripe(note.getId());
+        Entry entry = stripe.get(note.getId());
+        if (entry != null && entry.version.equals(version)) {
+            hits.increment();
+            return entry;
+        }
+        misses.increment();
+        entry = new Entry(note.getUserId(), version, encode(note), true);
+        stripe.put(note.getId(), entry);
+        return entry;
+    }
+
+    private byte[] encode(NoteResponse note) {
+        try {
+            return objectMapper.writeValueAsBytes(note);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to encode note " + note.getId(), e);
+        }
+    }
+
+    private static byte[] compress(byte[] json) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(json.length / 3 + 32);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(json);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private Stripe stripe(Long noteId) {
+        return stripes[(Long.hashCode(noteId) & Integer.MAX_VALUE) % STRIPES];
+    }
+
+    /**
+     * Everything NoteResponse is built from. Content changes always move updatedAt, but tag-only
+     * updates and moves do not, so the rest is compared as well; the content length guards the
+     * content.
+     */
+    private record Version(LocalDateTime updatedAt, String title, Boolean isFavorite, Boolean isLarge,
+                           Boolean isArchived, Boolean isPinned, String position, Long contentLength,
+                           int inlineLength, Set<String> tags, LocalDateTime createdAt, String userEmail) {
+
+        static Version of(NoteResponse note) {
+            return new Version(note.getUpdatedAt(), note.getTitle(), note.getIsFavorite(), note.getIsLarge(),
+                    note.getIsArchived(), note.getIsPinned(), note.getPosition(), note.getContentLength(),
+                    note.getContent() != null ? note.getContent().length() : -1,
+                    note.getTags() != null ? Set.copyOf(note.getTags()) : null, note.getCreatedAt(),
+                    note.getUserEmail());
+        }
+    }
+
+    private static final class Entry {
+        final Long userId;
+        final Version version;
+        final byte[] json;
+        final boolean cached;
+        volatile byte[] gzip;
+
+        Entry(Long userId, Version version, byte[] json, boolean cached) {
+            this.userId = userId;
+            this.version = version;
+            this.json = json;
+            this.cached = cached;
+        }
+
+        long weight() {
+            byte[] compressed = gzip;
+            return ENTRY_OVERHEAD + json.length + (compressed != null ? compressed.length : 0);
+        }
+    }
+
+    private final class Stripe {
+        private final LinkedHashMap<Long, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+        private long bytes;
+
+        synchronized Entry get(Long noteId) {
+            return entries.get(noteId);
+        }
+
+        synchronized void put(Long noteId, Entry entry) {
+            long weight = entry.weight();
+            Entry previous = entries.put(noteId, entry);
+            long released = previous != null ? previous.weight() : 0;
+            bytes += weight - released;
+            cachedBytes.addAndGet(weight - released);
+            trim();
+        }
+
+        // Under the lock, so an entry's weight never changes between being counted and released
+        synchronized void attachGzip(Long noteId, Entry entry, byte[] gzip) {
+            if (entry.gzip == null && entries.get(noteId) == entry) {
+                entry.gzip = gzip;
+                bytes += gzip.length;
+                cachedBytes.addAndGet(gzip.length);
+                trim();
+            }
+        }
+
+        synchronized void remove(Long noteId) {
+            Entry removed = entries.remove(noteId);
+            if (removed != null) {
+                release(removed.weight());
+            }
+        }
+
+        synchronized void removeIf(Predicate<Entry> predicate) {
+            entries.values().removeIf(entry -> {
+                if (predicate.test(entry)) {
+                    release(entry.weight());
+                    return true;
+                }
+                return false;
+            });
+        }
+
+        private void trim() {
+            Iterator<Map.Entry<Long, Entry>> iterator = entries.entrySet().iterator();
+            while (bytes > maxBytes / STRIPES && iterator.hasNext()) {
+                Map.Entry<Long, Entry> eldest = iterator.next();
+                iterator.remove();
+                release(eldest.getValue().weight());
+            }
+        }
+
+        private void release(long weight) {
+            bytes -= weight;
+            cachedBytes.addAndGet(-weight);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.leopad.notepad.service;
+
+import com.leopad.notepad.dto.NoteRevisionResponse;
+import com.leopad.notepad.entity.Note;
+import com.leopad.notepad.entity.NoteRevision;
+import com.leopad.notepad.repository.NoteRevisionRepository;
+import com.leopad.notepad.sharding.ShardDirectory;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Revision history for notes. Revision {@code n} is the state of a note before its n-th update.
+ * Its content is stored as a reverse delta that rebuilds it from revision {@code n + 1} (or from
+ * the live note for the newest revision), except every {@code snapshot-interval}-th revision,
+ * which stores the full text. Reconstructing any revision therefore applies fewer than
+ * {@code snapshot-interval} deltas.
+ */
+@Service
+public class NoteRevisionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(NoteRevisionService.class);
+
+    private final NoteRevisionRepository revisionRepository;
+    private final ShardDirectory shardDirectory;
+    private final DistributionSummary storedBytes;
+    private final Timer reconstructTimer;
+
+    @Value("${revisions.snapshot-interval:20}")
+    private int snapshotInterval;
+
+    @Value("${revisions.compaction.keep-deltas-for:7d}")
+    private Duration keepDeltasFor;
+
+    @Value("${revisions.compaction.batch-size:1000}")
+    private int compactionBatchSize;
+
+    public NoteRevisionService(NoteRevisionRepository revisionRepository, ShardDirectory shardDirectory,
+                               MeterRegistry meterRegistry) {
+        this.revisionRepository = revisionRepository;
+        this.shardDirectory = shardDirectory;
+        this.storedBytes = DistributionSummary.builder("notepad.revisions.stored.bytes")
+                .description("Bytes of content stored per revision")
+                .baseUnit("bytes")
+                .publishPercentiles(0.5, 0.95)
+                .register(meterRegistry);
+        this.reconstructTimer = Timer.builder("notepad.revisions.reconstruct")
+                .description("Time to rebuild a revision from its snapshot and deltas")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Stores the note's current state as a revision before it is replaced with {@code newContent}
+     * and advances the note's revision counter. Must run in the transaction that updates the note.
+     */
+    public void recordRevision(Note note, String newContent) {
+        int number = note.getCurrentRevision();
+        boolean snapshot = number % snapshotInterval == 0;
+        String oldContent = note.getContent();
+
+        NoteRevision revision = new NoteRevision();
+        revision.setNoteId(note.getId());
+        revision.setRevisionNumber(number);
+        revision.setTitle(note.getTitle());
+        revision.setIsFavorite(note.getIsFavorite());
+        revision.setSnapshot(snapshot);
+        revision.setContentData(snapshot ? oldContent : ContentDelta.diff(newContent, oldContent));
+        revision.setContentLength(oldContent.length());
+        revision.setCreatedAt(note.getUpdatedAt() != null ? note.getUpdatedAt() : note.getCreatedAt());
+        revisionRepository.save(revision);
+
+        storedBytes.record(revision.getContentData().getBytes(StandardCharsets.UTF_8).length);
+        note.setCurrentRevision(number + 1);
+    }
+
+    public void deleteRevisions(Long noteId) {
+        revisionRepository.deleteByNoteId(noteId);
+    }
+
+    public List<NoteRevisionResponse> listRevisions(Note note) {
+        return revisionRepository.findByNoteIdOrderByRevisionNumberDesc(note.getId()).stream()
+                .map(summary -> new NoteRevisionResponse(note.getId(), summary))
+                .toList();
+    }
+
+    public Optional<NoteRevisionResponse> getRevision(Note note, int revisionNumber) {
+        Optional<NoteRevision> target = revisionRepository.findByNoteIdAndRevisionNumber(note.getId(), revisionNumber);
+        if (target.isEmpty()) {
+            return Optional.empty();
+        }
+        NoteRevision revision = target.get();
+        String content = reconstructTimer.record(() -> reconstructContent(note, revision));
+        return Optional.of(new NoteRevisionResponse(note.getId(), revisionNumber, revision.getTitle(), content,
+                revision.getIsFavorite(), revision.getCreatedAt()));
+    }
+
+    private String reconstructContent(Note note, NoteRevision target) {
+        if (target.getSnapshot()) {
+            return target.getContentData();
+        }
+
+        int revisionNumber = target.getRevisionNumber();
+        Optional<NoteRevision> snapshot = revisionRepository
+                .findFirstByNoteIdAndSnapshotTrueAndRevisionNumberGreaterThanEqualOrderByRevisionNumberAsc(
+                        note.getId(), revisionNumber);
+
+        // Start from the nearest newer full text: a snapshot, or the live note if none exists yet
+        String content;
+        int newestDelta;
+        if (snapshot.isPresent()) {
+            content = snapshot.get().getContentData();
+            newestDelta = snapshot.get().getRevisionNumber() - 1;
+        } else {
+            content = note.getContent();
+            newestDelta = note.getCurrentRevision() - 1;
+        }
+
+        List<NoteRevision> deltas = revisionRepository.findByNoteIdAndRevisionNumberBetweenOrderByRevisionNumberDesc(
+                note.getId(), revisionNumber, newestDelta);
+        if (deltas.size() != newestDelta - revisionNumber + 1) {
+            throw new IllegalStateException("Revision history for note " + note.getId() + " is incomplete");
+        }
+        for (NoteRevision delta : deltas) {
+            content = ContentDelta.apply(content, delta.getContentData());
+        }
+        return content;
+    }
+
+    /**
+     * Thins out old history: deltas older than the retention window are deleted, leaving every
+     * snapshot-interval-th revision as a self-contained snapshot. Newer revisions never depend
+     * on older deltas, so the remaining history stays reconstructable.
+     */
+    @Scheduled(cron = "${revisions.compaction.cron:0 30 3 * * *}")
+    public void compactRevisions() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(keepDeltasFor);
+        shardDirectory.forEachShard(shard -> {
+            int total = 0;
+            int deleted;
+            do {
+                deleted = revisionRepository.deleteDeltasCreatedBefore(cutoff, compactionBatchSize);
+                total += deleted;
+            } while (deleted == compactionBatchSize);
+
+            if (total > 0) {
+                logger.info("Revision compaction removed {} deltas created before {}{}", total, cutoff,
+                        shard != null ? " on shard " + shard : "");
+            }
+        });
+    }
+}
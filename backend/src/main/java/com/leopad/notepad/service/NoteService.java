@@ -1,14 +1,32 @@
 package com.leopad.notepad.service;
 
 import com.leopad.notepad.dto.NoteRequest;
+import com.leopad.notepad.dto.NoteRevisionResponse;
 import com.leopad.notepad.entity.Note;
 import com.leopad.notepad.entity.User;
+import com.leopad.notepad.invalidation.InvalidationBus;
+import com.leopad.notepad.repository.NoteChunkRepository;
+import com.leopad.notepad.repository.NoteOrderRepository;
 import com.leopad.notepad.repository.NoteRepository;
+import com.leopad.notepad.repository.NoteStatsRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 public class NoteService {
@@ -16,53 +34,356 @@ public class NoteService {
     @Autowired
     private NoteRepository noteRepository;
 
+    @Autowired
+    private NoteChunkRepository noteChunkRepository;
+
+    @Autowired
+    private NoteReadCoalescer noteReadCoalescer;
+
+    @Autowired
+    private InvalidationBus invalidationBus;
+
+    @Autowired
+    private NoteRevisionService noteRevisionService;
+
+    @Autowired
+    private NoteTagIndex noteTagIndex;
+
+    @Autowired
+    private NoteWriteBehindBuffer noteWriteBehindBuffer;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private NoteArchiveService noteArchiveService;
+
+    @Autowired
+    private NoteStatsService noteStatsService;
+
+    @Autowired
+    private NoteResponseCache noteResponseCache;
+
+    @Autowired
+    private NoteShareService noteShareService;
+
+    @Autowired
+    private NoteOrderService noteOrderService;
+
+    private final Counter requestedBytes;
+    private final Counter skippedUpdates;
+
+    public NoteService(MeterRegistry meterRegistry) {
+        // Together with notepad.notes.write.stored.bytes and notepad.revisions.stored.bytes this
+        // gives the write amplification of note saves
+        this.requestedBytes = Counter.builder("notepad.notes.write.requested.bytes")
+                .description("Title and content bytes sent by clients in note creates and updates")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.skippedUpdates = NoteWriteBehindBuffer.skippedUpdates(meterRegistry);
+    }
+
+    // Not @Transactional: the coalescer runs the shared query in its own read-only transaction.
+    // In the user's order: pinned notes, then the rest; new notes start at the top of the rest.
     public List<Note> findAllByUser(User user) {
-        return noteRepository.findByUserOrderByCreatedAtDesc(user);
+        return noteWriteBehindBuffer.overlay(noteReadCoalescer.read(user.getId(), "all", null,
+                () -> noteRepository.findByUserOrderByPinnedDescPositionAscIdAsc(user)));
+    }
+
+    /**
+     * One keyset page of the user's order after the cursor, and the cursor of the next page
+     * (null on the last one).
+     */
+    public OrderedPage findOrderedPage(User user, NoteOrderService.Cursor cursor, int size) {
+        List<NoteOrderRepository.Placement> placements = noteOrderService.page(user.getId(), cursor, size);
+        boolean more = placements.size() > size;
+        List<NoteOrderRepository.Placement> page = more ? placements.subList(0, size) : placements;
+        List<Note> notes = page.isEmpty()
+                ? List.of()
+                : noteWriteBehindBuffer.overlay(findInOrder(user,
+                        page.stream().map(NoteOrderRepository.Placement::id).toList()));
+        if (!more) {
+            return new OrderedPage(notes, null);
+        }
+        NoteOrderRepository.Placement last = page.get(page.size() - 1);
+        return new OrderedPage(notes, new NoteOrderService.Cursor(last.pinned(), last.position(), last.id()));
+    }
+
+    public record OrderedPage(List<Note> notes, NoteOrderService.Cursor next) {
+    }
+
+    /**
+     * Moves a note in the user's order (see {@link NoteOrderService#move}); empty if the user has
+     * no such note. An archived note is brought back first.
+     */
+    public Optional<Note> moveNote(Long id, User user, Long afterId, Long beforeId, Boolean pinned) {
+        if (noteArchiveService.findOrRehydrate(id, user).isEmpty()) {
+            return Optional.empty();
+        }
+        if (noteOrderService.move(id, user, afterId, beforeId, pinned).isEmpty()) {
+            return Optional.empty();
+        }
+        return findByIdAndUser(id, user);
     }
 
+    // Not transactional: the lookup and a rehydration each take their own transaction
     public Optional<Note> findByIdAndUser(Long id, User user) {
-        return noteRepository.findByIdAndUser(id, user);
+        return noteWriteBehindBuffer.overlay(noteArchiveService.findOrRehydrate(id, user));
+    }
+
+    // Only on request: archived notes are left out of every other listing
+    public List<Note> findArchivedByUser(User user) {
+        return noteArchiveService.findArchivedByUser(user);
     }
 
+    @Transactional
     public Note createNote(NoteRequest request, User user) {
+        requestedBytes.increment(utf8Length(request.getTitle()) + utf8Length(request.getContent()));
         Note note = new Note(request.getTitle(), request.getContent(), user);
         if (request.getIsFavorite() != null) {
             note.setIsFavorite(request.getIsFavorite());
         }
-        return noteRepository.save(note);
+        if (request.getTags() != null) {
+            note.setTags(NoteTagIndex.normalize(request.getTags()));
+        }
+        noteReadCoalescer.invalidateAfterCommit(user.getId());
+        invalidationBus.publishAfterCommit(user.getId());
+        noteStatsService.noteCreated(note);
+        note.setPosition(noteOrderService.positionForNewNote(user.getId()));
+        Note saved = noteRepository.save(note);
+        noteTagIndex.noteSavedAfterCommit(saved);
+        return saved;
     }
 
+    public NoteStatsRepository.NoteStats getStats(User user) {
+        return noteStatsService.getStats(user);
+    }
+
+    // Not @Transactional: an update merged into the write-behind buffer needs no connection
     public Note updateNote(Long id, NoteRequest request, User user) {
-        Optional<Note> noteOpt = findByIdAndUser(id, user);
+        requestedBytes.increment(utf8Length(request.getTitle()) + utf8Length(request.getContent()));
+        Optional<Note> buffered = noteWriteBehindBuffer.tryBuffer(id, request, user);
+        if (buffered.isPresent()) {
+            return buffered.get();
+        }
+
+        return transactionTemplate.execute(status -> {
+            noteWriteBehindBuffer.flush(id);
+            Optional<Note> noteOpt = findForWrite(id, user);
+            if (noteOpt.isEmpty()) {
+                throw new RuntimeException("Note not found or access denied");
+            }
+
+            Note note = noteOpt.get();
+            Boolean isFavorite = request.getIsFavorite() != null ? request.getIsFavorite() : note.getIsFavorite();
+            // Large note content is only changed through the content endpoints, never by a JSON update
+            String content = note.getIsLarge() ? note.getContent() : request.getContent();
+            Set<String> tags = request.getTags() != null ? NoteTagIndex.normalize(request.getTags()) : note.getTags();
+            if (isUnchanged(note, request.getTitle(), content, isFavorite, tags)) {
+                // Autosave retries and saves without edits: no UPDATE, revision, updatedAt bump or invalidation
+                skippedUpdates.increment();
+                return note;
+            }
+            if (!tags.equals(note.getTags())) {
+                note.getTags().clear();
+                note.getTags().addAll(tags);
+            }
+            return applyUpdate(note, request.getTitle(), content, isFavorite);
+        });
+    }
+
+    static boolean isUnchanged(Note note, String title, String content, Boolean isFavorite, Set<String> tags) {
+        return Objects.equals(note.getTitle(), title)
+                && Objects.equals(note.getIsFavorite(), isFavorite)
+                && note.getTags().equals(tags)
+                && sameContent(note, content);
+    }
+
+    // Compares hashes when both sides have one, so a shared body need not be compared char by char
+    private static boolean sameContent(Note note, String content) {
+        if (content == null || note.getContent().length() != content.length()) {
+            return Objects.equals(note.getContent(), content);
+        }
+        return note.getContentHash() != null
+                ? note.getContentHash().equals(NoteBodyStore.hash(content))
+                : note.getContent().equals(content);
+    }
+
+    /**
+     * Writes an update from the write-behind buffer. Skipped if the note has been deleted or
+     * does not belong to the user the update was buffered for.
+     */
+    @Transactional
+    public void writePendingUpdate(NoteWriteBehindBuffer.PendingUpdate update) {
+        Optional<Note> noteOpt = noteRepository.findByIdAndUserId(update.noteId(), update.userId());
+        if (noteOpt.isEmpty() && noteArchiveService.rehydrate(update.noteId(), update.userId()).isPresent()) {
+            // Archived while the update was pending
+            noteOpt = noteRepository.findByIdAndUserId(update.noteId(), update.userId());
+        }
+        if (noteOpt.isEmpty()) {
+            return;
+        }
+
+        Note note = noteOpt.get();
+        // The note may have become large since the update was buffered
+        String content = note.getIsLarge() ? note.getContent() : update.content();
+        if (isUnchanged(note, update.title(), content, note.getIsFavorite(), note.getTags())) {
+            skippedUpdates.increment();
+            return;
+        }
+        applyUpdate(note, update.title(), content, note.getIsFavorite());
+    }
+
+    /**
+     * Writes the merged text of a collaborative editing session like any other update, keeping
+     * title, favorite flag and tags, if the stored content is still {@code base}, the text the
+     * session last loaded or saved. Returns the stored content afterwards: {@code content} once
+     * written, or the unchanged stored content if another write replaced {@code base}. Empty if
+     * the note has been deleted or has become a large note since the session started.
+     */
+    @Transactional
+    public Optional<String> saveCollaborativeContent(Long id, Long userId, String base, String content) {
+        noteWriteBehindBuffer.flush(id);
+        Optional<Note> noteOpt = noteRepository.findByIdAndUserId(id, userId);
+        if (noteOpt.isEmpty() && noteArchiveService.rehydrate(id, userId).isPresent()) {
+            noteOpt = noteRepository.findByIdAndUserId(id, userId);
+        }
+        if (noteOpt.isEmpty() || noteOpt.get().getIsLarge()) {
+            return Optional.empty();
+        }
+
+        Note note = noteOpt.get();
+        String stored = note.getContent() != null ? note.getContent() : "";
+        if (!stored.equals(base)) {
+            return Optional.of(stored);
+        }
+        if (isUnchanged(note, note.getTitle(), content, note.getIsFavorite(), note.getTags())) {
+            skippedUpdates.increment();
+            return Optional.of(content);
+        }
+        applyUpdate(note, note.getTitle(), content, note.getIsFavorite());
+        return Optional.of(content);
+    }
+
+    @Transactional
+    public Note restoreRevision(Long id, int revision, User user) {
+        noteWriteBehindBuffer.flush(id);
+        Optional<Note> noteOpt = findForWrite(id, user);
         if (noteOpt.isEmpty()) {
             throw new RuntimeException("Note not found or access denied");
         }
 
         Note note = noteOpt.get();
-        note.setTitle(request.getTitle());
-        note.setContent(request.getContent());
-        if (request.getIsFavorite() != null) {
-            note.setIsFavorite(request.getIsFavorite());
+        NoteRevisionResponse target = noteRevisionService.getRevision(note, revision)
+                .orElseThrow(() -> new RuntimeException("Revision not found"));
+        if (note.getIsLarge()) {
+            // History only holds inline content, so restoring brings the note back inline
+            noteChunkRepository.deleteByNoteId(note.getId());
+            note.setIsLarge(false);
+            note.setContentLength(null);
         }
-        
-        return noteRepository.save(note);
+        // Restoring is an update like any other, so the state being replaced stays in history
+        return applyUpdate(note, target.getTitle(), target.getContent(), target.getIsFavorite());
+    }
+
+    @Transactional(readOnly = true)
+    public List<NoteRevisionResponse> listRevisions(Long id, User user) {
+        Note note = noteArchiveService.findOrRehydrate(id, user)
+                .orElseThrow(() -> new RuntimeException("Note not found or access denied"));
+        return noteRevisionService.listRevisions(note);
+    }
+
+    @Transactional(readOnly = true)
+    public Optional<NoteRevisionResponse> getRevision(Long id, int revision, User user) {
+        Note note = noteArchiveService.findOrRehydrate(id, user)
+                .orElseThrow(() -> new RuntimeException("Note not found or access denied"));
+        return noteRevisionService.getRevision(note, revision);
+    }
+
+    // Archived notes move back into the hot table when they are written to
+    private Optional<Note> findForWrite(Long id, User user) {
+        Optional<Note> note = noteRepository.findByIdAndUser(id, user);
+        if (note.isEmpty() && noteArchiveService.rehydrate(id, user.getId()).isPresent()) {
+            note = noteRepository.findByIdAndUser(id, user);
+        }
+        return note;
+    }
+
+    private static long utf8Length(String value) {
+        return value != null ? value.getBytes(StandardCharsets.UTF_8).length : 0;
     }
 
+    private Note applyUpdate(Note note, String title, String content, Boolean isFavorite) {
+        boolean changed = !Objects.equals(note.getTitle(), title)
+                || !Objects.equals(note.getContent(), content)
+                || !Objects.equals(note.getIsFavorite(), isFavorite);
+        if (changed) {
+            noteRevisionService.recordRevision(note, content);
+        }
+
+        NoteStatsService.Snapshot before = NoteStatsService.snapshot(note);
+        note.setTitle(title);
+        note.setContent(content);
+        note.setIsFavorite(isFavorite);
+        noteStatsService.noteUpdated(note, before);
+
+        noteReadCoalescer.invalidateAfterCommit(note.getUser().getId());
+
+        invalidationBus.publishAfterCommit(note.getUser().getId());
+        Note saved = noteRepository.save(note);
+        noteTagIndex.noteSavedAfterCommit(saved);
+        return saved;
+    }
+
+    @Transactional
     public void deleteNote(Long id, User user) {
-        Optional<Note> noteOpt = findByIdAndUser(id, user);
+        Optional<Note> noteOpt = noteRepository.findByIdAndUser(id, user);
         if (noteOpt.isEmpty()) {
-            throw new RuntimeException("Note not found or access denied");
+            if (!noteArchiveService.deleteArchived(id, user.getId())) {
+                throw new RuntimeException("Note not found or access denied");
+            }
+            noteShareService.noteDeleted(id);
+            return;
         }
         
+        noteStatsService.noteDeleted(user.getId(), NoteStatsService.snapshot(noteOpt.get()));
         noteRepository.delete(noteOpt.get());
+        noteRevisionService.deleteRevisions(id);
+        noteReadCoalescer.invalidateAfterCommit(user.getId());
+        invalidationBus.publishAfterCommit(user.getId());
+        noteTagIndex.noteDeletedAfterCommit(user.getId(), id);
+        noteResponseCache.evict(id);
+        noteShareService.noteDeleted(id);
     }
 
+    // Matches on stored content; notes with a pending update show it but are not matched against it
     public List<Note> searchNotes(String keyword, User user) {
-        return noteRepository.findByUserAndTitleContainingOrContentContaining(user, keyword);
+        return noteWriteBehindBuffer.overlay(noteReadCoalescer.read(user.getId(), "search", keyword,
+                () -> noteRepository.findByUserAndTitleContainingOrContentContaining(user, keyword)));
+    }
+
+    /**
+     * Notes matching a tag/favorite filter, newest first. Matching ids come from the tag index;
+     * only the requested page is loaded.
+     */
+    public Page<Note> filterNotes(User user, NoteTagIndex.Filter filter, int page, int size) {
+        NoteTagIndex.Page matches = noteTagIndex.query(user.getId(), filter, page, size);
+        List<Note> notes = matches.noteIds().isEmpty()
+                ? List.of()
+                : noteWriteBehindBuffer.overlay(findInOrder(user, matches.noteIds()));
+        return new PageImpl<>(notes, PageRequest.of(page, size), matches.total());
+    }
+
+    private List<Note> findInOrder(User user, List<Long> ids) {
+        Map<Long, Note> byId = noteRepository.findByUserAndIdIn(user, ids).stream()
+                .collect(Collectors.toMap(Note::getId, Function.identity()));
+        // A note deleted since the index was read is simply left out of the page
+        return ids.stream().map(byId::get).filter(Objects::nonNull).toList();
     }
 
     public List<Note> findFavoritesByUser(User user) {
-        return noteRepository.findByUserAndIsFavoriteOrderByCreatedAtDesc(user, true);
+        return noteWriteBehindBuffer.overlay(noteReadCoalescer.read(user.getId(), "favorites", null,
+                () -> noteRepository.findByUserAndIsFavoriteOrderByCreatedAtDesc(user, true)));
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,186 @@
+package com.leopad.notepad.service;
+
+import com.leopad.notepad.entity.Note;
+import com.leopad.notepad.entity.NoteShare;
+import com.leopad.notepad.entity.User;
+import com.leopad.notepad.invalidation.InvalidationBus;
+import com.leopad.notepad.repository.NoteShareRepository;
+import com.leopad.notepad.share.ShareSnapshot;
+import com.leopad.notepad.share.ShareSnapshotCache;
+import com.leopad.notepad.share.ShareSnapshotRenderer;
+import com.leopad.notepad.share.SnapshotStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.Optional;
+
+/**
+ * Share links: publishing renders the note into an immutable snapshot in the
+ * {@link SnapshotStore}, and views read only that snapshot. A link keeps showing what was
+ * published until the owner republishes; unsharing removes the snapshot before the link's row.
+ * Not transactional, so no connection is held while snapshots are rendered and written.
+ */
+@Service
+public class NoteShareService {
+
+    private static final Logger logger = LoggerFactory.getLogger(NoteShareService.class);
+
+    private final SecureRandom random = new SecureRandom();
+
+    @Autowired
+    private NoteShareRepository noteShareRepository;
+
+    @Autowired
+    private SnapshotStore snapshotStore;
+
+    @Autowired
+    private ShareSnapshotCache shareSnapshotCache;
+
+    @Autowired
+    private ShareSnapshotRenderer shareSnapshotRenderer;
+
+    @Autowired
+    private LargeNoteService largeNoteService;
+
+    @Autowired
+    private InvalidationBus invalidationBus;
+
+    @Value("${notes.share.base-url:}")
+    private String baseUrl;
+
+    @Value("${notes.share.max-content-bytes:1048576}")
+    private long maxContentBytes;
+
+    public Optional<NoteShare> find(Long noteId, User user) {
+        return noteShareRepository.findByNoteIdAndUserId(noteId, user.getId());
+    }
+
+    // Publishes the note as it is now under a new token
+    public NoteShare share(Note note, User user) {
+        NoteShare share = new NoteShare(newToken(), note.getId(), user.getId());
+        publish(share, note);
+        try {
+            return noteShareRepository.save(share);
+        } catch (RuntimeException e) {
+            // Nobody has the token yet, so the snapshot just goes
+            deleteSnapshot(share.getToken());
+            throw e;
+        }
+    }
+
+    // Replaces the link's snapshot with the note as it is now; the link itself stays the same
+    public NoteShare republish(Note note, User user) {
+        NoteShare share = find(note.getId(), user)
+                .orElseThrow(() -> new RuntimeException("Note is not shared"));
+        publish(share, note);
+        shareSnapshotCache.evict(share.getToken());
+        invalidationBus.publishAfterCommit(user.getId());
+        return noteShareRepository.save(share);
+    }
+
+    public void unshare(Long noteId, User user) {
+        NoteShare share = find(noteId, user)
+                .orElseThrow(() -> new RuntimeException("Note is not shared"));
+        remove(share);
+    }
+
+    /**
+     * Called from note deletion, inside its transaction. The link's row goes with the note; the
+     * snapshot only once that commits, so a rolled-back deletion leaves the link working.
+     */
+    public void noteDeleted(Long noteId) {
+        noteShareRepository.findByNoteId(noteId).ifPresent(share -> {
+            invalidationBus.publishAfterCommit(share.getUserId());
+            noteShareRepository.delete(share);
+            if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        removeSnapshotOfDeletedNote(share, noteId);
+                    }
+                });
+            } else {
+                removeSnapshotOfDeletedNote(share, noteId);
+            }
+        });
+    }
+
+    public String url(NoteShare share) {
+        return baseUrl + "/s/" + share.getToken();
+    }
+
+    private void remove(NoteShare share) {
+        deleteSnapshot(share.getToken());
+        shareSnapshotCache.evict(share.getToken());
+        invalidationBus.publishAfterCommit(share.getUserId());
+        noteShareRepository.delete(share);
+    }
+
+    // The note is gone and cannot be deleted again, so a failure here is only logged
+    private void removeSnapshotOfDeletedNote(NoteShare share, Long noteId) {
+        try {
+            snapshotStore.delete(share.getToken());
+        } catch (IOException | RuntimeException e) {
+            logger.error("Failed to delete the share snapshot of deleted note {}: {}", noteId, e.getMessage());
+        }
+        shareSnapshotCache.evict(share.getToken());
+    }
+
+    private void publish(NoteShare share, Note note) {
+        ShareSnapshot snapshot = shareSnapshotRenderer.render(share.getUserId(), note.getTitle(), content(note),
+                note.getTags(), note.getUpdatedAt() != null ? note.getUpdatedAt() : note.getCreatedAt());
+        try {
+            snapshotStore.put(share.getToken(), snapshot);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to store share snapshot for note " + note.getId(), e);
+        }
+        share.setVersion(snapshot.version());
+        share.setPublishedAt(LocalDateTime.now());
+    }
+
+    private String content(Note note) {
+        if (!note.getIsLarge()) {
+            return note.getContent();
+        }
+        long length = largeNoteService.contentLength(note);
+        if (length > maxContentBytes) {
+            throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE, "Note is too large to share");
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream((int) length);
+        try {
+            largeNoteService.writeContent(note, 0, length, out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    private void deleteSnapshot(String token) {
+        try {
+            snapshotStore.delete(token);
+        } catch (IOException e) {
+            logger.error("Failed to delete a share snapshot: {}", e.getMessage());
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private String newToken() {
+        byte[] bytes = new byte[16];
+        random.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+}
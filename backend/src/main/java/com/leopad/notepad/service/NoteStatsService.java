@@ -0,0 +1,180 @@
+package com.leopad.notepad.service;
+
+import com.leopad.notepad.entity.Note;
+import com.leopad.notepad.entity.User;
+import com.leopad.notepad.repository.NoteStatsRepository;
+import com.leopad.notepad.repository.NoteStatsRepository.NoteStats;
+import com.leopad.notepad.repository.NoteStatsRepository.UncountedNote;
+import com.leopad.notepad.sharding.ShardDirectory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Note count, favorites, words and last edit per user, kept in {@code note_stats} so reading
+ * them never scans a user's notes. Every note write adds its delta in the same transaction; a
+ * scheduled reconciliation recomputes the rows and repairs any that drifted.
+ */
+@Service
+public class NoteStatsService {
+
+    private static final Logger logger = LoggerFactory.getLogger(NoteStatsService.class);
+    // Deltas are stamped just before the note's updated_at is set at flush time
+    private static final Duration LAST_EDIT_TOLERANCE = Duration.ofMinutes(1);
+
+    private final NoteStatsRepository noteStatsRepository;
+    private final ShardDirectory shardDirectory;
+    private final TransactionTemplate readTransaction;
+    private final TransactionTemplate writeTransaction;
+    private final Counter repaired;
+
+    @Value("${notes.stats.reconcile.batch-size:200}")
+    private int batchSize;
+
+    /** Favorite flag and word count of a note as last written, taken before changing it. */
+    public record Snapshot(boolean favorite, int words) {
+    }
+
+    public NoteStatsService(NoteStatsRepository noteStatsRepository, ShardDirectory shardDirectory,
+                            PlatformTransactionManager transactionManager, MeterRegistry meterRegistry) {
+        this.noteStatsRepository = noteStatsRepository;
+        this.shardDirectory = shardDirectory;
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setReadOnly(true);
+        this.writeTransaction = new TransactionTemplate(transactionManager);
+        this.repaired = Counter.builder("notepad.notes.stats.repaired")
+                .description("Per-user note stats rows found to have drifted and recomputed")
+                .register(meterRegistry);
+    }
+
+    public NoteStats getStats(User user) {
+        return readTransaction.execute(status -> noteStatsRepository.find(user.getId())
+                .orElseGet(() -> new NoteStats(0, 0, 0, null)));
+    }
+
+    public static Snapshot snapshot(Note note) {
+        return new Snapshot(note.getIsFavorite(), words(note));
+    }
+
+    // Must run in the transaction that saves the note
+    public void noteCreated(Note note) {
+        note.setWordCount(note.getContent() != null ? countWords(note.getContent()) : 0);
+        noteStatsRepository.applyDelta(note.getUser().getId(), 1, note.getIsFavorite() ? 1 : 0, words(note),
+                LocalDateTime.now());
+    }
+
+    /**
+     * Recounts the note's words and adds the difference to {@code before}. Must run in the
+     * transaction that saves the note.
+     */
+    public void noteUpdated(Note note, Snapshot before) {
+        note.setWordCount(note.getIsLarge() || note.getContent() == null ? null : countWords(note.getContent()));
+        int favorites = (note.getIsFavorite() ? 1 : 0) - (before.favorite() ? 1 : 0);
+        noteStatsRepository.applyDelta(note.getUser().getId(), 0, favorites, words(note) - before.words(),
+                LocalDateTime.now());
+    }
+
+    public void noteDeleted(Long userId, Snapshot before) {
+        noteStatsRepository.applyDelta(userId, -1, before.favorite() ? -1 : 0, -before.words(), LocalDateTime.now());
+    }
+
+    // Runs of non-whitespace, the same as the V9 backfill's regexp_matches(content, '\S+', 'g')
+    public static int countWords(String content) {
+        int words = 0;
+        boolean inWord = false;
+        for (int i = 0; i < content.length(); i++) {
+            boolean whitespace = Character.isWhitespace(content.charAt(i));
+            if (!whitespace && !inWord) {
+                words++;
+            }
+            inWord = !whitespace;
+        }
+        return words;
+    }
+
+    private static int words(Note note) {
+        return note.getWordCount() != null ? note.getWordCount() : 0;
+    }
+
+    @Scheduled(initialDelayString = "${notes.stats.reconcile.initial-delay:300000}",
+            fixedDelayString = "${notes.stats.reconcile.interval:21600000}")
+    public void reconcile() {
+        shardDirectory.forEachShard(shard -> {
+            countArchivedWords();
+            int users = 0;
+            int drifted = 0;
+            Long after = 0L;
+            List<Long> userIds;
+            do {
+                Long from = after;
+                userIds = readTransaction.execute(status -> noteStatsRepository.findUserIdsAfter(from, batchSize));
+                List<Long> batch = userIds;
+                drifted += writeTransaction.execute(status -> reconcileBatch(batch));
+                users += userIds.size();
+                if (!userIds.isEmpty()) {
+                    after = userIds.get(userIds.size() - 1);
+                }
+            } while (userIds.size() == batchSize);
+
+            if (drifted > 0) {
+                logger.warn("Repaired note stats of {} of {} users{}", drifted, users,
+                        shard != null ? " on shard " + shard : "");
+            }
+        });
+    }
+
+    private int reconcileBatch(List<Long> userIds) {
+        int drifted = 0;
+        for (Long userId : userIds) {
+            if (noteStatsRepository.find(userId).isEmpty() && noteStatsRepository.aggregate(userId).noteCount() == 0) {
+                continue;
+            }
+            // Deltas for this user wait until the batch commits, so the recount cannot miss one
+            NoteStats stored = noteStatsRepository.lock(userId).orElseThrow();
+            NoteStats actual = noteStatsRepository.aggregate(userId);
+            if (drifted(stored, actual)) {
+                logger.debug("Note stats of user {} drifted: stored {}, actual {}", userId, stored, actual);
+                noteStatsRepository.overwrite(userId, actual);
+                repaired.increment();
+                drifted++;
+            }
+        }
+        return drifted;
+    }
+
+    private static boolean drifted(NoteStats stored, NoteStats actual) {
+        return stored.noteCount() != actual.noteCount()
+                || stored.favoriteCount() != actual.favoriteCount()
+                || stored.wordCount() != actual.wordCount()
+                || (actual.lastEditedAt() != null && (stored.lastEditedAt() == null
+                || stored.lastEditedAt().plus(LAST_EDIT_TOLERANCE).isBefore(actual.lastEditedAt())));
+    }
+
+    // Notes archived before word counts were kept; their words join the totals on this run
+    private void countArchivedWords() {
+        int counted;
+        do {
+            counted = writeTransaction.execute(status -> {
+                List<UncountedNote> notes = noteStatsRepository.findUncountedArchivedNotes(batchSize);
+                Map<Long, Integer> wordCounts = new LinkedHashMap<>();
+                for (UncountedNote note : notes) {
+                    wordCounts.put(note.id(), countWords(note.content()));
+                }
+                noteStatsRepository.setArchivedWordCounts(wordCounts);
+                return notes.size();
+            });
+        } while (counted == batchSize);
+    }
+}
@@ -0,0 +1,296 @@
+package com.leopad.notepad.service;
+
+import com.leopad.notepad.entity.Note;
+import com.leopad.notepad.invalidation.CacheInvalidationHandler;
+import com.leopad.notepad.repository.NoteIndexEntry;
+import com.leopad.notepad.repository.NoteRepository;
+import com.leopad.notepad.repository.NoteTagEntry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Per-user in-memory index of note tags and the favorite flag as compressed bitmaps over note
+ * ordinals. Ordinals are handed out in note id order, so iterating a bitmap backwards yields
+ * newest notes first. Tag filters are answered with bitmap AND/OR/ANDNOT; only the ids of the
+ * requested page are then fetched from the database.
+ *
+ * A user's index is built on first use and kept current from committed writes. Writes that
+ * commit while nobody has queried the user are ignored; the eventual build reads them anyway.
+ */
+@Component
+public class NoteTagIndex implements CacheInvalidationHandler {
+
+    private final Map<Long, UserIndex> indexes;
+    private final NoteRepository noteRepository;
+    private final TransactionTemplate readOnlyTransaction;
+    private final Counter builds;
+
+    @Value("${notes.tag-index.max-users:10000}")
+    private int maxUsers;
+
+    public NoteTagIndex(NoteRepository noteRepository, PlatformTransactionManager transactionManager,
+                        MeterRegistry meterRegistry) {
+        // Access order: looking a user up makes it the most recent, and a new user beyond
+        // max-users pushes out the least recently used one in constant time
+        this.indexes = Collections.synchronizedMap(new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, UserIndex> eldest) {
+                return size() > maxUsers;
+            }
+        });
+        this.noteRepository = noteRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.builds = Counter.builder("notepad.notes.tag-index.builds")
+                .description("Per-user tag indexes built from the database")
+                .register(meterRegistry);
+        Gauge.builder("notepad.notes.tag-index.users", indexes, Map::size)
+                .description("Users with a tag index in memory")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Notes matching every tag in {@code allTags}, at least one in {@code anyTags} (when given),
+     * none in {@code noneTags}, and the favorite flag (when not null).
+     */
+    public record Filter(Set<String> allTags, Set<String> anyTags, Set<String> noneTags, Boolean favorite) {
+    }
+
+    // Note ids of the requested page, newest first, and the total number of matches
+    public record Page(List<Long> noteIds, int total) {
+    }
+
+    public static Set<String> normalize(Collection<String> tags) {
+        return tags.stream()
+                .map(tag -> tag.trim().toLowerCase(Locale.ROOT))
+                .filter(tag -> !tag.isEmpty())
+                .collect(Collectors.toSet());
+    }
+
+    public Page query(Long userId, Filter filter, int page, int size) {
+        UserIndex index = indexes.computeIfAbsent(userId, id -> new UserIndex());
+        index.ensureBuilt(userId);
+        return index.query(filter, page, size);
+    }
+
+    /**
+     * Updates the owner's index with the note's current favorite flag and tags once the
+     * surrounding transaction commits.
+     */
+    public void noteSavedAfterCommit(Note note) {
+        Long userId = note.getUser().getId();
+        Long noteId = note.getId();
+        boolean favorite = Boolean.TRUE.equals(note.getIsFavorite());
+        Set<String> tags = Set.copyOf(note.getTags());
+        afterCommit(() -> {
+            UserIndex index = indexes.get(userId);
+            if (index != null) {
+                index.put(noteId, favorite, tags);
+            }
+        });
+    }
+
+    public void noteDeletedAfterCommit(Long userId, Long noteId) {
+        afterCommit(() -> {
+            UserIndex index = indexes.get(userId);
+            if (index != null) {
+                index.remove(noteId);
+            }
+        });
+    }
+
+    // Another instance changed the user's notes; rebuild on the next query
+    @Override
+    public void evictUser(Long userId) {
+        indexes.remove(userId);
+    }
+
+    @Override
+    public void evictAll() {
+        indexes.clear();
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private final class UserIndex {
+
+        private boolean built;
+        private long[] noteIds = new long[16];
+        private int nextOrdinal;
+        private final Map<Long, Integer> ordinals = new HashMap<>();
+        private final RoaringBitmap live = new RoaringBitmap();
+        private final RoaringBitmap favorites = new RoaringBitmap();
+        private final Map<String, RoaringBitmap> tags = new HashMap<>();
+
+        synchronized void ensureBuilt(Long userId) {
+            if (built) {
+                return;
+            }
+            try {
+                readOnlyTransaction.executeWithoutResult(status -> {
+                    for (NoteIndexEntry entry : noteRepository.findIndexEntriesByUserId(userId)) {
+                        int ordinal = ordinalFor(entry.getNoteId());
+                        if (Boolean.TRUE.equals(entry.getIsFavorite())) {
+                            favorites.add(ordinal);
+                        }
+                    }
+                    for (NoteTagEntry entry : noteRepository.findTagEntriesByUserId(userId)) {
+                        Integer ordinal = ordinals.get(entry.getNoteId());
+                        if (ordinal != null) {
+                            tags.computeIfAbsent(entry.getTag(), tag -> new RoaringBitmap()).add(ordinal);
+                        }
+                    }
+                });
+            } catch (RuntimeException e) {
+                // Start from scratch on the next attempt
+                nextOrdinal = 0;
+                ordinals.clear();
+                live.clear();
+                favorites.clear();
+                tags.clear();
+                throw e;
+            }
+            tags.values().forEach(RoaringBitmap::runOptimize);
+            built = true;
+            builds.increment();
+        }
+
+        synchronized void put(Long noteId, boolean favorite, Set<String> noteTags) {
+            if (!built) {
+                return;
+            }
+            int ordinal = ordinalFor(noteId);
+            if (favorite) {
+                favorites.add(ordinal);
+            } else {
+                favorites.remove(ordinal);
+            }
+            tags.entrySet().removeIf(entry -> {
+                if (!noteTags.contains(entry.getKey())) {
+                    entry.getValue().remove(ordinal);
+                }
+                return entry.getValue().isEmpty();
+            });
+            for (String tag : noteTags) {
+                tags.computeIfAbsent(tag, t -> new RoaringBitmap()).add(ordinal);
+            }
+        }
+
+        synchronized void remove(Long noteId) {
+            if (!built) {
+                return;
+            }
+            // Ordinals are not reused; the gap disappears the next time the index is built
+            Integer ordinal = ordinals.remove(noteId);
+            if (ordinal == null) {
+                return;
+            }
+            live.remove(ordinal);
+            favorites.remove(ordinal);
+            tags.entrySet().removeIf(entry -> {
+                entry.getValue().remove(ordinal);
+                return entry.getValue().isEmpty();
+            });
+        }
+
+        synchronized Page query(Filter filter, int page, int size) {
+            RoaringBitmap result;
+            if (filter.allTags().isEmpty()) {
+                result = live.clone();
+            } else {
+                // Intersect starting from the rarest tag to keep intermediate bitmaps small
+                List<RoaringBitmap> required = new ArrayList<>();
+                for (String tag : filter.allTags()) {
+                    RoaringBitmap bitmap = tags.get(tag);
+                    if (bitmap == null) {
+                        return new Page(List.of(), 0);
+                    }
+                    required.add(bitmap);
+                }
+                required.sort(Comparator.comparingLong(RoaringBitmap::getLongCardinality));
+                result = required.get(0).clone();
+                for (int i = 1; i < required.size() && !result.isEmpty(); i++) {
+                    result.and(required.get(i));
+                }
+            }
+
+            if (!filter.anyTags().isEmpty()) {
+                RoaringBitmap any = RoaringBitmap.or(filter.anyTags().stream()
+                        .map(tags::get)
+                        .filter(bitmap -> bitmap != null)
+                        .iterator());
+                result.and(any);
+            }
+            if (filter.favorite() != null) {
+                if (filter.favorite()) {
+                    result.and(favorites);
+                } else {
+                    result.andNot(favorites);
+                }
+            }
+            for (String tag : filter.noneTags()) {
+                RoaringBitmap bitmap = tags.get(tag);
+                if (bitmap != null) {
+                    result.andNot(bitmap);
+                }
+            }
+
+            int total = result.getCardinality();
+            long from = (long) page * size;
+            int to = (int) Math.min(total, from + size);
+            List<Long> pageIds = new ArrayList<>();
+            for (long rank = from; rank < to; rank++) {
+                // Highest ordinal first, i.e. newest note first
+                pageIds.add(noteIds[result.select((int) (total - 1 - rank))]);
+            }
+            return new Page(pageIds, total);
+        }
+
+        private int ordinalFor(Long noteId) {
+            Integer existing = ordinals.get(noteId);
+            if (existing != null) {
+                return existing;
+            }
+            int ordinal = nextOrdinal++;
+            if (ordinal == noteIds.length) {
+                noteIds = Arrays.copyOf(noteIds, noteIds.length * 2);
+            }
+            noteIds[ordinal] = noteId;
+            ordinals.put(noteId, ordinal);
+            live.add(ordinal);
+            return ordinal;
+        }
+    }
+}
@@ -0,0 +1,373 @@
+package com.leopad.notepad.service;
+
+import com.leopad.notepad.dto.NoteRequest;
+import com.leopad.notepad.entity.Note;
+import com.leopad.notepad.entity.User;
+import com.leopad.notepad.repository.NoteRepository;
+import com.leopad.notepad.sharding.ShardDirectory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Opt-in write-behind for note updates that only change title and content, i.e. autosaves.
+ * The first update of a note loads it once; further updates within {@code max-delay} replace
+ * the pending title and content in memory and are written as one UPDATE (and one revision)
+ * when the delay expires. Updates that change the favorite flag or tags, large notes, and all
+ * other writes go straight to the database after flushing the note's pending update.
+ *
+ * Every buffered update is appended to a local journal and synced before the request returns.
+ * The journal is replayed on startup, so pending edits survive a crash; on a normal shutdown
+ * everything is flushed once the web server has stopped taking requests.
+ *
+ * Reads on this instance see pending updates. Other instances only see them once flushed, so
+ * with more than one instance clients should stick to one instance per user.
+ */
+@Component
+public class NoteWriteBehindBuffer implements SmartLifecycle {
+
+    private static final Logger logger = LoggerFactory.getLogger(NoteWriteBehindBuffer.class);
+
+    private final Map<Long, PendingUpdate> pending = new ConcurrentHashMap<>();
+    private final Object journalLock = new Object();
+    private final AtomicLong sequence = new AtomicLong();
+    private final NoteRepository noteRepository;
+    private final TransactionTemplate readOnlyTransaction;
+    private final Counter accepted;
+    private final Counter coalesced;
+    private final Counter flushed;
+    private final Counter flushFailures;
+    private final Counter skipped;
+
+    @Autowired
+    @Lazy
+    private NoteService noteService;
+
+    @Autowired
+    private ShardDirectory shardDirectory;
+
+    @Value("${notes.write-behind.enabled:false}")
+    private boolean enabled;
+
+    @Value("${notes.write-behind.max-delay:2s}")
+    private Duration maxDelay;
+
+    @Value("${notes.write-behind.journal-dir:./data/write-behind}")
+    private Path journalDir;
+
+    @Value("${notes.write-behind.journal-sync:true}")
+    private boolean journalSync;
+
+    @Value("${notes.write-behind.journal-compact-size:16777216}")
+    private long journalCompactSize;
+
+    private NoteWriteJournal journal;
+    private ScheduledExecutorService flusher;
+    private volatile boolean running;
+
+    /**
+     * An update waiting to be written. {@code base} is the note as loaded when the update was
+     * first buffered; it is null for updates recovered from the journal.
+     */
+    public record PendingUpdate(long seq, Long noteId, Long userId, String title, String content,
+                                long queuedAtNanos, LocalDateTime updatedAt, Note base) {
+    }
+
+    public NoteWriteBehindBuffer(NoteRepository noteRepository, PlatformTransactionManager transactionManager,
+                                 MeterRegistry meterRegistry) {
+        this.noteRepository = noteRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.accepted = Counter.builder("notepad.notes.write-behind.buffered")
+                .description("Note updates accepted into the write-behind buffer")
+                .register(meterRegistry);
+        this.coalesced = Counter.builder("notepad.notes.write-behind.coalesced")
+                .description("Buffered note updates merged into an already pending update")
+                .register(meterRegistry);
+        this.flushed = Counter.builder("notepad.notes.write-behind.flushed")
+                .description("Pending note updates written to the database")
+                .register(meterRegistry);
+        this.flushFailures = Counter.builder("notepad.notes.write-behind.flush-failures")
+                .description("Attempts to write a pending note update that failed and will be retried")
+                .register(meterRegistry);
+        Gauge.builder("notepad.notes.write-behind.pending", pending, Map::size)
+                .description("Notes with an update not yet written to the database")
+                .register(meterRegistry);
+        this.skipped = skippedUpdates(meterRegistry);
+    }
+
+    // Shared with NoteService, which skips unchanged updates that bypass the buffer
+    static Counter skippedUpdates(MeterRegistry meterRegistry) {
+        return Counter.builder("notepad.notes.updates.skipped")
+                .description("Note updates that changed nothing and were not written")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Buffers the update if it only changes title and content of an inline note. Returns the
+     * note as it will look once written, or empty if the caller must write it directly.
+     */
+    public Optional<Note> tryBuffer(Long noteId, NoteRequest request, User user) {
+        if (!enabled || !running || request.getContent() == null) {
+            return Optional.empty();
+        }
+        PendingUpdate existing = pending.get(noteId);
+        if (existing != null && !existing.userId().equals(user.getId())) {
+            return Optional.empty();
+        }
+        Note base = existing != null && existing.base() != null ? existing.base() : loadBase(noteId, user);
+        if (base == null || base.getIsLarge()) {
+            return Optional.empty();
+        }
+        if (request.getIsFavorite() != null && !request.getIsFavorite().equals(base.getIsFavorite())) {
+            return Optional.empty();
+        }
+        if (request.getTags() != null && !NoteTagIndex.normalize(request.getTags()).equals(base.getTags())) {
+            return Optional.empty();
+        }
+        if (existing != null
+                ? request.getTitle() != null && request.getTitle().equals(existing.title())
+                        && request.getContent().equals(existing.content())
+                : Objects.equals(request.getTitle(), base.getTitle()) && request.getContent().equals(base.getContent())) {
+            // Nothing to journal: the note already looks like this, pending or written
+            skipped.increment();
+            return Optional.of(existing != null ? view(base, existing) : base);
+        }
+
+        PendingUpdate update;
+        synchronized (journalLock) {
+            PendingUpdate previous = pending.get(noteId);
+            if (previous != null && !previous.userId().equals(user.getId())) {
+                return Optional.empty();
+            }
+            long queuedAt = previous != null ? previous.queuedAtNanos() : System.nanoTime();
+            update = new PendingUpdate(sequence.incrementAndGet(), noteId, user.getId(), request.getTitle(),
+                    request.getContent(), queuedAt, LocalDateTime.now(), base);
+            journal.appendUpdate(update);
+            pending.put(noteId, update);
+            if (previous != null) {
+                coalesced.increment();
+            }
+        }
+        if (journalSync) {
+            // Outside the lock, so concurrent autosaves share one sync where the OS allows it
+            journal.sync();
+        }
+        accepted.increment();
+        return Optional.of(view(base, update));
+    }
+
+    /**
+     * Writes the note's pending update, if any, in the current transaction (or a new one). Called
+     * before every direct write so buffered edits are neither lost nor applied out of order.
+     */
+    public void flush(Long noteId) {
+        PendingUpdate update = pending.get(noteId);
+        if (update != null) {
+            noteService.writePendingUpdate(update);
+            completeAfterCommit(update);
+        }
+    }
+
+    public boolean hasPending(Long noteId) {
+        return pending.containsKey(noteId);
+    }
+
+    public List<Note> overlay(List<Note> notes) {
+        if (pending.isEmpty()) {
+            return notes;
+        }
+        List<Note> result = new ArrayList<>(notes.size());
+        for (Note note : notes) {
+            result.add(overlay(note));
+        }
+        return result;
+    }
+
+    public Optional<Note> overlay(Optional<Note> note) {
+        return pending.isEmpty() ? note : note.map(this::overlay);
+    }
+
+    private Note overlay(Note note) {
+        PendingUpdate update = pending.get(note.getId());
+        if (update == null || !update.userId().equals(note.getUser().getId()) || note.getIsLarge()) {
+            return note;
+        }
+        return view(note, update);
+    }
+
+    // A detached copy: notes from the read coalescer are shared between callers
+    private static Note view(Note note, PendingUpdate update) {
+        Note view = new Note(update.title(), update.content(), note.getUser());
+        view.setId(note.getId());
+        view.setCreatedAt(note.getCreatedAt());
+        view.setUpdatedAt(update.updatedAt() != null ? update.updatedAt() : note.getUpdatedAt());
+        view.setIsFavorite(note.getIsFavorite());
+        view.setCurrentRevision(note.getCurrentRevision());
+        view.setIsLarge(note.getIsLarge());
+        view.setContentLength(note.getContentLength());
+        view.setTags(new HashSet<>(note.getTags()));
+        view.setPosition(note.getPosition());
+        view.setPinned(note.getPinned());
+        return view;
+    }
+
+    private Note loadBase(Long noteId, User user) {
+        return readOnlyTransaction.execute(status -> noteRepository.findByIdAndUser(noteId, user).orElse(null));
+    }
+
+    private void completeAfterCommit(PendingUpdate update) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    complete(update);
+                }
+            });
+        } else {
+            complete(update);
+        }
+    }
+
+    private void complete(PendingUpdate update) {
+        synchronized (journalLock) {
+            // A newer update that arrived during the write stays pending
+            pending.remove(update.noteId(), update);
+            journal.appendFlushed(update.noteId(), update.seq());
+        }
+        flushed.increment();
+    }
+
+    void flushDue(boolean all) {
+        long now = System.nanoTime();
+        for (PendingUpdate update : pending.values()) {
+            if (!all && now - update.queuedAtNanos() < maxDelay.toNanos()) {
+                continue;
+            }
+            try {
+                // The flusher thread has no request context, so bind the owner's shard per update
+                shardDirectory.runForUser(update.userId(), () -> noteService.writePendingUpdate(update));
+                complete(update);
+            } catch (RuntimeException e) {
+                flushFailures.increment();
+                logger.warn("Failed to write pending update for note {}, will retry: {}", update.noteId(), e.getMessage());
+            }
+        }
+        if (journalSync) {
+            journal.sync();
+        }
+        compactIfNeeded();
+    }
+
+    private void compactIfNeeded() {
+        try {
+            synchronized (journalLock) {
+                if (journal.size() > journalCompactSize) {
+                    journal.rewrite(pending.values());
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to compact write-behind journal: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void start() {
+        Path file = journalDir.resolve("notes.journal");
+        // A journal left behind by a previous run is replayed even if write-behind is now disabled
+        if (!enabled && !Files.exists(file)) {
+            return;
+        }
+        try {
+            journal = new NoteWriteJournal(file);
+            Map<Long, PendingUpdate> recovered = journal.replay();
+            long due = System.nanoTime() - maxDelay.toNanos();
+            for (PendingUpdate update : recovered.values()) {
+                sequence.accumulateAndGet(update.seq(), Math::max);
+                pending.put(update.noteId(), new PendingUpdate(update.seq(), update.noteId(), update.userId(),
+                        update.title(), update.content(), due, null, null));
+            }
+            if (!recovered.isEmpty()) {
+                logger.info("Recovered {} pending note updates from {}", recovered.size(), file);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open write-behind journal " + file, e);
+        }
+
+        running = true;
+        flushDue(true);
+        long tick = Math.max(10, Math.min(250, maxDelay.toMillis() / 4));
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "note-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(() -> flushDue(false), tick, tick, TimeUnit.MILLISECONDS);
+        logger.info("Note write-behind {} (max delay {}, journal {})", enabled ? "enabled" : "recovery only",
+                maxDelay, file);
+    }
+
+    @Override
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flushDue(true);
+        if (!pending.isEmpty()) {
+            logger.warn("{} note updates could not be written and stay in the journal for the next start",
+                    pending.size());
+        }
+        try {
+            journal.close();
+        } catch (IOException e) {
+            logger.warn("Failed to close write-behind journal: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // Starts before and stops after the web server, so no request can buffer into a stopped buffer
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 4096;
+    }
+}
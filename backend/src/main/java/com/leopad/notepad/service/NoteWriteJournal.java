@@ -0,0 +1,213 @@
+package com.leopad.notepad.service;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only file of buffered note updates. Each record is {@code length, crc32, payload};
+ * a torn record at the end (crash mid-write) fails its checksum and ends the replay there.
+ * An UPDATE record holds the full pending title and content of a note, a FLUSHED record marks
+ * everything up to a sequence number as written to the database.
+ */
+class NoteWriteJournal implements AutoCloseable {
+
+    private static final byte UPDATE = 1;
+    private static final byte FLUSHED = 2;
+
+    private final Path file;
+    private final FileChannel lockChannel;
+    private final FileLock lock;
+    private volatile FileChannel channel;
+
+    NoteWriteJournal(Path file) throws IOException {
+        Files.createDirectories(file.getParent());
+        this.file = file;
+        // Two instances appending to one journal would corrupt it. The lock lives on a separate
+        // file so that compaction can atomically replace the journal itself.
+        this.lockChannel = FileChannel.open(file.resolveSibling(file.getFileName() + ".lock"),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        this.lock = lockChannel.tryLock();
+        if (lock == null) {
+            lockChannel.close();
+            throw new IllegalStateException("Write-behind journal " + file + " is in use by another process");
+        }
+        this.channel = open(file);
+    }
+
+    /**
+     * Updates that were journaled but never marked as flushed, latest per note. Stops at the
+     * first incomplete or corrupt record.
+     */
+    Map<Long, NoteWriteBehindBuffer.PendingUpdate> replay() throws IOException {
+        Map<Long, NoteWriteBehindBuffer.PendingUpdate> updates = new HashMap<>();
+        Map<Long, Long> flushed = new HashMap<>();
+        channel.position(0);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+        long validLength = 0;
+        while (true) {
+            byte[] payload;
+            try {
+                int length = in.readInt();
+                long crc = in.readInt() & 0xFFFFFFFFL;
+                if (length <= 0 || length > 1 << 20) {
+                    break;
+                }
+                payload = in.readNBytes(length);
+                if (payload.length < length || checksum(payload) != crc) {
+                    break;
+                }
+            } catch (EOFException e) {
+                break;
+            }
+            validLength += 8 + payload.length;
+
+            DataInputStream record = new DataInputStream(new ByteArrayInputStream(payload));
+            byte type = record.readByte();
+            if (type == UPDATE) {
+                long seq = record.readLong();
+                long noteId = record.readLong();
+                long userId = record.readLong();
+                String title = readString(record);
+                String content = readString(record);
+                updates.put(noteId, new NoteWriteBehindBuffer.PendingUpdate(seq, noteId, userId, title, content,
+                        0, null, null));
+            } else if (type == FLUSHED) {
+                flushed.merge(record.readLong(), record.readLong(), Math::max);
+            }
+        }
+        updates.values().removeIf(update -> update.seq() <= flushed.getOrDefault(update.noteId(), -1L));
+        // Drop a torn tail so new records are not appended after garbage
+        channel.truncate(validLength);
+        channel.position(validLength);
+        return updates;
+    }
+
+    void appendUpdate(NoteWriteBehindBuffer.PendingUpdate update) {
+        write(encodeUpdate(update));
+    }
+
+    void appendFlushed(Long noteId, long seq) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(17);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(FLUSHED);
+            out.writeLong(noteId);
+            out.writeLong(seq);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        write(bytes.toByteArray());
+    }
+
+    void sync() {
+        try {
+            channel.force(false);
+        } catch (ClosedChannelException e) {
+            // Replaced by rewrite(), which synced everything it kept
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    long size() throws IOException {
+        return channel.size();
+    }
+
+    /**
+     * Replaces the journal with just the given updates. Callers must hold off appends meanwhile.
+     */
+    void rewrite(Collection<NoteWriteBehindBuffer.PendingUpdate> live) throws IOException {
+        Path compacted = file.resolveSibling(file.getFileName() + ".compact");
+        try (FileChannel out = FileChannel.open(compacted, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            for (NoteWriteBehindBuffer.PendingUpdate update : live) {
+                writeRecord(out, encodeUpdate(update));
+            }
+            out.force(true);
+        }
+        Files.move(compacted, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        channel.close();
+        channel = open(file);
+        channel.position(channel.size());
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+        lock.release();
+        lockChannel.close();
+    }
+
+    private static FileChannel open(Path file) throws IOException {
+        return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    private void write(byte[] payload) {
+        try {
+            writeRecord(channel, payload);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeRecord(FileChannel target, byte[] payload) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8 + payload.length);
+        buffer.putInt(payload.length);
+        buffer.putInt((int) checksum(payload));
+        buffer.put(payload);
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            target.write(buffer);
+        }
+    }
+
+    private static byte[] encodeUpdate(NoteWriteBehindBuffer.PendingUpdate update) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + update.content().length());
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(UPDATE);
+            out.writeLong(update.seq());
+            out.writeLong(update.noteId());
+            out.writeLong(update.userId());
+            writeString(out, update.title());
+            writeString(out, update.content());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return new String(in.readNBytes(in.readInt()), StandardCharsets.UTF_8);
+    }
+
+    private static long checksum(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return crc.getValue();
+    }
+}
@@ -2,10 +2,12 @@ package com.leopad.notepad.service;
 
 import com.leopad.notepad.entity.User;
 import com.leopad.notepad.repository.UserRepository;
+import com.leopad.notepad.sharding.ShardDirectory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Optional;
 
@@ -17,15 +19,22 @@ public class UserService {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private ShardDirectory shardDirectory;
+
+    @Transactional(readOnly = true)
     public Optional<User> findByEmail(String email) {
         return userRepository.findByEmail(email);
     }
 
+    @Transactional
     public User createUser(String email, String name) {
-        User user = new User(email, name);
-        return userRepository.save(user);
+        User user = userRepository.save(new User(email, name));
+        shardDirectory.assignAfterCommit(user);
+        return user;
     }
 
+    @Transactional
     public User findOrCreateUser(String email, String name) {
         Optional<User> existingUser = findByEmail(email);
         if (existingUser.isPresent()) {
@@ -34,22 +43,29 @@ public class UserService {
         return createUser(email, name);
     }
 
+    @Transactional(readOnly = true)
     public Optional<User> findById(Long id) {
         return userRepository.findById(id);
     }
 
+    @Transactional(readOnly = true)
     public User findByFirebaseUid(String firebaseUid) {
         Optional<User> user = userRepository.findByFirebaseUid(firebaseUid);
         return user.orElse(null);
     }
 
+    @Transactional
     public User createUserWithFirebaseUid(String firebaseUid, String email, String name) {
         logger.info("Creating new user with Firebase UID: {}, email: {}", firebaseUid, email);
         User user = new User(email, name);
         user.setFirebaseUid(firebaseUid);
-        return userRepository.save(user);
+        User saved = userRepository.save(user);
+        shardDirectory.assignAfterCommit(saved);
+        return saved;
     }
 
+    // Deliberately not one transaction: after a duplicate-key failure PostgreSQL aborts the
+    // transaction, so the retry lookup below must run in a fresh one
     public User findOrCreateUserByFirebaseUid(String firebaseUid, String email, String name) {
         logger.debug("Finding or creating user with Firebase UID: {}", firebaseUid);
         
@@ -0,0 +1,51 @@
+package com.leopad.notepad.sharding;
+
+import java.util.function.Supplier;
+
+/**
+ * The shard the current thread's note queries go to. Bound per request once the user is known
+ * and per unit of work in background jobs. Must be bound before the transaction that uses it
+ * starts: a transaction keeps the connection it got first. Users and the shard directory are
+ * read before binding, so they always come from the directory database.
+ */
+public final class ShardContext {
+
+    private static final ThreadLocal<String> current = new ThreadLocal<>();
+
+    private ShardContext() {
+    }
+
+    // Null means the directory database
+    public static String current() {
+        return current.get();
+    }
+
+    public static void bind(String shard) {
+        if (shard == null) {
+            current.remove();
+        } else {
+            current.set(shard);
+        }
+    }
+
+    public static void clear() {
+        current.remove();
+    }
+
+    public static <T> T callOn(String shard, Supplier<T> work) {
+        String previous = current.get();
+        bind(shard);
+        try {
+            return work.get();
+        } finally {
+            bind(previous);
+        }
+    }
+
+    public static void runOn(String shard, Runnable work) {
+        callOn(shard, () -> {
+            work.run();
+            return null;
+        });
+    }
+}
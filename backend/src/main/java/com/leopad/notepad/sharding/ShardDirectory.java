@@ -0,0 +1,280 @@
+package com.leopad.notepad.sharding;
+
+import com.leopad.notepad.entity.User;
+import com.leopad.notepad.invalidation.CacheInvalidationHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.zip.CRC32C;
+
+/**
+ * Which shard holds each user's notes. The {@code user_shards} table on the directory database
+ * is authoritative; new users are placed by weighted rendezvous hashing over the configured
+ * shards and recorded there, so adding a shard later moves nobody. Users without a row (all
+ * users from before sharding was enabled) live on the directory database.
+ *
+ * With sharding disabled every method degrades to a single, unbound shard.
+ */
+public class ShardDirectory implements CacheInvalidationHandler {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShardDirectory.class);
+    private static final long MOVE_POLL_MILLIS = 100;
+
+    private final ShardPools pools;
+    private final JdbcTemplate directory;
+    private final Duration moveWaitTimeout;
+    private final int cacheSize;
+    private final Map<Long, Placement> cache = new ConcurrentHashMap<>();
+
+    /**
+     * Where a user's notes are. {@code movingTo} is set while a move copies them; requests for
+     * the user wait until it is cleared.
+     */
+    public record Placement(String shard, String movingTo) {
+    }
+
+    public ShardDirectory(ShardPools pools, Duration moveWaitTimeout, int cacheSize) {
+        this.pools = pools;
+        this.directory = pools != null ? new JdbcTemplate(pools.pool(pools.directoryShard())) : null;
+        this.moveWaitTimeout = moveWaitTimeout;
+        this.cacheSize = cacheSize;
+    }
+
+    public boolean isEnabled() {
+        return pools != null;
+    }
+
+    // The shard names, or a single null (the only database) when sharding is disabled
+    public List<String> shards() {
+        return pools != null ? pools.names() : Collections.singletonList(null);
+    }
+
+    /**
+     * Runs the work once per shard with that shard bound, e.g. for maintenance jobs that scan
+     * all notes. Each call must open its own transactions.
+     */
+    public void forEachShard(Consumer<String> work) {
+        for (String shard : shards()) {
+            ShardContext.runOn(shard, () -> work.accept(shard));
+        }
+    }
+
+    // Binds the user's shard for the rest of the request; see ShardContextFilter
+    public void bind(User user) {
+        if (pools != null) {
+            ShardContext.bind(shardFor(user.getId()));
+        }
+    }
+
+    public <T> T callForUser(Long userId, Supplier<T> work) {
+        return pools != null ? ShardContext.callOn(shardFor(userId), work) : work.get();
+    }
+
+    public void runForUser(Long userId, Runnable work) {
+        callForUser(userId, () -> {
+            work.run();
+            return null;
+        });
+    }
+
+    /**
+     * The user's shard. While the user is being moved, waits for the move to finish (up to
+     * {@code sharding.move-wait-timeout}) so no write lands on the shard being copied from.
+     */
+    public String shardFor(Long userId) {
+        if (pools == null) {
+            return null;
+        }
+        Placement placement = cache.get(userId);
+        if (placement == null) {
+            placement = load(userId);
+        }
+        if (placement.movingTo() != null) {
+            placement = awaitMove(userId);
+        }
+        return placement.shard();
+    }
+
+    private Placement awaitMove(Long userId) {
+        long deadline = System.nanoTime() + moveWaitTimeout.toNanos();
+        try {
+            while (System.nanoTime() < deadline) {
+                Thread.sleep(MOVE_POLL_MILLIS);
+                Placement placement = load(userId);
+                if (placement.movingTo() == null) {
+                    return placement;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        throw new IllegalStateException("Notes of user " + userId + " are being moved to another shard");
+    }
+
+    /**
+     * Reads the user's placement from the directory, bypassing the cache. Settled placements
+     * are cached until evicted by a move on any instance.
+     */
+    public Placement load(Long userId) {
+        List<Placement> rows = directory.query("SELECT shard, moving_to FROM user_shards WHERE user_id = ?",
+                (rs, rowNum) -> new Placement(rs.getString("shard"), rs.getString("moving_to")), userId);
+        Placement placement = rows.isEmpty() ? new Placement(pools.directoryShard(), null) : rows.get(0);
+        if (placement.movingTo() == null) {
+            if (cache.size() >= cacheSize) {
+                cache.clear();
+            }
+            cache.put(userId, placement);
+        } else {
+            cache.remove(userId);
+        }
+        return placement;
+    }
+
+    /**
+     * Places a newly created user once its row is committed. A user whose placement fails stays
+     * on the directory database, which is always a valid placement.
+     */
+    public void assignAfterCommit(User user) {
+        if (pools == null) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    assign(user.getId());
+                }
+            });
+        } else {
+            assign(user.getId());
+        }
+    }
+
+    private void assign(Long userId) {
+        String shard = place(userId);
+        try {
+            copyUserRow(userId, shard);
+            directory.update("INSERT INTO user_shards (user_id, shard) VALUES (?, ?) ON CONFLICT (user_id) DO NOTHING",
+                    userId, shard);
+            cache.remove(userId);
+            logger.debug("Placed user {} on shard {}", userId, shard);
+        } catch (RuntimeException e) {
+            logger.warn("Failed to place user {} on shard {}, keeping it on {}: {}", userId, shard,
+                    pools.directoryShard(), e.getMessage());
+        }
+    }
+
+    // Weighted rendezvous hashing: the shard with the highest score for this user wins
+    String place(Long userId) {
+        String best = pools.directoryShard();
+        double bestScore = Double.NEGATIVE_INFINITY;
+        for (String shard : pools.names()) {
+            int weight = pools.weight(shard);
+            if (weight <= 0) {
+                continue;
+            }
+            double score = -weight / Math.log(unitHash(userId, shard));
+            if (score > bestScore) {
+                bestScore = score;
+                best = shard;
+            }
+        }
+        return best;
+    }
+
+    private static double unitHash(Long userId, String shard) {
+        CRC32C crc = new CRC32C();
+        crc.update(ByteBuffer.allocate(Long.BYTES).putLong(0, userId));
+        crc.update(shard.getBytes(StandardCharsets.UTF_8));
+        long mixed = crc.getValue() * 0x9E3779B97F4A7C15L;
+        mixed ^= mixed >>> 29;
+        // In (0, 1): never 0 or 1, so the log is finite and negative
+        return ((mixed >>> 11) + 0.5) / (double) (1L << 53);
+    }
+
+    /**
+     * Copies the user's row from the directory to a shard, where it anchors the notes' foreign
+     * key. Only the directory copy is kept up to date.
+     */
+    public void copyUserRow(Long userId, String shard) {
+        if (shard.equals(pools.directoryShard())) {
+            return;
+        }
+        Map<String, Object> user = directory.queryForMap(
+                "SELECT id, email, name, firebase_uid, created_at, updated_at FROM users WHERE id = ?", userId);
+        new JdbcTemplate(pools.pool(shard)).update(
+                "INSERT INTO users (id, email, name, firebase_uid, created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?) "
+                        + "ON CONFLICT DO NOTHING",
+                user.get("id"), user.get("email"), user.get("name"), user.get("firebase_uid"),
+                user.get("created_at"), user.get("updated_at"));
+    }
+
+    /**
+     * Starts a move: requests for the user wait from now on. False if the user is not on
+     * {@code from} or already being moved.
+     */
+    public boolean markMoving(Long userId, String from, String to) {
+        int updated = directory.update(
+                "INSERT INTO user_shards (user_id, shard, moving_to) VALUES (?, ?, ?) "
+                        + "ON CONFLICT (user_id) DO UPDATE SET moving_to = EXCLUDED.moving_to, updated_at = now() "
+                        + "WHERE user_shards.shard = EXCLUDED.shard AND user_shards.moving_to IS NULL",
+                userId, from, to);
+        cache.remove(userId);
+        return updated > 0;
+    }
+
+    public void completeMove(Long userId, String to) {
+        directory.update("UPDATE user_shards SET shard = moving_to, moving_to = NULL, updated_at = now() "
+                + "WHERE user_id = ? AND moving_to = ?", userId, to);
+        cache.remove(userId);
+    }
+
+    public boolean abortMove(Long userId) {
+        int updated = directory.update("UPDATE user_shards SET moving_to = NULL, updated_at = now() "
+                + "WHERE user_id = ? AND moving_to IS NOT NULL", userId);
+        cache.remove(userId);
+        return updated > 0;
+    }
+
+    // Users with a directory row per shard; users without one are counted on the directory shard
+    public Map<String, Long> usersPerShard() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        pools.names().forEach(name -> counts.put(name, 0L));
+        directory.query("SELECT shard, count(*) FROM user_shards GROUP BY shard",
+                rs -> {
+                    counts.merge(rs.getString(1), rs.getLong(2), Long::sum);
+                });
+        Long unplaced = directory.queryForObject(
+                "SELECT count(*) FROM users u WHERE NOT EXISTS (SELECT 1 FROM user_shards s WHERE s.user_id = u.id)",
+                Long.class);
+        counts.merge(pools.directoryShard(), unplaced != null ? unplaced : 0L, Long::sum);
+        return counts;
+    }
+
+    public ShardPools pools() {
+        return pools;
+    }
+
+    @Override
+    public void evictUser(Long userId) {
+        cache.remove(userId);
+    }
+
+    @Override
+    public void evictAll() {
+        cache.clear();
+    }
+}
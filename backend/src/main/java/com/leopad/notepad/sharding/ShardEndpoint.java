@@ -0,0 +1,53 @@
+package com.leopad.notepad.sharding;
+
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Shard overview and the online move tool. Changes data, so SecurityConfig restricts it to
+ * ROLE_ADMIN wherever it is exposed.
+ */
+@Endpoint(id = "shards")
+public class ShardEndpoint {
+
+    private final ShardDirectory shardDirectory;
+    private final ShardMover shardMover;
+
+    public ShardEndpoint(ShardDirectory shardDirectory, ShardMover shardMover) {
+        this.shardDirectory = shardDirectory;
+        this.shardMover = shardMover;
+    }
+
+    @ReadOperation
+    public Map<String, Object> shards() {
+        Map<String, Object> shards = new LinkedHashMap<>();
+        ShardPools pools = shardDirectory.pools();
+        shardDirectory.usersPerShard().forEach((name, users) -> shards.put(name, Map.of(
+                "users", users,
+                "weight", pools.weight(name),
+                "directory", name.equals(pools.directoryShard()))));
+        return shards;
+    }
+
+    @ReadOperation
+    public ShardDirectory.Placement user(@Selector Long userId) {
+        return shardDirectory.load(userId);
+    }
+
+    @WriteOperation
+    public Map<String, Object> move(Long userId, String target) throws InterruptedException {
+        return shardMover.move(userId, target);
+    }
+
+    // Releases a user left frozen by a move that died half-way; the user stays on its old shard
+    @DeleteOperation
+    public Map<String, Object> abortMove(@Selector Long userId) {
+        return Map.of("userId", userId, "aborted", shardDirectory.abortMove(userId));
+    }
+}
@@ -0,0 +1,260 @@
+package com.leopad.notepad.sharding;
+
+import com.leopad.notepad.invalidation.InvalidationBus;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+
+/**
+ * Moves one user's notes between shards while the application keeps serving:
+ * <ol>
+ *   <li>mark the user as moving in the directory; from then on requests for the user wait,</li>
+ *   <li>wait {@code move-freeze-grace} for requests already on the old shard to finish,</li>
+ *   <li>copy every row of the user from one snapshot of the old shard in one transaction,</li>
+ *   <li>switch the directory to the new shard, which releases waiting requests,</li>
+ *   <li>delete the user's rows from the old shard.</li>
+ * </ol>
+ * Only that user's requests pause, for the grace period plus the copy. Every instance learns
+ * about the freeze and the switch through the invalidation bus. A failed copy leaves the user
+ * on the old shard; leftovers on the new one are removed by the next attempt.
+ */
+public class ShardMover {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShardMover.class);
+    private static final int BATCH_SIZE = 500;
+
+    // Everything that belongs to a user, parents first; each condition takes the user id
+    private static final List<String[]> USER_TABLES = List.of(
+            new String[]{"notes", "user_id = ?"},
+            new String[]{"note_tags", "note_id IN (SELECT id FROM notes WHERE user_id = ?)"},
+            new String[]{"note_chunks", "note_id IN (SELECT id FROM notes WHERE user_id = ?)"},
+            new String[]{"notes_archive", "user_id = ?"},
+            new String[]{"note_revisions", "note_id IN (SELECT id FROM notes WHERE user_id = ? "
+                    + "UNION ALL SELECT id FROM notes_archive WHERE user_id = ?)"},
+            new String[]{"note_stats", "user_id = ?"},
+            new String[]{"note_shares", "user_id = ?"});
+
+    private final ShardDirectory shardDirectory;
+    private final InvalidationBus invalidationBus;
+    private final Duration freezeGrace;
+    private final Timer moves;
+
+    public ShardMover(ShardDirectory shardDirectory, InvalidationBus invalidationBus, Duration freezeGrace,
+                      MeterRegistry meterRegistry) {
+        this.shardDirectory = shardDirectory;
+        this.invalidationBus = invalidationBus;
+        this.freezeGrace = freezeGrace;
+        this.moves = Timer.builder("notepad.sharding.move")
+                .description("Time a user's notes were frozen while being moved to another shard")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Moves the user's notes to the target shard and returns what was copied. Runs on the
+     * calling thread for the duration of the move.
+     */
+    public Map<String, Object> move(Long userId, String target) throws InterruptedException {
+        ShardPools pools = shardDirectory.pools();
+        pools.pool(target);
+        ShardDirectory.Placement placement = shardDirectory.load(userId);
+        if (placement.movingTo() != null) {
+            throw new IllegalStateException("User " + userId + " is already being moved to " + placement.movingTo());
+        }
+        String source = placement.shard();
+        if (source.equals(target)) {
+            return Map.of("userId", userId, "shard", source, "moved", false);
+        }
+
+        shardDirectory.copyUserRow(userId, target);
+        if (!shardDirectory.markMoving(userId, source, target)) {
+            throw new IllegalStateException("User " + userId + " changed shards concurrently");
+        }
+        invalidationBus.publishAfterCommit(userId);
+        long frozenAt = System.nanoTime();
+        Map<String, Integer> copied;
+        try {
+            Thread.sleep(freezeGrace.toMillis());
+            copied = copy(userId, pools.pool(source), pools.pool(target));
+        } catch (InterruptedException | SQLException | RuntimeException e) {
+            shardDirectory.abortMove(userId);
+            invalidationBus.publishAfterCommit(userId);
+            logger.warn("Moving user {} from {} to {} failed, user stays on {}", userId, source, target, source, e);
+            if (e instanceof InterruptedException interrupted) {
+                throw interrupted;
+            }
+            throw new IllegalStateException("Moving user " + userId + " failed: " + e.getMessage(), e);
+        }
+        shardDirectory.completeMove(userId, target);
+        invalidationBus.publishAfterCommit(userId);
+        Duration frozen = Duration.ofNanos(System.nanoTime() - frozenAt);
+        moves.record(frozen);
+        logger.info("Moved user {} from {} to {} ({} ms frozen): {}", userId, source, target, frozen.toMillis(), copied);
+
+        // Readers that looked the user up just before the switch may still be on the old shard
+        Thread.sleep(freezeGrace.toMillis());
+        try (Connection connection = pools.pool(source).getConnection()) {
+            delete(connection, userId);
+        } catch (SQLException e) {
+            logger.warn("Failed to remove moved notes of user {} from {}, rows are orphaned: {}",
+                    userId, source, e.getMessage());
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("userId", userId);
+        result.put("from", source);
+        result.put("to", target);
+        result.put("frozenMillis", frozen.toMillis());
+        result.put("rows", copied);
+        return result;
+    }
+
+    private Map<String, Integer> copy(Long userId, DataSource sourcePool, DataSource targetPool) throws SQLException {
+        try (Connection source = sourcePool.getConnection(); Connection target = targetPool.getConnection()) {
+            source.setAutoCommit(false);
+            source.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+            source.setReadOnly(true);
+            target.setAutoCommit(false);
+            try {
+                // Leftovers from an earlier failed attempt
+                delete(target, userId);
+                Map<String, Integer> copied = new LinkedHashMap<>();
+                for (String[] table : USER_TABLES) {
+                    copied.put(table[0], copyRows(source, target, table[0], table[1], userId));
+                }
+                copied.put("note_bodies", copyBodyReferences(source, target, userId));
+                target.commit();
+                source.commit();
+                return copied;
+            } catch (SQLException | RuntimeException e) {
+                target.rollback();
+                source.rollback();
+                throw e;
+            }
+        }
+    }
+
+    private static int copyRows(Connection source, Connection target, String table, String condition, Long userId)
+            throws SQLException {
+        try (PreparedStatement select = source.prepareStatement("SELECT * FROM " + table + " WHERE " + condition)) {
+            bindUserId(select, condition, userId);
+            select.setFetchSize(BATCH_SIZE);
+            try (ResultSet rs = select.executeQuery()) {
+                ResultSetMetaData meta = rs.getMetaData();
+                int columns = meta.getColumnCount();
+                StringJoiner names = new StringJoiner(", ");
+                StringJoiner placeholders = new StringJoiner(", ");
+                for (int i = 1; i <= columns; i++) {
+                    names.add(meta.getColumnName(i));
+                    placeholders.add("?");
+                }
+                int rows = 0;
+                try (PreparedStatement insert = target.prepareStatement(
+                        "INSERT INTO " + table + " (" + names + ") VALUES (" + placeholders + ")")) {
+                    while (rs.next()) {
+                        for (int i = 1; i <= columns; i++) {
+                            Object value = rs.getObject(i);
+                            if (value instanceof Array array) {
+                                value = target.createArrayOf(array.getBaseTypeName(), (Object[]) array.getArray());
+                            }
+                            insert.setObject(i, value);
+                        }
+                        insert.addBatch();
+                        if (++rows % BATCH_SIZE == 0) {
+                            insert.executeBatch();
+                        }
+                    }
+                    insert.executeBatch();
+                }
+                return rows;
+            }
+        }
+    }
+
+    /**
+     * Shared bodies are per shard: the target gains one reference per note of the user that
+     * uses a body, storing the body if it is new there.
+     */
+    private static int copyBodyReferences(Connection source, Connection target, Long userId) throws SQLException {
+        try (PreparedStatement select = source.prepareStatement(
+                "SELECT b.hash, b.content, count(*) FROM notes n JOIN note_bodies b ON b.hash = n.content_hash "
+                        + "WHERE n.user_id = ? AND n.shared_body GROUP BY b.hash, b.content");
+             PreparedStatement upsert = target.prepareStatement(
+                     "INSERT INTO note_bodies (hash, content, ref_count) VALUES (?, ?, ?) ON CONFLICT (hash) "
+                             + "DO UPDATE SET ref_count = note_bodies.ref_count + EXCLUDED.ref_count")) {
+            select.setLong(1, userId);
+            int bodies = 0;
+            try (ResultSet rs = select.executeQuery()) {
+                while (rs.next()) {
+                    upsert.setString(1, rs.getString(1));
+                    upsert.setString(2, rs.getString(2));
+                    upsert.setInt(3, rs.getInt(3));
+                    upsert.addBatch();
+                    bodies++;
+                }
+            }
+            upsert.executeBatch();
+            return bodies;
+        }
+    }
+
+    // Children first; runs in its own transaction when the connection is in auto-commit mode
+    private static void delete(Connection connection, Long userId) throws SQLException {
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try {
+            try (PreparedStatement release = connection.prepareStatement(
+                    "UPDATE note_bodies b SET ref_count = b.ref_count - r.refs FROM ("
+                            + "SELECT content_hash, count(*) AS refs FROM notes WHERE user_id = ? AND shared_body "
+                            + "GROUP BY content_hash) r WHERE b.hash = r.content_hash");
+                 PreparedStatement unused = connection.prepareStatement(
+                         "DELETE FROM note_bodies b WHERE b.ref_count <= 0 AND b.hash IN ("
+                                 + "SELECT content_hash FROM notes WHERE user_id = ? AND shared_body)")) {
+                release.setLong(1, userId);
+                release.executeUpdate();
+                unused.setLong(1, userId);
+                unused.executeUpdate();
+            }
+            for (int i = USER_TABLES.size() - 1; i >= 0; i--) {
+                String[] table = USER_TABLES.get(i);
+                try (PreparedStatement delete = connection.prepareStatement(
+                        "DELETE FROM " + table[0] + " WHERE " + table[1])) {
+                    bindUserId(delete, table[1], userId);
+                    delete.executeUpdate();
+                }
+            }
+            if (autoCommit) {
+                connection.commit();
+            }
+        } catch (SQLException e) {
+            if (autoCommit) {
+                connection.rollback();
+            }
+            throw e;
+        } finally {
+            if (autoCommit) {
+                connection.setAutoCommit(true);
+            }
+        }
+    }
+
+    private static void bindUserId(PreparedStatement statement, String condition, Long userId) throws SQLException {
+        int parameters = (int) condition.chars().filter(c -> c == '?').count();
+        for (int i = 1; i <= parameters; i++) {
+            statement.setLong(i, userId);
+        }
+    }
+}
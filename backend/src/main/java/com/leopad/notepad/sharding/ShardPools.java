@@ -0,0 +1,54 @@
+package com.leopad.notepad.sharding;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One connection pool per note shard, keyed by shard name, plus the weight each shard gets when
+ * new users are placed. The directory database is a shard too.
+ */
+public class ShardPools implements AutoCloseable {
+
+    private final String directoryShard;
+    private final Map<String, HikariDataSource> pools;
+    private final Map<String, Integer> weights;
+
+    public ShardPools(String directoryShard, Map<String, HikariDataSource> pools, Map<String, Integer> weights) {
+        this.directoryShard = directoryShard;
+        this.pools = new LinkedHashMap<>(pools);
+        this.weights = new LinkedHashMap<>(weights);
+    }
+
+    public String directoryShard() {
+        return directoryShard;
+    }
+
+    public List<String> names() {
+        return List.copyOf(pools.keySet());
+    }
+
+    public HikariDataSource pool(String shard) {
+        HikariDataSource pool = pools.get(shard);
+        if (pool == null) {
+            throw new IllegalArgumentException("Unknown shard: " + shard);
+        }
+        return pool;
+    }
+
+    public int weight(String shard) {
+        return weights.getOrDefault(shard, 0);
+    }
+
+    @Override
+    public void close() {
+        // The directory pool is the spring.datasource pool and is closed with the context
+        pools.forEach((name, pool) -> {
+            if (!name.equals(directoryShard)) {
+                pool.close();
+            }
+        });
+    }
+}
@@ -0,0 +1,16 @@
+package com.leopad.notepad.sharding;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+/**
+ * Routes to the shard bound in {@link ShardContext}, or to the directory database when none is
+ * bound. Must sit behind a {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}
+ * so a transaction picks its shard at the first statement rather than when it begins.
+ */
+public class ShardRoutingDataSource extends AbstractRoutingDataSource {
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return ShardContext.current();
+    }
+}
@@ -0,0 +1,99 @@
+package com.leopad.notepad.share;
+
+import com.google.cloud.storage.Blob;
+import com.google.cloud.storage.BlobId;
+import com.google.cloud.storage.BlobInfo;
+import com.google.cloud.storage.Storage;
+import com.google.cloud.storage.StorageException;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Snapshots as one object per token in a Cloud Storage bucket that all instances share: the HTML
+ * followed by the JSON, with version, owner and HTML length as metadata. An object is replaced
+ * whole, and reads pin the generation whose metadata they saw, so a reader never mixes two
+ * versions.
+ */
+public class GcsSnapshotStore implements SnapshotStore {
+
+    private static final String VERSION = "version";
+    private static final String USER_ID = "user-id";
+    private static final String HTML_LENGTH = "html-length";
+    private static final int NOT_FOUND = 404;
+
+    private final Storage storage;
+    private final String bucket;
+    private final String prefix;
+
+    public GcsSnapshotStore(Storage storage, String bucket, String prefix) {
+        this.storage = storage;
+        this.bucket = bucket;
+        this.prefix = prefix;
+    }
+
+    @Override
+    public void put(String token, ShareSnapshot snapshot) throws IOException {
+        byte[] content = new byte[snapshot.html().length + snapshot.json().length];
+        System.arraycopy(snapshot.html(), 0, content, 0, snapshot.html().length);
+        System.arraycopy(snapshot.json(), 0, content, snapshot.html().length, snapshot.json().length);
+        BlobInfo blob = BlobInfo.newBuilder(blobId(token))
+                .setContentType("application/octet-stream")
+                .setMetadata(Map.of(
+                        VERSION, snapshot.version(),
+                        USER_ID, snapshot.userId().toString(),
+                        HTML_LENGTH, Integer.toString(snapshot.html().length)))
+                .build();
+        try {
+            storage.create(blob, content);
+        } catch (StorageException e) {
+            throw new IOException("Failed to store share snapshot", e);
+        }
+    }
+
+    @Override
+    public Optional<ShareSnapshot> get(String token) throws IOException {
+        BlobId id = blobId(token);
+        // A republish may replace the object between reading its metadata and its content
+        for (int attempt = 0; ; attempt++) {
+            try {
+                Blob blob = storage.get(id);
+                if (blob == null) {
+                    return Optional.empty();
+                }
+                byte[] content = storage.readAllBytes(BlobId.of(bucket, id.getName(), blob.getGeneration()));
+                Map<String, String> metadata = blob.getMetadata();
+                int htmlLength = Integer.parseInt(metadata.get(HTML_LENGTH));
+                return Optional.of(new ShareSnapshot(metadata.get(VERSION), Long.valueOf(metadata.get(USER_ID)),
+                        Arrays.copyOfRange(content, 0, htmlLength),
+                        Arrays.copyOfRange(content, htmlLength, content.length)));
+            } catch (StorageException e) {
+                if (e.getCode() != NOT_FOUND) {
+                    throw new IOException("Failed to read share snapshot", e);
+                }
+                if (attempt == 2) {
+                    // Unshared while being read
+                    return Optional.empty();
+                }
+            }
+        }
+    }
+
+    @Override
+    public void delete(String token) throws IOException {
+        try {
+            storage.delete(blobId(token));
+        } catch (StorageException e) {
+            throw new IOException("Failed to delete share snapshot", e);
+        }
+    }
+
+    private BlobId blobId(String token) {
+        if (!ShareSnapshot.isValidToken(token)) {
+            throw new IllegalArgumentException("Invalid share token");
+        }
+        return BlobId.of(bucket, prefix + token);
+    }
+}
@@ -0,0 +1,111 @@
+package com.leopad.notepad.share;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Optional;
+
+/**
+ * Snapshots as files under {@code <dir>/<first two token characters>/<token>/}: one
+ * {@code <version>.html} and {@code <version>.json} pair plus a {@code current} file naming the
+ * version and owner. {@code current} is replaced atomically after the pair is written and deleted
+ * first when unsharing, so it alone decides what is visible.
+ */
+public class LocalDiskSnapshotStore implements SnapshotStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(LocalDiskSnapshotStore.class);
+
+    private static final String CURRENT = "current";
+
+    private final Path dir;
+
+    public LocalDiskSnapshotStore(Path dir) throws IOException {
+        this.dir = Files.createDirectories(dir);
+    }
+
+    @Override
+    public void put(String token, ShareSnapshot snapshot) throws IOException {
+        Path tokenDir = Files.createDirectories(tokenDir(token));
+        write(tokenDir.resolve(snapshot.version() + ".html"), snapshot.html());
+        write(tokenDir.resolve(snapshot.version() + ".json"), snapshot.json());
+        write(tokenDir.resolve(CURRENT),
+                (snapshot.version() + "\n" + snapshot.userId()).getBytes(StandardCharsets.UTF_8));
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(tokenDir)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (!name.equals(CURRENT) && !name.startsWith(snapshot.version() + ".")) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    @Override
+    public Optional<ShareSnapshot> get(String token) throws IOException {
+        Path tokenDir = tokenDir(token);
+        // A republish may remove the previous version's files between reading current and them
+        for (int attempt = 0; ; attempt++) {
+            String[] current;
+            try {
+                current = Files.readString(tokenDir.resolve(CURRENT), StandardCharsets.UTF_8).split("\n");
+            } catch (NoSuchFileException e) {
+                return Optional.empty();
+            }
+            String version = current[0];
+            try {
+                return Optional.of(new ShareSnapshot(version, Long.valueOf(current[1]),
+                        Files.readAllBytes(tokenDir.resolve(version + ".html")),
+                        Files.readAllBytes(tokenDir.resolve(version + ".json"))));
+            } catch (NoSuchFileException e) {
+                if (attempt == 2) {
+                    // Unshared while being read
+                    return Optional.empty();
+                }
+            }
+        }
+    }
+
+    @Override
+    public void delete(String token) throws IOException {
+        Path tokenDir = tokenDir(token);
+        Files.deleteIfExists(tokenDir.resolve(CURRENT));
+        if (!Files.isDirectory(tokenDir)) {
+            return;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(tokenDir)) {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+        }
+        try {
+            Files.deleteIfExists(tokenDir);
+        } catch (IOException e) {
+            // A concurrent republish of the same token; the snapshot itself is already unreachable
+            logger.debug("Could not remove share directory {}: {}", tokenDir, e.getMessage());
+        }
+    }
+
+    private Path tokenDir(String token) {
+        if (!ShareSnapshot.isValidToken(token)) {
+            throw new IllegalArgumentException("Invalid share token");
+        }
+        return dir.resolve(token.substring(0, 2)).resolve(token);
+    }
+
+    private static void write(Path file, byte[] bytes) throws IOException {
+        Path temp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            Files.write(temp, bytes);
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.leopad.notepad.share;
+
+import java.util.regex.Pattern;
+
+/**
+ * A published note as served from its share link: pre-rendered HTML and JSON, immutable once
+ * stored. {@code version} is a hash of the JSON, so it changes exactly when the shared content does.
+ */
+public record ShareSnapshot(String version, Long userId, byte[] html, byte[] json) {
+
+    // 128 random bits, base64url without padding
+    private static final Pattern TOKEN = Pattern.compile("[A-Za-z0-9_-]{22}");
+    private static final Pattern VERSION = Pattern.compile("[0-9a-f]{32}");
+
+    public static boolean isValidToken(String token) {
+        return token != null && TOKEN.matcher(token).matches();
+    }
+
+    public static boolean isValidVersion(String version) {
+        return version != null && VERSION.matcher(version).matches();
+    }
+
+    public long bytes() {
+        return html.length + json.length;
+    }
+}
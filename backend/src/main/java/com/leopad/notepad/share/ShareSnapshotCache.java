@@ -0,0 +1,111 @@
+package com.leopad.notepad.share;
+
+import com.leopad.notepad.invalidation.CacheInvalidationHandler;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Snapshots recently viewed through share links, so a popular link is served from memory without
+ * locks. Misses load from the {@link SnapshotStore}; a load and an eviction of the same token
+ * are serialized, so an evicted snapshot cannot be put back by a read that started before it.
+ * Over {@code notes.share.cache-bytes} entries are dropped in no particular order.
+ */
+@Component
+public class ShareSnapshotCache implements CacheInvalidationHandler {
+
+    private final SnapshotStore snapshotStore;
+    private final Map<String, ShareSnapshot> snapshots = new ConcurrentHashMap<>();
+    private final AtomicLong cachedBytes = new AtomicLong();
+    private final Counter hits;
+    private final Counter misses;
+
+    @Value("${notes.share.cache-bytes:67108864}")
+    private long maxBytes;
+
+    public ShareSnapshotCache(SnapshotStore snapshotStore, MeterRegistry meterRegistry) {
+        this.snapshotStore = snapshotStore;
+        this.hits = Counter.builder("notepad.shares.views")
+                .description("Share link views by whether the snapshot was in memory")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        this.misses = Counter.builder("notepad.shares.views")
+                .description("Share link views by whether the snapshot was in memory")
+                .tag("result", "miss")
+                .register(meterRegistry);
+        Gauge.builder("notepad.shares.cache.bytes", cachedBytes, AtomicLong::get)
+                .description("Share snapshot bytes held in memory")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    public Optional<ShareSnapshot> get(String token) {
+        ShareSnapshot snapshot = snapshots.get(token);
+        if (snapshot != null) {
+            hits.increment();
+            return Optional.of(snapshot);
+        }
+        misses.increment();
+        snapshot = snapshots.computeIfAbsent(token, key -> {
+            try {
+                ShareSnapshot loaded = snapshotStore.get(key).orElse(null);
+                if (loaded != null) {
+                    cachedBytes.addAndGet(loaded.bytes());
+                }
+                return loaded;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        if (cachedBytes.get() > maxBytes) {
+            trim(token);
+        }
+        return Optional.ofNullable(snapshot);
+    }
+
+    // Called after the snapshot was replaced or deleted in the store
+    public void evict(String token) {
+        ShareSnapshot removed = snapshots.remove(token);
+        if (removed != null) {
+            cachedBytes.addAndGet(-removed.bytes());
+        }
+    }
+
+    @Override
+    public void evictUser(Long userId) {
+        snapshots.entrySet().removeIf(entry -> {
+            if (userId.equals(entry.getValue().userId())) {
+                cachedBytes.addAndGet(-entry.getValue().bytes());
+                return true;
+            }
+            return false;
+        });
+    }
+
+    @Override
+    public void evictAll() {
+        for (String token : snapshots.keySet()) {
+            evict(token);
+        }
+    }
+
+    private void trim(String keep) {
+        Iterator<Map.Entry<String, ShareSnapshot>> entries = snapshots.entrySet().iterator();
+        while (cachedBytes.get() > maxBytes && entries.hasNext()) {
+            Map.Entry<String, ShareSnapshot> entry = entries.next();
+            if (!entry.getKey().equals(keep) && snapshots.remove(entry.getKey(), entry.getValue())) {
+                cachedBytes.addAndGet(-entry.getValue().bytes());
+            }
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.leopad.notepad.share;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.leopad.notepad.service.NoteBodyStore;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Renders the public view of a note once, at publish time: a self-contained HTML page and the
+ * JSON for clients. Only title, content, tags and the update time are published, never ids,
+ * owner or email.
+ */
+@Component
+public class ShareSnapshotRenderer {
+
+    private static final DateTimeFormatter DATE = DateTimeFormatter.ofPattern("MMMM d, yyyy");
+
+    private final ObjectMapper objectMapper;
+
+    public ShareSnapshotRenderer(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    public ShareSnapshot render(Long userId, String title, String content, Collection<String> tags,
+                                LocalDateTime updatedAt) {
+        List<String> sortedTags = tags.stream().sorted().toList();
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("title", title);
+        body.put("content", content);
+        body.put("tags", sortedTags);
+        body.put("updatedAt", updatedAt);
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to encode share snapshot", e);
+        }
+        String version = NoteBodyStore.hash(json).substring(0, 32);
+        byte[] html = html(title, content, sortedTags, updatedAt).getBytes(StandardCharsets.UTF_8);
+        return new ShareSnapshot(version, userId, html, json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String html(String title, String content, List<String> tags, LocalDateTime updatedAt) {
+        StringBuilder html = new StringBuilder(content.length() + 1024);
+        html.append("<!DOCTYPE html>\n<html lang=\"en\">\n<head>\n<meta charset=\"utf-8\">\n")
+                .append("<meta name=\"viewport\" content=\"width=device-width, initial-scale=1\">\n")
+                .append("<meta name=\"robots\" content=\"noindex\">\n")
+                .append("<title>").append(escape(title)).append("</title>\n")
+                .append("<style>body{margin:0;background:#f7f7f5;color:#1f1f1f;")
+                .append("font:16px/1.6 system-ui,-apple-system,sans-serif}")
+                .append("article{max-width:760px;margin:40px auto;padding:32px;background:#fff;border-radius:8px}")
+                .append("h1{margin:0 0 8px;font-size:28px;line-height:1.25}")
+                .append(".meta{color:#6b6b6b;font-size:14px;margin-bottom:24px}")
+                .append(".tag{display:inline-block;margin-right:6px;padding:0 8px;border-radius:10px;background:#eef0f3}")
+                .append("pre{margin:0;white-space:pre-wrap;word-wrap:break-word;font:inherit}</style>\n")
+                .append("</head>\n<body>\n<article>\n<h1>").append(escape(title)).append("</h1>\n")
+                .append("<div class=\"meta\">Updated ").append(DATE.format(updatedAt));
+        for (String tag : tags) {
+            html.append(" <span class=\"tag\">").append(escape(tag)).append("</span>");
+        }
+        html.append("</div>\n<pre>").append(escape(content)).append("</pre>\n</article>\n</body>\n</html>\n");
+        return html.toString();
+    }
+
+    private static String escape(String text) {
+        StringBuilder escaped = new StringBuilder(text.length() + 16);
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '<' -> escaped.append("&lt;");
+                case '>' -> escaped.append("&gt;");
+                case '&' -> escaped.append("&amp;");
+                case '"' -> escaped.append("&quot;");
+                case '\'' -> escaped.append("&#39;");
+                default -> escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+}
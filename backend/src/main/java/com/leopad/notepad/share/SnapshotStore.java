@@ -0,0 +1,20 @@
+package com.leopad.notepad.share;
+
+import java.io.IOException;
+import java.util.Optional;
+
+/**
+ * Where share snapshots live, keyed by share token. Views read only from here, never from the
+ * database. {@link GcsSnapshotStore} when a bucket is configured, otherwise
+ * {@link LocalDiskSnapshotStore}, unless another bean is defined.
+ */
+public interface SnapshotStore {
+
+    // Replaces any snapshot stored under the token; readers see the old or the new one, never a mix
+    void put(String token, ShareSnapshot snapshot) throws IOException;
+
+    Optional<ShareSnapshot> get(String token) throws IOException;
+
+    // Once this returns, get() no longer finds the token
+    void delete(String token) throws IOException;
+}
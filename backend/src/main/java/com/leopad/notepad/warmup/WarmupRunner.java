@@ -0,0 +1,235 @@
+package com.leopad.notepad.warmup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.leopad.notepad.dto.NoteResponse;
+import com.leopad.notepad.entity.Note;
+import com.leopad.notepad.entity.User;
+import com.leopad.notepad.repository.NoteRepository;
+import com.leopad.notepad.repository.UserRepository;
+import com.leopad.notepad.service.FirebaseAuthService;
+import com.zaxxer.hikari.HikariConfigMXBean;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.jdbc.DataSourceUnwrapper;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Connection;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pays the first-request costs before the instance reports ready: opens the minimum pool,
+ * prepares every repository query, prefetches Firebase signing keys, runs the note read path
+ * (service, coalescer, repositories, NoteResponse JSON) and drives synthetic requests through
+ * the filter chain so they are loaded and JIT-compiled.
+ * Runs before ApplicationReadyEvent, so readiness stays REFUSING_TRAFFIC until it is done.
+ * Every step is best effort: a failure is recorded and warm-up moves on.
+ */
+@Component
+public class WarmupRunner implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(WarmupRunner.class);
+    private static final Long SENTINEL_ID = -1L;
+
+    private final WarmupState warmupState;
+    private final DataSource dataSource;
+    private final NoteRepository noteRepository;
+    private final UserRepository userRepository;
+    private final FirebaseAuthService firebaseAuthService;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ApplicationContext applicationContext;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${warmup.enabled:true}")
+    private boolean enabled;
+
+    @Value("${warmup.synthetic-requests:200}")
+    private int syntheticRequests;
+
+    public WarmupRunner(WarmupState warmupState, DataSource dataSource, NoteRepository noteRepository,
+                        UserRepository userRepository, FirebaseAuthService firebaseAuthService,
+                        ObjectMapper objectMapper,
+                        PlatformTransactionManager transactionManager, ApplicationContext applicationContext,
+                        MeterRegistry meterRegistry) {
+        this.warmupState = warmupState;
+        this.dataSource = dataSource;
+        this.noteRepository = noteRepository;
+        this.userRepository = userRepository;
+        this.firebaseAuthService = firebaseAuthService;
+        this.objectMapper = objectMapper;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.applicationContext = applicationContext;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled) {
+            warmupState.markComplete(0);
+            return;
+        }
+
+        long start = System.nanoTime();
+        logger.info("Starting warm-up");
+
+        step("connectionPool", this::openMinimumPool);
+        step("repositoryQueries", this::prepareRepositoryQueries);
+        step("firebaseKeys", firebaseAuthService::prefetchVerificationKeys);
+        step("noteReadPath", this::warmNoteReadPath);
+        step("syntheticRequests", this::sendSyntheticRequests);
+
+        long nanos = System.nanoTime() - start;
+        Timer.builder("notepad.warmup.duration")
+                .description("Total warm-up duration before the instance reports ready")
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+        long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+        warmupState.markComplete(millis);
+        logger.info("Warm-up finished in {} ms", millis);
+    }
+
+    private void step(String name, Callable<?> work) {
+        long start = System.nanoTime();
+        String outcome;
+        try {
+            Object result = work.call();
+            outcome = Boolean.FALSE.equals(result) ? "skipped" : "ok";
+        } catch (Exception e) {
+            outcome = "failed: " + e.getMessage();
+            logger.warn("Warm-up step {} failed: {}", name, e.getMessage());
+        }
+        long nanos = System.nanoTime() - start;
+        Timer.builder("notepad.warmup.step")
+                .description("Duration of each warm-up step")
+                .tag("step", name)
+                .tag("outcome", outcome.startsWith("failed") ? "failed" : outcome)
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+        warmupState.recordStep(name, TimeUnit.NANOSECONDS.toMillis(nanos), outcome);
+    }
+
+    private Object openMinimumPool() throws Exception {
+        HikariConfigMXBean hikari = DataSourceUnwrapper.unwrap(dataSource, HikariConfigMXBean.class,
+                HikariDataSource.class);
+        int minimumIdle = hikari != null ? Math.max(1, hikari.getMinimumIdle()) : 1;
+
+        // Hold them all at once so the pool really has to establish minimumIdle physical connections
+        List<Connection> connections = new ArrayList<>();
+        try {
+            for (int i = 0; i < minimumIdle; i++) {
+                Connection connection = dataSource.getConnection();
+                connections.add(connection);
+                connection.isValid(1);
+            }
+        } finally {
+            for (Connection connection : connections) {
+                connection.close();
+            }
+        }
+        return true;
+    }
+
+    private Object prepareRepositoryQueries() {
+        // Sentinel arguments match no rows but still compile each query and round-trip it to the database
+        readOnlyTransaction.executeWithoutResult(status -> {
+            User user = userRepository.getReferenceById(SENTINEL_ID);
+            noteRepository.findByUserOrderByPinnedDescPositionAscIdAsc(user);
+            noteRepository.findByUserAndIsFavoriteOrderByCreatedAtDesc(user, true);
+            noteRepository.findByUserAndTitleContainingOrContentContaining(user, "warmup");
+            noteRepository.findByIdAndUser(SENTINEL_ID, user);
+            userRepository.findById(SENTINEL_ID);
+            userRepository.findByEmail("warmup@invalid");
+            userRepository.findByFirebaseUid("warmup");
+            userRepository.existsByEmail("warmup@invalid");
+        });
+        return true;
+    }
+
+    // The queries and serialization behind GET /api/notes, which the uncredentialed synthetic
+    // requests never reach. The queries go straight to the repository: through NoteService they
+    // would be counted as user reads by the read coalescer's meters
+    private Object warmNoteReadPath() throws Exception {
+        User sentinel = userRepository.getReferenceById(SENTINEL_ID);
+        List<NoteResponse> sample = sampleNotes(50);
+        long bytes = 0;
+        for (int i = 0; i < syntheticRequests; i++) {
+            noteRepository.findByUserOrderByPinnedDescPositionAscIdAsc(sentinel);
+            noteRepository.findByUserAndIsFavoriteOrderByCreatedAtDesc(sentinel, true);
+            noteRepository.findByUserAndTitleContainingOrContentContaining(sentinel, "warmup");
+            bytes += objectMapper.writeValueAsBytes(sample).length;
+            bytes += objectMapper.writeValueAsBytes(sample.get(i % sample.size())).length;
+        }
+        logger.debug("Serialized {} bytes of sample notes during warm-up", bytes);
+        return true;
+    }
+
+    // Never saved: only shaped like real notes so the same serializers and converters get compiled
+    private static List<NoteResponse> sampleNotes(int count) {
+        User owner = new User("warmup@invalid", "Warm-up");
+        owner.setId(SENTINEL_ID);
+        LocalDateTime created = LocalDateTime.of(2024, 1, 1, 9, 0);
+        List<NoteResponse> notes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Note note = new Note("Warm-up note " + i, "Agenda, follow-ups and café notes \"quoted\"\n".repeat(40), owner);
+            note.setId(SENTINEL_ID - i);
+            note.setIsLarge(false);
+            note.setPinned(i == 0);
+            note.setPosition("a" + i);
+            note.setTags(Set.of("work", "tag" + i % 5));
+            note.setCreatedAt(created.plusMinutes(i));
+            note.setUpdatedAt(created.plusMinutes(i).plusSeconds(30));
+            notes.add(new NoteResponse(note));
+        }
+        return notes;
+    }
+
+    private Object sendSyntheticRequests() throws Exception {
+        if (!(applicationContext instanceof WebServerApplicationContext webContext)
+                || webContext.getWebServer() == null) {
+            return false;
+        }
+        String base = "http://localhost:" + webContext.getWebServer().getPort();
+        HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(2)).build();
+
+        // No credentials: exercises the security filter chain, FirebaseAuthenticationFilter, CORS and
+        // error responses. /api/notes is rejected before the controller; warmNoteReadPath covers that.
+        List<HttpRequest> requests = List.of(
+                HttpRequest.newBuilder(URI.create(base + "/health")).GET().build(),
+                HttpRequest.newBuilder(URI.create(base + "/")).GET().build(),
+                HttpRequest.newBuilder(URI.create(base + "/api/notes")).GET().build(),
+                HttpRequest.newBuilder(URI.create(base + "/api/notes"))
+                        .method("OPTIONS", HttpRequest.BodyPublishers.noBody())
+                        .header("Origin", "http://localhost")
+                        .header("Access-Control-Request-Method", "GET")
+                        .build());
+
+        for (int i = 0; i < syntheticRequests; i++) {
+            for (HttpRequest request : requests) {
+                client.send(request, HttpResponse.BodyHandlers.discarding());
+            }
+        }
+        return true;
+    }
+}
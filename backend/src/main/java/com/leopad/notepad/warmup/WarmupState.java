@@ -0,0 +1,46 @@
+package com.leopad.notepad.warmup;
+
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Tracks warm-up progress. Part of the readiness health group, so the instance only reports
+ * ready once {@link WarmupRunner} has finished.
+ */
+@Component("warmup")
+public class WarmupState implements HealthIndicator {
+
+    private volatile boolean complete = false;
+    private volatile long durationMillis = -1;
+    private final Map<String, Object> steps = Collections.synchronizedMap(new LinkedHashMap<>());
+
+    public boolean isComplete() {
+        return complete;
+    }
+
+    void recordStep(String step, long millis, String outcome) {
+        steps.put(step, Map.of("durationMs", millis, "outcome", outcome));
+    }
+
+    void markComplete(long millis) {
+        this.durationMillis = millis;
+        this.complete = true;
+    }
+
+    @Override
+    public Health health() {
+        Health.Builder builder = complete ? Health.up() : Health.outOfService();
+        synchronized (steps) {
+            builder.withDetail("steps", new LinkedHashMap<>(steps));
+        }
+        if (complete) {
+            builder.withDetail("durationMs", durationMillis);
+        }
+        return builder.build();
+    }
+}
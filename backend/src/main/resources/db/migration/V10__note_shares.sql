@@ -0,0 +1,13 @@
+-- Public share links. The snapshot a link serves lives in the snapshot store under its token;
+-- this row only records which note it was published from. No foreign key to notes since notes
+-- can be archived, so deleting a note deletes its share explicitly.
+CREATE TABLE IF NOT EXISTS note_shares (
+    token        VARCHAR(32) PRIMARY KEY,
+    note_id      BIGINT NOT NULL,
+    user_id      BIGINT NOT NULL,
+    version      VARCHAR(64) NOT NULL,
+    created_at   TIMESTAMP(6) NOT NULL,
+    published_at TIMESTAMP(6) NOT NULL,
+    CONSTRAINT uk_note_shares_note UNIQUE (note_id),
+    CONSTRAINT fk_note_shares_user FOREIGN KEY (user_id) REFERENCES users (id) ON DELETE CASCADE
+);
@@ -0,0 +1,29 @@
+-- User-defined note order. position is a base-62 fractional key (see NotePositions) compared
+-- byte-wise, hence the "C" collation; pinned notes are ordered among themselves ahead of the rest.
+-- Archived notes keep their key, so they return to the same place when rehydrated.
+ALTER TABLE notes ADD COLUMN IF NOT EXISTS position VARCHAR(255) COLLATE "C";
+ALTER TABLE notes ADD COLUMN IF NOT EXISTS pinned BOOLEAN NOT NULL DEFAULT FALSE;
+ALTER TABLE notes_archive ADD COLUMN IF NOT EXISTS position VARCHAR(255) COLLATE "C";
+
+-- Existing notes start in their current order, newest first: evenly spaced 4-digit keys per user
+-- over both tiers, with trailing zero digits dropped
+CREATE TEMPORARY TABLE note_position_backfill AS
+SELECT id, rtrim(
+           substr('0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz', (value / 238328 % 62 + 1)::int, 1) ||
+           substr('0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz', (value / 3844 % 62 + 1)::int, 1) ||
+           substr('0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz', (value / 62 % 62 + 1)::int, 1) ||
+           substr('0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz', (value % 62 + 1)::int, 1),
+           '0') AS position
+FROM (SELECT id,
+             row_number() OVER (PARTITION BY user_id ORDER BY created_at DESC, id DESC)
+                 * (14776336 / (count(*) OVER (PARTITION BY user_id) + 1)) AS value
+      FROM (SELECT id, user_id, created_at FROM notes
+            UNION ALL
+            SELECT id, user_id, created_at FROM notes_archive) n) ordered;
+
+UPDATE notes n SET position = b.position FROM note_position_backfill b WHERE n.id = b.id AND n.position IS NULL;
+UPDATE notes_archive a SET position = b.position FROM note_position_backfill b WHERE a.id = b.id AND a.position IS NULL;
+DROP TABLE note_position_backfill;
+
+ALTER TABLE notes ALTER COLUMN position SET NOT NULL;
+ALTER TABLE notes_archive ALTER COLUMN position SET NOT NULL;
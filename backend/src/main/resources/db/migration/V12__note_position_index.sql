@@ -0,0 +1,4 @@
+-- Ordered keyset pages: WHERE user_id = ? AND pinned = ? AND (position, id) > (?, ?) ORDER BY
+-- position, id, and the neighbour lookups of a move. Built concurrently like V2.
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_notes_user_pinned_position
+    ON notes (user_id, pinned, position, id);
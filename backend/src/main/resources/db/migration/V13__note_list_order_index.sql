@@ -0,0 +1,8 @@
+-- findByUserOrderByPinnedDescPositionAscIdAsc: the full list orders pinned notes first, which
+-- (user_id, pinned, position, id) from V12 can only return by sorting. With pinned descending the
+-- index is read in list order, and still serves the keyset pages and neighbour lookups of V12,
+-- which fix pinned, so it replaces that index. Built concurrently like V2.
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_notes_user_pinned_order
+    ON notes (user_id, pinned DESC, position, id);
+
+DROP INDEX CONCURRENTLY IF EXISTS idx_notes_user_pinned_position;
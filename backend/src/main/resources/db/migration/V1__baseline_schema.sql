@@ -0,0 +1,25 @@
+-- Baseline schema matching the JPA entities as previously generated by ddl-auto: update.
+-- Existing databases are baselined at this version and skip this script.
+
+CREATE TABLE IF NOT EXISTS users (
+    id           BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    email        VARCHAR(255) NOT NULL,
+    name         VARCHAR(255) NOT NULL,
+    firebase_uid VARCHAR(255),
+    created_at   TIMESTAMP(6) NOT NULL,
+    updated_at   TIMESTAMP(6),
+    -- Unique constraints double as the indexes for findByEmail/existsByEmail and findByFirebaseUid
+    CONSTRAINT uk_users_email UNIQUE (email),
+    CONSTRAINT uk_users_firebase_uid UNIQUE (firebase_uid)
+);
+
+CREATE TABLE IF NOT EXISTS notes (
+    id          BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    title       VARCHAR(255) NOT NULL,
+    content     TEXT NOT NULL,
+    user_id     BIGINT NOT NULL,
+    created_at  TIMESTAMP(6) NOT NULL,
+    updated_at  TIMESTAMP(6),
+    is_favorite BOOLEAN NOT NULL DEFAULT FALSE,
+    CONSTRAINT fk_notes_user FOREIGN KEY (user_id) REFERENCES users (id)
+);
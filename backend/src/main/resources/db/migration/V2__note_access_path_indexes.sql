@@ -0,0 +1,15 @@
+-- Indexes for every NoteRepository access path. CONCURRENTLY keeps the notes table writable
+-- while they build on existing databases; Flyway runs this script outside a transaction.
+
+-- findByUserOrderByCreatedAtDesc, and the per-user prefix for the keyword search.
+-- Also covers the notes.user_id foreign key for deletes on users.
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_notes_user_created_at
+    ON notes (user_id, created_at DESC);
+
+-- findByUserAndIsFavoriteOrderByCreatedAtDesc(user, true): only favorites are indexed
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_notes_user_favorite_created_at
+    ON notes (user_id, created_at DESC)
+    WHERE is_favorite = true;
+
+-- findByIdAndUser is served by the primary key; findByEmail/existsByEmail and
+-- findByFirebaseUid by the unique constraints on users from V1.
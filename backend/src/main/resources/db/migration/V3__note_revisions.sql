@@ -0,0 +1,23 @@
+-- Revision history: each row holds the state of a note before one update. Content is stored as
+-- a reverse delta against the next newer version, with a full snapshot every N revisions.
+
+ALTER TABLE notes ADD COLUMN IF NOT EXISTS current_revision INTEGER NOT NULL DEFAULT 0;
+
+CREATE TABLE IF NOT EXISTS note_revisions (
+    id              BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    note_id         BIGINT NOT NULL,
+    revision_number INTEGER NOT NULL,
+    title           VARCHAR(255) NOT NULL,
+    is_favorite     BOOLEAN NOT NULL,
+    is_snapshot     BOOLEAN NOT NULL,
+    content_data    TEXT NOT NULL,
+    content_length  INTEGER NOT NULL,
+    created_at      TIMESTAMP(6) NOT NULL,
+    CONSTRAINT fk_note_revisions_note FOREIGN KEY (note_id) REFERENCES notes (id) ON DELETE CASCADE,
+    CONSTRAINT uk_note_revisions_note_revision UNIQUE (note_id, revision_number)
+);
+
+-- Compaction scans old deltas by age
+CREATE INDEX IF NOT EXISTS idx_note_revisions_delta_created_at
+    ON note_revisions (created_at)
+    WHERE is_snapshot = false;
@@ -0,0 +1,13 @@
+-- Large notes keep their content in fixed-size chunks instead of notes.content.
+-- content_length is the UTF-8 byte length of chunked content; NULL for inline notes.
+
+ALTER TABLE notes ADD COLUMN IF NOT EXISTS is_large BOOLEAN NOT NULL DEFAULT FALSE;
+ALTER TABLE notes ADD COLUMN IF NOT EXISTS content_length BIGINT;
+
+CREATE TABLE IF NOT EXISTS note_chunks (
+    note_id     BIGINT NOT NULL,
+    chunk_index INTEGER NOT NULL,
+    data        BYTEA NOT NULL,
+    CONSTRAINT pk_note_chunks PRIMARY KEY (note_id, chunk_index),
+    CONSTRAINT fk_note_chunks_note FOREIGN KEY (note_id) REFERENCES notes (id) ON DELETE CASCADE
+);
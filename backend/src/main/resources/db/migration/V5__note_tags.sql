@@ -0,0 +1,9 @@
+-- Free-form per-note tags. Filtering by tag is answered from an in-memory bitmap index per
+-- user, so the only access paths needed here are by note and by user (via notes.user_id).
+
+CREATE TABLE IF NOT EXISTS note_tags (
+    note_id BIGINT NOT NULL,
+    tag     VARCHAR(50) NOT NULL,
+    CONSTRAINT pk_note_tags PRIMARY KEY (note_id, tag),
+    CONSTRAINT fk_note_tags_note FOREIGN KEY (note_id) REFERENCES notes (id) ON DELETE CASCADE
+);
@@ -0,0 +1,31 @@
+-- Cold tier: inline notes not modified for a long time are moved here, with deflate-compressed
+-- content and their tags inlined, so they no longer weigh on the notes indexes and list scans.
+-- A note keeps its id in both tiers and moves back into notes on access.
+
+CREATE TABLE IF NOT EXISTS notes_archive (
+    id               BIGINT PRIMARY KEY,
+    user_id          BIGINT NOT NULL,
+    title            VARCHAR(255) NOT NULL,
+    content_deflated BYTEA NOT NULL,
+    content_length   INTEGER NOT NULL,
+    is_favorite      BOOLEAN NOT NULL,
+    current_revision INTEGER NOT NULL,
+    tags             TEXT[] NOT NULL DEFAULT '{}',
+    created_at       TIMESTAMP(6) NOT NULL,
+    updated_at       TIMESTAMP(6),
+    archived_at      TIMESTAMP(6) NOT NULL,
+    CONSTRAINT fk_notes_archive_user FOREIGN KEY (user_id) REFERENCES users (id)
+);
+
+-- Listing a user's archived notes, newest first
+CREATE INDEX IF NOT EXISTS idx_notes_archive_user_created
+    ON notes_archive (user_id, created_at DESC);
+
+-- Archiver candidate scan, oldest first
+CREATE INDEX IF NOT EXISTS idx_notes_last_modified
+    ON notes ((COALESCE(updated_at, created_at)))
+    WHERE is_large = false AND is_favorite = false;
+
+-- History of archived notes is kept, so note_id may now refer to either table. Deleting a note
+-- deletes its revisions explicitly.
+ALTER TABLE note_revisions DROP CONSTRAINT IF EXISTS fk_note_revisions_note;
@@ -0,0 +1,12 @@
+-- Shard directory: which database holds each user's notes. Only read on the database named by
+-- spring.datasource (sharding.directory-shard); users without a row live there.
+-- Every shard runs all migrations, so the table exists but stays empty on the others.
+
+CREATE TABLE IF NOT EXISTS user_shards (
+    user_id    BIGINT PRIMARY KEY,
+    shard      VARCHAR(64) NOT NULL,
+    -- Set while a move copies the user's notes to this shard; requests for the user wait
+    moving_to  VARCHAR(64),
+    updated_at TIMESTAMP(6) NOT NULL DEFAULT now(),
+    CONSTRAINT fk_user_shards_user FOREIGN KEY (user_id) REFERENCES users (id) ON DELETE CASCADE
+);
@@ -0,0 +1,14 @@
+-- SHA-256 of each inline note's content, so saves that change nothing can be recognised without
+-- comparing bodies. Filled in on a note's next write; large notes have none.
+ALTER TABLE notes ADD COLUMN IF NOT EXISTS content_hash VARCHAR(64);
+
+-- With notes.body-store.enabled, identical bodies are stored once here and the note's own
+-- content column is left empty. ref_count is the number of notes pointing at the body.
+ALTER TABLE notes ADD COLUMN IF NOT EXISTS shared_body BOOLEAN NOT NULL DEFAULT FALSE;
+
+CREATE TABLE IF NOT EXISTS note_bodies (
+    hash       VARCHAR(64) PRIMARY KEY,
+    content    TEXT NOT NULL,
+    ref_count  INTEGER NOT NULL,
+    created_at TIMESTAMP(6) NOT NULL DEFAULT now()
+);
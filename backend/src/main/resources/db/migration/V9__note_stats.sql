@@ -0,0 +1,30 @@
+-- Words per note, counted when the note is written (runs of non-whitespace). Large notes have
+-- none; archived notes from before this migration are counted by the stats reconciliation.
+ALTER TABLE notes ADD COLUMN IF NOT EXISTS word_count INTEGER;
+ALTER TABLE notes_archive ADD COLUMN IF NOT EXISTS word_count INTEGER;
+
+UPDATE notes n
+SET word_count = (SELECT count(*) FROM regexp_matches(
+        CASE WHEN n.shared_body THEN (SELECT b.content FROM note_bodies b WHERE b.hash = n.content_hash)
+             ELSE n.content END, '\S+', 'g'))
+WHERE n.is_large = false;
+
+-- Per-user aggregates over both tiers, adjusted by a delta on every note write. Archived notes
+-- are never favorites. last_edited_at is the latest create, update or delete.
+CREATE TABLE IF NOT EXISTS note_stats (
+    user_id        BIGINT PRIMARY KEY,
+    note_count     BIGINT NOT NULL DEFAULT 0,
+    favorite_count BIGINT NOT NULL DEFAULT 0,
+    word_count     BIGINT NOT NULL DEFAULT 0,
+    last_edited_at TIMESTAMP(6),
+    CONSTRAINT fk_note_stats_user FOREIGN KEY (user_id) REFERENCES users (id) ON DELETE CASCADE
+);
+
+INSERT INTO note_stats (user_id, note_count, favorite_count, word_count, last_edited_at)
+SELECT user_id, count(*), count(*) FILTER (WHERE is_favorite), COALESCE(sum(word_count), 0),
+       max(COALESCE(updated_at, created_at))
+FROM (SELECT user_id, is_favorite, word_count, created_at, updated_at FROM notes
+      UNION ALL
+      SELECT user_id, is_favorite, word_count, created_at, updated_at FROM notes_archive) n
+GROUP BY user_id
+ON CONFLICT (user_id) DO NOTHING;